@@ -0,0 +1,300 @@
+package dora.crypto;
+
+import dora.crypto.SymmetricCipherContext.Operation;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reactive stage encrypting or decrypting a stream of buffers with a
+ * {@link SymmetricCipherContext}.
+ * <p>
+ * Upstream buffers are gathered into batches large enough for the cipher mode to process
+ * in parallel, and every batch becomes one downstream buffer. A batch is only processed
+ * when the subscriber has requested a buffer, and upstream buffers are only requested
+ * while a batch is being gathered, so at most one batch is held regardless of how far
+ * the subscriber lags behind. The final batch is padded or unpadded when the upstream
+ * completes.
+ * <p>
+ * Processing and all downstream signals run on the given executor, one task at a time.
+ * The remaining bytes of upstream buffers are consumed, and downstream buffers are never
+ * reused. The processor accepts a single subscriber.
+ */
+public final class CipherProcessor implements Flow.Processor<ByteBuffer, ByteBuffer> {
+
+    private final SymmetricCipherContext context;
+    private final Executor executor;
+
+    private final byte[] batch;
+    private int batched;
+
+    /** Upstream buffers not yet gathered into a batch. */
+    private final Queue<ByteBuffer> inbox = new ConcurrentLinkedQueue<>();
+    /** Processed buffers waiting for demand. */
+    private final Queue<ByteBuffer> outbox = new ArrayDeque<>();
+
+    private final AtomicReference<Flow.Subscriber<? super ByteBuffer>> downstream =
+        new AtomicReference<>();
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    /** Upstream buffers requested but not received yet. */
+    private final AtomicInteger outstanding = new AtomicInteger();
+    /** Number of times the drain loop was asked to run, see {@link #drain()}. */
+    private final AtomicInteger pendingDrains = new AtomicInteger();
+
+    private volatile Flow.Subscription upstream;
+    private volatile boolean upstreamDone;
+    private volatile boolean cancelled;
+
+    private boolean finished;
+    private boolean terminated;
+
+    /**
+     * @param context  context initialized for an {@link Operation}
+     * @param executor executor processing the batches and signalling the subscriber
+     */
+    public CipherProcessor(@NotNull SymmetricCipherContext context, @NotNull Executor executor) {
+        this(context, executor, SymmetricCipherContext.STREAM_BUFFER_SIZE);
+    }
+
+    CipherProcessor(SymmetricCipherContext context, Executor executor, int batchSize) {
+        this.context = requireNonNull(context, "context");
+        this.executor = requireNonNull(executor, "executor");
+
+        if (context.operation() == null)
+            throw new IllegalArgumentException("Context is not initialized for an operation");
+
+        this.batch = new byte[batchSize];
+    }
+
+    //region Subscriber
+    @Override
+    public void onSubscribe(@NotNull Flow.Subscription subscription) {
+        requireNonNull(subscription, "subscription");
+
+        if (upstream != null) {
+            subscription.cancel();
+            return;
+        }
+
+        upstream = subscription;
+        drain();
+    }
+
+    @Override
+    public void onNext(@NotNull ByteBuffer item) {
+        inbox.add(requireNonNull(item, "item"));
+        outstanding.decrementAndGet();
+        drain();
+    }
+
+    @Override
+    public void onError(@NotNull Throwable throwable) {
+        failure.compareAndSet(null, requireNonNull(throwable, "throwable"));
+        upstreamDone = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        drain();
+    }
+    //endregion
+
+    //region Publisher
+    @Override
+    public void subscribe(@NotNull Flow.Subscriber<? super ByteBuffer> subscriber) {
+        requireNonNull(subscriber, "subscriber");
+
+        if (!downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Processor has a subscriber already"));
+            return;
+        }
+
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    failure.compareAndSet(null,
+                        new IllegalArgumentException("Requested demand must be positive"));
+                } else {
+                    demand.getAndUpdate(d -> d + n < 0 ? Long.MAX_VALUE : d + n);
+                }
+
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                drain();
+            }
+        });
+
+        drain();
+    }
+    //endregion
+
+    /**
+     * Schedules the drain loop unless it is running already, in which case the running
+     * loop goes around once more.
+     */
+    private void drain() {
+        if (pendingDrains.getAndIncrement() == 0) {
+            executor.execute(this::drainLoop);
+        }
+    }
+
+    private void drainLoop() {
+        int drains = 1;
+
+        do {
+            drainOnce();
+            drains = pendingDrains.addAndGet(-drains);
+        } while (drains != 0);
+    }
+
+    /**
+     * Emits processed buffers while there is demand, then processes a batch or requests
+     * more of the upstream.
+     */
+    private void drainOnce() {
+        Flow.Subscriber<? super ByteBuffer> subscriber = downstream.get();
+
+        if (terminated) {
+            // The upstream may have subscribed after the processor terminated.
+            cancelUpstream();
+            return;
+        }
+
+        while (subscriber != null) {
+            if (cancelled) {
+                terminate();
+                return;
+            }
+
+            Throwable failure = this.failure.get();
+
+            if (failure != null) {
+                terminate();
+                subscriber.onError(failure);
+                return;
+            }
+
+            if (!outbox.isEmpty()) {
+                if (demand.get() == 0) {
+                    return;
+                }
+
+                subscriber.onNext(outbox.poll());
+                demand.getAndUpdate(d -> d == Long.MAX_VALUE ? d : d - 1);
+                continue;
+            }
+
+            if (finished) {
+                terminate();
+                subscriber.onComplete();
+                return;
+            }
+
+            if (demand.get() == 0) {
+                return;
+            }
+
+            gather();
+
+            // Upstream signals happen before the completion, so the inbox is final.
+            boolean last = upstreamDone && inbox.isEmpty();
+
+            if (batched == batch.length || last) {
+                process(last);
+                continue;
+            }
+
+            Flow.Subscription subscription = upstream;
+
+            if (subscription != null && outstanding.get() == 0 && inbox.isEmpty()) {
+                outstanding.incrementAndGet();
+                subscription.request(1);
+            }
+
+            return;
+        }
+    }
+
+    /**
+     * Moves upstream buffers into the batch until it is full.
+     */
+    private void gather() {
+        ByteBuffer head;
+
+        while (batched < batch.length && (head = inbox.peek()) != null) {
+            int length = Math.min(head.remaining(), batch.length - batched);
+            head.get(batch, batched, length);
+            batched += length;
+
+            if (!head.hasRemaining()) {
+                inbox.poll();
+            }
+        }
+    }
+
+    private void process(boolean last) {
+        try {
+            // Room for the final block as well.
+            byte[] output = new byte[context.outputSize(batched)];
+            int length = context.update(batch, 0, batched, output, 0);
+
+            if (last) {
+                length += context.doFinal(output, length);
+                finished = true;
+            }
+
+            batched = 0;
+
+            if (length > 0) {
+                outbox.add(ByteBuffer.wrap(output, 0, length));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    private void terminate() {
+        terminated = true;
+        inbox.clear();
+        outbox.clear();
+        cancelUpstream();
+    }
+
+    private void cancelUpstream() {
+        Flow.Subscription subscription = upstream;
+
+        if (subscription != null && !upstreamDone) {
+            subscription.cancel();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package dora.crypto;
+
+import dora.crypto.SymmetricCipherContext.Operation;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Channel that reads ciphertext from another channel and decrypts it, buffering like
+ * {@link DecryptingInputStream}. Closing the channel closes the source channel.
+ * <p>
+ * The source channel must be in blocking mode. The channel is not safe for use by
+ * multiple threads.
+ */
+public final class DecryptingByteChannel implements ReadableByteChannel {
+
+    private final DecryptingInputStream stream;
+    private boolean open = true;
+
+    /**
+     * @param context context initialized for {@link Operation#DECRYPT}
+     */
+    public DecryptingByteChannel(
+        @NotNull ReadableByteChannel source,
+        @NotNull SymmetricCipherContext context
+    ) {
+        this.stream = new DecryptingInputStream(
+            Channels.newInputStream(requireNonNull(source, "source channel")), context);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (!open)
+            throw new ClosedChannelException();
+
+        return stream.read(dst);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (open) {
+            open = false;
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package dora.crypto;
+
+import dora.crypto.SymmetricCipherContext.Operation;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Input stream that reads ciphertext from an underlying stream and decrypts it with a
+ * {@link SymmetricCipherContext}.
+ * <p>
+ * Ciphertext is read in buffers large enough for the cipher mode to process in
+ * parallel. The padding is removed when the underlying stream ends, and invalid
+ * ciphertext is reported as an {@link IOException} at that point.
+ * <p>
+ * The stream is not safe for use by multiple threads.
+ */
+public final class DecryptingInputStream extends InputStream {
+
+    private final InputStream in;
+    private final SymmetricCipherContext context;
+
+    private final byte[] input;
+    private final byte[] output;
+    private int position;
+    private int limit;
+
+    private boolean finished;
+    private boolean closed;
+
+    /**
+     * @param context context initialized for {@link Operation#DECRYPT}
+     */
+    public DecryptingInputStream(
+        @NotNull InputStream in,
+        @NotNull SymmetricCipherContext context
+    ) {
+        this(in, context, SymmetricCipherContext.STREAM_BUFFER_SIZE);
+    }
+
+    DecryptingInputStream(InputStream in, SymmetricCipherContext context, int bufferSize) {
+        this.in = requireNonNull(in, "input stream");
+        this.context = requireNonNull(context, "context");
+
+        if (context.operation() != Operation.DECRYPT)
+            throw new IllegalArgumentException("Context is not initialized for decryption");
+
+        this.input = new byte[bufferSize];
+        // The context may add the block it held from the previous call.
+        this.output = new byte[bufferSize + context.blockSize()];
+    }
+
+    @Override
+    public int read() throws IOException {
+        return fill() ? output[position++] & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte @NotNull [] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+
+        int length = Math.min(len, limit - position);
+        System.arraycopy(output, position, b, off, length);
+        position += length;
+
+        return length;
+    }
+
+    /**
+     * Reads into the remaining bytes of the buffer, as {@link #read(byte[], int, int)}
+     * does.
+     */
+    int read(ByteBuffer dst) throws IOException {
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+
+        int length = Math.min(dst.remaining(), limit - position);
+        dst.put(output, position, length);
+        position += length;
+
+        return length;
+    }
+
+    @Override
+    public int available() throws IOException {
+        checkOpen();
+        return limit - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        in.close();
+    }
+
+    /**
+     * Decrypts more ciphertext until plaintext is available.
+     *
+     * @return <code>false</code> if the plaintext has been read completely
+     */
+    private boolean fill() throws IOException {
+        checkOpen();
+
+        while (position == limit) {
+            if (finished) {
+                return false;
+            }
+
+            int bytesRead = in.read(input);
+
+            try {
+                if (bytesRead == -1) {
+                    finished = true;
+                    limit = context.doFinal(output, 0);
+                } else {
+                    limit = context.update(input, 0, bytesRead, output, 0);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while decrypting");
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid ciphertext", e);
+            }
+
+            position = 0;
+        }
+
+        return true;
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+    }
+}
@@ -0,0 +1,58 @@
+package dora.crypto;
+
+import dora.crypto.SymmetricCipherContext.Operation;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Channel that encrypts the data written to it and writes the ciphertext to another
+ * channel, buffering like {@link EncryptingOutputStream}. Closing the channel pads and
+ * encrypts the rest of the data and closes the target channel.
+ * <p>
+ * The target channel must be in blocking mode. The channel is not safe for use by
+ * multiple threads.
+ */
+public final class EncryptingByteChannel implements WritableByteChannel {
+
+    private final EncryptingOutputStream stream;
+    private boolean open = true;
+
+    /**
+     * @param context context initialized for {@link Operation#ENCRYPT}
+     */
+    public EncryptingByteChannel(
+        @NotNull WritableByteChannel target,
+        @NotNull SymmetricCipherContext context
+    ) {
+        this.stream = new EncryptingOutputStream(
+            Channels.newOutputStream(requireNonNull(target, "target channel")), context);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if (!open)
+            throw new ClosedChannelException();
+
+        return stream.write(src);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (open) {
+            open = false;
+            stream.close();
+        }
+    }
+}
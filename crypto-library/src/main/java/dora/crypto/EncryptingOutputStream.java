@@ -0,0 +1,179 @@
+package dora.crypto;
+
+import dora.crypto.SymmetricCipherContext.Operation;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Output stream that encrypts the data written to it with a
+ * {@link SymmetricCipherContext} and writes the ciphertext to an underlying stream.
+ * <p>
+ * Small writes are collected into a buffer large enough for the cipher mode to process
+ * in parallel, while writes of at least a buffer go to the context directly.
+ * {@link #flush()} encrypts every complete block written so far, and {@link #close()}
+ * pads and encrypts the rest before closing the underlying stream.
+ * <p>
+ * The stream is not safe for use by multiple threads.
+ */
+public final class EncryptingOutputStream extends OutputStream {
+
+    private final OutputStream out;
+    private final SymmetricCipherContext context;
+
+    private final byte[] input;
+    private final byte[] output;
+    private int buffered;
+
+    private boolean closed;
+
+    /**
+     * @param context context initialized for {@link Operation#ENCRYPT}
+     */
+    public EncryptingOutputStream(
+        @NotNull OutputStream out,
+        @NotNull SymmetricCipherContext context
+    ) {
+        this(out, context, SymmetricCipherContext.STREAM_BUFFER_SIZE);
+    }
+
+    EncryptingOutputStream(OutputStream out, SymmetricCipherContext context, int bufferSize) {
+        this.out = requireNonNull(out, "output stream");
+        this.context = requireNonNull(context, "context");
+
+        if (context.operation() != Operation.ENCRYPT)
+            throw new IllegalArgumentException("Context is not initialized for encryption");
+
+        this.input = new byte[bufferSize];
+        // The context may add the block it held from the previous call.
+        this.output = new byte[bufferSize + context.blockSize()];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkOpen();
+
+        input[buffered++] = (byte) b;
+
+        if (buffered == input.length) {
+            processBuffer();
+        }
+    }
+
+    @Override
+    public void write(byte @NotNull [] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        checkOpen();
+
+        while (len > 0) {
+            int length;
+
+            if (buffered == 0 && len >= input.length) {
+                length = input.length;
+                process(b, off, length);
+            } else {
+                length = Math.min(len, input.length - buffered);
+                System.arraycopy(b, off, input, buffered, length);
+                buffered += length;
+
+                if (buffered == input.length) {
+                    processBuffer();
+                }
+            }
+
+            off += length;
+            len -= length;
+        }
+    }
+
+    /**
+     * Writes the remaining bytes of the buffer, as {@link #write(byte[], int, int)} does.
+     * Buffers without an accessible array are copied into the stream's buffer.
+     */
+    int write(ByteBuffer src) throws IOException {
+        int length = src.remaining();
+
+        if (src.hasArray()) {
+            write(src.array(), src.arrayOffset() + src.position(), length);
+            src.position(src.limit());
+            return length;
+        }
+
+        checkOpen();
+
+        while (src.hasRemaining()) {
+            int chunk = Math.min(src.remaining(), input.length - buffered);
+            src.get(input, buffered, chunk);
+            buffered += chunk;
+
+            if (buffered == input.length) {
+                processBuffer();
+            }
+        }
+
+        return length;
+    }
+
+    /**
+     * Encrypts and writes every complete block written so far, then flushes the
+     * underlying stream. A trailing partial block stays in the context until more data
+     * arrives or the stream is closed.
+     */
+    @Override
+    public void flush() throws IOException {
+        checkOpen();
+        processBuffer();
+        out.flush();
+    }
+
+    /**
+     * Pads and encrypts the rest of the data and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        try (out) {
+            processBuffer();
+
+            try {
+                out.write(output, 0, context.doFinal(output, 0));
+            } catch (InterruptedException e) {
+                throw interrupted();
+            }
+        }
+    }
+
+    private void processBuffer() throws IOException {
+        process(input, 0, buffered);
+        buffered = 0;
+    }
+
+    private void process(byte[] b, int off, int len) throws IOException {
+        try {
+            out.write(output, 0, context.update(b, off, len, output, 0));
+        } catch (InterruptedException e) {
+            throw interrupted();
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+    }
+
+    private static InterruptedIOException interrupted() {
+        Thread.currentThread().interrupt();
+        return new InterruptedIOException("Interrupted while encrypting");
+    }
+}
@@ -0,0 +1,455 @@
+package dora.crypto;
+
+import dora.crypto.SymmetricCipher.CipherModeType;
+import dora.crypto.block.BlockCipher;
+import dora.crypto.block.mode.CipherMode;
+import dora.crypto.block.mode.CtrCipherMode.CtrParameters;
+import dora.crypto.block.mode.Parameters;
+import dora.crypto.block.mode.Parameters.IvParameters;
+import dora.crypto.block.mode.RandomDeltaCipherMode;
+import dora.crypto.block.mode.RandomDeltaCipherMode.RandomDeltaParameters;
+import dora.crypto.block.padding.Padding;
+
+import java.io.*;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Framed format whose segments are encrypted independently, so that they can be
+ * processed in parallel with any cipher mode, including the chained ones, and read at
+ * random positions.
+ * <p>
+ * The container starts with a header: the magic bytes <code>DSEG</code>, a version byte
+ * and the plaintext segment size as a big-endian int. Each segment follows as its index
+ * (long), a flags byte marking the final segment, the ciphertext length (int) and the
+ * ciphertext. Plaintext is split into segments of the segment size. Only the final
+ * segment is padded, and there always is one, even for empty input.
+ * <p>
+ * The segments are followed by an index: the segment count (long) and, for every
+ * segment, its offset in the container (long) and its plaintext length (int). The
+ * container ends with the offset of the index (long) and the magic bytes
+ * <code>DIDX</code>, so that readers can find the index from the end, see
+ * {@link SegmentedReadChannel}.
+ * <p>
+ * Within a segment the mode works as usual, starting from parameters derived from the
+ * segment index:
+ * <ul>
+ *     <li>IV modes use <code>E_K(IV ⊕ index)</code> as the segment's IV;</li>
+ *     <li>CTR continues the counter where the previous segment stopped, so the keystream
+ *     equals the one of unsegmented data;</li>
+ *     <li>Random Delta moves the counter past every value the previous segments can
+ *     reach and derives a seed for each segment.</li>
+ * </ul>
+ */
+final class SegmentedContainer {
+
+    /** <code>DSEG</code> in ASCII. */
+    static final int MAGIC = 0x44534547;
+    static final byte VERSION = 2;
+    /** <code>DIDX</code> in ASCII. */
+    static final int INDEX_MAGIC = 0x44494458;
+    /** Bytes of the container header. */
+    static final int HEADER_SIZE = 9;
+    /** Bytes of the header of every segment. */
+    static final int SEGMENT_HEADER_SIZE = 13;
+    /** Bytes of the index entry of every segment. */
+    static final int INDEX_ENTRY_SIZE = 12;
+    /** Bytes of the trailer locating the index. */
+    static final int TRAILER_SIZE = 12;
+    static final int DEFAULT_SEGMENT_SIZE = 1 << 20;
+
+    private static final byte FINAL_SEGMENT = 1;
+    /** Spreads the seeds of consecutive segments apart. */
+    private static final long SEED_INCREMENT = 0x9e3779b97f4a7c15L;
+
+    private final BlockCipher cipher;
+    private final CipherModeType modeType;
+    private final Padding padding;
+    private final ForkJoinPool pool;
+    private final int blockSize;
+
+    /** Modes not used by any task at the moment, sharing the initialized cipher. */
+    private final Queue<CipherMode> idleModes = new ConcurrentLinkedQueue<>();
+
+    SegmentedContainer(
+        BlockCipher cipher,
+        CipherModeType modeType,
+        Padding padding,
+        ForkJoinPool pool
+    ) {
+        this.cipher = cipher;
+        this.modeType = modeType;
+        this.padding = padding;
+        this.pool = pool;
+        this.blockSize = cipher.blockSize();
+    }
+
+    void encrypt(
+        byte[] key,
+        Parameters parameters,
+        int segmentSize,
+        InputStream in,
+        OutputStream out
+    ) throws IOException, InterruptedException {
+        if (segmentSize <= 0 || segmentSize % blockSize != 0)
+            throw new IllegalArgumentException("Segment size must be a positive multiple of block size");
+
+        cipher.init(key);
+
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(out));
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+        output.writeInt(segmentSize);
+
+        Deque<ForkJoinTask<Segment>> pending = new ArrayDeque<>();
+        SegmentIndex index = new SegmentIndex(HEADER_SIZE);
+
+        try {
+            byte[] chunk = in.readNBytes(segmentSize);
+
+            for (long i = 0; ; i++) {
+                // Read ahead to know whether this is the final segment.
+                byte[] next = chunk.length < segmentSize ? null : in.readNBytes(segmentSize);
+                boolean last = next == null || next.length == 0;
+
+                if (pending.size() == window()) {
+                    writeSegment(output, join(pending.removeFirst()), index);
+                }
+
+                long segmentIndex = i;
+                byte[] plaintext = chunk;
+
+                pending.addLast(pool.submit(() -> encryptSegment(
+                    parameters, segmentSize, segmentIndex, plaintext, last)));
+
+                if (last) break;
+
+                chunk = next;
+            }
+
+            while (!pending.isEmpty()) {
+                writeSegment(output, join(pending.removeFirst()), index);
+            }
+        } finally {
+            pending.forEach(task -> task.cancel(true));
+        }
+
+        index.write(output);
+        output.flush();
+    }
+
+    /**
+     * Opens a read-only view of the plaintext of a container. The cipher is initialized
+     * with the key and shared with this container.
+     */
+    SegmentedReadChannel open(
+        byte[] key,
+        Parameters parameters,
+        SeekableByteChannel source
+    ) throws IOException {
+        SegmentedReadChannel channel = new SegmentedReadChannel(this, parameters, source);
+        cipher.init(key);
+        return channel;
+    }
+
+    void decrypt(
+        byte[] key,
+        Parameters parameters,
+        InputStream in,
+        OutputStream out
+    ) throws IOException, InterruptedException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(in));
+
+        Header header = readHeader(input);
+        int segmentSize = header.segmentSize();
+        long segmentCount = 0;
+
+        cipher.init(key);
+
+        Deque<ForkJoinTask<Segment>> pending = new ArrayDeque<>();
+
+        try {
+            for (long index = 0; ; index++) {
+                Segment segment = readSegment(input, index, segmentSize);
+                segmentCount++;
+
+                if (pending.size() == window()) {
+                    out.write(join(pending.removeFirst()).data());
+                }
+
+                pending.addLast(pool.submit(() -> decryptSegment(
+                    parameters, segmentSize, segment)));
+
+                if (segment.last()) break;
+            }
+
+            while (!pending.isEmpty()) {
+                out.write(join(pending.removeFirst()).data());
+            }
+        } finally {
+            pending.forEach(task -> task.cancel(true));
+        }
+
+        checkIndex(input, segmentCount);
+    }
+
+    /**
+     * Returns the number of segments processed at once, bounding memory use.
+     */
+    private int window() {
+        return Math.max(2, 2 * pool.getParallelism());
+    }
+
+    private Segment encryptSegment(
+        Parameters parameters,
+        int segmentSize,
+        long index,
+        byte[] plaintext,
+        boolean last
+    ) throws InterruptedException {
+        byte[] data = last ? padding.pad(plaintext, blockSize) : plaintext;
+        CipherMode mode = acquireMode();
+
+        try {
+            mode.init(segmentParameters(parameters, segmentSize, index));
+            return new Segment(index, last, plaintext.length, mode.encrypt(data));
+        } finally {
+            idleModes.offer(mode);
+        }
+    }
+
+    /**
+     * Decrypts a segment read by {@link #readSegment}, removing the padding of the final
+     * one.
+     */
+    Segment decryptSegment(
+        Parameters parameters,
+        int segmentSize,
+        Segment segment
+    ) throws InterruptedException {
+        CipherMode mode = acquireMode();
+        byte[] data;
+
+        try {
+            mode.init(segmentParameters(parameters, segmentSize, segment.index()));
+            data = mode.decrypt(segment.data());
+        } finally {
+            idleModes.offer(mode);
+        }
+
+        if (segment.last()) {
+            data = padding.unpad(data, blockSize);
+        }
+
+        return new Segment(segment.index(), segment.last(), data.length, data);
+    }
+
+    private CipherMode acquireMode() {
+        CipherMode mode = idleModes.poll();
+        return mode != null ? mode : modeType.createMode(cipher, pool);
+    }
+
+    //region Parameters
+    private Parameters segmentParameters(Parameters parameters, int segmentSize, long index) {
+        long segmentBlocks = segmentSize / blockSize;
+
+        return switch (parameters) {
+            case IvParameters(byte[] iv) when iv.length == blockSize ->
+                new IvParameters(deriveIv(iv, index));
+            case CtrParameters(byte[] nonce, long counter, int counterSize) ->
+                new CtrParameters(
+                    nonce,
+                    Math.addExact(counter, Math.multiplyExact(index, segmentBlocks)),
+                    counterSize
+                );
+            case RandomDeltaParameters(byte[] nonce, long counter, Long seed) ->
+                new RandomDeltaParameters(
+                    nonce,
+                    Math.addExact(counter, Math.multiplyExact(
+                        index, segmentBlocks * RandomDeltaCipherMode.MAX_DELTA)),
+                    seed == null ? null : seed + index * SEED_INCREMENT
+                );
+            default -> parameters;
+        };
+    }
+
+    /**
+     * Returns <code>E_K(iv ⊕ index)</code>, with the index big-endian in the last bytes.
+     */
+    private byte[] deriveIv(byte[] iv, long index) {
+        byte[] derived = iv.clone();
+
+        for (int i = 1; i <= Math.min(Long.BYTES, blockSize); i++) {
+            derived[blockSize - i] ^= (byte) index;
+            index >>>= Byte.SIZE;
+        }
+
+        cipher.encryptBlock(derived, 0, derived, 0);
+        return derived;
+    }
+    //endregion
+
+    //region Framing
+    /**
+     * Reads and validates the container header.
+     */
+    Header readHeader(DataInputStream input) throws IOException {
+        int magic;
+        byte version;
+        int segmentSize;
+
+        try {
+            magic = input.readInt();
+            version = input.readByte();
+            segmentSize = input.readInt();
+        } catch (EOFException e) {
+            throw new IOException("Not a segmented container", e);
+        }
+
+        if (magic != MAGIC)
+            throw new IOException("Not a segmented container");
+        if (version != VERSION)
+            throw new IOException("Unsupported container version " + version);
+        if (segmentSize <= 0 || segmentSize % blockSize != 0)
+            throw new IOException("Invalid segment size " + segmentSize);
+
+        return new Header(segmentSize);
+    }
+
+    /**
+     * Checks that the index following the segments covers all of them and is complete.
+     * Random access readers validate the entries themselves.
+     */
+    private static void checkIndex(DataInputStream input, long segmentCount) throws IOException {
+        try {
+            if (input.readLong() != segmentCount)
+                throw new IOException("Invalid segment index");
+
+            input.skipNBytes(segmentCount * INDEX_ENTRY_SIZE);
+            input.readLong();
+
+            if (input.readInt() != INDEX_MAGIC)
+                throw new IOException("Invalid segment index");
+        } catch (EOFException e) {
+            throw new IOException("Container is truncated", e);
+        }
+    }
+
+    private static void writeSegment(
+        DataOutputStream output,
+        Segment segment,
+        SegmentIndex index
+    ) throws IOException {
+        index.add(segment);
+
+        output.writeLong(segment.index());
+        output.writeByte(segment.last() ? FINAL_SEGMENT : 0);
+        output.writeInt(segment.data().length);
+        output.write(segment.data());
+    }
+
+    /**
+     * Reads and validates the segment at the current position of the input.
+     */
+    Segment readSegment(
+        DataInputStream input,
+        long expectedIndex,
+        int segmentSize
+    ) throws IOException {
+        try {
+            long index = input.readLong();
+            boolean last = (input.readByte() & FINAL_SEGMENT) != 0;
+            int length = input.readInt();
+
+            if (index != expectedIndex)
+                throw new IOException("Unexpected segment " + index);
+
+            // Full segments have the segment size; the final one may gain a padding block.
+            boolean validLength = last
+                ? length >= 0 && length <= segmentSize + blockSize
+                : length == segmentSize;
+
+            if (!validLength || length % blockSize != 0)
+                throw new IOException("Invalid length of segment " + index);
+
+            byte[] data = new byte[length];
+            input.readFully(data);
+
+            return new Segment(index, last, -1, data);
+        } catch (EOFException e) {
+            throw new IOException("Container is truncated", e);
+        }
+    }
+
+    /**
+     * Collects the index entries of the segments as they are written.
+     */
+    private static final class SegmentIndex {
+
+        private final ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        private final DataOutputStream output = new DataOutputStream(entries);
+
+        private long offset;
+        private long count;
+
+        SegmentIndex(long offset) {
+            this.offset = offset;
+        }
+
+        void add(Segment segment) throws IOException {
+            output.writeLong(offset);
+            output.writeInt(segment.plaintextLength());
+
+            offset += SEGMENT_HEADER_SIZE + segment.data().length;
+            count++;
+        }
+
+        /**
+         * Writes the index and the trailer locating it. The index starts right after the
+         * last segment.
+         */
+        void write(DataOutputStream container) throws IOException {
+            container.writeLong(count);
+            entries.writeTo(container);
+            container.writeLong(offset);
+            container.writeInt(INDEX_MAGIC);
+        }
+    }
+    //endregion
+
+    private static Segment join(ForkJoinTask<Segment> task)
+    throws IOException, InterruptedException {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            if (cause instanceof InterruptedException interruptedException) {
+                throw interruptedException;
+            }
+
+            throw new IOException(cause);
+        }
+    }
+
+    record Header(int segmentSize) {
+    }
+
+    /**
+     * @param plaintextLength length of the segment's plaintext, or -1 if not known yet
+     */
+    record Segment(long index, boolean last, int plaintextLength, byte[] data) {
+    }
+}
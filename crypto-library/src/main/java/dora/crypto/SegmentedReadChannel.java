@@ -0,0 +1,219 @@
+package dora.crypto;
+
+import dora.crypto.SegmentedContainer.Segment;
+import dora.crypto.block.mode.Parameters;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+import static dora.crypto.SegmentedContainer.*;
+
+/**
+ * Read-only view of the plaintext of a {@link SegmentedContainer}.
+ * <p>
+ * The segment index at the end of the container maps positions to segments, so reads
+ * decrypt only the segments covering the requested range. The most recently decrypted
+ * segment is kept, which makes sequential reads decrypt every segment once.
+ * <p>
+ * The channel is not safe for use by multiple threads.
+ */
+final class SegmentedReadChannel implements SeekableByteChannel {
+
+    private final SegmentedContainer container;
+    private final Parameters parameters;
+    private final SeekableByteChannel source;
+
+    private final int segmentSize;
+    private final long[] segmentOffsets;
+    private final long size;
+
+    private long position;
+
+    private long cachedIndex = -1;
+    private byte[] cachedPlaintext;
+
+    SegmentedReadChannel(
+        SegmentedContainer container,
+        Parameters parameters,
+        SeekableByteChannel source
+    ) throws IOException {
+        this.container = container;
+        this.parameters = parameters;
+        this.source = source;
+
+        source.position(0);
+        Header header = container.readHeader(input());
+        this.segmentSize = header.segmentSize();
+
+        Index index = readIndex();
+        this.segmentOffsets = index.offsets();
+        this.size = index.plaintextSize();
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        checkOpen();
+
+        if (position >= size) {
+            return -1;
+        }
+
+        int read = 0;
+
+        while (dst.hasRemaining() && position < size) {
+            long index = position / segmentSize;
+            byte[] plaintext = segment(index);
+            int offset = (int) (position - index * segmentSize);
+            int length = Math.min(dst.remaining(), plaintext.length - offset);
+
+            if (length <= 0)
+                throw new IOException("Segment %d is shorter than indexed".formatted(index));
+
+            dst.put(plaintext, offset, length);
+            position += length;
+            read += length;
+        }
+
+        return read;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        checkOpen();
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        checkOpen();
+
+        if (newPosition < 0)
+            throw new IllegalArgumentException("Position must not be negative");
+
+        position = newPosition;
+        return this;
+    }
+
+    /**
+     * Returns the length of the plaintext.
+     */
+    @Override
+    public long size() throws IOException {
+        checkOpen();
+        return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return source.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        cachedPlaintext = null;
+        source.close();
+    }
+
+    private byte[] segment(long index) throws IOException {
+        if (index == cachedIndex) {
+            return cachedPlaintext;
+        }
+
+        source.position(segmentOffsets[(int) index]);
+        Segment segment = container.readSegment(input(), index, segmentSize);
+
+        try {
+            cachedPlaintext = container.decryptSegment(parameters, segmentSize, segment).data();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decrypting a segment");
+        }
+
+        cachedIndex = index;
+        return cachedPlaintext;
+    }
+
+    /**
+     * Reads the segment index located by the trailer.
+     */
+    private Index readIndex() throws IOException {
+        long containerSize = source.size();
+
+        if (containerSize < HEADER_SIZE + TRAILER_SIZE)
+            throw new IOException("Container has no segment index");
+
+        source.position(containerSize - TRAILER_SIZE);
+        DataInputStream input = input();
+
+        long indexOffset = input.readLong();
+
+        if (input.readInt() != INDEX_MAGIC)
+            throw new IOException("Container has no segment index");
+
+        long indexEnd = containerSize - TRAILER_SIZE;
+
+        if (indexOffset < HEADER_SIZE || indexOffset > indexEnd - Long.BYTES)
+            throw new IOException("Invalid segment index");
+
+        source.position(indexOffset);
+        input = input();
+
+        long count = input.readLong();
+
+        if (count < 1 || count > Integer.MAX_VALUE
+            || indexEnd - indexOffset - Long.BYTES != count * INDEX_ENTRY_SIZE)
+            throw new IOException("Invalid segment index");
+
+        long[] offsets = new long[(int) count];
+        long plaintextSize = 0;
+
+        for (int i = 0; i < count; i++) {
+            offsets[i] = input.readLong();
+            int plaintextLength = input.readInt();
+
+            // Every segment but the last holds exactly one segment of plaintext.
+            boolean validLength = i < count - 1
+                ? plaintextLength == segmentSize
+                : plaintextLength >= 0 && plaintextLength <= segmentSize;
+
+            if (offsets[i] < HEADER_SIZE || offsets[i] >= indexOffset || !validLength)
+                throw new IOException("Invalid segment index");
+
+            plaintextSize += plaintextLength;
+        }
+
+        return new Index(offsets, plaintextSize);
+    }
+
+    /**
+     * Returns a stream reading the source from its current position. Closing it would
+     * close the source, so it is never closed.
+     */
+    private DataInputStream input() {
+        return new DataInputStream(Channels.newInputStream(source));
+    }
+
+    private void checkOpen() throws ClosedChannelException {
+        if (!isOpen())
+            throw new ClosedChannelException();
+    }
+
+    private record Index(long[] offsets, long plaintextSize) {
+    }
+}
@@ -0,0 +1,281 @@
+package dora.crypto;
+
+import dora.crypto.block.mode.CipherMode;
+import dora.crypto.block.padding.Padding;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Encrypts or decrypts a stream in three overlapping stages. A reader thread fills
+ * buffers from the input, the calling thread runs the cipher mode on the previous buffer
+ * and a writer thread drains the one before that to the output, so the stream is
+ * processed at the speed of the slowest stage rather than the sum of all three.
+ * <p>
+ * Buffers travel between the stages through bounded queues and are recycled once the
+ * next stage is done with them. At most three input and three output buffers are
+ * allocated, and only as many as the stream actually needs.
+ * <p>
+ * A pipeline processes a single stream.
+ */
+final class StreamPipeline {
+
+    /** Number of buffers on each side of the cipher mode. */
+    private static final int BUFFER_COUNT = 3;
+
+    /** Queued in place of a buffer when the reader or the writer fails. */
+    private static final Chunk FAILED = new Chunk(new byte[0]);
+
+    private final CipherMode cipherMode;
+    private final Padding padding;
+    private final boolean encrypt;
+    private final int chunkSize;
+
+    private final Pool inputPool;
+    private final Pool outputPool;
+    private final BlockingQueue<Chunk> filled = new ArrayBlockingQueue<>(BUFFER_COUNT + 1);
+    private final BlockingQueue<Chunk> processed = new ArrayBlockingQueue<>(BUFFER_COUNT);
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    /**
+     * @param chunkSize number of bytes read and processed at a time, rounded down to a
+     *                  multiple of the block size
+     */
+    StreamPipeline(CipherMode cipherMode, Padding padding, boolean encrypt, int chunkSize) {
+        int blockSize = cipherMode.blockSize();
+
+        if (chunkSize < blockSize)
+            throw new IllegalArgumentException("Chunk size must be at least one block");
+
+        this.cipherMode = cipherMode;
+        this.padding = padding;
+        this.encrypt = encrypt;
+        this.chunkSize = chunkSize - chunkSize % blockSize;
+
+        // Padding never adds more than a block to the final chunk.
+        this.inputPool = new Pool(this.chunkSize);
+        this.outputPool = new Pool(this.chunkSize + blockSize);
+    }
+
+    /**
+     * Processes the input stream into the output stream. Neither stream is closed.
+     * <p>
+     * If any stage fails, the others are stopped and the failure is rethrown. The writer
+     * is always stopped when this method returns, while the reader may still finish a
+     * read that is in progress.
+     */
+    void run(InputStream input, OutputStream output) throws IOException, InterruptedException {
+        Thread reader = Thread.ofVirtual().name("cipher-stream-reader").start(() -> read(input));
+        Thread writer = Thread.ofVirtual().name("cipher-stream-writer").start(() -> write(output));
+        boolean completed = false;
+
+        try {
+            process();
+            completed = true;
+        } finally {
+            if (!completed) {
+                reader.interrupt();
+                writer.interrupt();
+            }
+
+            joinUninterruptibly(writer);
+        }
+
+        // The writer may have failed on the final chunk.
+        if (failure.get() != null)
+            throw failure();
+    }
+
+    //region Stages
+    /**
+     * Fills buffers with the input. Every chunk but the last is full, and the last one
+     * is found by reading a byte ahead.
+     */
+    private void read(InputStream input) {
+        try {
+            int lookahead = -1;
+            boolean last;
+
+            do {
+                Chunk chunk = inputPool.take();
+                int length = 0;
+
+                if (lookahead != -1) {
+                    chunk.data[length++] = (byte) lookahead;
+                }
+
+                int bytesRead;
+                while (length < chunkSize
+                    && (bytesRead = input.read(chunk.data, length, chunkSize - length)) != -1) {
+                    length += bytesRead;
+                }
+
+                lookahead = length < chunkSize ? -1 : input.read();
+                last = lookahead == -1;
+
+                chunk.length = length;
+                chunk.last = last;
+                filled.add(chunk);
+            } while (!last);
+        } catch (Throwable e) {
+            fail(e);
+            filled.add(FAILED);
+        }
+    }
+
+    /**
+     * Runs the cipher mode on the filled buffers. Decryption holds back the last block
+     * of the stream to remove the padding.
+     */
+    private void process() throws IOException, InterruptedException {
+        int blockSize = cipherMode.blockSize();
+        boolean last;
+
+        do {
+            Chunk input = filled.take();
+
+            if (input == FAILED)
+                throw failure();
+
+            Chunk output = outputPool.take();
+            last = input.last;
+
+            int blocks = input.length / blockSize;
+            int bulkLength = (last && !encrypt ? Math.max(0, blocks - 1) : blocks) * blockSize;
+
+            if (bulkLength > 0) {
+                if (encrypt) {
+                    cipherMode.encrypt(input.data, 0, bulkLength, output.data, 0);
+                } else {
+                    cipherMode.decrypt(input.data, 0, bulkLength, output.data, 0);
+                }
+            }
+
+            output.length = bulkLength;
+
+            if (last) {
+                byte[] rest = Arrays.copyOfRange(input.data, bulkLength, input.length);
+                byte[] result = SymmetricCipherContext.processLast(
+                    cipherMode, padding, rest, encrypt);
+
+                System.arraycopy(result, 0, output.data, bulkLength, result.length);
+                output.length += result.length;
+            }
+
+            output.last = last;
+            inputPool.release(input);
+            processed.add(output);
+        } while (!last);
+    }
+
+    /**
+     * Drains the processed buffers to the output.
+     */
+    private void write(OutputStream output) {
+        try {
+            boolean last;
+
+            do {
+                Chunk chunk = processed.take();
+                last = chunk.last;
+
+                output.write(chunk.data, 0, chunk.length);
+                outputPool.release(chunk);
+            } while (!last);
+        } catch (Throwable e) {
+            fail(e);
+            outputPool.release(FAILED);
+        }
+    }
+    //endregion
+
+    private void fail(Throwable e) {
+        failure.compareAndSet(null, e);
+    }
+
+    /**
+     * Returns the failure of the reader or the writer as an {@link IOException}, or
+     * throws it if it is unchecked.
+     */
+    private IOException failure() {
+        Throwable e = failure.get();
+
+        if (e instanceof RuntimeException runtimeException)
+            throw runtimeException;
+        if (e instanceof Error error)
+            throw error;
+
+        return e instanceof IOException ioException ? ioException : new IOException(e);
+    }
+
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Buffers of one side of the cipher mode. Buffers are allocated on demand, up to
+     * {@link #BUFFER_COUNT}, after which taking one waits until another is released.
+     */
+    private final class Pool {
+
+        private final BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(BUFFER_COUNT + 1);
+        private final int capacity;
+        private int allocated;
+
+        Pool(int capacity) {
+            this.capacity = capacity;
+        }
+
+        /** Called by a single stage only. */
+        Chunk take() throws IOException, InterruptedException {
+            Chunk chunk = free.poll();
+
+            if (chunk == null) {
+                if (allocated < BUFFER_COUNT) {
+                    allocated++;
+                    return new Chunk(new byte[capacity]);
+                }
+
+                chunk = free.take();
+            }
+
+            if (chunk == FAILED)
+                throw failure();
+
+            return chunk;
+        }
+
+        void release(Chunk chunk) {
+            free.add(chunk);
+        }
+    }
+
+    private static final class Chunk {
+
+        final byte[] data;
+        int length;
+        boolean last;
+
+        Chunk(byte[] data) {
+            this.data = data;
+        }
+    }
+}
@@ -10,8 +10,14 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.concurrent.ForkJoinPool;
 import java.util.function.Supplier;
@@ -23,6 +29,7 @@ import static java.util.Objects.requireNonNullElseGet;
 public final class SymmetricCipher {
 
     private final SymmetricCipherContext context;
+    private final SegmentedContainer container;
     private final byte[] key;
     private final Parameters parameters;
 
@@ -35,13 +42,41 @@ public final class SymmetricCipher {
         @Nullable List<Object> args,
         @Nullable ForkJoinPool pool
     ) {
-        this.context = new SymmetricCipherContext(
-            cipherMode.createMode(
-                requireNonNull(cipher, "cipher"),
-                requireNonNullElseGet(pool, ForkJoinPool::commonPool)
-            ),
-            padding.createPadding()
-        );
+        this(cipher, cipherMode, padding, key, iv, args, pool, 0);
+    }
+
+    /**
+     * @param prefetchBlocks number of keystream blocks to generate ahead of time, see
+     *                       {@link PrefetchingCipherMode}, or zero to disable prefetching.
+     *                       Only OFB, CTR and Random Delta support prefetching.
+     */
+    public SymmetricCipher(
+        @NotNull BlockCipher cipher,
+        @NotNull CipherModeType cipherMode,
+        @NotNull PaddingType padding,
+        byte @NotNull [] key,
+        byte @Nullable [] iv,
+        @Nullable List<Object> args,
+        @Nullable ForkJoinPool pool,
+        int prefetchBlocks
+    ) {
+        if (prefetchBlocks < 0)
+            throw new IllegalArgumentException("Prefetch block count must not be negative");
+
+        ForkJoinPool executor = requireNonNullElseGet(pool, ForkJoinPool::commonPool);
+        CipherMode mode = cipherMode.createMode(requireNonNull(cipher, "cipher"), executor);
+
+        if (prefetchBlocks > 0) {
+            if (!(mode instanceof KeystreamCipherMode keystreamMode))
+                throw new IllegalArgumentException("%s mode has no keystream to prefetch"
+                    .formatted(cipherMode));
+
+            mode = new PrefetchingCipherMode(keystreamMode, prefetchBlocks, executor);
+        }
+
+        this.context = new SymmetricCipherContext(mode, padding.createPadding());
+        this.container = new SegmentedContainer(
+            cipher, cipherMode, padding.createPadding(), executor);
         this.key = requireNonNull(key, "key");
         this.parameters = cipherMode.createParameters(
             requireNonNullElse(iv, new byte[0]),
@@ -54,6 +89,18 @@ public final class SymmetricCipher {
         return context.encrypt(data);
     }
 
+    /**
+     * Encrypts the remaining bytes of the source buffer into the destination buffer, see
+     * {@link SymmetricCipherContext#encrypt(ByteBuffer, ByteBuffer)}.
+     *
+     * @return number of bytes written
+     */
+    public int encrypt(@NotNull ByteBuffer src, @NotNull ByteBuffer dst)
+    throws InterruptedException {
+        context.init(key, parameters);
+        return context.encrypt(src, dst);
+    }
+
     public void encryptFile(@NotNull Path input, @NotNull Path output)
     throws IOException, InterruptedException {
         requireNonNull(input, "input file");
@@ -61,9 +108,11 @@ public final class SymmetricCipher {
 
         context.init(key, parameters);
 
-        try (var fis = Files.newInputStream(input);
-             var fos = Files.newOutputStream(output)) {
-            context.encryptStream(fis, fos);
+        try (var in = FileChannel.open(input, StandardOpenOption.READ);
+             var out = FileChannel.open(output, StandardOpenOption.CREATE,
+                 StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                 StandardOpenOption.WRITE)) {
+            context.encryptFile(in, out);
         }
     }
 
@@ -72,6 +121,18 @@ public final class SymmetricCipher {
         return context.decrypt(data);
     }
 
+    /**
+     * Decrypts the remaining bytes of the source buffer into the destination buffer, see
+     * {@link SymmetricCipherContext#decrypt(ByteBuffer, ByteBuffer)}.
+     *
+     * @return number of bytes written
+     */
+    public int decrypt(@NotNull ByteBuffer src, @NotNull ByteBuffer dst)
+    throws InterruptedException {
+        context.init(key, parameters);
+        return context.decrypt(src, dst);
+    }
+
     public void decryptFile(@NotNull Path input, @NotNull Path output)
     throws IOException, InterruptedException {
         requireNonNull(input, "input file");
@@ -79,9 +140,98 @@ public final class SymmetricCipher {
 
         context.init(key, parameters);
 
+        try (var in = FileChannel.open(input, StandardOpenOption.READ);
+             var out = FileChannel.open(output, StandardOpenOption.CREATE,
+                 StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                 StandardOpenOption.WRITE)) {
+            context.decryptFile(in, out);
+        }
+    }
+
+    /**
+     * Returns a stream encrypting the data written to it into the given stream. Closing
+     * it pads and encrypts the rest of the data.
+     * <p>
+     * The stream uses this cipher's context, so the cipher must not be used until the
+     * stream is closed.
+     */
+    public OutputStream encryptingStream(@NotNull OutputStream output) {
+        requireNonNull(output, "output stream");
+
+        context.init(SymmetricCipherContext.Operation.ENCRYPT, key, parameters);
+        return new EncryptingOutputStream(output, context);
+    }
+
+    /**
+     * Returns a stream decrypting the data read from the given stream.
+     * <p>
+     * The stream uses this cipher's context, so the cipher must not be used until the
+     * stream is read completely or closed.
+     */
+    public InputStream decryptingStream(@NotNull InputStream input) {
+        requireNonNull(input, "input stream");
+
+        context.init(SymmetricCipherContext.Operation.DECRYPT, key, parameters);
+        return new DecryptingInputStream(input, context);
+    }
+
+    /**
+     * Encrypts the file into a segmented container with
+     * 1 MiB segments, which are encrypted in parallel in every cipher mode.
+     */
+    public void encryptFileSegmented(@NotNull Path input, @NotNull Path output)
+    throws IOException, InterruptedException {
+        encryptFileSegmented(input, output, SegmentedContainer.DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Encrypts the file into a segmented container.
+     *
+     * @param segmentSize plaintext bytes per segment, a multiple of the block size
+     */
+    public void encryptFileSegmented(@NotNull Path input, @NotNull Path output, int segmentSize)
+    throws IOException, InterruptedException {
+        requireNonNull(input, "input file");
+        requireNonNull(output, "output file");
+
+        try (var fis = Files.newInputStream(input);
+             var fos = Files.newOutputStream(output)) {
+            container.encrypt(key, parameters, segmentSize, fis, fos);
+        }
+    }
+
+    /**
+     * Decrypts a file written by {@link #encryptFileSegmented}.
+     */
+    public void decryptFileSegmented(@NotNull Path input, @NotNull Path output)
+    throws IOException, InterruptedException {
+        requireNonNull(input, "input file");
+        requireNonNull(output, "output file");
+
         try (var fis = Files.newInputStream(input);
              var fos = Files.newOutputStream(output)) {
-            context.decryptStream(fis, fos);
+            container.decrypt(key, parameters, fis, fos);
+        }
+    }
+
+    /**
+     * Opens a read-only channel over the plaintext of a file written by
+     * {@link #encryptFileSegmented}. Reads decrypt only the segments covering the
+     * requested range, so parts of large files can be read without decrypting the rest.
+     * <p>
+     * The channel shares this cipher's block cipher and must not be used concurrently
+     * with it.
+     */
+    public SeekableByteChannel openFileSegmented(@NotNull Path input) throws IOException {
+        requireNonNull(input, "input file");
+
+        SeekableByteChannel source = Files.newByteChannel(input);
+
+        try {
+            return container.open(key, parameters, source);
+        } catch (IOException | RuntimeException e) {
+            source.close();
+            throw e;
         }
     }
 
@@ -135,22 +285,38 @@ public final class SymmetricCipher {
 
             static ParameterCreator ctr() {
                 return (iv, args) -> new CtrParameters(
-                    /* nonce   */ iv,
-                    /* counter */ requireNonNullElse(argumentAt(args, 0), 0)
+                    /* nonce        */ iv,
+                    /* counter      */ requireNonNullElse(longArgumentAt(args, 0), 0L),
+                    /* counter size */ requireNonNullElse(
+                        intArgumentAt(args, 1), CtrParameters.FULL_COUNTER)
                 );
             }
 
             static ParameterCreator randomDelta() {
                 return (iv, args) -> new RandomDeltaParameters(
                     /* nonce   */ iv,
-                    /* counter */ requireNonNullElse(argumentAt(args, 0), 0),
-                    /* seed    */ argumentAt(args, 1)
+                    /* counter */ requireNonNullElse(longArgumentAt(args, 0), 0L),
+                    /* seed    */ longArgumentAt(args, 1)
                 );
             }
 
+            /**
+             * Accepts any numeric argument, so that both <code>int</code> and
+             * <code>long</code> values can be passed.
+             */
+            private static @Nullable Long longArgumentAt(List<?> args, int idx) {
+                Number value = argumentAt(args, idx);
+                return value == null ? null : value.longValue();
+            }
+
+            private static @Nullable Integer intArgumentAt(List<?> args, int idx) {
+                Number value = argumentAt(args, idx);
+                return value == null ? null : value.intValue();
+            }
+
             @SuppressWarnings("unchecked")
             private static <T> @Nullable T argumentAt(List<?> args, int idx) {
-                if (args.size() < idx) return null;
+                if (args.size() <= idx) return null;
                 return (T) args.get(idx);
             }
         }
@@ -188,6 +354,7 @@ public final class SymmetricCipher {
         private byte[] iv;
         private List<Object> args = new ArrayList<>();
         private ForkJoinPool pool;
+        private int prefetchBlocks;
 
         public Builder cipher(BlockCipher blockCipher) {
             this.blockCipher = blockCipher;
@@ -234,6 +401,15 @@ public final class SymmetricCipher {
             return this;
         }
 
+        /**
+         * Generates up to <code>blocks</code> keystream blocks in the background, so that
+         * short messages are encrypted without waiting for the block cipher.
+         */
+        public Builder prefetch(int blocks) {
+            this.prefetchBlocks = blocks;
+            return this;
+        }
+
         public SymmetricCipher build() {
             return new SymmetricCipher(
                 blockCipher,
@@ -242,7 +418,8 @@ public final class SymmetricCipher {
                 key,
                 iv,
                 args,
-                pool
+                pool,
+                prefetchBlocks
             );
         }
     }
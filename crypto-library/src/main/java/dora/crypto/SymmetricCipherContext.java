@@ -6,21 +6,48 @@ import dora.crypto.block.padding.Padding;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.Arrays;
+import java.util.Objects;
 
 import static java.util.Objects.requireNonNull;
 
 public final class SymmetricCipherContext {
 
+    /** Bytes processed at a time by streams, enough for the modes to go parallel. */
+    static final int STREAM_BUFFER_SIZE = 524288;
+    /** Bytes of the input and output files mapped at a time. */
+    private static final int MAPPED_WINDOW_SIZE = 64 << 20;
+
     private final CipherMode cipherMode;
     private final Padding padding;
+    private final int mappedWindowSize;
+
+    /** Input held back by {@link #update}, at most a block. */
+    private final byte[] pending;
+    private int pendingLength;
+    /** Operation of the incremental API, or {@code null} if it is not in use. */
+    private Operation operation;
 
     public SymmetricCipherContext(
         @NotNull CipherMode cipherMode,
         @NotNull Padding padding
+    ) {
+        this(cipherMode, padding, MAPPED_WINDOW_SIZE);
+    }
+
+    SymmetricCipherContext(
+        @NotNull CipherMode cipherMode,
+        @NotNull Padding padding,
+        int mappedWindowSize
     ) {
         this.cipherMode = requireNonNull(cipherMode, "cipher mode");
         this.padding = requireNonNull(padding, "padding");
+        this.mappedWindowSize = mappedWindowSize;
+        this.pending = new byte[cipherMode.blockSize()];
     }
 
     public void init(byte @NotNull[] key, @NotNull Parameters parameters) {
@@ -28,6 +55,23 @@ public final class SymmetricCipherContext {
             requireNonNull(key, "key"),
             requireNonNull(parameters, "parameters")
         );
+
+        operation = null;
+        pendingLength = 0;
+    }
+
+    /**
+     * Initializes the context for incremental processing with {@link #update} and
+     * {@link #doFinal}. The other operations must not be used until {@link #doFinal}.
+     */
+    public void init(
+        @NotNull Operation operation,
+        byte @NotNull [] key,
+        @NotNull Parameters parameters
+    ) {
+        requireNonNull(operation, "operation");
+        init(key, parameters);
+        this.operation = operation;
     }
 
     public byte[] encrypt(byte @NotNull [] data) throws InterruptedException {
@@ -40,6 +84,209 @@ public final class SymmetricCipherContext {
         return padding.unpad(decrypted, cipherMode.blockSize());
     }
 
+    /**
+     * Pads and encrypts the remaining bytes of the source buffer into the destination
+     * buffer, advancing both positions. Heap and direct buffers are both accepted, and the
+     * buffers must not share content.
+     *
+     * @return number of bytes written
+     * @throws BufferOverflowException if the destination has less room than the
+     *                                 complete blocks of the input plus a block
+     */
+    public int encrypt(
+        @NotNull ByteBuffer src,
+        @NotNull ByteBuffer dst
+    ) throws InterruptedException {
+        requireNonNull(src, "source");
+        requireNonNull(dst, "destination");
+
+        int blockSize = cipherMode.blockSize();
+        int length = src.remaining();
+        int bulkLength = length - length % blockSize;
+
+        if (dst.remaining() < bulkLength + blockSize)
+            throw new BufferOverflowException();
+
+        int start = dst.position();
+        cipherMode.encrypt(src.slice(src.position(), bulkLength), dst);
+        src.position(src.position() + bulkLength);
+
+        byte[] tail = new byte[length - bulkLength];
+        src.get(tail);
+        dst.put(processLast(cipherMode, padding, tail, true));
+
+        return dst.position() - start;
+    }
+
+    /**
+     * Decrypts and unpads the remaining bytes of the source buffer into the destination
+     * buffer, advancing both positions, see {@link #encrypt(ByteBuffer, ByteBuffer)}.
+     *
+     * @return number of bytes written
+     * @throws BufferOverflowException if the destination has less room than the source
+     *                                 has ciphertext
+     */
+    public int decrypt(
+        @NotNull ByteBuffer src,
+        @NotNull ByteBuffer dst
+    ) throws InterruptedException {
+        requireNonNull(src, "source");
+        requireNonNull(dst, "destination");
+
+        int blockSize = cipherMode.blockSize();
+        int length = src.remaining();
+
+        if (length % blockSize != 0)
+            throw new IllegalArgumentException("Ciphertext not multiple of block size");
+        if (dst.remaining() < length)
+            throw new BufferOverflowException();
+
+        // The last block is held back to remove the padding.
+        int bulkLength = Math.max(0, length - blockSize);
+
+        int start = dst.position();
+        cipherMode.decrypt(src.slice(src.position(), bulkLength), dst);
+        src.position(src.position() + bulkLength);
+
+        byte[] last = new byte[length - bulkLength];
+        src.get(last);
+        dst.put(processLast(cipherMode, padding, last, false));
+
+        return dst.position() - start;
+    }
+
+    //region Incremental
+    /**
+     * Returns the maximum number of bytes {@link #update} and {@link #doFinal} may
+     * produce for the next <code>inputLength</code> bytes of input.
+     */
+    public int outputSize(int inputLength) {
+        if (inputLength < 0)
+            throw new IllegalArgumentException("Input length must not be negative");
+
+        Operation operation = checkIncremental();
+        int blockSize = cipherMode.blockSize();
+        int total = pendingLength + inputLength;
+
+        // Padding adds at most a block.
+        return operation == Operation.ENCRYPT ? total - total % blockSize + blockSize : total;
+    }
+
+    /**
+     * Processes <code>length</code> bytes from <code>input[inputOff]</code> into
+     * <code>output[outputOff]</code>. Only complete blocks are processed. The rest of
+     * the input is held until the next call, and decryption also holds the last complete
+     * block, which may carry padding. The input and output regions must not overlap.
+     *
+     * @return the number of bytes written to the output
+     */
+    public int update(
+        byte @NotNull [] input, int inputOff, int length,
+        byte @NotNull [] output, int outputOff
+    ) throws InterruptedException {
+        requireNonNull(input, "input");
+        requireNonNull(output, "output");
+        Objects.checkFromIndexSize(inputOff, length, input.length);
+
+        Operation operation = checkIncremental();
+        int blockSize = cipherMode.blockSize();
+        int total = pendingLength + length;
+
+        int held = operation == Operation.ENCRYPT
+            ? total % blockSize
+            : total == 0 ? 0 : (total - 1) % blockSize + 1;
+        int produced = total - held;
+
+        Objects.checkFromIndexSize(outputOff, produced, output.length);
+
+        int consumed = 0;
+        int written = 0;
+
+        if (produced > 0 && pendingLength > 0) {
+            // Complete the held block with the start of the input.
+            consumed = blockSize - pendingLength;
+            System.arraycopy(input, inputOff, pending, pendingLength, consumed);
+            process(operation, pending, 0, blockSize, output, outputOff);
+
+            pendingLength = 0;
+            written = blockSize;
+        }
+
+        if (produced > written) {
+            process(operation, input, inputOff + consumed, produced - written,
+                output, outputOff + written);
+            consumed += produced - written;
+        }
+
+        System.arraycopy(input, inputOff + consumed, pending, pendingLength, length - consumed);
+        pendingLength += length - consumed;
+
+        return produced;
+    }
+
+    /**
+     * Processes the held input into <code>output[outputOff]</code>, padding it when
+     * encrypting and removing the padding when decrypting. The context must be
+     * initialized again afterward.
+     *
+     * @return the number of bytes written to the output
+     */
+    public int doFinal(byte @NotNull [] output, int outputOff) throws InterruptedException {
+        requireNonNull(output, "output");
+
+        Operation operation = checkIncremental();
+        int blockSize = cipherMode.blockSize();
+        byte[] last = Arrays.copyOf(pending, pendingLength);
+        byte[] result;
+
+        if (operation == Operation.ENCRYPT) {
+            byte[] padded = padding.pad(last, blockSize);
+            Objects.checkFromIndexSize(outputOff, padded.length, output.length);
+            result = cipherMode.encrypt(padded);
+        } else {
+            Objects.checkFromIndexSize(outputOff, last.length, output.length);
+            result = processLast(cipherMode, padding, last, false);
+        }
+
+        System.arraycopy(result, 0, output, outputOff, result.length);
+
+        this.operation = null;
+        pendingLength = 0;
+
+        return result.length;
+    }
+
+    /**
+     * Returns the operation of the incremental API, or {@code null} if it is not in use.
+     */
+    Operation operation() {
+        return operation;
+    }
+
+    int blockSize() {
+        return cipherMode.blockSize();
+    }
+
+    private Operation checkIncremental() {
+        if (operation == null)
+            throw new IllegalStateException("Context is not initialized for an operation");
+
+        return operation;
+    }
+
+    private void process(
+        Operation operation,
+        byte[] src, int srcOff, int length,
+        byte[] dst, int dstOff
+    ) throws InterruptedException {
+        if (operation == Operation.ENCRYPT) {
+            cipherMode.encrypt(src, srcOff, length, dst, dstOff);
+        } else {
+            cipherMode.decrypt(src, srcOff, length, dst, dstOff);
+        }
+    }
+    //endregion
+
     public void encryptStream(
         @NotNull InputStream inputStream,
         @NotNull OutputStream outputStream
@@ -54,6 +301,28 @@ public final class SymmetricCipherContext {
         processStream(inputStream, outputStream, false);
     }
 
+    /**
+     * Encrypts the input file into the output file through memory-mapped windows. The
+     * output channel must be readable and writable, and is written from position zero.
+     */
+    public void encryptFile(
+        @NotNull FileChannel input,
+        @NotNull FileChannel output
+    ) throws IOException, InterruptedException {
+        processFile(input, output, true);
+    }
+
+    /**
+     * Decrypts the input file into the output file through memory-mapped windows. The
+     * output channel must be readable and writable, and is written from position zero.
+     */
+    public void decryptFile(
+        @NotNull FileChannel input,
+        @NotNull FileChannel output
+    ) throws IOException, InterruptedException {
+        processFile(input, output, false);
+    }
+
     private void processStream(
         @NotNull InputStream inputStream,
         @NotNull OutputStream outputStream,
@@ -62,52 +331,86 @@ public final class SymmetricCipherContext {
         requireNonNull(inputStream, "input stream");
         requireNonNull(outputStream, "output stream");
 
+        // Read large amounts of data to take advantage of parallel processing, and
+        // overlap reading and writing with the cipher mode.
+        new StreamPipeline(cipherMode, padding, encrypt, STREAM_BUFFER_SIZE)
+            .run(inputStream, outputStream);
+    }
+
+    private void processFile(
+        @NotNull FileChannel input,
+        @NotNull FileChannel output,
+        boolean encrypt
+    ) throws IOException, InterruptedException {
+        requireNonNull(input, "input channel");
+        requireNonNull(output, "output channel");
+
         int blockSize = cipherMode.blockSize();
+        long size = input.size();
+
+        if (!encrypt && size % blockSize != 0)
+            throw new IllegalArgumentException("Ciphertext not multiple of block size");
+
+        // Everything before the trailing partial block is encrypted as is. Decryption
+        // holds back the last block to remove the padding.
+        long bulkLength = encrypt
+            ? size - size % blockSize
+            : Math.max(0, size - blockSize);
+
+        long window = mappedWindowSize - mappedWindowSize % blockSize;
+
+        // ECB and CTR work on the mapped windows directly. The other modes copy them
+        // through heap arrays that are reused from window to window.
+        for (long position = 0; position < bulkLength; position += window) {
+            int length = (int) Math.min(window, bulkLength - position);
 
-        // Read large amounts of data to take advantage of parallel processing.
-        byte[] buffer = new byte[524288];
-        byte[] remainder = new byte[blockSize];
-        int remainderLen = 0;
-
-        int bytesRead;
-        while ((bytesRead = inputStream.read(buffer)) != -1) {
-            if (bytesRead == 0) continue;
-
-            // Combine the leftovers of the previous chunk with the new data.
-            byte[] combined = new byte[remainderLen + bytesRead];
-            System.arraycopy(remainder, 0, combined, 0, remainderLen);
-            System.arraycopy(buffer, 0, combined, remainderLen, bytesRead);
-
-            // For encryption, process all complete blocks. For decryption,
-            // hold back one block to handle padding at EOF.
-            int blocks = combined.length / blockSize;
-            int processBlocks = encrypt ? blocks : Math.max(0, blocks - 1);
-            int processLen = processBlocks * blockSize;
-
-            if (processLen > 0) {
-                byte[] chunk = Arrays.copyOf(combined, processLen);
-                byte[] processed = encrypt
-                    ? cipherMode.encrypt(chunk)
-                    : cipherMode.decrypt(chunk);
-                outputStream.write(processed);
+            ByteBuffer source = input.map(MapMode.READ_ONLY, position, length);
+            ByteBuffer result = output.map(MapMode.READ_WRITE, position, length);
+
+            if (encrypt) {
+                cipherMode.encrypt(source, result);
+            } else {
+                cipherMode.decrypt(source, result);
             }
+        }
+
+        ByteBuffer tail = ByteBuffer.allocate((int) (size - bulkLength));
 
-            // Save the rest for later.
-            remainderLen = combined.length - processLen;
-            System.arraycopy(combined, processLen, remainder, 0, remainderLen);
+        while (tail.hasRemaining()) {
+            if (input.read(tail, bulkLength + tail.position()) < 0)
+                throw new EOFException("Input file shrank while it was processed");
         }
 
-        // Process remaining data.
-        byte[] result = Arrays.copyOf(remainder, remainderLen);
+        ByteBuffer last = ByteBuffer.wrap(
+            processLast(cipherMode, padding, tail.array(), encrypt));
+
+        while (last.hasRemaining()) {
+            output.write(last, bulkLength + last.position());
+        }
+
+        output.truncate(bulkLength + last.limit());
+    }
+
+    /**
+     * Pads and encrypts, or decrypts and unpads, the final part of a stream or file.
+     */
+    static byte[] processLast(
+        CipherMode cipherMode,
+        Padding padding,
+        byte[] data,
+        boolean encrypt
+    ) throws InterruptedException {
+        int blockSize = cipherMode.blockSize();
 
         if (encrypt) {
-            result = padding.pad(result, blockSize);
-            result = cipherMode.encrypt(result);
+            return cipherMode.encrypt(padding.pad(data, blockSize));
         } else {
-            result = cipherMode.decrypt(result);
-            result = padding.unpad(result, blockSize);
+            return padding.unpad(cipherMode.decrypt(data), blockSize);
         }
+    }
 
-        outputStream.write(result);
+    public enum Operation {
+        ENCRYPT,
+        DECRYPT
     }
 }
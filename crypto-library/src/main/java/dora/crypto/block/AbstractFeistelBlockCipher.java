@@ -0,0 +1,167 @@
+package dora.crypto.block;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Feistel network whose round function is supplied by subclasses through
+ * {@link #applyRound}, typically from per-round state prepared in {@link #init}.
+ * {@link FeistelBlockCipher} applies a {@link RoundFunction} instead.
+ */
+public abstract class AbstractFeistelBlockCipher implements BlockCipher {
+
+    private final KeySchedule keySchedule;
+    private final int blockSize;
+
+    private byte[][] roundKeys;
+
+    /**
+     * Per-thread scratch space: the two halves being ping-ponged and the round function
+     * output. Blocks may be processed concurrently, so it cannot be shared.
+     */
+    private final ThreadLocal<byte[][]> halves;
+
+    protected AbstractFeistelBlockCipher(@NotNull KeySchedule keySchedule, int blockSize) {
+        this.keySchedule = requireNonNull(keySchedule, "key schedule");
+        this.blockSize = blockSize;
+
+        if (blockSize % 2 != 0) {
+            throw new IllegalArgumentException("Block size must be a multiple of two");
+        }
+
+        this.halves = ThreadLocal.withInitial(() -> new byte[3][blockSize / 2]);
+    }
+
+    @Override
+    public int blockSize() {
+        return blockSize;
+    }
+
+    @Override
+    public void init(byte @NotNull [] key) {
+        roundKeys = keySchedule.roundKeys(requireNonNull(key, "key"));
+    }
+
+    /**
+     * Returns the round keys produced by the key schedule, or <code>null</code> if the
+     * cipher has not been initialized.
+     */
+    protected byte[][] roundKeys() {
+        return roundKeys;
+    }
+
+    @Override
+    public byte[] encrypt(byte @NotNull [] plaintext) {
+        requireNonNull(plaintext, "plaintext");
+
+        if (plaintext.length != blockSize)
+            throw new IllegalArgumentException("Invalid block size");
+
+        byte[] ciphertext = new byte[blockSize];
+        encryptBlock(plaintext, 0, ciphertext, 0);
+        return ciphertext;
+    }
+
+    @Override
+    public byte[] decrypt(byte @NotNull [] ciphertext) {
+        requireNonNull(ciphertext, "ciphertext");
+
+        if (ciphertext.length != blockSize)
+            throw new IllegalArgumentException("Invalid block size");
+
+        byte[] plaintext = new byte[blockSize];
+        decryptBlock(ciphertext, 0, plaintext, 0);
+        return plaintext;
+    }
+
+    @Override
+    public void encryptBlock(byte @NotNull [] in, int inOff, byte @NotNull [] out, int outOff) {
+        checkBlock(in, inOff, out, outOff);
+
+        int half = blockSize / 2;
+        byte[][] buffers = halves.get();
+
+        // (1) Split the block into two equal parts.
+        byte[] l = buffers[0];
+        byte[] r = buffers[1];
+        byte[] f = buffers[2];
+
+        System.arraycopy(in, inOff, l, 0, half);
+        System.arraycopy(in, inOff + half, r, 0, half);
+
+        // (2) For each round compute:
+        //   - L_i+1 = R_i
+        //   - R_i+1 = L_i xor F(R_i, K_i)
+        for (int round = 0; round < roundKeys.length; round++) {
+            applyRound(round, r, f);
+
+            for (int k = 0; k < half; k++) {
+                l[k] ^= f[k];
+            }
+
+            byte[] temp = l;
+            l = r;
+            r = temp;
+        }
+
+        // (3) The ciphertext is (R_n+1, L_n+1).
+        System.arraycopy(r, 0, out, outOff, half);
+        System.arraycopy(l, 0, out, outOff + half, half);
+    }
+
+    @Override
+    public void decryptBlock(byte @NotNull [] in, int inOff, byte @NotNull [] out, int outOff) {
+        checkBlock(in, inOff, out, outOff);
+
+        int half = blockSize / 2;
+        byte[][] buffers = halves.get();
+
+        // (1) Split the block into two equal parts.
+        byte[] r = buffers[0];
+        byte[] l = buffers[1];
+        byte[] f = buffers[2];
+
+        System.arraycopy(in, inOff, r, 0, half);
+        System.arraycopy(in, inOff + half, l, 0, half);
+
+        // (2) For each round compute:
+        //   - R_i = R_i+1
+        //   - L_i = R_i+1 xor F(L_i+1, K_i)
+        for (int i = roundKeys.length - 1; i >= 0; i--) {
+            applyRound(i, l, f);
+
+            for (int k = 0; k < half; k++) {
+                r[k] ^= f[k];
+            }
+
+            byte[] temp = r;
+            r = l;
+            l = temp;
+        }
+
+        // (3) The plaintext is (L_0, R_0).
+        System.arraycopy(l, 0, out, outOff, half);
+        System.arraycopy(r, 0, out, outOff + half, half);
+    }
+
+    /**
+     * Writes the round function of round <code>round</code> for a half block into
+     * <code>out</code>, which has the same length and is distinct from the half block.
+     * The round keys are available through {@link #roundKeys()}.
+     */
+    protected abstract void applyRound(int round, byte[] block, byte[] out);
+
+    private void checkBlock(byte[] in, int inOff, byte[] out, int outOff) {
+        requireNonNull(in, "input");
+        requireNonNull(out, "output");
+
+        if (roundKeys == null)
+            throw new IllegalStateException("Cipher is not initialized");
+
+        Objects.checkFromIndexSize(inOff, blockSize, in.length);
+        Objects.checkFromIndexSize(outOff, blockSize, out.length);
+    }
+}
@@ -2,6 +2,10 @@ package dora.crypto.block;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
 public interface BlockCipher {
 
     int blockSize();
@@ -11,4 +15,208 @@ public interface BlockCipher {
     byte[] encrypt(byte @NotNull [] plaintext);
 
     byte[] decrypt(byte @NotNull [] ciphertext);
+
+    /**
+     * Encrypts the block at <code>in[inOff]</code> and writes the result to
+     * <code>out[outOff]</code>. Both regions may be the same, in which case the block is
+     * encrypted in place.
+     * <p>
+     * The default implementation delegates to {@link #encrypt(byte[])}. Implementations
+     * are expected to override it without allocating per block.
+     */
+    default void encryptBlock(
+        byte @NotNull [] in, int inOff,
+        byte @NotNull [] out, int outOff
+    ) {
+        int blockSize = blockSize();
+        Objects.checkFromIndexSize(inOff, blockSize, in.length);
+        Objects.checkFromIndexSize(outOff, blockSize, out.length);
+
+        byte[] encrypted = encrypt(Arrays.copyOfRange(in, inOff, inOff + blockSize));
+        System.arraycopy(encrypted, 0, out, outOff, blockSize);
+    }
+
+    /**
+     * Decrypts the block at <code>in[inOff]</code> and writes the result to
+     * <code>out[outOff]</code>. Both regions may be the same, in which case the block is
+     * decrypted in place.
+     * <p>
+     * The default implementation delegates to {@link #decrypt(byte[])}. Implementations
+     * are expected to override it without allocating per block.
+     */
+    default void decryptBlock(
+        byte @NotNull [] in, int inOff,
+        byte @NotNull [] out, int outOff
+    ) {
+        int blockSize = blockSize();
+        Objects.checkFromIndexSize(inOff, blockSize, in.length);
+        Objects.checkFromIndexSize(outOff, blockSize, out.length);
+
+        byte[] decrypted = decrypt(Arrays.copyOfRange(in, inOff, inOff + blockSize));
+        System.arraycopy(decrypted, 0, out, outOff, blockSize);
+    }
+
+    /**
+     * Encrypts <code>count</code> consecutive blocks starting at <code>src[srcOff]</code>
+     * and writes the results to <code>dst[dstOff]</code>. Both regions may be the same,
+     * in which case the blocks are encrypted in place; partially overlapping regions are
+     * not supported.
+     * <p>
+     * The default implementation calls {@link #encryptBlock} for each block.
+     * Implementations may override it to process several independent blocks at once.
+     */
+    default void encryptBlocks(
+        byte @NotNull [] src, int srcOff,
+        byte @NotNull [] dst, int dstOff,
+        int count
+    ) {
+        int blockSize = blockSize();
+        checkBlocks(src, srcOff, dst, dstOff, count, blockSize);
+
+        for (int i = 0; i < count; i++, srcOff += blockSize, dstOff += blockSize) {
+            encryptBlock(src, srcOff, dst, dstOff);
+        }
+    }
+
+    /**
+     * Decrypts <code>count</code> consecutive blocks starting at <code>src[srcOff]</code>
+     * and writes the results to <code>dst[dstOff]</code>, see {@link #encryptBlocks}.
+     * <p>
+     * The default implementation calls {@link #decryptBlock} for each block.
+     * Implementations may override it to process several independent blocks at once.
+     */
+    default void decryptBlocks(
+        byte @NotNull [] src, int srcOff,
+        byte @NotNull [] dst, int dstOff,
+        int count
+    ) {
+        int blockSize = blockSize();
+        checkBlocks(src, srcOff, dst, dstOff, count, blockSize);
+
+        for (int i = 0; i < count; i++, srcOff += blockSize, dstOff += blockSize) {
+            decryptBlock(src, srcOff, dst, dstOff);
+        }
+    }
+
+    /**
+     * Encrypts <code>count</code> consecutive blocks starting at index
+     * <code>srcIndex</code> of the source buffer and writes the results to the
+     * destination buffer at <code>dstIndex</code>, see
+     * {@link #encryptBlocks(byte[], int, byte[], int, int)}. Positions and limits are
+     * neither used nor changed, so separate ranges of the same buffers can be processed
+     * concurrently.
+     * <p>
+     * The default implementation works on the backing arrays if both buffers have one,
+     * and copies the blocks through a temporary array otherwise. Implementations may
+     * override it to access direct buffers without copying.
+     */
+    default void encryptBlocks(
+        @NotNull ByteBuffer src, int srcIndex,
+        @NotNull ByteBuffer dst, int dstIndex,
+        int count
+    ) {
+        checkBlocks(src, srcIndex, dst, dstIndex, count, blockSize());
+        processBlocks(src, srcIndex, dst, dstIndex, count, true);
+    }
+
+    /**
+     * Decrypts <code>count</code> consecutive blocks starting at index
+     * <code>srcIndex</code> of the source buffer and writes the results to the
+     * destination buffer at <code>dstIndex</code>, see
+     * {@link #encryptBlocks(ByteBuffer, int, ByteBuffer, int, int)}.
+     */
+    default void decryptBlocks(
+        @NotNull ByteBuffer src, int srcIndex,
+        @NotNull ByteBuffer dst, int dstIndex,
+        int count
+    ) {
+        checkBlocks(src, srcIndex, dst, dstIndex, count, blockSize());
+        processBlocks(src, srcIndex, dst, dstIndex, count, false);
+    }
+
+    private void processBlocks(
+        ByteBuffer src, int srcIndex,
+        ByteBuffer dst, int dstIndex,
+        int count,
+        boolean encrypt
+    ) {
+        int blockSize = blockSize();
+
+        if (src.hasArray() && dst.hasArray()) {
+            byte[] srcArray = src.array();
+            byte[] dstArray = dst.array();
+            int srcOff = src.arrayOffset() + srcIndex;
+            int dstOff = dst.arrayOffset() + dstIndex;
+
+            if (encrypt) {
+                encryptBlocks(srcArray, srcOff, dstArray, dstOff, count);
+            } else {
+                decryptBlocks(srcArray, srcOff, dstArray, dstOff, count);
+            }
+
+            return;
+        }
+
+        // At most 256 blocks are copied at a time.
+        byte[] buffer = new byte[Math.min(count, 256) * blockSize];
+        int bufferBlocks = buffer.length / blockSize;
+
+        while (count > 0) {
+            int blocks = Math.min(count, bufferBlocks);
+            int length = blocks * blockSize;
+
+            src.get(srcIndex, buffer, 0, length);
+
+            if (encrypt) {
+                encryptBlocks(buffer, 0, buffer, 0, blocks);
+            } else {
+                decryptBlocks(buffer, 0, buffer, 0, blocks);
+            }
+
+            dst.put(dstIndex, buffer, 0, length);
+
+            count -= blocks;
+            srcIndex += length;
+            dstIndex += length;
+        }
+    }
+
+    /**
+     * Checks the arguments of {@link #encryptBlocks} and {@link #decryptBlocks}.
+     */
+    static void checkBlocks(
+        byte[] src, int srcOff,
+        byte[] dst, int dstOff,
+        int count, int blockSize
+    ) {
+        Objects.requireNonNull(src, "source");
+        Objects.requireNonNull(dst, "destination");
+
+        if (count < 0)
+            throw new IllegalArgumentException("Block count must not be negative");
+
+        int length = Math.multiplyExact(count, blockSize);
+        Objects.checkFromIndexSize(srcOff, length, src.length);
+        Objects.checkFromIndexSize(dstOff, length, dst.length);
+    }
+
+    /**
+     * Checks the arguments of the buffer variants of {@link #encryptBlocks} and
+     * {@link #decryptBlocks}. Indexes are checked against the limits.
+     */
+    static void checkBlocks(
+        ByteBuffer src, int srcIndex,
+        ByteBuffer dst, int dstIndex,
+        int count, int blockSize
+    ) {
+        Objects.requireNonNull(src, "source");
+        Objects.requireNonNull(dst, "destination");
+
+        if (count < 0)
+            throw new IllegalArgumentException("Block count must not be negative");
+
+        int length = Math.multiplyExact(count, blockSize);
+        Objects.checkFromIndexSize(srcIndex, length, src.limit());
+        Objects.checkFromIndexSize(dstIndex, length, dst.limit());
+    }
 }
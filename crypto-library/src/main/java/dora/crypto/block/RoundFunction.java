@@ -5,4 +5,16 @@ import org.jetbrains.annotations.NotNull;
 public interface RoundFunction {
 
     byte[] apply(byte @NotNull [] block, byte @NotNull [] key);
+
+    /**
+     * Writes <code>F(block, key)</code> into <code>out</code>, which is as long as the
+     * block and distinct from it.
+     * <p>
+     * The default implementation copies the result of {@link #apply(byte[], byte[])}.
+     * Implementations should override it to avoid allocating on every round.
+     */
+    default void apply(byte @NotNull [] block, byte @NotNull [] key, byte @NotNull [] out) {
+        byte[] result = apply(block, key);
+        System.arraycopy(result, 0, out, 0, result.length);
+    }
 }
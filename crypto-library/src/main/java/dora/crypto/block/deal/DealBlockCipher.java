@@ -1,9 +1,17 @@
 package dora.crypto.block.deal;
 
-import dora.crypto.block.FeistelBlockCipher;
+import dora.crypto.block.AbstractFeistelBlockCipher;
+import dora.crypto.block.des.DesBlockCipher;
 import org.jetbrains.annotations.NotNull;
 
-public final class DealBlockCipher extends FeistelBlockCipher {
+public final class DealBlockCipher extends AbstractFeistelBlockCipher {
+
+    /**
+     * DES instances keyed with the DEAL round keys, one per round, serving as the round
+     * function. They are only read after {@link #init}, so they are shared by all blocks
+     * and threads.
+     */
+    private DesBlockCipher[] rounds;
 
     /**
      * Constructs a DEAL block cipher instance.
@@ -11,10 +19,26 @@ public final class DealBlockCipher extends FeistelBlockCipher {
      * @param desKey key to use for DES operations
      */
     public DealBlockCipher(byte @NotNull [] desKey) {
-        super(
-            new DealKeySchedule(desKey),
-            new DealRoundFunction(),
-            16
-        );
+        super(new DealKeySchedule(desKey), 16);
+    }
+
+    @Override
+    public void init(byte @NotNull [] key) {
+        super.init(key);
+
+        byte[][] roundKeys = roundKeys();
+        DesBlockCipher[] rounds = new DesBlockCipher[roundKeys.length];
+
+        for (int i = 0; i < rounds.length; i++) {
+            rounds[i] = new DesBlockCipher();
+            rounds[i].init(roundKeys[i]);
+        }
+
+        this.rounds = rounds;
+    }
+
+    @Override
+    protected void applyRound(int round, byte[] block, byte[] out) {
+        rounds[round].encryptBlock(block, 0, out, 0);
     }
 }
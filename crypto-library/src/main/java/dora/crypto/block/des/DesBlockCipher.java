@@ -3,6 +3,8 @@ package dora.crypto.block.des;
 import dora.crypto.block.FeistelBlockCipher;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Objects;
+
 import static java.util.Objects.requireNonNull;
 
 public final class DesBlockCipher extends FeistelBlockCipher {
@@ -35,6 +37,16 @@ public final class DesBlockCipher extends FeistelBlockCipher {
         33, 1, 41, 9, 49, 17, 57, 25
     };
 
+    private static final Permutation IP_PERMUTATION = Permutations.compile(IP, false, true);
+    private static final Permutation FP_PERMUTATION = Permutations.compile(FP, false, true);
+
+    private static final int ROUNDS = 16;
+
+    /**
+     * Round keys split into 6-bit groups, eight per round.
+     */
+    private int[] roundKeyGroups;
+
     public DesBlockCipher() {
         super(
             new DesKeySchedule(),
@@ -44,20 +56,74 @@ public final class DesBlockCipher extends FeistelBlockCipher {
     }
 
     @Override
-    public byte[] encrypt(byte @NotNull [] plaintext) {
-        requireNonNull(plaintext, "plaintext");
+    public void init(byte @NotNull [] key) {
+        super.init(key);
+
+        byte[][] roundKeys = roundKeys();
+        int[] groups = new int[roundKeys.length * 8];
 
-        byte[] permuted = Permutations.permute(plaintext, IP, false, true);
-        byte[] encrypted = super.encrypt(permuted);
-        return Permutations.permute(encrypted, FP, false, true);
+        for (int i = 0; i < roundKeys.length; i++) {
+            System.arraycopy(DesRoundFunction.splitKey(roundKeys[i]), 0, groups, i * 8, 8);
+        }
+
+        roundKeyGroups = groups;
+    }
+
+    @Override
+    public void encryptBlock(byte @NotNull [] in, int inOff, byte @NotNull [] out, int outOff) {
+        checkBlock(in, inOff, out, outOff);
+        crypt(in, inOff, out, outOff, false);
     }
 
     @Override
-    public byte[] decrypt(byte @NotNull [] ciphertext) {
-        requireNonNull(ciphertext, "ciphertext");
+    public void decryptBlock(byte @NotNull [] in, int inOff, byte @NotNull [] out, int outOff) {
+        checkBlock(in, inOff, out, outOff);
+        crypt(in, inOff, out, outOff, true);
+    }
+
+    private void crypt(byte[] in, int inOff, byte[] out, int outOff, boolean decrypt) {
+        int[] keys = roundKeyGroups;
+
+        long block = IP_PERMUTATION.permute(getLong(in, inOff));
+        int l = (int) (block >>> 32);
+        int r = (int) block;
+
+        for (int round = 0; round < ROUNDS; round++) {
+            int key = decrypt ? ROUNDS - 1 - round : round;
+            int t = l ^ DesRoundFunction.apply(r, keys, key * 8);
+            l = r;
+            r = t;
+        }
+
+        // The halves are swapped after the last round.
+        block = (long) r << 32 | (l & 0xffffffffL);
+        putLong(FP_PERMUTATION.permute(block), out, outOff);
+    }
+
+    private void checkBlock(byte[] in, int inOff, byte[] out, int outOff) {
+        requireNonNull(in, "input");
+        requireNonNull(out, "output");
+
+        if (roundKeyGroups == null)
+            throw new IllegalStateException("Cipher is not initialized");
+
+        Objects.checkFromIndexSize(inOff, blockSize(), in.length);
+        Objects.checkFromIndexSize(outOff, blockSize(), out.length);
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        long result = 0;
+
+        for (int i = 0; i < Long.BYTES; i++) {
+            result = result << 8 | (bytes[offset + i] & 0xffL);
+        }
+
+        return result;
+    }
 
-        byte[] permuted = Permutations.permute(ciphertext, IP, false, true);
-        byte[] decrypted = super.decrypt(permuted);
-        return Permutations.permute(decrypted, FP, false, true);
+    private static void putLong(long value, byte[] bytes, int offset) {
+        for (int i = 0; i < Long.BYTES; i++) {
+            bytes[offset + i] = (byte) (value >>> (56 - 8 * i));
+        }
     }
 }
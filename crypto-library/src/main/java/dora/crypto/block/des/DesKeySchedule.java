@@ -35,6 +35,9 @@ public final class DesKeySchedule implements KeySchedule {
         46, 42, 50, 36, 29, 32
     };
 
+    private static final Permutation PC1_PERMUTATION = Permutations.compile(PC1, 8, false, true);
+    private static final Permutation PC2_PERMUTATION = Permutations.compile(PC2, 7, false, true);
+
     /**
      * Shifts in each round.
      */
@@ -49,21 +52,20 @@ public final class DesKeySchedule implements KeySchedule {
         if (key.length != 8)
             throw new IllegalArgumentException("Expected a 64-bit key");
 
-        byte[] permutedKey = Permutations.permute(key, PC1, false, true);
+        long keyBits = 0;
+
+        for (byte b : key) {
+            keyBits = keyBits << 8 | (b & 0xff);
+        }
+
+        long permutedKey = PC1_PERMUTATION.permute(keyBits);
 
         // ------------------------- permutedKey -------------------------
         // ------------ left ------------- ------------ right ------------
         // 00000000 00000000 00000000 0000 0000 00000000 00000000 00000000
 
-        int left = (permutedKey[0] & 0xff) << 20
-            | (permutedKey[1] & 0xff) << 12
-            | (permutedKey[2] & 0xff) << 4
-            | (permutedKey[3] & 0xf0) >> 4;
-
-        int right = (permutedKey[3] & 0x0f) << 24
-            | (permutedKey[4] & 0xff) << 16
-            | (permutedKey[5] & 0xff) << 8
-            | (permutedKey[6] & 0xff);
+        int left = (int) (permutedKey >>> 28) & 0x0fffffff;
+        int right = (int) permutedKey & 0x0fffffff;
 
         byte[][] keys = new byte[16][6];
 
@@ -71,17 +73,12 @@ public final class DesKeySchedule implements KeySchedule {
             right = rotateLeft(right, KEY_SHIFT[i]);
             left = rotateLeft(left, KEY_SHIFT[i]);
 
-            byte[] concat = new byte[] {
-                (byte) (left >> 20),
-                (byte) (left >> 12),
-                (byte) (left >> 4),
-                (byte) ((left << 4) | (right >> 24)),
-                (byte) (right >> 16),
-                (byte) (right >> 8),
-                (byte) right,
-            };
-
-            keys[i] = Permutations.permute(concat, PC2, false, true);
+            long concat = (long) left << 28 | right;
+            long roundKey = PC2_PERMUTATION.permute(concat);
+
+            for (int j = 0; j < keys[i].length; j++) {
+                keys[i][j] = (byte) (roundKey >>> (40 - 8 * j));
+            }
         }
 
         return keys;
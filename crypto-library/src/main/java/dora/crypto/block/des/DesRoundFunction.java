@@ -7,20 +7,6 @@ import static java.util.Objects.requireNonNull;
 
 public final class DesRoundFunction implements RoundFunction {
 
-    /**
-     * Expansion (E).
-     */
-    private static final int[] E = new int[] {
-        32, 1, 2, 3, 4, 5,
-        4, 5, 6, 7, 8, 9,
-        8, 9, 10, 11, 12, 13,
-        12, 13, 14, 15, 16, 17,
-        16, 17, 18, 19, 20, 21,
-        20, 21, 22, 23, 24, 25,
-        24, 25, 26, 27, 28, 29,
-        28, 29, 30, 31, 32, 1
-    };
-
     /**
      * Permutation (P).
      */
@@ -85,51 +71,109 @@ public final class DesRoundFunction implements RoundFunction {
         }
     };
 
+    private static final Permutation P_PERMUTATION = Permutations.compile(P, false, true);
+
+    /**
+     * S-boxes fused with P: <code>SP[i][x]</code> is the P-permuted output of S-box
+     * <code>i</code> for the 6-bit input <code>x</code>, placed in its nibble.
+     */
+    private static final int[][] SP = spTables();
+
     @Override
     public byte[] apply(byte @NotNull [] block, byte @NotNull [] key) {
+        byte[] output = new byte[4];
+        apply(block, key, output);
+        return output;
+    }
+
+    @Override
+    public void apply(byte @NotNull [] block, byte @NotNull [] key, byte @NotNull [] out) {
         requireNonNull(block, "block");
         requireNonNull(key, "key");
+        requireNonNull(out, "output");
 
-        if (block.length != 4)
+        if (block.length != 4 || out.length != 4)
             throw new IllegalArgumentException("Invalid round block size");
         if (key.length != 6)
             throw new IllegalArgumentException("Invalid round key size");
 
-        block = Permutations.permute(block, E, false, true);
+        int r = (block[0] & 0xff) << 24
+            | (block[1] & 0xff) << 16
+            | (block[2] & 0xff) << 8
+            | (block[3] & 0xff);
+
+        long k = 0;
+
+        for (byte b : key) {
+            k = k << 8 | (b & 0xff);
+        }
+
+        int output = 0;
 
-        for (int i = 0; i < block.length; i++) {
-            block[i] ^= key[i];
+        for (int i = 0; i < 8; i++) {
+            int group = (Integer.rotateLeft(r, 4 * i - 1) >>> 26)
+                ^ (int) (k >>> (42 - 6 * i)) & 0b111111;
+            output ^= SP[i][group];
         }
 
-        block = substitution(block);
-        return Permutations.permute(block, P, false, true);
+        out[0] = (byte) (output >> 24);
+        out[1] = (byte) (output >> 16);
+        out[2] = (byte) (output >> 8);
+        out[3] = (byte) output;
     }
 
-    private byte[] substitution(byte[] block) {
-        long input = (long) (block[0] & 0xff) << 40
-            | (long) (block[1] & 0xff) << 32
-            | (long) (block[2] & 0xff) << 24
-            | (long) (block[3] & 0xff) << 16
-            | (long) (block[4] & 0xff) << 8
-            | (long) (block[5] & 0xff);
+    /**
+     * Computes F for a 32-bit half block.
+     *
+     * @param r      right half, bit 1 being the most significant
+     * @param key    round keys split into 6-bit groups by {@link #splitKey}
+     * @param offset index of the first group of the round key
+     */
+    static int apply(int r, int[] key, int offset) {
+        // Group i of E(R) is bits 4i-1..4i+4 of R (wrapping around), which a rotation
+        // brings to the top of the word.
+        return SP[0][(Integer.rotateLeft(r, -1) >>> 26) ^ key[offset]]
+            ^ SP[1][(Integer.rotateLeft(r, 3) >>> 26) ^ key[offset + 1]]
+            ^ SP[2][(Integer.rotateLeft(r, 7) >>> 26) ^ key[offset + 2]]
+            ^ SP[3][(Integer.rotateLeft(r, 11) >>> 26) ^ key[offset + 3]]
+            ^ SP[4][(Integer.rotateLeft(r, 15) >>> 26) ^ key[offset + 4]]
+            ^ SP[5][(Integer.rotateLeft(r, 19) >>> 26) ^ key[offset + 5]]
+            ^ SP[6][(Integer.rotateLeft(r, 23) >>> 26) ^ key[offset + 6]]
+            ^ SP[7][(Integer.rotateLeft(r, 27) >>> 26) ^ key[offset + 7]];
+    }
 
-        long output = 0;
+    /**
+     * Splits a 48-bit round key into eight 6-bit groups matching the S-boxes.
+     */
+    static int[] splitKey(byte[] key) {
+        long value = 0;
 
-        for (int i = 0; i < 8; i++) {
-            int groupShift = (7 - i) * 6;
-            int bits = (int) ((input >> groupShift) & 0b111111);
+        for (byte b : key) {
+            value = value << 8 | (b & 0xff);
+        }
 
-            int row = (bits & 0b100000) >> 4 | (bits & 0b000001);
-            int column = (bits & 0b011110) >> 1;
+        int[] groups = new int[8];
+
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] = (int) (value >>> (42 - 6 * i)) & 0b111111;
+        }
+
+        return groups;
+    }
+
+    private static int[][] spTables() {
+        int[][] sp = new int[8][64];
+
+        for (int i = 0; i < 8; i++) {
+            for (int bits = 0; bits < 64; bits++) {
+                int row = (bits & 0b100000) >> 4 | (bits & 0b000001);
+                int column = (bits & 0b011110) >> 1;
+                long substituted = S[i][row][column] << (28 - 4 * i);
 
-            output = output << 4 | S[i][row][column];
+                sp[i][bits] = (int) P_PERMUTATION.permute(substituted & 0xffffffffL);
+            }
         }
 
-        return new byte[] {
-            (byte) (output >> 24),
-            (byte) (output >> 16),
-            (byte) (output >> 8),
-            (byte) output
-        };
+        return sp;
     }
 }
@@ -0,0 +1,134 @@
+package dora.crypto.block.des;
+
+import org.jetbrains.annotations.NotNull;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A bit permutation compiled into per-input-byte lookup tables, see
+ * {@link Permutations#compile}.
+ * <p>
+ * Each input byte indexes a 256-entry table holding the output bits that byte
+ * contributes, so permuting costs one lookup and one OR per input byte regardless of
+ * the permutation. When the output fits into 64 bits the tables hold <code>long</code>
+ * values and {@link #permute(long)} is available.
+ */
+public final class Permutation {
+
+    private final int inputBytes;
+    private final int outputBits;
+    private final int outputBytes;
+
+    /** Set when the output fits into a long, <code>null</code> otherwise. */
+    private final long[][] longTable;
+    /** Set when the output does not fit into a long, <code>null</code> otherwise. */
+    private final byte[][][] byteTable;
+
+    Permutation(int[] pBox, int inputBytes, boolean reverseOrder, boolean oneIndexed) {
+        this.inputBytes = inputBytes;
+        this.outputBits = pBox.length;
+        this.outputBytes = Math.ceilDiv(pBox.length, Byte.SIZE);
+
+        int inputBits = inputBytes * Byte.SIZE;
+        int[] sources = new int[pBox.length];
+
+        for (int dstIdx = 0; dstIdx < pBox.length; dstIdx++) {
+            int srcIdx = pBox[dstIdx];
+            if (oneIndexed) srcIdx--;
+            if (reverseOrder) srcIdx = inputBits - srcIdx - 1;
+
+            if (srcIdx < 0 || srcIdx >= inputBits)
+                throw new IllegalArgumentException("Permutation box index out of range");
+
+            sources[dstIdx] = srcIdx;
+        }
+
+        if (outputBytes <= Long.BYTES) {
+            longTable = new long[inputBytes][256];
+            byteTable = null;
+        } else {
+            longTable = null;
+            byteTable = new byte[inputBytes][256][outputBytes];
+        }
+
+        for (int dstIdx = 0; dstIdx < sources.length; dstIdx++) {
+            int srcByte = sources[dstIdx] / Byte.SIZE;
+            int srcMask = 1 << (Byte.SIZE - sources[dstIdx] % Byte.SIZE - 1);
+
+            for (int value = 0; value < 256; value++) {
+                if ((value & srcMask) == 0) continue;
+
+                if (longTable != null) {
+                    longTable[srcByte][value] |= 1L << (outputBytes * Byte.SIZE - dstIdx - 1);
+                } else {
+                    byteTable[srcByte][value][dstIdx / Byte.SIZE] |=
+                        (byte) (1 << (Byte.SIZE - dstIdx % Byte.SIZE - 1));
+                }
+            }
+        }
+    }
+
+    public int inputBytes() {
+        return inputBytes;
+    }
+
+    public int outputBits() {
+        return outputBits;
+    }
+
+    /**
+     * Permutes the bits of the input array, see {@link Permutations#permute}.
+     */
+    public byte[] permute(byte @NotNull [] input) {
+        requireNonNull(input, "input");
+
+        if (input.length != inputBytes)
+            throw new IllegalArgumentException("Invalid input size");
+
+        byte[] output = new byte[outputBytes];
+
+        if (longTable != null) {
+            long result = 0;
+
+            for (int i = 0; i < inputBytes; i++) {
+                result |= longTable[i][input[i] & 0xff];
+            }
+
+            for (int i = outputBytes - 1; i >= 0; i--) {
+                output[i] = (byte) result;
+                result >>>= Byte.SIZE;
+            }
+        } else {
+            for (int i = 0; i < inputBytes; i++) {
+                byte[] bits = byteTable[i][input[i] & 0xff];
+
+                for (int j = 0; j < outputBytes; j++) {
+                    output[j] |= bits[j];
+                }
+            }
+        }
+
+        return output;
+    }
+
+    /**
+     * Permutes a value holding the input bytes in big-endian order. The result holds the
+     * output bytes the same way, i.e. it equals {@link #permute(byte[])} read as a
+     * big-endian number.
+     *
+     * @throws IllegalStateException if the input or the output does not fit into a long
+     */
+    public long permute(long input) {
+        if (longTable == null || inputBytes > Long.BYTES)
+            throw new IllegalStateException("Permutation does not fit into a long");
+
+        long result = 0;
+
+        for (int i = 0; i < inputBytes; i++) {
+            int shift = (inputBytes - i - 1) * Byte.SIZE;
+            result |= longTable[i][(int) (input >>> shift) & 0xff];
+        }
+
+        return result;
+    }
+}
@@ -55,4 +55,54 @@ public final class Permutations {
 
         return output;
     }
+
+    /**
+     * Compiles a permutation box into a reusable {@link Permutation} for inputs of
+     * <code>inputBytes</code> bytes. The compiled permutation gives the same results as
+     * {@link #permute} with the same arguments.
+     *
+     * @param pBox         resulting bit order
+     * @param inputBytes   length of the input array
+     * @param reverseOrder whether the bits are indexed right-to-left
+     * @param oneIndexed   whether the bits are one-indexed
+     */
+    public static Permutation compile(
+        int @NotNull [] pBox,
+        int inputBytes,
+        boolean reverseOrder,
+        boolean oneIndexed
+    ) {
+        requireNonNull(pBox, "pBox");
+
+        if (inputBytes <= 0)
+            throw new IllegalArgumentException("Input size must be positive");
+
+        return new Permutation(pBox, inputBytes, reverseOrder, oneIndexed);
+    }
+
+    /**
+     * Compiles a permutation box into a reusable {@link Permutation}. The input length is
+     * the smallest number of bytes holding the largest index in the box; use
+     * {@link #compile(int[], int, boolean, boolean)} when it differs, which matters for
+     * right-to-left indexing.
+     *
+     * @param pBox         resulting bit order
+     * @param reverseOrder whether the bits are indexed right-to-left
+     * @param oneIndexed   whether the bits are one-indexed
+     */
+    public static Permutation compile(
+        int @NotNull [] pBox,
+        boolean reverseOrder,
+        boolean oneIndexed
+    ) {
+        requireNonNull(pBox, "pBox");
+
+        int maxIdx = 0;
+
+        for (int idx : pBox) {
+            maxIdx = Math.max(maxIdx, oneIndexed ? idx - 1 : idx);
+        }
+
+        return compile(pBox, maxIdx / Byte.SIZE + 1, reverseOrder, oneIndexed);
+    }
 }
@@ -3,6 +3,12 @@ package dora.crypto.block.mars;
 import dora.crypto.block.BlockCipher;
 import org.jetbrains.annotations.NotNull;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -16,10 +22,22 @@ import static java.util.Objects.requireNonNull;
 public final class MarsBlockCipher implements BlockCipher {
 
     private static final int BLOCK_SIZE = 16; // 128 bits = 4 words * 32 bits
+    private static final int LANES = 2; // blocks processed together by encryptBlocks
+
+    /** Little-endian words of byte buffers, whatever their byte order. */
+    private static final VarHandle WORDS =
+        MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
 
     private final MarsKeySchedule keySchedule;
     private int[] K; // Expanded key array (40 words)
 
+    /**
+     * Per-thread scratch space: the state of a single block and of {@link #LANES}
+     * blocks. Blocks may be processed concurrently, so it cannot be shared.
+     */
+    private final ThreadLocal<int[][]> states =
+        ThreadLocal.withInitial(() -> new int[][] { new int[4], new int[4 * LANES] });
+
     public MarsBlockCipher() {
         this.keySchedule = new MarsKeySchedule();
     }
@@ -48,151 +66,294 @@ public final class MarsBlockCipher implements BlockCipher {
     @Override
     public byte[] encrypt(byte @NotNull [] plaintext) {
         requireNonNull(plaintext, "plaintext");
-        ensureInitialized();
         if (plaintext.length != BLOCK_SIZE) {
             throw new IllegalArgumentException("Plaintext must be 16 bytes (128 bits)");
         }
 
-        int[] x = bytesToWords(plaintext); // x[0]=a, x[1]=b, x[2]=c, x[3]=d
+        byte[] ciphertext = new byte[BLOCK_SIZE];
+        encryptBlock(plaintext, 0, ciphertext, 0);
+        return ciphertext;
+    }
+
+    @Override
+    public byte[] decrypt(byte @NotNull [] ciphertext) {
+        requireNonNull(ciphertext, "ciphertext");
+        if (ciphertext.length != BLOCK_SIZE) {
+            throw new IllegalArgumentException("Ciphertext must be 16 bytes (128 bits)");
+        }
+
+        byte[] plaintext = new byte[BLOCK_SIZE];
+        decryptBlock(ciphertext, 0, plaintext, 0);
+        return plaintext;
+    }
+
+    @Override
+    public void encryptBlock(byte @NotNull [] in, int inOff, byte @NotNull [] out, int outOff) {
+        checkBlock(in, inOff, out, outOff);
 
+        int[] x = states.get()[0]; // x[0]=a, x[1]=b, x[2]=c, x[3]=d
+        bytesToWords(in, inOff, x);
+        encryptWords(x);
+        wordsToBytes(x, out, outOff);
+    }
+
+    @Override
+    public void decryptBlock(byte @NotNull [] in, int inOff, byte @NotNull [] out, int outOff) {
+        checkBlock(in, inOff, out, outOff);
+
+        int[] x = states.get()[0]; // x[0]=a, x[1]=b, x[2]=c, x[3]=d
+        bytesToWords(in, inOff, x);
+        decryptWords(x);
+        wordsToBytes(x, out, outOff);
+    }
+
+    /**
+     * Encrypts blocks in pairs: the primitives below step through every block of the
+     * state before moving on, so the independent dependency chains can overlap.
+     */
+    @Override
+    public void encryptBlocks(
+        byte @NotNull [] src, int srcOff,
+        byte @NotNull [] dst, int dstOff,
+        int count
+    ) {
+        checkBlocks(src, srcOff, dst, dstOff, count);
+
+        int[] x = states.get()[1];
+
+        for (; count >= LANES; count -= LANES) {
+            bytesToWords(src, srcOff, x);
+            encryptWords(x);
+            wordsToBytes(x, dst, dstOff);
+
+            srcOff += LANES * BLOCK_SIZE;
+            dstOff += LANES * BLOCK_SIZE;
+        }
+
+        for (; count > 0; count--, srcOff += BLOCK_SIZE, dstOff += BLOCK_SIZE) {
+            encryptBlock(src, srcOff, dst, dstOff);
+        }
+    }
+
+    @Override
+    public void decryptBlocks(
+        byte @NotNull [] src, int srcOff,
+        byte @NotNull [] dst, int dstOff,
+        int count
+    ) {
+        checkBlocks(src, srcOff, dst, dstOff, count);
+
+        int[] x = states.get()[1];
+
+        for (; count >= LANES; count -= LANES) {
+            bytesToWords(src, srcOff, x);
+            decryptWords(x);
+            wordsToBytes(x, dst, dstOff);
+
+            srcOff += LANES * BLOCK_SIZE;
+            dstOff += LANES * BLOCK_SIZE;
+        }
+
+        for (; count > 0; count--, srcOff += BLOCK_SIZE, dstOff += BLOCK_SIZE) {
+            decryptBlock(src, srcOff, dst, dstOff);
+        }
+    }
+
+    /**
+     * Reads the words of heap and direct buffers in place, in pairs of blocks like
+     * {@link #encryptBlocks(byte[], int, byte[], int, int)}.
+     */
+    @Override
+    public void encryptBlocks(
+        @NotNull ByteBuffer src, int srcIndex,
+        @NotNull ByteBuffer dst, int dstIndex,
+        int count
+    ) {
+        checkBlocks(src, srcIndex, dst, dstIndex, count);
+        processBlocks(src, srcIndex, dst, dstIndex, count, true);
+    }
+
+    @Override
+    public void decryptBlocks(
+        @NotNull ByteBuffer src, int srcIndex,
+        @NotNull ByteBuffer dst, int dstIndex,
+        int count
+    ) {
+        checkBlocks(src, srcIndex, dst, dstIndex, count);
+        processBlocks(src, srcIndex, dst, dstIndex, count, false);
+    }
+
+    private void processBlocks(
+        ByteBuffer src, int srcIndex,
+        ByteBuffer dst, int dstIndex,
+        int count,
+        boolean encrypt
+    ) {
+        int[][] scratch = states.get();
+        int[] x = scratch[1];
+
+        while (count > 0) {
+            if (count < LANES) {
+                x = scratch[0];
+            }
+
+            int length = x.length * Integer.BYTES;
+            bufferToWords(src, srcIndex, x);
+
+            if (encrypt) {
+                encryptWords(x);
+            } else {
+                decryptWords(x);
+            }
+
+            wordsToBuffer(x, dst, dstIndex);
+
+            count -= x.length / 4;
+            srcIndex += length;
+            dstIndex += length;
+        }
+    }
+
+    /**
+     * Encrypts the state in place. The state holds four words per block.
+     */
+    private void encryptWords(int[] x) {
         // Compute (a,b,c,d) = (a,b,c,d) + (K[0],K[1],K[2],K[3])
-        x[0] += K[0];
-        x[1] += K[1];
-        x[2] += K[2];
-        x[3] += K[3];
+        addKeys(x, 0);
 
         // Forwards mixing (8 rounds), in the exact order used by the reference implementation
-        fMix(x, 0, 1, 2, 3); x[0] += x[3];
-        fMix(x, 1, 2, 3, 0); x[1] += x[2];
+        fMix(x, 0, 1, 2, 3); add(x, 0, 3);
+        fMix(x, 1, 2, 3, 0); add(x, 1, 2);
         fMix(x, 2, 3, 0, 1);
         fMix(x, 3, 0, 1, 2);
 
-        fMix(x, 0, 1, 2, 3); x[0] += x[3];
-        fMix(x, 1, 2, 3, 0); x[1] += x[2];
+        fMix(x, 0, 1, 2, 3); add(x, 0, 3);
+        fMix(x, 1, 2, 3, 0); add(x, 1, 2);
         fMix(x, 2, 3, 0, 1);
         fMix(x, 3, 0, 1, 2);
 
         // Cryptographic core (16 rounds)
-        core(x, 0, 1, 2, 3, K[4], K[5]);
-        core(x, 1, 2, 3, 0, K[6], K[7]);
-        core(x, 2, 3, 0, 1, K[8], K[9]);
-        core(x, 3, 0, 1, 2, K[10], K[11]);
-        core(x, 0, 1, 2, 3, K[12], K[13]);
-        core(x, 1, 2, 3, 0, K[14], K[15]);
-        core(x, 2, 3, 0, 1, K[16], K[17]);
-        core(x, 3, 0, 1, 2, K[18], K[19]);
+        core(x, 0, 1, 2, 3, 4);
+        core(x, 1, 2, 3, 0, 6);
+        core(x, 2, 3, 0, 1, 8);
+        core(x, 3, 0, 1, 2, 10);
+        core(x, 0, 1, 2, 3, 12);
+        core(x, 1, 2, 3, 0, 14);
+        core(x, 2, 3, 0, 1, 16);
+        core(x, 3, 0, 1, 2, 18);
 
         // Note the swapped (b,d) roles in the last 8 rounds (matches the spec)
-        core(x, 0, 3, 2, 1, K[20], K[21]);
-        core(x, 1, 0, 3, 2, K[22], K[23]);
-        core(x, 2, 1, 0, 3, K[24], K[25]);
-        core(x, 3, 2, 1, 0, K[26], K[27]);
-        core(x, 0, 3, 2, 1, K[28], K[29]);
-        core(x, 1, 0, 3, 2, K[30], K[31]);
-        core(x, 2, 1, 0, 3, K[32], K[33]);
-        core(x, 3, 2, 1, 0, K[34], K[35]);
+        core(x, 0, 3, 2, 1, 20);
+        core(x, 1, 0, 3, 2, 22);
+        core(x, 2, 1, 0, 3, 24);
+        core(x, 3, 2, 1, 0, 26);
+        core(x, 0, 3, 2, 1, 28);
+        core(x, 1, 0, 3, 2, 30);
+        core(x, 2, 1, 0, 3, 32);
+        core(x, 3, 2, 1, 0, 34);
 
         // Backwards mixing (8 rounds)
         bMix(x, 0, 1, 2, 3);
         bMix(x, 1, 2, 3, 0);
-        x[2] -= x[1];
+        subtract(x, 2, 1);
         bMix(x, 2, 3, 0, 1);
-        x[3] -= x[0];
+        subtract(x, 3, 0);
         bMix(x, 3, 0, 1, 2);
 
         bMix(x, 0, 1, 2, 3);
         bMix(x, 1, 2, 3, 0);
-        x[2] -= x[1];
+        subtract(x, 2, 1);
         bMix(x, 2, 3, 0, 1);
-        x[3] -= x[0];
+        subtract(x, 3, 0);
         bMix(x, 3, 0, 1, 2);
 
         // Compute (a,b,c,d) = (a,b,c,d) - (K[36],K[37],K[38],K[39])
-        x[0] -= K[36];
-        x[1] -= K[37];
-        x[2] -= K[38];
-        x[3] -= K[39];
-
-        return wordsToBytes(x);
+        subtractKeys(x, 36);
     }
 
-    @Override
-    public byte[] decrypt(byte @NotNull [] ciphertext) {
-        requireNonNull(ciphertext, "ciphertext");
-        ensureInitialized();
-        if (ciphertext.length != BLOCK_SIZE) {
-            throw new IllegalArgumentException("Ciphertext must be 16 bytes (128 bits)");
-        }
-
-        int[] x = bytesToWords(ciphertext); // x[0]=a, x[1]=b, x[2]=c, x[3]=d
-
+    /**
+     * Decrypts the state in place. The state holds four words per block.
+     */
+    private void decryptWords(int[] x) {
         // Compute (a,b,c,d) = (a,b,c,d) + (K[36],K[37],K[38],K[39])
-        x[0] += K[36];
-        x[1] += K[37];
-        x[2] += K[38];
-        x[3] += K[39];
+        addKeys(x, 36);
 
         // Forwards mixing (8 rounds) - same F_MIX primitive, but reverse-word ordering
-        fMix(x, 3, 2, 1, 0); x[3] += x[0];
-        fMix(x, 2, 1, 0, 3); x[2] += x[1];
+        fMix(x, 3, 2, 1, 0); add(x, 3, 0);
+        fMix(x, 2, 1, 0, 3); add(x, 2, 1);
         fMix(x, 1, 0, 3, 2);
         fMix(x, 0, 3, 2, 1);
 
-        fMix(x, 3, 2, 1, 0); x[3] += x[0];
-        fMix(x, 2, 1, 0, 3); x[2] += x[1];
+        fMix(x, 3, 2, 1, 0); add(x, 3, 0);
+        fMix(x, 2, 1, 0, 3); add(x, 2, 1);
         fMix(x, 1, 0, 3, 2);
         fMix(x, 0, 3, 2, 1);
 
         // Cryptographic core (16 rounds) - inverse
-        coreInv(x, 3, 2, 1, 0, K[34], K[35]);
-        coreInv(x, 2, 1, 0, 3, K[32], K[33]);
-        coreInv(x, 1, 0, 3, 2, K[30], K[31]);
-        coreInv(x, 0, 3, 2, 1, K[28], K[29]);
-        coreInv(x, 3, 2, 1, 0, K[26], K[27]);
-        coreInv(x, 2, 1, 0, 3, K[24], K[25]);
-        coreInv(x, 1, 0, 3, 2, K[22], K[23]);
-        coreInv(x, 0, 3, 2, 1, K[20], K[21]);
-
-        coreInv(x, 3, 0, 1, 2, K[18], K[19]);
-        coreInv(x, 2, 3, 0, 1, K[16], K[17]);
-        coreInv(x, 1, 2, 3, 0, K[14], K[15]);
-        coreInv(x, 0, 1, 2, 3, K[12], K[13]);
-        coreInv(x, 3, 0, 1, 2, K[10], K[11]);
-        coreInv(x, 2, 3, 0, 1, K[8], K[9]);
-        coreInv(x, 1, 2, 3, 0, K[6], K[7]);
-        coreInv(x, 0, 1, 2, 3, K[4], K[5]);
+        coreInv(x, 3, 2, 1, 0, 34);
+        coreInv(x, 2, 1, 0, 3, 32);
+        coreInv(x, 1, 0, 3, 2, 30);
+        coreInv(x, 0, 3, 2, 1, 28);
+        coreInv(x, 3, 2, 1, 0, 26);
+        coreInv(x, 2, 1, 0, 3, 24);
+        coreInv(x, 1, 0, 3, 2, 22);
+        coreInv(x, 0, 3, 2, 1, 20);
+
+        coreInv(x, 3, 0, 1, 2, 18);
+        coreInv(x, 2, 3, 0, 1, 16);
+        coreInv(x, 1, 2, 3, 0, 14);
+        coreInv(x, 0, 1, 2, 3, 12);
+        coreInv(x, 3, 0, 1, 2, 10);
+        coreInv(x, 2, 3, 0, 1, 8);
+        coreInv(x, 1, 2, 3, 0, 6);
+        coreInv(x, 0, 1, 2, 3, 4);
 
         // Backwards mixing (8 rounds)
         bMix(x, 3, 2, 1, 0);
         bMix(x, 2, 1, 0, 3);
-        x[1] -= x[2];
+        subtract(x, 1, 2);
         bMix(x, 1, 0, 3, 2);
-        x[0] -= x[3];
+        subtract(x, 0, 3);
         bMix(x, 0, 3, 2, 1);
 
         bMix(x, 3, 2, 1, 0);
         bMix(x, 2, 1, 0, 3);
-        x[1] -= x[2];
+        subtract(x, 1, 2);
         bMix(x, 1, 0, 3, 2);
-        x[0] -= x[3];
+        subtract(x, 0, 3);
         bMix(x, 0, 3, 2, 1);
 
         // Compute (a,b,c,d) = (a,b,c,d) - (K[0],K[1],K[2],K[3])
-        x[0] -= K[0];
-        x[1] -= K[1];
-        x[2] -= K[2];
-        x[3] -= K[3];
+        subtractKeys(x, 0);
+    }
 
-        return wordsToBytes(x);
+    private void checkBlock(byte[] in, int inOff, byte[] out, int outOff) {
+        requireNonNull(in, "input");
+        requireNonNull(out, "output");
+        if (K == null) {
+            throw new IllegalStateException("Cipher is not initialized");
+        }
+
+        Objects.checkFromIndexSize(inOff, BLOCK_SIZE, in.length);
+        Objects.checkFromIndexSize(outOff, BLOCK_SIZE, out.length);
+    }
+
+    private void checkBlocks(byte[] src, int srcOff, byte[] dst, int dstOff, int count) {
+        BlockCipher.checkBlocks(src, srcOff, dst, dstOff, count, BLOCK_SIZE);
+        if (K == null) {
+            throw new IllegalStateException("Cipher is not initialized");
+        }
     }
 
-    private void ensureInitialized() {
+    private void checkBlocks(ByteBuffer src, int srcIndex, ByteBuffer dst, int dstIndex, int count) {
+        BlockCipher.checkBlocks(src, srcIndex, dst, dstIndex, count, BLOCK_SIZE);
         if (K == null) {
             throw new IllegalStateException("Cipher is not initialized");
         }
     }
 
     // ===== Primitives (reference-style) =====
+    // Each primitive is applied to every block of the state, four words per block.
 
     private static int s0(int x) {
         return MarsSBox.getS0(x & 0xff);
@@ -206,141 +367,176 @@ public final class MarsBlockCipher implements BlockCipher {
         return MarsSBox.getSBoxValue(x & 0x1ff);
     }
 
+    private void addKeys(int[] x, int k) {
+        for (int o = 0; o < x.length; o += 4) {
+            x[o] += K[k];
+            x[o + 1] += K[k + 1];
+            x[o + 2] += K[k + 2];
+            x[o + 3] += K[k + 3];
+        }
+    }
+
+    private void subtractKeys(int[] x, int k) {
+        for (int o = 0; o < x.length; o += 4) {
+            x[o] -= K[k];
+            x[o + 1] -= K[k + 1];
+            x[o + 2] -= K[k + 2];
+            x[o + 3] -= K[k + 3];
+        }
+    }
+
+    private static void add(int[] x, int i, int j) {
+        for (int o = 0; o < x.length; o += 4) {
+            x[o + i] += x[o + j];
+        }
+    }
+
+    private static void subtract(int[] x, int i, int j) {
+        for (int o = 0; o < x.length; o += 4) {
+            x[o + i] -= x[o + j];
+        }
+    }
+
     /**
      * Forward mixing primitive (F_MIX macro).
      */
     private static void fMix(int[] x, int ia, int ib, int ic, int id) {
-        int a = x[ia];
-        int b = x[ib];
-        int c = x[ic];
-        int d = x[id];
-
-        b ^= s0(a);
-        b += s1(Integer.rotateRight(a, 8));
-        c += s0(Integer.rotateRight(a, 16));
-        a = Integer.rotateRight(a, 24);
-        d ^= s1(a);
-
-        x[ia] = a;
-        x[ib] = b;
-        x[ic] = c;
-        x[id] = d;
+        for (int o = 0; o < x.length; o += 4) {
+            int a = x[o + ia];
+            int b = x[o + ib];
+            int c = x[o + ic];
+            int d = x[o + id];
+
+            b ^= s0(a);
+            b += s1(Integer.rotateRight(a, 8));
+            c += s0(Integer.rotateRight(a, 16));
+            a = Integer.rotateRight(a, 24);
+            d ^= s1(a);
+
+            x[o + ia] = a;
+            x[o + ib] = b;
+            x[o + ic] = c;
+            x[o + id] = d;
+        }
     }
 
     /**
      * Backward mixing primitive (B_MIX macro).
      */
     private static void bMix(int[] x, int ia, int ib, int ic, int id) {
-        int a = x[ia];
-        int b = x[ib];
-        int c = x[ic];
-        int d = x[id];
-
-        b ^= s1(a);
-        c -= s0(Integer.rotateLeft(a, 8));
-        d -= s1(Integer.rotateLeft(a, 16));
-        a = Integer.rotateLeft(a, 24);
-        d ^= s0(a);
-
-        x[ia] = a;
-        x[ib] = b;
-        x[ic] = c;
-        x[id] = d;
+        for (int o = 0; o < x.length; o += 4) {
+            int a = x[o + ia];
+            int b = x[o + ib];
+            int c = x[o + ic];
+            int d = x[o + id];
+
+            b ^= s1(a);
+            c -= s0(Integer.rotateLeft(a, 8));
+            d -= s1(Integer.rotateLeft(a, 16));
+            a = Integer.rotateLeft(a, 24);
+            d ^= s0(a);
+
+            x[o + ia] = a;
+            x[o + ib] = b;
+            x[o + ic] = c;
+            x[o + id] = d;
+        }
     }
 
     /**
-     * Core encryption primitive (CORE macro).
+     * Core encryption primitive (CORE macro) with the round keys K[k] and K[k + 1].
      */
-    private static void core(int[] x, int ia, int ib, int ic, int id, int k1, int k2) {
-        int a = x[ia];
-        int b = x[ib];
-        int c = x[ic];
-        int d = x[id];
-
-        int m = a + k1;
-        a = Integer.rotateLeft(a, 13);
-        int r = a * k2;
-        r = Integer.rotateLeft(r, 5);
-        c += Integer.rotateLeft(m, r & 0x1f);
-        int l = s(m) ^ r;
-        r = Integer.rotateLeft(r, 5);
-        l ^= r;
-        d ^= r;
-        b += Integer.rotateLeft(l, r & 0x1f);
-
-        x[ia] = a;
-        x[ib] = b;
-        x[ic] = c;
-        x[id] = d;
+    private void core(int[] x, int ia, int ib, int ic, int id, int k) {
+        int k1 = K[k];
+        int k2 = K[k + 1];
+
+        for (int o = 0; o < x.length; o += 4) {
+            int a = x[o + ia];
+            int b = x[o + ib];
+            int c = x[o + ic];
+            int d = x[o + id];
+
+            int m = a + k1;
+            a = Integer.rotateLeft(a, 13);
+            int r = a * k2;
+            r = Integer.rotateLeft(r, 5);
+            c += Integer.rotateLeft(m, r & 0x1f);
+            int l = s(m) ^ r;
+            r = Integer.rotateLeft(r, 5);
+            l ^= r;
+            d ^= r;
+            b += Integer.rotateLeft(l, r & 0x1f);
+
+            x[o + ia] = a;
+            x[o + ib] = b;
+            x[o + ic] = c;
+            x[o + id] = d;
+        }
     }
 
     /**
-     * Core decryption primitive (CORE_INV macro).
+     * Core decryption primitive (CORE_INV macro) with the round keys K[k] and K[k + 1].
      */
-    private static void coreInv(int[] x, int ia, int ib, int ic, int id, int k1, int k2) {
-        int a = x[ia];
-        int b = x[ib];
-        int c = x[ic];
-        int d = x[id];
-
-        int r = a * k2;
-        a = Integer.rotateRight(a, 13);
-        int m = a + k1;
-        r = Integer.rotateLeft(r, 5);
-        c -= Integer.rotateLeft(m, r & 0x1f);
-        int l = s(m) ^ r;
-        r = Integer.rotateLeft(r, 5);
-        l ^= r;
-        d ^= r;
-        b -= Integer.rotateLeft(l, r & 0x1f);
-
-        x[ia] = a;
-        x[ib] = b;
-        x[ic] = c;
-        x[id] = d;
+    private void coreInv(int[] x, int ia, int ib, int ic, int id, int k) {
+        int k1 = K[k];
+        int k2 = K[k + 1];
+
+        for (int o = 0; o < x.length; o += 4) {
+            int a = x[o + ia];
+            int b = x[o + ib];
+            int c = x[o + ic];
+            int d = x[o + id];
+
+            int r = a * k2;
+            a = Integer.rotateRight(a, 13);
+            int m = a + k1;
+            r = Integer.rotateLeft(r, 5);
+            c -= Integer.rotateLeft(m, r & 0x1f);
+            int l = s(m) ^ r;
+            r = Integer.rotateLeft(r, 5);
+            l ^= r;
+            d ^= r;
+            b -= Integer.rotateLeft(l, r & 0x1f);
+
+            x[o + ia] = a;
+            x[o + ib] = b;
+            x[o + ic] = c;
+            x[o + id] = d;
+        }
     }
 
     // ===== Packing / unpacking =====
 
-    private int[] bytesToWords(byte[] bytes) {
-        int[] words = new int[4];
-        words[0] = (bytes[0] & 0xff)
-            | ((bytes[1] & 0xff) << 8)
-            | ((bytes[2] & 0xff) << 16)
-            | ((bytes[3] & 0xff) << 24);
-        words[1] = (bytes[4] & 0xff)
-            | ((bytes[5] & 0xff) << 8)
-            | ((bytes[6] & 0xff) << 16)
-            | ((bytes[7] & 0xff) << 24);
-        words[2] = (bytes[8] & 0xff)
-            | ((bytes[9] & 0xff) << 8)
-            | ((bytes[10] & 0xff) << 16)
-            | ((bytes[11] & 0xff) << 24);
-        words[3] = (bytes[12] & 0xff)
-            | ((bytes[13] & 0xff) << 8)
-            | ((bytes[14] & 0xff) << 16)
-            | ((bytes[15] & 0xff) << 24);
-        return words;
-    }
-
-    private byte[] wordsToBytes(int[] words) {
-        byte[] bytes = new byte[BLOCK_SIZE];
-        bytes[0] = (byte) words[0];
-        bytes[1] = (byte) (words[0] >>> 8);
-        bytes[2] = (byte) (words[0] >>> 16);
-        bytes[3] = (byte) (words[0] >>> 24);
-        bytes[4] = (byte) words[1];
-        bytes[5] = (byte) (words[1] >>> 8);
-        bytes[6] = (byte) (words[1] >>> 16);
-        bytes[7] = (byte) (words[1] >>> 24);
-        bytes[8] = (byte) words[2];
-        bytes[9] = (byte) (words[2] >>> 8);
-        bytes[10] = (byte) (words[2] >>> 16);
-        bytes[11] = (byte) (words[2] >>> 24);
-        bytes[12] = (byte) words[3];
-        bytes[13] = (byte) (words[3] >>> 8);
-        bytes[14] = (byte) (words[3] >>> 16);
-        bytes[15] = (byte) (words[3] >>> 24);
-        return bytes;
+    private static void bytesToWords(byte[] bytes, int off, int[] words) {
+        for (int i = 0; i < words.length; i++) {
+            words[i] = (bytes[off] & 0xff)
+                | ((bytes[off + 1] & 0xff) << 8)
+                | ((bytes[off + 2] & 0xff) << 16)
+                | ((bytes[off + 3] & 0xff) << 24);
+            off += 4;
+        }
+    }
+
+    private static void wordsToBytes(int[] words, byte[] bytes, int off) {
+        for (int i = 0; i < words.length; i++) {
+            int w = words[i];
+            bytes[off] = (byte) w;
+            bytes[off + 1] = (byte) (w >>> 8);
+            bytes[off + 2] = (byte) (w >>> 16);
+            bytes[off + 3] = (byte) (w >>> 24);
+            off += 4;
+        }
+    }
+
+    private static void bufferToWords(ByteBuffer buffer, int index, int[] words) {
+        for (int i = 0; i < words.length; i++, index += 4) {
+            words[i] = (int) WORDS.get(buffer, index);
+        }
+    }
+
+    private static void wordsToBuffer(int[] words, ByteBuffer buffer, int index) {
+        for (int i = 0; i < words.length; i++, index += 4) {
+            WORDS.set(buffer, index, words[i]);
+        }
     }
 }
@@ -3,10 +3,25 @@ package dora.crypto.block.mode;
 import dora.crypto.block.BlockCipher;
 import org.jetbrains.annotations.NotNull;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.Objects;
+
 import static java.util.Objects.requireNonNull;
 
 abstract class AbstractCipherMode implements CipherMode {
 
+    /** Bytes of non-array buffers copied through the heap at a time. */
+    private static final int STAGING_SIZE = 1 << 20;
+
+    /**
+     * Per-thread staging arrays for source and result, grown up to {@link #STAGING_SIZE}
+     * bytes. Buffers may be processed concurrently, so they cannot be shared.
+     */
+    private static final ThreadLocal<byte[][]> STAGING =
+        ThreadLocal.withInitial(() -> new byte[2][0]);
+
     protected final BlockCipher cipher;
     protected final int blockSize;
 
@@ -26,6 +41,11 @@ abstract class AbstractCipherMode implements CipherMode {
         initMode(parameters);
     }
 
+    @Override
+    public void init(Parameters parameters) {
+        initMode(parameters);
+    }
+
     protected abstract void initMode(Parameters parameters);
 
     @Override
@@ -35,11 +55,64 @@ abstract class AbstractCipherMode implements CipherMode {
         if (plaintext.length % blockSize != 0)
             throw new IllegalArgumentException("Plaintext not multiple of block size");
 
-        return encryptBlocks(plaintext);
+        byte[] ciphertext = new byte[plaintext.length];
+        encryptBlocks(plaintext, 0, ciphertext, 0, plaintext.length / blockSize);
+        return ciphertext;
     }
 
-    protected abstract byte[] encryptBlocks(byte[] plaintext)
-    throws InterruptedException;
+    @Override
+    public void encrypt(
+        byte @NotNull [] src, int srcOff, int length,
+        byte @NotNull [] dst, int dstOff
+    ) throws InterruptedException {
+        checkRegions(src, srcOff, length, dst, dstOff);
+
+        if (length % blockSize != 0)
+            throw new IllegalArgumentException("Plaintext not multiple of block size");
+
+        encryptBlocks(src, srcOff, dst, dstOff, length / blockSize);
+    }
+
+    /**
+     * Encrypts <code>blockCount</code> blocks from <code>src[srcOff]</code> into
+     * <code>dst[dstOff]</code>. The source and destination regions must not overlap.
+     */
+    protected abstract void encryptBlocks(
+        byte[] src, int srcOff,
+        byte[] dst, int dstOff,
+        int blockCount
+    ) throws InterruptedException;
+
+    @Override
+    public void encrypt(
+        @NotNull ByteBuffer src,
+        @NotNull ByteBuffer dst
+    ) throws InterruptedException {
+        int length = checkBuffers(src, dst, blockSize, "Plaintext");
+
+        encryptBlocks(src, src.position(), dst, dst.position(), length / blockSize);
+        advance(src, dst, length);
+    }
+
+    /**
+     * Encrypts <code>blockCount</code> blocks from index <code>srcIndex</code> of the
+     * source buffer into the destination buffer at <code>dstIndex</code>.
+     * <p>
+     * The default implementation passes the backing arrays to
+     * {@link #encryptBlocks(byte[], int, byte[], int, int)}, or copies other buffers
+     * through heap arrays a megabyte at a time. Modes override it to work on direct
+     * buffers in place.
+     */
+    protected void encryptBlocks(
+        ByteBuffer src, int srcIndex,
+        ByteBuffer dst, int dstIndex,
+        int blockCount
+    ) throws InterruptedException {
+        processBuffers(
+            src, srcIndex, dst, dstIndex, blockCount * blockSize, blockSize,
+            (s, sOff, length, d, dOff) -> encryptBlocks(s, sOff, d, dOff, length / blockSize)
+        );
+    }
 
     @Override
     public byte[] decrypt(byte @NotNull [] ciphertext) throws InterruptedException {
@@ -48,9 +121,171 @@ abstract class AbstractCipherMode implements CipherMode {
         if (ciphertext.length % blockSize != 0)
             throw new IllegalArgumentException("Ciphertext not multiple of block size");
 
-        return decryptBlocks(ciphertext);
+        byte[] plaintext = new byte[ciphertext.length];
+        decryptBlocks(ciphertext, 0, plaintext, 0, ciphertext.length / blockSize);
+        return plaintext;
+    }
+
+    @Override
+    public void decrypt(
+        byte @NotNull [] src, int srcOff, int length,
+        byte @NotNull [] dst, int dstOff
+    ) throws InterruptedException {
+        checkRegions(src, srcOff, length, dst, dstOff);
+
+        if (length % blockSize != 0)
+            throw new IllegalArgumentException("Ciphertext not multiple of block size");
+
+        decryptBlocks(src, srcOff, dst, dstOff, length / blockSize);
+    }
+
+    /**
+     * Decrypts <code>blockCount</code> blocks from <code>src[srcOff]</code> into
+     * <code>dst[dstOff]</code>. The source and destination regions must not overlap.
+     */
+    protected abstract void decryptBlocks(
+        byte[] src, int srcOff,
+        byte[] dst, int dstOff,
+        int blockCount
+    ) throws InterruptedException;
+
+    @Override
+    public void decrypt(
+        @NotNull ByteBuffer src,
+        @NotNull ByteBuffer dst
+    ) throws InterruptedException {
+        int length = checkBuffers(src, dst, blockSize, "Ciphertext");
+
+        decryptBlocks(src, src.position(), dst, dst.position(), length / blockSize);
+        advance(src, dst, length);
+    }
+
+    /**
+     * Decrypts <code>blockCount</code> blocks from index <code>srcIndex</code> of the
+     * source buffer into the destination buffer at <code>dstIndex</code>, see
+     * {@link #encryptBlocks(ByteBuffer, int, ByteBuffer, int, int)}.
+     */
+    protected void decryptBlocks(
+        ByteBuffer src, int srcIndex,
+        ByteBuffer dst, int dstIndex,
+        int blockCount
+    ) throws InterruptedException {
+        processBuffers(
+            src, srcIndex, dst, dstIndex, blockCount * blockSize, blockSize,
+            (s, sOff, length, d, dOff) -> decryptBlocks(s, sOff, d, dOff, length / blockSize)
+        );
     }
 
-    protected abstract byte[] decryptBlocks(byte[] ciphertext)
-    throws InterruptedException;
+    /**
+     * Checks the buffers of {@link #encrypt(ByteBuffer, ByteBuffer)} and
+     * {@link #decrypt(ByteBuffer, ByteBuffer)} and returns the number of bytes to process.
+     *
+     * @param data name of the processed data in error messages
+     */
+    static int checkBuffers(ByteBuffer src, ByteBuffer dst, int blockSize, String data) {
+        requireNonNull(src, "source");
+        requireNonNull(dst, "destination");
+
+        int length = src.remaining();
+
+        if (length % blockSize != 0)
+            throw new IllegalArgumentException(data + " not multiple of block size");
+        if (dst.isReadOnly())
+            throw new ReadOnlyBufferException();
+        if (dst.remaining() < length)
+            throw new BufferOverflowException();
+
+        if (src.hasArray() && dst.hasArray() && src.array() == dst.array()) {
+            int srcOff = src.arrayOffset() + src.position();
+            int dstOff = dst.arrayOffset() + dst.position();
+
+            if (srcOff < dstOff + length && dstOff < srcOff + length)
+                throw new IllegalArgumentException("Source and destination must not overlap");
+        }
+
+        return length;
+    }
+
+    /**
+     * Runs an array operation on <code>length</code> bytes of the buffers, on their
+     * backing arrays if both have one and otherwise through heap arrays reused by the
+     * calling thread.
+     */
+    static void processBuffers(
+        ByteBuffer src, int srcIndex,
+        ByteBuffer dst, int dstIndex,
+        int length, int blockSize,
+        ArrayOperation operation
+    ) throws InterruptedException {
+        if (src.hasArray() && dst.hasArray()) {
+            operation.apply(
+                src.array(), src.arrayOffset() + srcIndex, length,
+                dst.array(), dst.arrayOffset() + dstIndex
+            );
+            return;
+        }
+
+        int stagingSize = Math.min(length, STAGING_SIZE - STAGING_SIZE % blockSize);
+        byte[][] staging = STAGING.get();
+
+        if (staging[0].length < stagingSize) {
+            staging[0] = new byte[stagingSize];
+            staging[1] = new byte[stagingSize];
+        }
+
+        byte[] source = staging[0];
+        byte[] result = staging[1];
+
+        for (int offset = 0; offset < length; offset += stagingSize) {
+            int chunk = Math.min(stagingSize, length - offset);
+
+            src.get(srcIndex + offset, source, 0, chunk);
+            operation.apply(source, 0, chunk, result, 0);
+            dst.put(dstIndex + offset, result, 0, chunk);
+        }
+    }
+
+    static void advance(ByteBuffer src, ByteBuffer dst, int length) {
+        src.position(src.position() + length);
+        dst.position(dst.position() + length);
+    }
+
+    /**
+     * Checks that both regions lie within their arrays and do not overlap.
+     */
+    static void checkRegions(byte[] src, int srcOff, int length, byte[] dst, int dstOff) {
+        requireNonNull(src, "source");
+        requireNonNull(dst, "destination");
+
+        Objects.checkFromIndexSize(srcOff, length, src.length);
+        Objects.checkFromIndexSize(dstOff, length, dst.length);
+
+        if (src == dst && srcOff < dstOff + length && dstOff < srcOff + length)
+            throw new IllegalArgumentException("Source and destination must not overlap");
+    }
+
+    /**
+     * Checks that <code>blockCount</code> blocks starting at <code>dst[dstOff]</code>
+     * lie within the array.
+     */
+    protected void checkBlocks(byte[] dst, int dstOff, int blockCount) {
+        requireNonNull(dst, "destination");
+
+        if (blockCount < 0)
+            throw new IllegalArgumentException("Block count must not be negative");
+
+        Objects.checkFromIndexSize(dstOff, Math.multiplyExact(blockCount, blockSize), dst.length);
+    }
+
+    /**
+     * Operation on <code>length</code> bytes of non-overlapping array regions.
+     */
+    @FunctionalInterface
+    interface ArrayOperation {
+
+        void apply(
+            byte[] src, int srcOff, int length,
+            byte[] dst, int dstOff
+        ) throws InterruptedException;
+    }
 }
@@ -3,19 +3,17 @@ package dora.crypto.block.mode;
 import dora.crypto.block.BlockCipher;
 import dora.crypto.block.mode.Parameters.IvParameters;
 
-import java.util.Arrays;
-import java.util.List;
 import java.util.concurrent.ForkJoinPool;
 
 public final class CbcCipherMode extends AbstractCipherMode {
 
-    private final ForkJoinPool pool;
+    private final ParallelBlockProcessor processor;
 
     private byte[] prevBlock;
 
     public CbcCipherMode(BlockCipher cipher, ForkJoinPool pool) {
         super(cipher);
-        this.pool = pool;
+        this.processor = new ParallelBlockProcessor(cipher, pool);
     }
 
     @Override
@@ -33,51 +31,60 @@ public final class CbcCipherMode extends AbstractCipherMode {
     }
 
     @Override
-    protected byte[] encryptBlocks(byte[] plaintext) {
-        byte[] ciphertext = new byte[plaintext.length];
-
-        for (int i = 0; i < plaintext.length; i += blockSize) {
-            byte[] plainBlock = Arrays.copyOfRange(plaintext, i, i + blockSize);
-
-            for (int j = 0; j < plainBlock.length; j++) {
-                plainBlock[j] ^= prevBlock[j];
+    protected void encryptBlocks(
+        byte[] src, int srcOff,
+        byte[] dst, int dstOff,
+        int blockCount
+    ) {
+        byte[] feedback = prevBlock;
+        int feedbackOffset = 0;
+
+        for (int i = 0; i < blockCount; i++, srcOff += blockSize, dstOff += blockSize) {
+            for (int j = 0; j < blockSize; j++) {
+                dst[dstOff + j] = (byte) (src[srcOff + j] ^ feedback[feedbackOffset + j]);
             }
 
-            byte[] cipherBlock = cipher.encrypt(plainBlock);
-            System.arraycopy(cipherBlock, 0, ciphertext, i, cipherBlock.length);
-            prevBlock = cipherBlock;
+            cipher.encryptBlock(dst, dstOff, dst, dstOff);
+
+            feedback = dst;
+            feedbackOffset = dstOff;
         }
 
-        return ciphertext;
+        System.arraycopy(feedback, feedbackOffset, prevBlock, 0, blockSize);
     }
 
     @Override
-    protected byte[] decryptBlocks(byte[] ciphertext) throws InterruptedException {
-        List<DecryptResult> results = ParallelBlockProcessor.processBlocks(
-            ciphertext, blockSize, pool, (idx, start, end) -> {
-                byte[] cipherBlock = Arrays.copyOfRange(ciphertext, start, end);
-                byte[] plainBlock = cipher.decrypt(cipherBlock);
-                return new DecryptResult(cipherBlock, plainBlock);
+    protected void decryptBlocks(
+        byte[] src, int srcOff,
+        byte[] dst, int dstOff,
+        int blockCount
+    ) throws InterruptedException {
+        byte[] iv = prevBlock;
+
+        processor.processBlocks(
+            srcOff, dstOff, blockCount, (srcOffset, dstOffset, count) -> {
+                cipher.decryptBlocks(src, srcOffset, dst, dstOffset, count);
+
+                // The first block is chained to the block before the slice, which is
+                // still intact in the source.
+                byte[] feedback = srcOffset == srcOff ? iv : src;
+                int feedbackOffset = srcOffset == srcOff ? 0 : srcOffset - blockSize;
+
+                for (int i = 0; i < count; i++) {
+                    int offset = dstOffset + i * blockSize;
+
+                    for (int j = 0; j < blockSize; j++) {
+                        dst[offset + j] ^= feedback[feedbackOffset + j];
+                    }
+
+                    feedback = src;
+                    feedbackOffset = srcOffset + i * blockSize;
+                }
             }
         );
 
-        byte[] plaintext = new byte[ciphertext.length];
-
-        for (int i = 0; i < results.size(); i++) {
-            DecryptResult result = results.get(i);
-            byte[] cipherBlock = result.cipherBlock();
-            byte[] plainBlock = result.plainBlock();
-
-            for (int j = 0; j < plainBlock.length; j++) {
-                plaintext[i * blockSize + j] = (byte) (plainBlock[j] ^ prevBlock[j]);
-            }
-
-            prevBlock = cipherBlock;
+        if (blockCount > 0) {
+            System.arraycopy(src, srcOff + (blockCount - 1) * blockSize, prevBlock, 0, blockSize);
         }
-
-        return plaintext;
-    }
-
-    private record DecryptResult(byte[] cipherBlock, byte[] plainBlock) {
     }
 }
@@ -3,19 +3,17 @@ package dora.crypto.block.mode;
 import dora.crypto.block.BlockCipher;
 import dora.crypto.block.mode.Parameters.IvParameters;
 
-import java.util.Arrays;
-import java.util.List;
 import java.util.concurrent.ForkJoinPool;
 
 public final class CfbCipherMode extends AbstractCipherMode {
 
-    private final ForkJoinPool pool;
+    private final ParallelBlockProcessor processor;
 
     private byte[] prevBlock;
 
     public CfbCipherMode(BlockCipher cipher, ForkJoinPool pool) {
         super(cipher);
-        this.pool = pool;
+        this.processor = new ParallelBlockProcessor(cipher, pool);
     }
 
     @Override
@@ -33,61 +31,57 @@ public final class CfbCipherMode extends AbstractCipherMode {
     }
 
     @Override
-    protected byte[] encryptBlocks(byte[] plaintext) {
-        byte[] ciphertext = new byte[plaintext.length];
+    protected void encryptBlocks(
+        byte[] src, int srcOff,
+        byte[] dst, int dstOff,
+        int blockCount
+    ) {
+        byte[] feedback = prevBlock;
+        int feedbackOffset = 0;
 
-        for (int i = 0; i < plaintext.length; i += blockSize) {
-            byte[] cipherBlock = cipher.encrypt(prevBlock);
+        for (int i = 0; i < blockCount; i++, srcOff += blockSize, dstOff += blockSize) {
+            cipher.encryptBlock(feedback, feedbackOffset, dst, dstOff);
 
             for (int j = 0; j < blockSize; j++) {
-                cipherBlock[j] ^= plaintext[i + j];
-                ciphertext[i + j] = cipherBlock[j];
+                dst[dstOff + j] ^= src[srcOff + j];
             }
 
-            prevBlock = cipherBlock;
+            feedback = dst;
+            feedbackOffset = dstOff;
         }
 
-        return ciphertext;
+        System.arraycopy(feedback, feedbackOffset, prevBlock, 0, blockSize);
     }
 
     @Override
-    protected byte[] decryptBlocks(byte[] ciphertext) throws InterruptedException {
-        List<EncryptResult> results = ParallelBlockProcessor.processBlocks(
-            ciphertext, blockSize, pool, (idx, start, end) -> {
-                byte[] feedbackBlock;
-
-                if (idx == 0) {
-                    feedbackBlock = prevBlock;
+    protected void decryptBlocks(
+        byte[] src, int srcOff,
+        byte[] dst, int dstOff,
+        int blockCount
+    ) throws InterruptedException {
+        byte[] iv = prevBlock;
+
+        processor.processBlocks(
+            srcOff, dstOff, blockCount, (srcOffset, dstOffset, count) -> {
+                // Block i is the encrypted ciphertext block i - 1, so the slice is shifted
+                // by one block; the first block of the message uses the IV instead.
+                if (srcOffset == srcOff) {
+                    cipher.encryptBlock(iv, 0, dst, dstOffset);
+                    cipher.encryptBlocks(src, srcOffset, dst, dstOffset + blockSize, count - 1);
                 } else {
-                    int prevOffset = (idx - 1) * blockSize;
-                    feedbackBlock = Arrays.copyOfRange(
-                        ciphertext, prevOffset, prevOffset + blockSize);
+                    cipher.encryptBlocks(src, srcOffset - blockSize, dst, dstOffset, count);
                 }
 
-                byte[] encryptedFeedback = cipher.encrypt(feedbackBlock);
-                byte[] cipherBlock = Arrays.copyOfRange(ciphertext, start, end);
+                int length = count * blockSize;
 
-                return new EncryptResult(encryptedFeedback, cipherBlock);
+                for (int i = 0; i < length; i++) {
+                    dst[dstOffset + i] ^= src[srcOffset + i];
+                }
             }
         );
 
-        byte[] plaintext = new byte[ciphertext.length];
-
-        for (int i = 0; i < results.size(); i++) {
-            EncryptResult result = results.get(i);
-            byte[] encryptedFeedback = result.encryptedFeedback();
-            byte[] cipherBlock = result.cipherBlock();
-
-            for (int j = 0; j < cipherBlock.length; j++) {
-                plaintext[i * blockSize + j] = (byte) (encryptedFeedback[j] ^ cipherBlock[j]);
-            }
-
-            prevBlock = cipherBlock;
+        if (blockCount > 0) {
+            System.arraycopy(src, srcOff + (blockCount - 1) * blockSize, prevBlock, 0, blockSize);
         }
-
-        return plaintext;
-    }
-
-    private record EncryptResult(byte[] encryptedFeedback, byte[] cipherBlock) {
     }
 }
@@ -3,6 +3,8 @@ package dora.crypto.block.mode;
 import dora.crypto.block.BlockCipher;
 import org.jetbrains.annotations.NotNull;
 
+import java.nio.ByteBuffer;
+
 /**
  * Cipher mode wraps a {@link BlockCipher} and operates on padded data to
  * provide encryption and decryption.
@@ -29,13 +31,53 @@ public interface CipherMode {
      */
     void init(byte @NotNull [] key, Parameters parameters);
 
+    /**
+     * Initializes the cipher mode with new parameters, keeping the key the cipher was
+     * last initialized with. Several modes can thus share one initialized cipher.
+     */
+    void init(Parameters parameters);
+
     /**
      * Encrypts padded data with the provided key.
      */
     byte[] encrypt(byte @NotNull [] plaintext) throws InterruptedException;
 
+    /**
+     * Encrypts <code>length</code> bytes of padded data from <code>src[srcOff]</code>
+     * into <code>dst[dstOff]</code>. The source and destination regions must not overlap.
+     */
+    void encrypt(
+        byte @NotNull [] src, int srcOff, int length,
+        byte @NotNull [] dst, int dstOff
+    ) throws InterruptedException;
+
+    /**
+     * Encrypts the remaining padded data of the source buffer into the destination
+     * buffer, advancing both positions. Heap and direct buffers are both accepted, and
+     * the buffers must not share content.
+     *
+     * @throws java.nio.BufferOverflowException if the destination has less room than the
+     *                                          source has data
+     */
+    void encrypt(@NotNull ByteBuffer src, @NotNull ByteBuffer dst) throws InterruptedException;
+
     /**
      * Decrypts padded data with the provided key.
      */
     byte[] decrypt(byte @NotNull [] ciphertext) throws InterruptedException;
+
+    /**
+     * Decrypts <code>length</code> bytes of padded data from <code>src[srcOff]</code>
+     * into <code>dst[dstOff]</code>. The source and destination regions must not overlap.
+     */
+    void decrypt(
+        byte @NotNull [] src, int srcOff, int length,
+        byte @NotNull [] dst, int dstOff
+    ) throws InterruptedException;
+
+    /**
+     * Decrypts the remaining padded data of the source buffer into the destination
+     * buffer, advancing both positions, see {@link #encrypt(ByteBuffer, ByteBuffer)}.
+     */
+    void decrypt(@NotNull ByteBuffer src, @NotNull ByteBuffer dst) throws InterruptedException;
 }
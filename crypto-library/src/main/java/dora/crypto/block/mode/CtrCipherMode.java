@@ -1,26 +1,63 @@
 package dora.crypto.block.mode;
 
 import dora.crypto.block.BlockCipher;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.concurrent.ForkJoinPool;
 
-public final class CtrCipherMode extends AbstractCipherMode {
+import static java.util.Objects.requireNonNull;
 
-    private final ForkJoinPool pool;
+/**
+ * Counter mode. Counter blocks consist of the nonce, zero bytes and a big-endian
+ * counter occupying the last {@link CtrParameters#counterSize()} bytes of the block.
+ * Blocks shorter than eight bytes keep the nonce too, so 4-byte blocks have a 2-byte
+ * counter. Earlier versions wrote a 4-byte counter over the whole of such blocks, and
+ * data they encrypted with these ciphers cannot be decrypted with this mode.
+ * <p>
+ * The keystream position can be moved with {@link #seek(long)}, and
+ * {@link #process(byte[], long)} processes data at any block position without
+ * touching the mode's state, so separate parts of a message can be handled
+ * independently and concurrently.
+ */
+public final class CtrCipherMode extends AbstractCipherMode implements KeystreamCipherMode {
+
+    /** Eight-byte view of buffers, XORing the keystream a word at a time. */
+    private static final VarHandle LONGS =
+        MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final ParallelBlockProcessor processor;
+
+    /**
+     * Per-thread counter block staged for buffers. Blocks may be processed concurrently,
+     * so it cannot be shared.
+     */
+    private final ThreadLocal<byte[]> counterBlocks;
 
     private byte[] nonce;
-    private int counter;
+    private long counter;
+    private int counterSize;
+
+    /** Index of the next block processed by encrypt and decrypt. */
+    private long position;
 
     public CtrCipherMode(BlockCipher cipher, ForkJoinPool pool) {
         super(cipher);
-        this.pool = pool;
+        this.processor = new ParallelBlockProcessor(cipher, pool);
+        this.counterBlocks = ThreadLocal.withInitial(() -> new byte[blockSize]);
     }
 
     @Override
     protected void initMode(Parameters parameters) {
         if (!(parameters instanceof CtrParameters(
             byte[] nonceParam,
-            int counterParam
+            long counterParam,
+            int counterSizeParam
         ))) {
             throw new IllegalArgumentException("expected CtrParameters");
         }
@@ -33,57 +70,269 @@ public final class CtrCipherMode extends AbstractCipherMode {
             throw new IllegalArgumentException("counter must be positive");
         }
 
+        int maxCounterSize = blockSize - nonceSize();
+        int size = counterSizeParam == CtrParameters.FULL_COUNTER
+            ? maxCounterSize
+            : counterSizeParam;
+
+        if (size < 1 || size > maxCounterSize) {
+            throw new IllegalArgumentException(
+                "expected counter size between 1 and %d bytes".formatted(maxCounterSize));
+        }
+        if (size < Long.BYTES && counterParam >>> (Byte.SIZE * size) != 0) {
+            throw new IllegalArgumentException(
+                "counter does not fit into %d bytes".formatted(size));
+        }
+
         nonce = nonceParam.clone();
         counter = counterParam;
+        counterSize = size;
+        position = 0;
     }
 
     public int nonceSize() {
         return blockSize / 2;
     }
 
+    /**
+     * Moves the keystream to the given block, counted from the initial counter. The next
+     * call to {@link #encrypt} or {@link #decrypt} starts there.
+     */
+    public void seek(long blockIndex) {
+        checkInitialized();
+
+        if (blockIndex < 0)
+            throw new IllegalArgumentException("Block index must not be negative");
+
+        position = blockIndex;
+    }
+
+    /**
+     * Encrypts or decrypts data that starts at block <code>startBlock</code> of the
+     * keystream, counted from the initial counter. Unlike {@link #encrypt}, the data
+     * does not have to be a multiple of the block size, and the mode's position is
+     * neither used nor changed.
+     */
+    public byte[] process(byte @NotNull [] data, long startBlock) throws InterruptedException {
+        requireNonNull(data, "data");
+        checkInitialized();
+
+        if (startBlock < 0)
+            throw new IllegalArgumentException("Block index must not be negative");
+
+        int fullBlocks = data.length / blockSize;
+        int tail = data.length % blockSize;
+
+        checkCounterRange(startBlock, fullBlocks + (tail > 0 ? 1 : 0));
+
+        byte[] result = new byte[data.length];
+        processBlocks(data, 0, result, 0, fullBlocks, startBlock);
+
+        if (tail > 0) {
+            int offset = fullBlocks * blockSize;
+            byte[] keystream = new byte[blockSize];
+
+            setCounterBlock(keystream, 0, startBlock + fullBlocks);
+            cipher.encryptBlock(keystream, 0, keystream, 0);
+
+            for (int i = 0; i < tail; i++) {
+                result[offset + i] = (byte) (data[offset + i] ^ keystream[i]);
+            }
+        }
+
+        return result;
+    }
+
     @Override
-    protected byte[] encryptBlocks(byte[] plaintext) throws InterruptedException {
-        return processBlocks(plaintext);
+    protected void encryptBlocks(
+        byte[] src, int srcOff,
+        byte[] dst, int dstOff,
+        int blockCount
+    ) throws InterruptedException {
+        processBlocks(src, srcOff, dst, dstOff, blockCount);
     }
 
     @Override
-    protected byte[] decryptBlocks(byte[] ciphertext) throws InterruptedException {
-        return processBlocks(ciphertext);
+    protected void decryptBlocks(
+        byte[] src, int srcOff,
+        byte[] dst, int dstOff,
+        int blockCount
+    ) throws InterruptedException {
+        processBlocks(src, srcOff, dst, dstOff, blockCount);
     }
 
-    private byte[] processBlocks(byte[] data) throws InterruptedException {
-        byte[] result = new byte[data.length];
+    @Override
+    protected void encryptBlocks(
+        ByteBuffer src, int srcIndex,
+        ByteBuffer dst, int dstIndex,
+        int blockCount
+    ) throws InterruptedException {
+        processBlocks(src, srcIndex, dst, dstIndex, blockCount);
+    }
+
+    @Override
+    protected void decryptBlocks(
+        ByteBuffer src, int srcIndex,
+        ByteBuffer dst, int dstIndex,
+        int blockCount
+    ) throws InterruptedException {
+        processBlocks(src, srcIndex, dst, dstIndex, blockCount);
+    }
+
+    @Override
+    public void keystream(byte @NotNull [] dst, int dstOff, int blockCount)
+    throws InterruptedException {
+        checkBlocks(dst, dstOff, blockCount);
+        checkInitialized();
 
-        ParallelBlockProcessor.processBlocks(
-            data, blockSize, pool, (idx, start, end) -> {
-                byte[] counterBlock = createCounterBlock(counter + idx);
-                byte[] encryptedCounter = cipher.encrypt(counterBlock);
+        processBlocks(null, 0, dst, dstOff, blockCount);
+    }
+
+    private void processBlocks(
+        byte @Nullable [] src, int srcOff,
+        byte[] dst, int dstOff,
+        int blockCount
+    ) throws InterruptedException {
+        checkCounterRange(position, blockCount);
+        processBlocks(src, srcOff, dst, dstOff, blockCount, position);
+        position += blockCount;
+    }
 
-                for (int j = start; j < end; j++) {
-                    result[j] = (byte) (data[j] ^ encryptedCounter[j - start]);
+    /**
+     * Encrypts the counter blocks of <code>blockCount</code> blocks starting at
+     * <code>startBlock</code> into the destination and XORs them with the source, or
+     * leaves the bare keystream there if the source is <code>null</code>.
+     */
+    private void processBlocks(
+        byte @Nullable [] src, int srcOff,
+        byte[] dst, int dstOff,
+        int blockCount,
+        long startBlock
+    ) throws InterruptedException {
+        processor.processBlocks(
+            srcOff, dstOff, blockCount, (srcOffset, dstOffset, count) -> {
+                long firstBlock = startBlock + (dstOffset - dstOff) / blockSize;
+
+                // Lay out the counter blocks in the output and encrypt them in one batch.
+                for (int i = 0; i < count; i++) {
+                    setCounterBlock(dst, dstOffset + i * blockSize, firstBlock + i);
                 }
 
-                return null;
+                cipher.encryptBlocks(dst, dstOffset, dst, dstOffset, count);
+
+                if (src == null) {
+                    return;
+                }
+
+                int length = count * blockSize;
+
+                for (int i = 0; i < length; i++) {
+                    dst[dstOffset + i] ^= src[srcOffset + i];
+                }
             }
         );
+    }
 
-        counter += result.length / blockSize;
-        return result;
+    /**
+     * Buffer variant of {@link #processBlocks(byte[], int, byte[], int, int)}, producing
+     * the keystream in the destination buffer itself.
+     */
+    private void processBlocks(
+        ByteBuffer src, int srcIndex,
+        ByteBuffer dst, int dstIndex,
+        int blockCount
+    ) throws InterruptedException {
+        checkCounterRange(position, blockCount);
+
+        long startBlock = position;
+
+        processor.processBlocks(
+            srcIndex, dstIndex, blockCount, (srcOffset, dstOffset, count) -> {
+                long firstBlock = startBlock + (dstOffset - dstIndex) / blockSize;
+                byte[] counterBlock = counterBlocks.get();
+
+                for (int i = 0; i < count; i++) {
+                    setCounterBlock(counterBlock, 0, firstBlock + i);
+                    dst.put(dstOffset + i * blockSize, counterBlock);
+                }
+
+                cipher.encryptBlocks(dst, dstOffset, dst, dstOffset, count);
+
+                int length = count * blockSize;
+                int i = 0;
+
+                for (; i + Long.BYTES <= length; i += Long.BYTES) {
+                    long keystream = (long) LONGS.get(dst, dstOffset + i);
+                    LONGS.set(dst, dstOffset + i, keystream ^ (long) LONGS.get(src, srcOffset + i));
+                }
+
+                for (; i < length; i++) {
+                    dst.put(dstOffset + i, (byte) (dst.get(dstOffset + i) ^ src.get(srcOffset + i)));
+                }
+            }
+        );
+
+        position += blockCount;
+    }
+
+    /**
+     * Writes the counter block for the given block index: the nonce, zero bytes and the
+     * big-endian sum of the initial counter and the index.
+     */
+    private void setCounterBlock(byte[] data, int offset, long blockIndex) {
+        int end = offset + blockSize;
+
+        System.arraycopy(nonce, 0, data, offset, nonce.length);
+        Arrays.fill(data, offset + nonce.length, end, (byte) 0);
+
+        // Both operands are non-negative, so the sum fits into 64 unsigned bits and the
+        // counter bytes beyond the eighth stay zero.
+        long value = counter + blockIndex;
+
+        for (int i = 1; i <= Math.min(Long.BYTES, counterSize); i++) {
+            data[end - i] = (byte) value;
+            value >>>= Byte.SIZE;
+        }
     }
 
-    private byte[] createCounterBlock(int counter) {
-        byte[] block = new byte[blockSize];
+    /**
+     * Checks that the counters of <code>blockCount</code> blocks starting at
+     * <code>startBlock</code> fit into the counter field.
+     */
+    private void checkCounterRange(long startBlock, long blockCount) {
+        if (blockCount == 0) {
+            return;
+        }
 
-        System.arraycopy(nonce, 0, block, 0, nonce.length);
+        long lastBlock = startBlock + (blockCount - 1);
+        long last = counter + lastBlock;
 
-        block[blockSize - 4] = (byte) (counter >>> 24);
-        block[blockSize - 3] = (byte) (counter >>> 16);
-        block[blockSize - 2] = (byte) (counter >>>  8);
-        block[blockSize - 1] = (byte) (counter       );
-        
-        return block;
+        if (lastBlock < 0 || counterSize < Long.BYTES && last >>> (Byte.SIZE * counterSize) != 0)
+            throw new IllegalStateException("Counter overflow");
     }
 
-    public record CtrParameters(byte[] nonce, int counter) implements Parameters {
+    private void checkInitialized() {
+        if (nonce == null)
+            throw new IllegalStateException("Cipher mode is not initialized");
+    }
+
+    /**
+     * @param nonce       nonce filling the first half of each counter block
+     * @param counter     initial counter value
+     * @param counterSize number of trailing bytes holding the counter, or
+     *                    {@link #FULL_COUNTER} for every byte after the nonce
+     */
+    public record CtrParameters(
+        byte[] nonce,
+        long counter,
+        int counterSize
+    ) implements Parameters {
+
+        /** Counter size selecting every byte after the nonce. */
+        public static final int FULL_COUNTER = 0;
+
+        public CtrParameters(byte[] nonce, long counter) {
+            this(nonce, counter, FULL_COUNTER);
+        }
     }
 }
@@ -3,16 +3,16 @@ package dora.crypto.block.mode;
 import dora.crypto.block.BlockCipher;
 import dora.crypto.block.mode.Parameters.NoParameters;
 
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 import java.util.concurrent.ForkJoinPool;
 
 public final class EcbCipherMode extends AbstractCipherMode {
 
-    private final ForkJoinPool pool;
+    private final ParallelBlockProcessor processor;
 
     public EcbCipherMode(BlockCipher cipher, ForkJoinPool pool) {
         super(cipher);
-        this.pool = pool;
+        this.processor = new ParallelBlockProcessor(cipher, pool);
     }
 
     @Override
@@ -23,36 +23,54 @@ public final class EcbCipherMode extends AbstractCipherMode {
     }
 
     @Override
-    protected byte[] encryptBlocks(byte[] plaintext) throws InterruptedException {
-        byte[] ciphertext = new byte[plaintext.length];
-
-        ParallelBlockProcessor.processBlocks(
-            plaintext, blockSize, pool, (idx, start, end) -> {
-                byte[] plainBlock = Arrays.copyOfRange(plaintext, start, end);
-                byte[] cipherBlock = cipher.encrypt(plainBlock);
-                System.arraycopy(cipherBlock, 0, ciphertext, start, end - start);
-
-                return null;
-            }
+    protected void encryptBlocks(
+        byte[] src, int srcOff,
+        byte[] dst, int dstOff,
+        int blockCount
+    ) throws InterruptedException {
+        processor.processBlocks(
+            srcOff, dstOff, blockCount,
+            (srcOffset, dstOffset, count) ->
+                cipher.encryptBlocks(src, srcOffset, dst, dstOffset, count)
         );
-
-        return ciphertext;
     }
 
     @Override
-    protected byte[] decryptBlocks(byte[] ciphertext) throws InterruptedException {
-        byte[] plaintext = new byte[ciphertext.length];
-
-        ParallelBlockProcessor.processBlocks(
-            plaintext, blockSize, pool, (idx, start, end) -> {
-                byte[] cipherBlock = Arrays.copyOfRange(ciphertext, start, end);
-                byte[] plainBlock = cipher.decrypt(cipherBlock);
-                System.arraycopy(plainBlock, 0, plaintext, start, end - start);
+    protected void decryptBlocks(
+        byte[] src, int srcOff,
+        byte[] dst, int dstOff,
+        int blockCount
+    ) throws InterruptedException {
+        processor.processBlocks(
+            srcOff, dstOff, blockCount,
+            (srcOffset, dstOffset, count) ->
+                cipher.decryptBlocks(src, srcOffset, dst, dstOffset, count)
+        );
+    }
 
-                return null;
-            }
+    @Override
+    protected void encryptBlocks(
+        ByteBuffer src, int srcIndex,
+        ByteBuffer dst, int dstIndex,
+        int blockCount
+    ) throws InterruptedException {
+        processor.processBlocks(
+            srcIndex, dstIndex, blockCount,
+            (srcOffset, dstOffset, count) ->
+                cipher.encryptBlocks(src, srcOffset, dst, dstOffset, count)
         );
+    }
 
-        return plaintext;
+    @Override
+    protected void decryptBlocks(
+        ByteBuffer src, int srcIndex,
+        ByteBuffer dst, int dstIndex,
+        int blockCount
+    ) throws InterruptedException {
+        processor.processBlocks(
+            srcIndex, dstIndex, blockCount,
+            (srcOffset, dstOffset, count) ->
+                cipher.decryptBlocks(src, srcOffset, dst, dstOffset, count)
+        );
     }
 }
@@ -0,0 +1,28 @@
+package dora.crypto.block.mode;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Cipher mode that encrypts by XORing data with a keystream that does not depend on
+ * the data, such as OFB or CTR. Encryption and decryption are the same operation.
+ * <p>
+ * Because the keystream is known in advance, it can be generated before the data
+ * arrives, see {@link PrefetchingCipherMode}.
+ */
+public interface KeystreamCipherMode extends CipherMode {
+
+    /**
+     * Writes the next <code>blockCount</code> blocks of the keystream to
+     * <code>dst[dstOff]</code> and advances the mode past them, exactly as encrypting
+     * that many blocks would.
+     */
+    void keystream(byte @NotNull [] dst, int dstOff, int blockCount) throws InterruptedException;
+
+    /**
+     * Returns whether initializing the mode with the same key and parameters always
+     * yields the same keystream.
+     */
+    default boolean reproducibleKeystream() {
+        return true;
+    }
+}
@@ -0,0 +1,241 @@
+package dora.crypto.block.mode;
+
+import dora.crypto.block.BlockCipher;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Encrypts many independent CBC, CFB or PCBC streams at once.
+ * <p>
+ * Encryption in these modes is sequential within a stream, but blocks of different
+ * streams are independent. Streams that share a key are advanced in lockstep: each step
+ * gathers the next block of every stream in a group into one buffer and encrypts them
+ * with a single {@link BlockCipher#encryptBlocks} call, so ciphers with a native batch
+ * implementation interleave the streams. Groups are processed concurrently on the pool.
+ * <p>
+ * The result for each job equals encrypting its data with the corresponding cipher mode
+ * initialized with the job's key and IV.
+ */
+public final class MultiStreamEncryptor {
+
+    /** Streams advanced together by one task. */
+    private static final int STREAMS_PER_TASK = 16;
+
+    private final Supplier<? extends BlockCipher> cipherFactory;
+    private final ForkJoinPool pool;
+    private final int blockSize;
+
+    /**
+     * @param cipherFactory creates an uninitialized cipher for every distinct key
+     */
+    public MultiStreamEncryptor(
+        @NotNull Supplier<? extends BlockCipher> cipherFactory,
+        @NotNull ForkJoinPool pool
+    ) {
+        this.cipherFactory = requireNonNull(cipherFactory, "cipher factory");
+        this.pool = requireNonNull(pool, "pool");
+        this.blockSize = cipherFactory.get().blockSize();
+    }
+
+    public int blockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Encrypts the padded data of every job and returns the ciphertexts in job order.
+     */
+    public List<byte[]> encrypt(
+        @NotNull Mode mode,
+        @NotNull List<Job> jobs
+    ) throws InterruptedException {
+        requireNonNull(mode, "mode");
+        requireNonNull(jobs, "jobs");
+
+        // Jobs that share a key share an initialized cipher.
+        Map<ByteBuffer, List<Integer>> jobsByKey = new LinkedHashMap<>();
+
+        for (int i = 0; i < jobs.size(); i++) {
+            Job job = requireNonNull(jobs.get(i), "job");
+            checkJob(job);
+
+            jobsByKey.computeIfAbsent(ByteBuffer.wrap(job.key()), k -> new ArrayList<>()).add(i);
+        }
+
+        byte[][] results = new byte[jobs.size()][];
+        List<LockstepTask> tasks = new ArrayList<>();
+
+        for (List<Integer> indices : jobsByKey.values()) {
+            BlockCipher cipher = cipherFactory.get();
+            cipher.init(jobs.get(indices.get(0)).key());
+
+            // Longest streams first, so that the streams still running in a task are
+            // always a prefix of it, and streams of similar length share a task.
+            indices.sort(Comparator.comparingInt(
+                (Integer i) -> jobs.get(i).data().length).reversed());
+
+            for (int from = 0; from < indices.size(); from += STREAMS_PER_TASK) {
+                List<Integer> taskIndices = indices.subList(
+                    from, Math.min(indices.size(), from + STREAMS_PER_TASK));
+
+                tasks.add(new LockstepTask(mode, cipher, jobs, taskIndices, results));
+            }
+        }
+
+        if (tasks.size() == 1 || pool.getParallelism() <= 1) {
+            for (LockstepTask task : tasks) {
+                task.compute();
+            }
+        } else {
+            ParallelBlockProcessor.invoke(pool, new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    ForkJoinTask.invokeAll(tasks);
+                }
+            });
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private void checkJob(Job job) {
+        requireNonNull(job.key(), "key");
+        requireNonNull(job.iv(), "iv");
+        requireNonNull(job.data(), "data");
+
+        if (job.iv().length != blockSize) {
+            throw new IllegalArgumentException(
+                "expected %d-byte IV".formatted(blockSize));
+        }
+
+        if (job.data().length % blockSize != 0)
+            throw new IllegalArgumentException("Plaintext not multiple of block size");
+    }
+
+    /**
+     * Chaining modes supported by {@link MultiStreamEncryptor}.
+     */
+    public enum Mode {
+        CBC,
+        CFB,
+        PCBC
+    }
+
+    /**
+     * One stream to encrypt: padded data with its own key and IV.
+     */
+    public record Job(byte[] key, byte[] iv, byte[] data) {
+    }
+
+    @SuppressWarnings("serial")
+    private final class LockstepTask extends RecursiveAction {
+
+        private final Mode mode;
+        private final BlockCipher cipher;
+        private final byte[][] inputs;
+        private final byte[][] outputs;
+        private final int[] blockCounts;
+
+        /** Chaining value of every stream, one block per stream. */
+        private final byte[] feedback;
+        /** Blocks passed to the cipher in the current step. */
+        private final byte[] lanes;
+
+        LockstepTask(
+            Mode mode,
+            BlockCipher cipher,
+            List<Job> jobs,
+            List<Integer> indices,
+            byte[][] results
+        ) {
+            int streams = indices.size();
+
+            this.mode = mode;
+            this.cipher = cipher;
+            this.inputs = new byte[streams][];
+            this.outputs = new byte[streams][];
+            this.blockCounts = new int[streams];
+            this.feedback = new byte[streams * blockSize];
+            this.lanes = new byte[streams * blockSize];
+
+            for (int k = 0; k < streams; k++) {
+                Job job = jobs.get(indices.get(k));
+
+                inputs[k] = job.data();
+                outputs[k] = results[indices.get(k)] = new byte[job.data().length];
+                blockCounts[k] = job.data().length / blockSize;
+                System.arraycopy(job.iv(), 0, feedback, k * blockSize, blockSize);
+            }
+        }
+
+        @Override
+        protected void compute() {
+            int active = inputs.length;
+
+            for (int step = 0; ; step++) {
+                while (active > 0 && blockCounts[active - 1] <= step) {
+                    active--;
+                }
+
+                if (active == 0) {
+                    return;
+                }
+
+                int offset = step * blockSize;
+
+                if (mode == Mode.CFB) {
+                    cipher.encryptBlocks(feedback, 0, lanes, 0, active);
+                } else {
+                    for (int k = 0; k < active; k++) {
+                        byte[] input = inputs[k];
+                        int lane = k * blockSize;
+
+                        for (int j = 0; j < blockSize; j++) {
+                            lanes[lane + j] = (byte) (input[offset + j] ^ feedback[lane + j]);
+                        }
+                    }
+
+                    cipher.encryptBlocks(lanes, 0, lanes, 0, active);
+                }
+
+                for (int k = 0; k < active; k++) {
+                    chain(inputs[k], outputs[k], offset, k * blockSize);
+                }
+            }
+        }
+
+        /**
+         * Writes the ciphertext block of a stream from its encrypted lane and updates the
+         * stream's chaining value.
+         */
+        private void chain(byte[] input, byte[] output, int offset, int lane) {
+            switch (mode) {
+                case CBC -> {
+                    System.arraycopy(lanes, lane, output, offset, blockSize);
+                    System.arraycopy(lanes, lane, feedback, lane, blockSize);
+                }
+                case CFB -> {
+                    for (int j = 0; j < blockSize; j++) {
+                        output[offset + j] = (byte) (lanes[lane + j] ^ input[offset + j]);
+                    }
+
+                    System.arraycopy(output, offset, feedback, lane, blockSize);
+                }
+                case PCBC -> {
+                    System.arraycopy(lanes, lane, output, offset, blockSize);
+
+                    for (int j = 0; j < blockSize; j++) {
+                        feedback[lane + j] = (byte) (input[offset + j] ^ lanes[lane + j]);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -2,8 +2,9 @@ package dora.crypto.block.mode;
 
 import dora.crypto.block.BlockCipher;
 import dora.crypto.block.mode.Parameters.IvParameters;
+import org.jetbrains.annotations.NotNull;
 
-public final class OfbCipherMode extends AbstractCipherMode {
+public final class OfbCipherMode extends AbstractCipherMode implements KeystreamCipherMode {
 
     private byte[] prevBlock;
 
@@ -26,28 +27,48 @@ public final class OfbCipherMode extends AbstractCipherMode {
     }
 
     @Override
-    protected byte[] encryptBlocks(byte[] plaintext) {
-        return processBlocks(plaintext);
+    protected void encryptBlocks(
+        byte[] src, int srcOff,
+        byte[] dst, int dstOff,
+        int blockCount
+    ) {
+        processBlocks(src, srcOff, dst, dstOff, blockCount);
     }
 
     @Override
-    protected byte[] decryptBlocks(byte[] ciphertext) {
-        return processBlocks(ciphertext);
+    protected void decryptBlocks(
+        byte[] src, int srcOff,
+        byte[] dst, int dstOff,
+        int blockCount
+    ) {
+        processBlocks(src, srcOff, dst, dstOff, blockCount);
     }
 
-    private byte[] processBlocks(byte[] data) {
-        byte[] result = new byte[data.length];
+    @Override
+    public void keystream(byte @NotNull [] dst, int dstOff, int blockCount) {
+        checkBlocks(dst, dstOff, blockCount);
+        checkInitialized();
+
+        for (int i = 0; i < blockCount; i++, dstOff += blockSize) {
+            cipher.encryptBlock(prevBlock, 0, prevBlock, 0);
+            System.arraycopy(prevBlock, 0, dst, dstOff, blockSize);
+        }
+    }
 
-        for (int i = 0; i < data.length; i += blockSize) {
-            byte[] encrypted = cipher.encrypt(prevBlock);
+    private void processBlocks(byte[] src, int srcOff, byte[] dst, int dstOff, int blockCount) {
+        checkInitialized();
+
+        for (int i = 0; i < blockCount; i++, srcOff += blockSize, dstOff += blockSize) {
+            cipher.encryptBlock(prevBlock, 0, prevBlock, 0);
 
             for (int j = 0; j < blockSize; j++) {
-                result[i + j] = (byte) (encrypted[j] ^ data[i + j]);
+                dst[dstOff + j] = (byte) (prevBlock[j] ^ src[srcOff + j]);
             }
-
-            prevBlock = encrypted;
         }
+    }
 
-        return result;
+    private void checkInitialized() {
+        if (prevBlock == null)
+            throw new IllegalStateException("Cipher mode is not initialized");
     }
 }
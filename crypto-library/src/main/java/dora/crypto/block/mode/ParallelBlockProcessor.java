@@ -1,81 +1,359 @@
 package dora.crypto.block.mode;
 
-import java.util.*;
-import java.util.concurrent.*;
-import java.util.stream.IntStream;
+import dora.crypto.block.BlockCipher;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Splits a run of blocks into ranges and processes them on a fork/join pool.
+ * <p>
+ * Workers receive slices of the caller's arrays as (source offset, destination offset,
+ * block count) and write their results directly into the destination, so nothing is
+ * collected or copied after the fork/join completes.
+ * <p>
+ * Task sizes follow from the cost of one block, the input size and the pool's
+ * parallelism. The cost is a {@link CostEstimate} shared by all processors of the same
+ * cipher class and block size. It is seeded by a short calibration on a background
+ * thread when the cipher is first used, and refreshed from the timings of real runs once
+ * the code is warm; until then a fixed task size is used. Inputs whose estimated cost is below the
+ * sequential threshold (250 µs by default, see {@link #SEQUENTIAL_THRESHOLD_PROPERTY})
+ * are processed on the calling thread. Decisions are recorded in
+ * {@link ParallelProcessingMetrics#global()}.
+ */
 final class ParallelBlockProcessor {
 
-    private static final int BLOCKS_PER_TASK = 4096;
+    /** System property overriding the sequential threshold, in nanoseconds. */
+    static final String SEQUENTIAL_THRESHOLD_PROPERTY = "dora.crypto.sequentialThresholdNanos";
+
+    private static final long SEQUENTIAL_THRESHOLD_NANOS =
+        Long.getLong(SEQUENTIAL_THRESHOLD_PROPERTY, 250_000);
+
+    /** Work per leaf task, large enough to amortize forking. */
+    private static final long TARGET_TASK_NANOS = 100_000;
+    /** Upper bound on tasks per worker, so that huge inputs are not oversplit. */
+    private static final int TASKS_PER_WORKER = 8;
+    private static final int MIN_BLOCKS_PER_TASK = 16;
+    /** Used while the cost of a block is unknown. */
+    private static final int DEFAULT_BLOCKS_PER_TASK = 4096;
 
-    private ParallelBlockProcessor() {
-        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    private final BlockCipher cipher;
+    private final ForkJoinPool pool;
+    private final long sequentialThresholdNanos;
+    private final ParallelProcessingMetrics metrics;
+    private final CostEstimate estimate;
+
+    ParallelBlockProcessor(BlockCipher cipher, ForkJoinPool pool) {
+        this(
+            cipher, pool, SEQUENTIAL_THRESHOLD_NANOS,
+            ParallelProcessingMetrics.global(), CostEstimate.of(cipher)
+        );
     }
 
-    public static <T> List<T> processBlocks(
-        byte[] data,
-        int blockSize,
+    ParallelBlockProcessor(
+        BlockCipher cipher,
         ForkJoinPool pool,
-        BlockSliceFunction<T> function
+        long sequentialThresholdNanos,
+        ParallelProcessingMetrics metrics,
+        CostEstimate estimate
+    ) {
+        this.cipher = cipher;
+        this.pool = pool;
+        this.sequentialThresholdNanos = sequentialThresholdNanos;
+        this.metrics = metrics;
+        this.estimate = estimate;
+    }
+
+    /**
+     * Returns the estimated cost of a block in nanoseconds, or zero while it is unknown.
+     */
+    long nanosPerBlock() {
+        return estimate.nanosPerBlock();
+    }
+
+    /**
+     * Returns the number of blocks a leaf task processes for the given input size, or
+     * <code>blockCount</code> if the input should be processed sequentially.
+     */
+    int blocksPerTask(int blockCount) {
+        long cost = estimate.nanosPerBlock();
+        int parallelism = pool.getParallelism();
+
+        if (cost == 0) {
+            return blockCount <= DEFAULT_BLOCKS_PER_TASK ? blockCount : DEFAULT_BLOCKS_PER_TASK;
+        }
+        if (parallelism <= 1 || blockCount * cost < sequentialThresholdNanos) {
+            return blockCount;
+        }
+
+        long byCost = Math.max(MIN_BLOCKS_PER_TASK, TARGET_TASK_NANOS / cost);
+        long byParallelism = Math.ceilDiv(blockCount, (long) parallelism * TASKS_PER_WORKER);
+
+        return (int) Math.min(blockCount, Math.max(byCost, byParallelism));
+    }
+
+    /**
+     * Processes <code>blockCount</code> blocks starting at <code>srcOffset</code> in the
+     * source and <code>dstOffset</code> in the destination.
+     */
+    public void processBlocks(
+        int srcOffset,
+        int dstOffset,
+        int blockCount,
+        BlockRangeFunction function
     ) throws InterruptedException {
-        int blocks = data.length / blockSize;
-        int tasks = Math.ceilDiv(blocks, BLOCKS_PER_TASK);
-
-        if (tasks == 1) {
-            return function.apply(0, blocks);
-        } else {
-            Future<List<T>> task = pool.submit(() ->
-                IntStream.range(0, tasks)
-                    .parallel()
-                    .mapToObj((taskIdx) -> {
-                        int startBlock = taskIdx * BLOCKS_PER_TASK;
-                        int endBlock = Math.min(startBlock + BLOCKS_PER_TASK, blocks);
-                        return function.apply(startBlock, endBlock);
-                    })
-                    .flatMap(Collection::stream)
-                    .toList()
-            );
+        if (blockCount == 0) {
+            return;
+        }
 
-            try {
-                return task.get();
-            } catch (ExecutionException e) {
-                throw new RuntimeException(e);
+        // The cipher is initialized by now, so it can be measured.
+        if (estimate.nanosPerBlock() == 0) {
+            estimate.calibrateInBackground(cipher);
+        }
+
+        int blocksPerTask = blocksPerTask(blockCount);
+
+        if (blocksPerTask >= blockCount) {
+            metrics.recordSequential(blockCount);
+            applyTimed(function, estimate, srcOffset, dstOffset, blockCount);
+            return;
+        }
+
+        metrics.recordParallel(blockCount, Math.ceilDiv(blockCount, blocksPerTask));
+
+        RangeTask task = new RangeTask(
+            function, estimate, cipher.blockSize(), blocksPerTask,
+            srcOffset, dstOffset, blockCount
+        );
+
+        invoke(pool, task);
+    }
+
+    /**
+     * Runs the task on the pool and waits for it. Runtime exceptions and errors thrown
+     * by the task are rethrown as they are.
+     */
+    static void invoke(ForkJoinPool pool, ForkJoinTask<?> task) throws InterruptedException {
+        try {
+            pool.submit(task).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
             }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+
+            throw new RuntimeException(cause);
         }
     }
 
+    /**
+     * Applies the function and records how long it took per block.
+     */
+    private static void applyTimed(
+        BlockRangeFunction function,
+        CostEstimate estimate,
+        int srcOffset,
+        int dstOffset,
+        int blockCount
+    ) {
+        long start = System.nanoTime();
+        function.apply(srcOffset, dstOffset, blockCount);
+        estimate.record(blockCount, System.nanoTime() - start);
+    }
+
     @FunctionalInterface
-    public interface BlockSliceFunction<T> {
+    public interface BlockRangeFunction {
 
-        List<T> apply(int startBlock, int endBlock);
+        void apply(int srcOffset, int dstOffset, int blockCount);
     }
 
-    public static <T> List<T> processBlocks(
-        byte[] data,
-        int blockSize,
-        ForkJoinPool pool,
-        BlockFunction<T> function
-    ) throws InterruptedException {
-        return processBlocks(
-            data,
-            blockSize,
-            pool,
-            (startBlock, endBlock) -> {
-                List<T> results = new ArrayList<>(endBlock - startBlock);
-
-                for (int blockIdx = startBlock; blockIdx < endBlock; blockIdx++) {
-                    int offset = blockIdx * blockSize;
-                    results.add(function.apply(blockIdx, offset, offset + blockSize));
-                }
+    @SuppressWarnings("serial")
+    private static final class RangeTask extends RecursiveAction {
+
+        private final BlockRangeFunction function;
+        private final CostEstimate estimate;
+        private final int blockSize;
+        private final int blocksPerTask;
+        private final int srcOffset;
+        private final int dstOffset;
+        private final int blockCount;
+
+        RangeTask(
+            BlockRangeFunction function,
+            CostEstimate estimate,
+            int blockSize,
+            int blocksPerTask,
+            int srcOffset,
+            int dstOffset,
+            int blockCount
+        ) {
+            this.function = function;
+            this.estimate = estimate;
+            this.blockSize = blockSize;
+            this.blocksPerTask = blocksPerTask;
+            this.srcOffset = srcOffset;
+            this.dstOffset = dstOffset;
+            this.blockCount = blockCount;
+        }
 
-                return results;
+        @Override
+        protected void compute() {
+            if (blockCount <= blocksPerTask) {
+                applyTimed(function, estimate, srcOffset, dstOffset, blockCount);
+                return;
             }
-        );
+
+            // Split on a task boundary so that leaves get whole tasks.
+            int leftCount = Math.ceilDiv(blockCount, blocksPerTask) / 2 * blocksPerTask;
+            int leftBytes = leftCount * blockSize;
+
+            invokeAll(
+                new RangeTask(
+                    function, estimate, blockSize, blocksPerTask,
+                    srcOffset, dstOffset,
+                    leftCount
+                ),
+                new RangeTask(
+                    function, estimate, blockSize, blocksPerTask,
+                    srcOffset + leftBytes, dstOffset + leftBytes,
+                    blockCount - leftCount
+                )
+            );
+        }
     }
 
-    @FunctionalInterface
-    public interface BlockFunction<T> {
+    /**
+     * Running estimate of the cost of one block, shared by all processors of a cipher
+     * class and block size, so that short-lived cipher instances benefit from earlier
+     * runs instead of measuring on their own.
+     * <p>
+     * The estimate is seeded by {@link #calibrate}, which warms the cipher up on a
+     * background thread before measuring it, so callers never pay for it. Timings of
+     * real runs over the first {@link #WARM_UP_BLOCKS} blocks are discarded, since they
+     * mostly measure interpreted code. Later runs of at least {@link #MIN_SAMPLE_BLOCKS}
+     * blocks update an exponential moving average.
+     */
+    static final class CostEstimate {
+
+        private static final ConcurrentMap<Key, CostEstimate> SHARED = new ConcurrentHashMap<>();
+
+        static final long WARM_UP_BLOCKS = 4096;
+        static final int MIN_SAMPLE_BLOCKS = 16;
+
+        /** Blocks per calibration run. */
+        private static final int CALIBRATION_BLOCKS = 256;
+        /** Warm-up of a calibration, ended by whichever bound is reached first. */
+        private static final int CALIBRATION_WARM_UP_BLOCKS = 16_384;
+        private static final long CALIBRATION_WARM_UP_NANOS = 50_000_000;
+        private static final int CALIBRATION_RUNS = 4;
+        /** Weight of a new sample is <code>1 / 2^SMOOTHING_SHIFT</code>. */
+        private static final int SMOOTHING_SHIFT = 3;
+
+        /** Blocks left to process before timings are trusted. */
+        private final AtomicLong warmUpBlocks;
+        /** Average cost of a block, zero while unknown. */
+        private final AtomicLong nanosPerBlock;
+        private final AtomicBoolean calibrating = new AtomicBoolean();
+
+        CostEstimate() {
+            this(WARM_UP_BLOCKS, 0);
+        }
+
+        /**
+         * Creates an estimate starting at the given cost with the given warm-up.
+         */
+        CostEstimate(long warmUpBlocks, long nanosPerBlock) {
+            this.warmUpBlocks = new AtomicLong(warmUpBlocks);
+            this.nanosPerBlock = new AtomicLong(nanosPerBlock);
+        }
+
+        static CostEstimate of(BlockCipher cipher) {
+            return SHARED.computeIfAbsent(
+                new Key(cipher.getClass(), cipher.blockSize()),
+                key -> new CostEstimate()
+            );
+        }
+
+        long nanosPerBlock() {
+            return nanosPerBlock.get();
+        }
+
+        /**
+         * Starts {@link #calibrate} on a background thread unless a calibration is
+         * running already.
+         */
+        void calibrateInBackground(BlockCipher cipher) {
+            if (calibrating.compareAndSet(false, true)) {
+                Thread.ofVirtual().name("cipher-calibration").start(() -> calibrate(cipher));
+            }
+        }
+
+        /**
+         * Warms the initialized cipher up, then seeds the estimate with the fastest of a
+         * few measured runs unless real runs have produced one meanwhile. Failures, such
+         * as a cipher initialized again concurrently, leave the estimate unknown and
+         * allow another attempt.
+         */
+        void calibrate(BlockCipher cipher) {
+            try {
+                byte[] buffer = new byte[CALIBRATION_BLOCKS * cipher.blockSize()];
+                long start = System.nanoTime();
+
+                int warmedUp = 0;
+
+                while (warmedUp < CALIBRATION_WARM_UP_BLOCKS
+                    && System.nanoTime() - start < CALIBRATION_WARM_UP_NANOS) {
+                    cipher.encryptBlocks(buffer, 0, buffer, 0, CALIBRATION_BLOCKS);
+                    warmedUp += CALIBRATION_BLOCKS;
+                }
+
+                long best = Long.MAX_VALUE;
+
+                for (int run = 0; run < CALIBRATION_RUNS; run++) {
+                    long runStart = System.nanoTime();
+                    cipher.encryptBlocks(buffer, 0, buffer, 0, CALIBRATION_BLOCKS);
+                    best = Math.min(best, System.nanoTime() - runStart);
+                }
 
-        T apply(int idx, int start, int end);
+                // The code is warm now, so real runs can be trusted from here on.
+                nanosPerBlock.compareAndSet(0, Math.max(1, best / CALIBRATION_BLOCKS));
+                warmUpBlocks.set(0);
+            } catch (RuntimeException e) {
+                calibrating.set(false);
+            }
+        }
+
+        void record(int blockCount, long elapsedNanos) {
+            if (warmUpBlocks.get() > 0 && warmUpBlocks.addAndGet(-blockCount) >= 0) {
+                return;
+            }
+            if (blockCount < MIN_SAMPLE_BLOCKS) {
+                return;
+            }
+
+            long sample = Math.max(1, elapsedNanos / blockCount);
+            long current;
+            long updated;
+
+            do {
+                current = nanosPerBlock.get();
+                updated = current == 0
+                    ? sample
+                    : Math.max(1, current + ((sample - current) >> SMOOTHING_SHIFT));
+            } while (!nanosPerBlock.compareAndSet(current, updated));
+        }
+
+        private record Key(Class<?> cipherClass, int blockSize) {
+        }
     }
 }
@@ -0,0 +1,88 @@
+package dora.crypto.block.mode;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters describing how cipher modes split their input between the calling thread
+ * and the fork/join pool. Counters only grow until {@link #reset()} is called.
+ */
+public final class ParallelProcessingMetrics {
+
+    private static final ParallelProcessingMetrics GLOBAL = new ParallelProcessingMetrics();
+
+    private final LongAdder sequentialRuns = new LongAdder();
+    private final LongAdder sequentialBlocks = new LongAdder();
+    private final LongAdder parallelRuns = new LongAdder();
+    private final LongAdder parallelBlocks = new LongAdder();
+    private final LongAdder parallelTasks = new LongAdder();
+
+    ParallelProcessingMetrics() {
+    }
+
+    /**
+     * Returns the metrics shared by all cipher modes.
+     */
+    public static ParallelProcessingMetrics global() {
+        return GLOBAL;
+    }
+
+    void recordSequential(int blocks) {
+        sequentialRuns.increment();
+        sequentialBlocks.add(blocks);
+    }
+
+    void recordParallel(int blocks, int tasks) {
+        parallelRuns.increment();
+        parallelBlocks.add(blocks);
+        parallelTasks.add(tasks);
+    }
+
+    /**
+     * Returns the number of inputs processed on the calling thread.
+     */
+    public long sequentialRuns() {
+        return sequentialRuns.sum();
+    }
+
+    /**
+     * Returns the number of blocks processed on the calling thread.
+     */
+    public long sequentialBlocks() {
+        return sequentialBlocks.sum();
+    }
+
+    /**
+     * Returns the number of inputs split across the pool.
+     */
+    public long parallelRuns() {
+        return parallelRuns.sum();
+    }
+
+    /**
+     * Returns the number of blocks processed by the pool.
+     */
+    public long parallelBlocks() {
+        return parallelBlocks.sum();
+    }
+
+    /**
+     * Returns the number of leaf tasks the parallel inputs were split into.
+     */
+    public long parallelTasks() {
+        return parallelTasks.sum();
+    }
+
+    public void reset() {
+        sequentialRuns.reset();
+        sequentialBlocks.reset();
+        parallelRuns.reset();
+        parallelBlocks.reset();
+        parallelTasks.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "ParallelProcessingMetrics[sequentialRuns=%d, sequentialBlocks=%d, parallelRuns=%d, parallelBlocks=%d, parallelTasks=%d]"
+            .formatted(sequentialRuns(), sequentialBlocks(), parallelRuns(), parallelBlocks(), parallelTasks());
+    }
+}
@@ -3,20 +3,18 @@ package dora.crypto.block.mode;
 import dora.crypto.block.BlockCipher;
 import dora.crypto.block.mode.Parameters.IvParameters;
 
-import java.util.Arrays;
-import java.util.List;
 import java.util.concurrent.ForkJoinPool;
 
 public final class PcbcCipherMode extends AbstractCipherMode {
 
-    private final ForkJoinPool pool;
+    private final ParallelBlockProcessor processor;
 
     private byte[] prevBlock;
 
     public PcbcCipherMode(BlockCipher cipher, ForkJoinPool pool) {
         super(cipher);
 
-        this.pool = pool;
+        this.processor = new ParallelBlockProcessor(cipher, pool);
     }
 
     @Override
@@ -34,57 +32,42 @@ public final class PcbcCipherMode extends AbstractCipherMode {
     }
 
     @Override
-    protected byte[] encryptBlocks(byte[] plaintext) {
-        byte[] ciphertext = new byte[plaintext.length];
-
-        for (int i = 0; i < plaintext.length; i += blockSize) {
-            byte[] plainBlock = Arrays.copyOfRange(plaintext, i, i + blockSize);
-            byte[] cipherBlock = cipher.encrypt(xor(plainBlock, prevBlock));
+    protected void encryptBlocks(
+        byte[] src, int srcOff,
+        byte[] dst, int dstOff,
+        int blockCount
+    ) {
+        for (int i = 0; i < blockCount; i++, srcOff += blockSize, dstOff += blockSize) {
+            for (int j = 0; j < blockSize; j++) {
+                dst[dstOff + j] = (byte) (src[srcOff + j] ^ prevBlock[j]);
+            }
 
-            System.arraycopy(cipherBlock, 0, ciphertext, i, blockSize);
+            cipher.encryptBlock(dst, dstOff, dst, dstOff);
 
-            prevBlock = xor(plainBlock, cipherBlock);
+            for (int j = 0; j < blockSize; j++) {
+                prevBlock[j] = (byte) (src[srcOff + j] ^ dst[dstOff + j]);
+            }
         }
-
-        return ciphertext;
     }
 
     @Override
-    protected byte[] decryptBlocks(byte[] ciphertext) throws InterruptedException {
-        byte[] plaintext = new byte[ciphertext.length];
-
-        List<DecryptResult> results = ParallelBlockProcessor.processBlocks(
-            ciphertext, blockSize, pool, (idx, start, end) -> {
-                byte[] cipherBlock = Arrays.copyOfRange(ciphertext, start, end);
-                byte[] decryptedBlock = cipher.decrypt(cipherBlock);
-                return new DecryptResult(cipherBlock, decryptedBlock);
-            }
+    protected void decryptBlocks(
+        byte[] src, int srcOff,
+        byte[] dst, int dstOff,
+        int blockCount
+    ) throws InterruptedException {
+        processor.processBlocks(
+            srcOff, dstOff, blockCount,
+            (srcOffset, dstOffset, count) ->
+                cipher.decryptBlocks(src, srcOffset, dst, dstOffset, count)
         );
 
-        for (int i = 0; i < results.size(); i++) {
-            DecryptResult result = results.get(i);
-            byte[] cipherBlock = result.cipherBlock();
-            byte[] decryptedBlock = result.decryptedBlock();
-
-            byte[] plainBlock = xor(decryptedBlock, prevBlock);
-            System.arraycopy(plainBlock, 0, plaintext, i * blockSize, blockSize);
-
-            prevBlock = xor(cipherBlock, plainBlock);
-        }
-
-        return plaintext;
-    }
-
-    private static byte[] xor(byte[] a, byte[] b) {
-        byte[] result = new byte[a.length];
-
-        for (int i = 0; i < a.length; i++) {
-            result[i] = (byte) (a[i] ^ b[i]);
+        // Each block depends on the previous plaintext, so chaining is sequential.
+        for (int i = 0; i < blockCount; i++, srcOff += blockSize, dstOff += blockSize) {
+            for (int j = 0; j < blockSize; j++) {
+                dst[dstOff + j] ^= prevBlock[j];
+                prevBlock[j] = (byte) (src[srcOff + j] ^ dst[dstOff + j]);
+            }
         }
-
-        return result;
-    }
-
-    private record DecryptResult(byte[] cipherBlock, byte[] decryptedBlock) {
     }
 }
@@ -0,0 +1,352 @@
+package dora.crypto.block.mode;
+
+import dora.crypto.block.BlockCipher;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Decorator that generates the keystream of a {@link KeystreamCipherMode} ahead of time.
+ * <p>
+ * After initialization and after every operation, a background task fills a ring buffer
+ * with up to <code>capacity</code> future keystream blocks, so encrypting a short message
+ * only copies buffered blocks and XORs them with the data. Whatever the buffer lacks is
+ * generated on the calling thread.
+ * <p>
+ * When the mode is initialized again with the same key and the same parameters instance
+ * and its keystream is {@linkplain KeystreamCipherMode#reproducibleKeystream()
+ * reproducible}, the start of the keystream is restored from a copy instead of being
+ * generated again. This keeps repeated calls through {@link dora.crypto.SymmetricCipher},
+ * which initializes the mode before each operation, cheap. Arrays inside the parameters
+ * must not be modified between such calls.
+ */
+public final class PrefetchingCipherMode implements CipherMode {
+
+    /** Blocks generated per step of the background task, bounding how long callers wait. */
+    private static final int REFILL_BLOCKS = 16;
+
+    private final KeystreamCipherMode mode;
+    private final Executor executor;
+    private final int blockSize;
+    private final int capacity;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicBoolean refillScheduled = new AtomicBoolean();
+
+    // The fields below are guarded by the lock.
+
+    private final byte[] ring;
+    private int head;
+    private int buffered;
+
+    /** Copy of the first keystream blocks after initialization. */
+    private final byte[] initialKeystream;
+    private int initialBlocks;
+    /** Keystream blocks the mode has produced since initialization. */
+    private long generated;
+    /** Blocks the mode still has to skip because they were restored from the copy. */
+    private int pendingSkip;
+
+    private byte[] key;
+    private Parameters parameters;
+
+    public PrefetchingCipherMode(
+        @NotNull KeystreamCipherMode mode,
+        int capacity,
+        @NotNull Executor executor
+    ) {
+        this.mode = requireNonNull(mode, "cipher mode");
+        this.executor = requireNonNull(executor, "executor");
+
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be positive");
+
+        this.blockSize = mode.blockSize();
+        this.capacity = capacity;
+        this.ring = new byte[Math.multiplyExact(capacity, blockSize)];
+        this.initialKeystream = new byte[ring.length];
+    }
+
+    @Override
+    public BlockCipher cipher() {
+        return mode.cipher();
+    }
+
+    @Override
+    public void init(byte @NotNull [] key, Parameters parameters) {
+        requireNonNull(key, "key");
+
+        lock.lock();
+
+        try {
+            boolean rewind = parameters == this.parameters
+                && Arrays.equals(key, this.key)
+                && mode.reproducibleKeystream();
+
+            this.key = null;
+            this.parameters = null;
+
+            mode.init(key, parameters);
+
+            this.key = key.clone();
+            this.parameters = parameters;
+
+            reset(rewind);
+        } finally {
+            lock.unlock();
+        }
+
+        scheduleRefill();
+    }
+
+    /**
+     * Initializes the mode without a key. The keystream always starts over, since the
+     * cipher's key is not known.
+     */
+    @Override
+    public void init(Parameters parameters) {
+        lock.lock();
+
+        try {
+            this.key = null;
+            this.parameters = null;
+
+            mode.init(parameters);
+
+            this.parameters = parameters;
+
+            reset(false);
+        } finally {
+            lock.unlock();
+        }
+
+        scheduleRefill();
+    }
+
+    /**
+     * Empties the buffer after initialization, or refills it from the remembered start
+     * of the keystream if <code>rewind</code> is set.
+     */
+    private void reset(boolean rewind) {
+        head = 0;
+
+        if (rewind) {
+            System.arraycopy(initialKeystream, 0, ring, 0, initialBlocks * blockSize);
+            buffered = initialBlocks;
+            pendingSkip = initialBlocks;
+            generated = initialBlocks;
+        } else {
+            buffered = 0;
+            pendingSkip = 0;
+            generated = 0;
+            initialBlocks = 0;
+        }
+    }
+
+    @Override
+    public byte[] encrypt(byte @NotNull [] plaintext) throws InterruptedException {
+        requireNonNull(plaintext, "plaintext");
+
+        if (plaintext.length % blockSize != 0)
+            throw new IllegalArgumentException("Plaintext not multiple of block size");
+
+        byte[] ciphertext = new byte[plaintext.length];
+        process(plaintext, 0, plaintext.length, ciphertext, 0);
+        return ciphertext;
+    }
+
+    @Override
+    public void encrypt(
+        byte @NotNull [] src, int srcOff, int length,
+        byte @NotNull [] dst, int dstOff
+    ) throws InterruptedException {
+        AbstractCipherMode.checkRegions(src, srcOff, length, dst, dstOff);
+
+        if (length % blockSize != 0)
+            throw new IllegalArgumentException("Plaintext not multiple of block size");
+
+        process(src, srcOff, length, dst, dstOff);
+    }
+
+    @Override
+    public void encrypt(
+        @NotNull ByteBuffer src,
+        @NotNull ByteBuffer dst
+    ) throws InterruptedException {
+        processBuffers(src, dst, "Plaintext");
+    }
+
+    @Override
+    public byte[] decrypt(byte @NotNull [] ciphertext) throws InterruptedException {
+        requireNonNull(ciphertext, "ciphertext");
+
+        if (ciphertext.length % blockSize != 0)
+            throw new IllegalArgumentException("Ciphertext not multiple of block size");
+
+        byte[] plaintext = new byte[ciphertext.length];
+        process(ciphertext, 0, ciphertext.length, plaintext, 0);
+        return plaintext;
+    }
+
+    @Override
+    public void decrypt(
+        byte @NotNull [] src, int srcOff, int length,
+        byte @NotNull [] dst, int dstOff
+    ) throws InterruptedException {
+        AbstractCipherMode.checkRegions(src, srcOff, length, dst, dstOff);
+
+        if (length % blockSize != 0)
+            throw new IllegalArgumentException("Ciphertext not multiple of block size");
+
+        process(src, srcOff, length, dst, dstOff);
+    }
+
+    @Override
+    public void decrypt(
+        @NotNull ByteBuffer src,
+        @NotNull ByteBuffer dst
+    ) throws InterruptedException {
+        processBuffers(src, dst, "Ciphertext");
+    }
+
+    private void processBuffers(ByteBuffer src, ByteBuffer dst, String data)
+        throws InterruptedException {
+        int length = AbstractCipherMode.checkBuffers(src, dst, blockSize, data);
+
+        AbstractCipherMode.processBuffers(
+            src, src.position(), dst, dst.position(), length, blockSize, this::process);
+        AbstractCipherMode.advance(src, dst, length);
+    }
+
+    private void process(
+        byte[] src, int srcOff, int length,
+        byte[] dst, int dstOff
+    ) throws InterruptedException {
+        int blockCount = length / blockSize;
+
+        lock.lock();
+
+        try {
+            int taken = take(dst, dstOff, blockCount);
+
+            if (taken < blockCount) {
+                generate(dst, dstOff + taken * blockSize, blockCount - taken);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (int i = 0; i < length; i++) {
+            dst[dstOff + i] ^= src[srcOff + i];
+        }
+
+        scheduleRefill();
+    }
+
+    /**
+     * Moves up to <code>blockCount</code> buffered blocks to the destination and returns
+     * their number.
+     */
+    private int take(byte[] dst, int dstOff, int blockCount) {
+        int taken = Math.min(blockCount, buffered);
+        int beforeWrap = Math.min(taken, capacity - head);
+
+        System.arraycopy(ring, head * blockSize, dst, dstOff, beforeWrap * blockSize);
+        System.arraycopy(
+            ring, 0,
+            dst, dstOff + beforeWrap * blockSize,
+            (taken - beforeWrap) * blockSize
+        );
+
+        head = (head + taken) % capacity;
+        buffered -= taken;
+        return taken;
+    }
+
+    /**
+     * Generates the next keystream blocks with the mode, remembering the first ones for
+     * later rewinds.
+     */
+    private void generate(byte[] dst, int dstOff, int blockCount) throws InterruptedException {
+        // The destination is overwritten below, so skipped blocks are generated into it.
+        while (pendingSkip > 0 && blockCount > 0) {
+            int skipped = Math.min(pendingSkip, blockCount);
+            mode.keystream(dst, dstOff, skipped);
+            pendingSkip -= skipped;
+        }
+
+        mode.keystream(dst, dstOff, blockCount);
+
+        if (generated < capacity && mode.reproducibleKeystream()) {
+            int copied = (int) Math.min(blockCount, capacity - generated);
+
+            System.arraycopy(
+                dst, dstOff,
+                initialKeystream, (int) generated * blockSize,
+                copied * blockSize
+            );
+            initialBlocks = (int) generated + copied;
+        }
+
+        generated += blockCount;
+    }
+
+    private void scheduleRefill() {
+        if (!refillScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            executor.execute(this::refill);
+        } catch (RejectedExecutionException e) {
+            refillScheduled.set(false);
+        }
+    }
+
+    /**
+     * Fills the ring buffer in small steps, so that callers never wait long for the lock.
+     */
+    private void refill() {
+        boolean cleared = false;
+
+        try {
+            while (true) {
+                lock.lock();
+
+                try {
+                    if (parameters == null || buffered == capacity) {
+                        // Cleared under the lock: a caller that drains the buffer after
+                        // this check sees the flag cleared and schedules a new refill.
+                        refillScheduled.set(false);
+                        cleared = true;
+                        return;
+                    }
+
+                    int tail = (head + buffered) % capacity;
+                    int count = Math.min(REFILL_BLOCKS, Math.min(capacity - buffered, capacity - tail));
+
+                    generate(ring, tail * blockSize, count);
+                    buffered += count;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // Prefetching is best effort: the failure, such as a counter overflow past
+            // the data actually processed, resurfaces if a caller needs those blocks.
+        } finally {
+            if (!cleared) {
+                refillScheduled.set(false);
+            }
+        }
+    }
+}
@@ -1,34 +1,37 @@
 package dora.crypto.block.mode;
 
 import dora.crypto.block.BlockCipher;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Arrays;
 import java.util.Random;
 import java.util.concurrent.ForkJoinPool;
-import java.util.stream.IntStream;
 
-public final class RandomDeltaCipherMode extends AbstractCipherMode {
+public final class RandomDeltaCipherMode extends AbstractCipherMode implements KeystreamCipherMode {
 
     private final static int MIN_DELTA = 1;
-    private final static int MAX_DELTA = 100;
 
-    private final ForkJoinPool pool;
+    /** Exclusive upper bound of the counter increment between two blocks. */
+    public final static int MAX_DELTA = 100;
+
+    private final ParallelBlockProcessor processor;
 
     private byte[] nonce;
-    private int counter;
+    private long counter;
     private Random random;
+    private boolean seeded;
 
     public RandomDeltaCipherMode(BlockCipher cipher, ForkJoinPool pool) {
         super(cipher);
-        this.pool = pool;
+        this.processor = new ParallelBlockProcessor(cipher, pool);
     }
 
     @Override
     protected void initMode(Parameters parameters) {
         if (!(parameters instanceof RandomDeltaParameters(
             byte[] nonceParam,
-            int counterParam,
+            long counterParam,
             Long seedParam
         ))) {
             throw new IllegalArgumentException("expected RandomDeltaParameters");
@@ -42,11 +45,19 @@ public final class RandomDeltaCipherMode extends AbstractCipherMode {
             throw new IllegalArgumentException("counter must be positive");
         }
 
+        int counterSize = counterSize(nonceParam.length);
+
+        if (counterSize < Long.BYTES && counterParam >>> (Byte.SIZE * counterSize) != 0) {
+            throw new IllegalArgumentException(
+                "counter does not fit into %d bytes".formatted(counterSize));
+        }
+
         nonce = nonceParam.clone();
         counter = counterParam;
         random = new Random();
+        seeded = seedParam != null;
 
-        if (seedParam != null) {
+        if (seeded) {
             random.setSeed(seedParam);
         }
     }
@@ -55,57 +66,137 @@ public final class RandomDeltaCipherMode extends AbstractCipherMode {
         return blockSize / 2;
     }
 
+    /** Number of counter bytes following a nonce of the given size, up to eight. */
+    private int counterSize(int nonceSize) {
+        return Math.min(Long.BYTES, blockSize - nonceSize);
+    }
+
     @Override
-    protected byte[] encryptBlocks(byte[] plaintext) throws InterruptedException {
-        return processBlocks(plaintext);
+    protected void encryptBlocks(
+        byte[] src, int srcOff,
+        byte[] dst, int dstOff,
+        int blockCount
+    ) throws InterruptedException {
+        processBlocks(src, srcOff, dst, dstOff, blockCount);
     }
 
     @Override
-    protected byte[] decryptBlocks(byte[] ciphertext) throws InterruptedException {
-        return processBlocks(ciphertext);
+    protected void decryptBlocks(
+        byte[] src, int srcOff,
+        byte[] dst, int dstOff,
+        int blockCount
+    ) throws InterruptedException {
+        processBlocks(src, srcOff, dst, dstOff, blockCount);
     }
 
-    private byte[] processBlocks(byte[] data) throws InterruptedException {
-        byte[] result = new byte[data.length];
+    @Override
+    public void keystream(byte @NotNull [] dst, int dstOff, int blockCount)
+    throws InterruptedException {
+        checkBlocks(dst, dstOff, blockCount);
 
-        long[] increments = IntStream.range(0, data.length / blockSize)
-            .mapToLong((i) -> random.nextLong(MIN_DELTA, MAX_DELTA))
-            .toArray();
+        if (nonce == null)
+            throw new IllegalStateException("Cipher mode is not initialized");
+
+        processBlocks(null, 0, dst, dstOff, blockCount);
+    }
+
+    /**
+     * Deltas are drawn from an unseeded generator unless a seed is given, so only seeded
+     * modes repeat their keystream.
+     */
+    @Override
+    public boolean reproducibleKeystream() {
+        return seeded;
+    }
+
+    /**
+     * Encrypts the counter blocks into the destination and XORs them with the source, or
+     * leaves the bare keystream there if the source is <code>null</code>.
+     */
+    private void processBlocks(
+        byte @Nullable [] src, int srcOff,
+        byte[] dst, int dstOff,
+        int blockCount
+    ) throws InterruptedException {
+        if (blockCount == 0) {
+            return;
+        }
 
-        ParallelBlockProcessor.processBlocks(
-            data, blockSize, pool, (idx, start, end) -> {
-                long increment = idx == 0 ? 0 : Arrays.stream(increments).limit(idx).sum();
-                byte[] counterBlock = createCounterBlock((int) (counter + increment));
-                byte[] encryptedCounter = cipher.encrypt(counterBlock);
+        // counters[i] = counter + the deltas of all blocks before i, computed as a
+        // prefix sum. The delta after the last block advances the counter for the
+        // next call.
+        long[] counters = new long[blockCount];
+        counters[0] = counter;
 
-                for (int j = start; j < end; j++) {
-                    result[j] = (byte) (data[j] ^ encryptedCounter[j - start]);
+        for (int i = 1; i < blockCount; i++) {
+            counters[i] = random.nextLong(MIN_DELTA, MAX_DELTA);
+        }
+
+        long lastDelta = random.nextLong(MIN_DELTA, MAX_DELTA);
+        Arrays.parallelPrefix(counters, Long::sum);
+
+        long next = counters[blockCount - 1] + lastDelta;
+        checkCounterRange(next);
+
+        processor.processBlocks(
+            srcOff, dstOff, blockCount, (srcOffset, dstOffset, count) -> {
+                int firstBlock = (dstOffset - dstOff) / blockSize;
+
+                // Lay out the counter blocks in the output and encrypt them in one batch.
+                for (int i = 0; i < count; i++) {
+                    int offset = dstOffset + i * blockSize;
+
+                    System.arraycopy(nonce, 0, dst, offset, nonce.length);
+                    Arrays.fill(dst, offset + nonce.length, offset + blockSize, (byte) 0);
+                    setCounter(dst, offset, counters[firstBlock + i]);
+                }
+
+                cipher.encryptBlocks(dst, dstOffset, dst, dstOffset, count);
+
+                if (src == null) {
+                    return;
                 }
 
-                return null;
+                int length = count * blockSize;
+
+                for (int i = 0; i < length; i++) {
+                    dst[dstOffset + i] ^= src[srcOffset + i];
+                }
             }
         );
 
-        counter += (int) Arrays.stream(increments).sum();
-        return result;
+        counter = next;
     }
 
-    private byte[] createCounterBlock(int counter) {
-        byte[] block = new byte[blockSize];
+    /**
+     * Throws if the counter after the processed blocks no longer fits into the counter
+     * field. Deltas are positive, so a counter that overflowed <code>long</code> on the
+     * way is negative.
+     */
+    private void checkCounterRange(long next) {
+        int counterSize = counterSize(nonce.length);
 
-        System.arraycopy(nonce, 0, block, 0, nonce.length);
-
-        block[blockSize - 4] = (byte) (counter >>> 24);
-        block[blockSize - 3] = (byte) (counter >>> 16);
-        block[blockSize - 2] = (byte) (counter >>>  8);
-        block[blockSize - 1] = (byte) (counter       );
+        if (next < 0 || counterSize < Long.BYTES && next >>> (Byte.SIZE * counterSize) != 0)
+            throw new IllegalStateException("Counter overflow");
+    }
 
-        return block;
+    /**
+     * Writes the counter big-endian at the end of the block, in as many bytes as fit after
+     * the nonce, up to eight.
+     */
+    private void setCounter(byte[] data, int offset, long counter) {
+        int counterSize = counterSize(nonce.length);
+        int end = offset + blockSize;
+
+        for (int i = 1; i <= counterSize; i++) {
+            data[end - i] = (byte) counter;
+            counter >>>= 8;
+        }
     }
 
     public record RandomDeltaParameters(
         byte[] nonce,
-        int counter,
+        long counter,
         @Nullable Long seed
     ) implements Parameters {
     }
@@ -1,10 +1,9 @@
 package dora.crypto.block.rc5;
 
 import dora.crypto.block.BlockCipher;
-import dora.crypto.block.Word;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Arrays;
+import java.util.Objects;
 
 import static java.util.Objects.requireNonNull;
 
@@ -13,7 +12,7 @@ public final class Rc5BlockCipher implements BlockCipher {
     private final Rc5Parameters parameters;
     private final Rc5KeySchedule keySchedule;
 
-    private Word[] roundKeys;
+    private Rc5Engine engine;
 
     public Rc5BlockCipher(@NotNull Rc5Parameters parameters) {
         this.parameters = requireNonNull(parameters, "parameters");
@@ -27,65 +26,84 @@ public final class Rc5BlockCipher implements BlockCipher {
 
     @Override
     public void init(byte @NotNull [] key) {
-        roundKeys = Arrays.stream(keySchedule.roundKeys(key))
-            .map(Word::fromByteArray)
-            .toArray(Word[]::new);
+        engine = Rc5Engine.create(
+            parameters.wordSize(),
+            parameters.rounds(),
+            keySchedule.roundKeys(key)
+        );
     }
 
     @Override
     public byte[] encrypt(byte @NotNull [] plaintext) {
         requireNonNull(plaintext, "plaintext");
 
-        if (roundKeys == null)
-            throw new IllegalStateException("Cipher is not initialized");
         if (plaintext.length != blockSize())
             throw new IllegalArgumentException("Invalid block size");
 
-        Word a = Word.fromByteArray(Arrays.copyOfRange(plaintext, 0, plaintext.length / 2));
-        Word b = Word.fromByteArray(Arrays.copyOfRange(plaintext, plaintext.length / 2, plaintext.length));
-
-        a = a.add(roundKeys[0]);
-        b = b.add(roundKeys[1]);
-
-        for (int i = 1; i <= parameters.rounds(); i++) {
-            a = a.xor(b).rotateLeft(b).add(roundKeys[2 * i]);
-            b = b.xor(a).rotateLeft(a).add(roundKeys[2 * i + 1]);
-        }
-
-        return concatWords(a, b);
+        byte[] ciphertext = new byte[blockSize()];
+        encryptBlock(plaintext, 0, ciphertext, 0);
+        return ciphertext;
     }
 
     @Override
     public byte[] decrypt(byte @NotNull [] ciphertext) {
         requireNonNull(ciphertext, "ciphertext");
 
-        if (roundKeys == null)
-            throw new IllegalStateException("Cipher is not initialized");
         if (ciphertext.length != blockSize())
             throw new IllegalArgumentException("Invalid block size");
 
-        Word a = Word.fromByteArray(Arrays.copyOfRange(ciphertext, 0, ciphertext.length / 2));
-        Word b = Word.fromByteArray(Arrays.copyOfRange(ciphertext, ciphertext.length / 2, ciphertext.length));
+        byte[] plaintext = new byte[blockSize()];
+        decryptBlock(ciphertext, 0, plaintext, 0);
+        return plaintext;
+    }
 
-        for (int i = parameters.rounds(); i > 0; i--) {
-            b = b.sub(roundKeys[2 * i + 1]).rotateRight(a).xor(a);
-            a = a.sub(roundKeys[2 * i]).rotateRight(b).xor(b);
-        }
+    @Override
+    public void encryptBlock(byte @NotNull [] in, int inOff, byte @NotNull [] out, int outOff) {
+        checkBlock(in, inOff, out, outOff);
+        engine.encrypt(in, inOff, out, outOff);
+    }
 
-        b = b.sub(roundKeys[1]);
-        a = a.sub(roundKeys[0]);
+    @Override
+    public void decryptBlock(byte @NotNull [] in, int inOff, byte @NotNull [] out, int outOff) {
+        checkBlock(in, inOff, out, outOff);
+        engine.decrypt(in, inOff, out, outOff);
+    }
 
-        return concatWords(a, b);
+    @Override
+    public void encryptBlocks(
+        byte @NotNull [] src, int srcOff,
+        byte @NotNull [] dst, int dstOff,
+        int count
+    ) {
+        checkBlocks(src, srcOff, dst, dstOff, count);
+        engine.encryptBlocks(src, srcOff, dst, dstOff, count);
     }
 
-    private static byte[] concatWords(Word a, Word b) {
-        byte[] aBytes = a.toByteArray();
-        byte[] bBytes = b.toByteArray();
+    @Override
+    public void decryptBlocks(
+        byte @NotNull [] src, int srcOff,
+        byte @NotNull [] dst, int dstOff,
+        int count
+    ) {
+        checkBlocks(src, srcOff, dst, dstOff, count);
+        engine.decryptBlocks(src, srcOff, dst, dstOff, count);
+    }
 
-        byte[] result = new byte[aBytes.length + bBytes.length];
-        System.arraycopy(aBytes, 0, result, 0, aBytes.length);
-        System.arraycopy(bBytes, 0, result, aBytes.length, bBytes.length);
+    private void checkBlock(byte[] in, int inOff, byte[] out, int outOff) {
+        requireNonNull(in, "input");
+        requireNonNull(out, "output");
+
+        if (engine == null)
+            throw new IllegalStateException("Cipher is not initialized");
 
-        return result;
+        Objects.checkFromIndexSize(inOff, blockSize(), in.length);
+        Objects.checkFromIndexSize(outOff, blockSize(), out.length);
+    }
+
+    private void checkBlocks(byte[] src, int srcOff, byte[] dst, int dstOff, int count) {
+        BlockCipher.checkBlocks(src, srcOff, dst, dstOff, count, blockSize());
+
+        if (engine == null)
+            throw new IllegalStateException("Cipher is not initialized");
     }
 }
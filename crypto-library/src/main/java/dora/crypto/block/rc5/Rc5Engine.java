@@ -0,0 +1,352 @@
+package dora.crypto.block.rc5;
+
+import dora.crypto.block.rc5.Rc5Parameters.WordSize;
+
+/**
+ * RC5 rounds over a primitive word type. Blocks are two little-endian words read
+ * directly from the input array.
+ */
+sealed interface Rc5Engine permits
+    Rc5Engine.ShortEngine,
+    Rc5Engine.IntEngine,
+    Rc5Engine.LongEngine {
+
+    void encrypt(byte[] in, int inOff, byte[] out, int outOff);
+
+    void decrypt(byte[] in, int inOff, byte[] out, int outOff);
+
+    int blockSize();
+
+    /**
+     * Encrypts <code>count</code> consecutive blocks. Arguments are not checked.
+     */
+    default void encryptBlocks(byte[] in, int inOff, byte[] out, int outOff, int count) {
+        for (int i = 0; i < count; i++, inOff += blockSize(), outOff += blockSize()) {
+            encrypt(in, inOff, out, outOff);
+        }
+    }
+
+    /**
+     * Decrypts <code>count</code> consecutive blocks. Arguments are not checked.
+     */
+    default void decryptBlocks(byte[] in, int inOff, byte[] out, int outOff, int count) {
+        for (int i = 0; i < count; i++, inOff += blockSize(), outOff += blockSize()) {
+            decrypt(in, inOff, out, outOff);
+        }
+    }
+
+    static Rc5Engine create(WordSize wordSize, int rounds, byte[][] roundKeys) {
+        return switch (wordSize) {
+            case WORD_SIZE_16 -> new ShortEngine(rounds, roundKeys);
+            case WORD_SIZE_32 -> new IntEngine(rounds, roundKeys);
+            case WORD_SIZE_64 -> new LongEngine(rounds, roundKeys);
+        };
+    }
+
+    //region Implementation
+    final class ShortEngine implements Rc5Engine {
+
+        private final int rounds;
+        private final short[] s;
+
+        ShortEngine(int rounds, byte[][] roundKeys) {
+            this.rounds = rounds;
+            this.s = new short[roundKeys.length];
+
+            for (int i = 0; i < s.length; i++) {
+                s[i] = getShort(roundKeys[i], 0);
+            }
+        }
+
+        @Override
+        public int blockSize() {
+            return 2 * Short.BYTES;
+        }
+
+        @Override
+        public void encrypt(byte[] in, int inOff, byte[] out, int outOff) {
+            short a = (short) (getShort(in, inOff) + s[0]);
+            short b = (short) (getShort(in, inOff + 2) + s[1]);
+
+            for (int i = 1; i <= rounds; i++) {
+                a = (short) (rotateLeft((short) (a ^ b), b) + s[2 * i]);
+                b = (short) (rotateLeft((short) (b ^ a), a) + s[2 * i + 1]);
+            }
+
+            putShort(a, out, outOff);
+            putShort(b, out, outOff + 2);
+        }
+
+        @Override
+        public void decrypt(byte[] in, int inOff, byte[] out, int outOff) {
+            short a = getShort(in, inOff);
+            short b = getShort(in, inOff + 2);
+
+            for (int i = rounds; i > 0; i--) {
+                b = (short) (rotateRight((short) (b - s[2 * i + 1]), a) ^ a);
+                a = (short) (rotateRight((short) (a - s[2 * i]), b) ^ b);
+            }
+
+            putShort((short) (a - s[0]), out, outOff);
+            putShort((short) (b - s[1]), out, outOff + 2);
+        }
+
+        private static short rotateLeft(short value, short distance) {
+            int d = distance & 0xf;
+            int v = Short.toUnsignedInt(value);
+            return (short) ((v << d) | (v >>> (Short.SIZE - d)));
+        }
+
+        private static short rotateRight(short value, short distance) {
+            int d = distance & 0xf;
+            int v = Short.toUnsignedInt(value);
+            return (short) ((v >>> d) | (v << (Short.SIZE - d)));
+        }
+
+        private static short getShort(byte[] bytes, int offset) {
+            return (short) ((bytes[offset + 1] & 0xff) << 8 | (bytes[offset] & 0xff));
+        }
+
+        private static void putShort(short value, byte[] bytes, int offset) {
+            bytes[offset] = (byte) value;
+            bytes[offset + 1] = (byte) (value >>> 8);
+        }
+    }
+
+    final class IntEngine implements Rc5Engine {
+
+        private final int rounds;
+        private final int[] s;
+
+        IntEngine(int rounds, byte[][] roundKeys) {
+            this.rounds = rounds;
+            this.s = new int[roundKeys.length];
+
+            for (int i = 0; i < s.length; i++) {
+                s[i] = getInt(roundKeys[i], 0);
+            }
+        }
+
+        @Override
+        public int blockSize() {
+            return 2 * Integer.BYTES;
+        }
+
+        @Override
+        public void encrypt(byte[] in, int inOff, byte[] out, int outOff) {
+            int a = getInt(in, inOff) + s[0];
+            int b = getInt(in, inOff + 4) + s[1];
+
+            for (int i = 1; i <= rounds; i++) {
+                a = Integer.rotateLeft(a ^ b, b) + s[2 * i];
+                b = Integer.rotateLeft(b ^ a, a) + s[2 * i + 1];
+            }
+
+            putInt(a, out, outOff);
+            putInt(b, out, outOff + 4);
+        }
+
+        @Override
+        public void decrypt(byte[] in, int inOff, byte[] out, int outOff) {
+            int a = getInt(in, inOff);
+            int b = getInt(in, inOff + 4);
+
+            for (int i = rounds; i > 0; i--) {
+                b = Integer.rotateRight(b - s[2 * i + 1], a) ^ a;
+                a = Integer.rotateRight(a - s[2 * i], b) ^ b;
+            }
+
+            putInt(a - s[0], out, outOff);
+            putInt(b - s[1], out, outOff + 4);
+        }
+
+        /**
+         * Runs two blocks per iteration so that their independent rounds can overlap.
+         */
+        @Override
+        public void encryptBlocks(byte[] in, int inOff, byte[] out, int outOff, int count) {
+            for (; count >= 2; count -= 2, inOff += 16, outOff += 16) {
+                int a0 = getInt(in, inOff) + s[0];
+                int b0 = getInt(in, inOff + 4) + s[1];
+                int a1 = getInt(in, inOff + 8) + s[0];
+                int b1 = getInt(in, inOff + 12) + s[1];
+
+                for (int i = 1; i <= rounds; i++) {
+                    a0 = Integer.rotateLeft(a0 ^ b0, b0) + s[2 * i];
+                    a1 = Integer.rotateLeft(a1 ^ b1, b1) + s[2 * i];
+                    b0 = Integer.rotateLeft(b0 ^ a0, a0) + s[2 * i + 1];
+                    b1 = Integer.rotateLeft(b1 ^ a1, a1) + s[2 * i + 1];
+                }
+
+                putInt(a0, out, outOff);
+                putInt(b0, out, outOff + 4);
+                putInt(a1, out, outOff + 8);
+                putInt(b1, out, outOff + 12);
+            }
+
+            if (count == 1) {
+                encrypt(in, inOff, out, outOff);
+            }
+        }
+
+        @Override
+        public void decryptBlocks(byte[] in, int inOff, byte[] out, int outOff, int count) {
+            for (; count >= 2; count -= 2, inOff += 16, outOff += 16) {
+                int a0 = getInt(in, inOff);
+                int b0 = getInt(in, inOff + 4);
+                int a1 = getInt(in, inOff + 8);
+                int b1 = getInt(in, inOff + 12);
+
+                for (int i = rounds; i > 0; i--) {
+                    b0 = Integer.rotateRight(b0 - s[2 * i + 1], a0) ^ a0;
+                    b1 = Integer.rotateRight(b1 - s[2 * i + 1], a1) ^ a1;
+                    a0 = Integer.rotateRight(a0 - s[2 * i], b0) ^ b0;
+                    a1 = Integer.rotateRight(a1 - s[2 * i], b1) ^ b1;
+                }
+
+                putInt(a0 - s[0], out, outOff);
+                putInt(b0 - s[1], out, outOff + 4);
+                putInt(a1 - s[0], out, outOff + 8);
+                putInt(b1 - s[1], out, outOff + 12);
+            }
+
+            if (count == 1) {
+                decrypt(in, inOff, out, outOff);
+            }
+        }
+
+        private static int getInt(byte[] bytes, int offset) {
+            return (bytes[offset + 3] & 0xff) << 24
+                 | (bytes[offset + 2] & 0xff) << 16
+                 | (bytes[offset + 1] & 0xff) << 8
+                 | (bytes[offset] & 0xff);
+        }
+
+        private static void putInt(int value, byte[] bytes, int offset) {
+            bytes[offset] = (byte) value;
+            bytes[offset + 1] = (byte) (value >>> 8);
+            bytes[offset + 2] = (byte) (value >>> 16);
+            bytes[offset + 3] = (byte) (value >>> 24);
+        }
+    }
+
+    final class LongEngine implements Rc5Engine {
+
+        private final int rounds;
+        private final long[] s;
+
+        LongEngine(int rounds, byte[][] roundKeys) {
+            this.rounds = rounds;
+            this.s = new long[roundKeys.length];
+
+            for (int i = 0; i < s.length; i++) {
+                s[i] = getLong(roundKeys[i], 0);
+            }
+        }
+
+        @Override
+        public int blockSize() {
+            return 2 * Long.BYTES;
+        }
+
+        @Override
+        public void encrypt(byte[] in, int inOff, byte[] out, int outOff) {
+            long a = getLong(in, inOff) + s[0];
+            long b = getLong(in, inOff + 8) + s[1];
+
+            for (int i = 1; i <= rounds; i++) {
+                a = Long.rotateLeft(a ^ b, (int) b) + s[2 * i];
+                b = Long.rotateLeft(b ^ a, (int) a) + s[2 * i + 1];
+            }
+
+            putLong(a, out, outOff);
+            putLong(b, out, outOff + 8);
+        }
+
+        @Override
+        public void decrypt(byte[] in, int inOff, byte[] out, int outOff) {
+            long a = getLong(in, inOff);
+            long b = getLong(in, inOff + 8);
+
+            for (int i = rounds; i > 0; i--) {
+                b = Long.rotateRight(b - s[2 * i + 1], (int) a) ^ a;
+                a = Long.rotateRight(a - s[2 * i], (int) b) ^ b;
+            }
+
+            putLong(a - s[0], out, outOff);
+            putLong(b - s[1], out, outOff + 8);
+        }
+
+        /**
+         * Runs two blocks per iteration so that their independent rounds can overlap.
+         */
+        @Override
+        public void encryptBlocks(byte[] in, int inOff, byte[] out, int outOff, int count) {
+            for (; count >= 2; count -= 2, inOff += 32, outOff += 32) {
+                long a0 = getLong(in, inOff) + s[0];
+                long b0 = getLong(in, inOff + 8) + s[1];
+                long a1 = getLong(in, inOff + 16) + s[0];
+                long b1 = getLong(in, inOff + 24) + s[1];
+
+                for (int i = 1; i <= rounds; i++) {
+                    a0 = Long.rotateLeft(a0 ^ b0, (int) b0) + s[2 * i];
+                    a1 = Long.rotateLeft(a1 ^ b1, (int) b1) + s[2 * i];
+                    b0 = Long.rotateLeft(b0 ^ a0, (int) a0) + s[2 * i + 1];
+                    b1 = Long.rotateLeft(b1 ^ a1, (int) a1) + s[2 * i + 1];
+                }
+
+                putLong(a0, out, outOff);
+                putLong(b0, out, outOff + 8);
+                putLong(a1, out, outOff + 16);
+                putLong(b1, out, outOff + 24);
+            }
+
+            if (count == 1) {
+                encrypt(in, inOff, out, outOff);
+            }
+        }
+
+        @Override
+        public void decryptBlocks(byte[] in, int inOff, byte[] out, int outOff, int count) {
+            for (; count >= 2; count -= 2, inOff += 32, outOff += 32) {
+                long a0 = getLong(in, inOff);
+                long b0 = getLong(in, inOff + 8);
+                long a1 = getLong(in, inOff + 16);
+                long b1 = getLong(in, inOff + 24);
+
+                for (int i = rounds; i > 0; i--) {
+                    b0 = Long.rotateRight(b0 - s[2 * i + 1], (int) a0) ^ a0;
+                    b1 = Long.rotateRight(b1 - s[2 * i + 1], (int) a1) ^ a1;
+                    a0 = Long.rotateRight(a0 - s[2 * i], (int) b0) ^ b0;
+                    a1 = Long.rotateRight(a1 - s[2 * i], (int) b1) ^ b1;
+                }
+
+                putLong(a0 - s[0], out, outOff);
+                putLong(b0 - s[1], out, outOff + 8);
+                putLong(a1 - s[0], out, outOff + 16);
+                putLong(b1 - s[1], out, outOff + 24);
+            }
+
+            if (count == 1) {
+                decrypt(in, inOff, out, outOff);
+            }
+        }
+
+        private static long getLong(byte[] bytes, int offset) {
+            long result = 0;
+
+            for (int i = Long.BYTES - 1; i >= 0; i--) {
+                result = result << 8 | (bytes[offset + i] & 0xffL);
+            }
+
+            return result;
+        }
+
+        private static void putLong(long value, byte[] bytes, int offset) {
+            for (int i = 0; i < Long.BYTES; i++) {
+                bytes[offset + i] = (byte) (value >>> (8 * i));
+            }
+        }
+    }
+    //endregion
+}
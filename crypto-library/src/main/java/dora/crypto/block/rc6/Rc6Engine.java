@@ -0,0 +1,709 @@
+package dora.crypto.block.rc6;
+
+import dora.crypto.block.rc6.Rc6Parameters.WordSize;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * RC6 rounds over a primitive word type. The registers A, B, C and D live in locals,
+ * and blocks are four little-endian words read directly from the input array, or
+ * through a word view of the input buffer.
+ */
+sealed interface Rc6Engine permits
+    Rc6Engine.ShortEngine,
+    Rc6Engine.IntEngine,
+    Rc6Engine.LongEngine {
+
+    void encrypt(byte[] in, int inOff, byte[] out, int outOff);
+
+    void decrypt(byte[] in, int inOff, byte[] out, int outOff);
+
+    /**
+     * Encrypts the block at index <code>inIndex</code> of the input buffer into the
+     * output buffer. Positions and limits are not used.
+     */
+    void encrypt(ByteBuffer in, int inIndex, ByteBuffer out, int outIndex);
+
+    /**
+     * Decrypts the block at index <code>inIndex</code> of the input buffer into the
+     * output buffer. Positions and limits are not used.
+     */
+    void decrypt(ByteBuffer in, int inIndex, ByteBuffer out, int outIndex);
+
+    int blockSize();
+
+    /**
+     * Encrypts <code>count</code> consecutive blocks. Arguments are not checked.
+     */
+    default void encryptBlocks(byte[] in, int inOff, byte[] out, int outOff, int count) {
+        for (int i = 0; i < count; i++, inOff += blockSize(), outOff += blockSize()) {
+            encrypt(in, inOff, out, outOff);
+        }
+    }
+
+    /**
+     * Decrypts <code>count</code> consecutive blocks. Arguments are not checked.
+     */
+    default void decryptBlocks(byte[] in, int inOff, byte[] out, int outOff, int count) {
+        for (int i = 0; i < count; i++, inOff += blockSize(), outOff += blockSize()) {
+            decrypt(in, inOff, out, outOff);
+        }
+    }
+
+    /**
+     * Encrypts <code>count</code> consecutive blocks of the buffers. Arguments are not
+     * checked.
+     */
+    default void encryptBlocks(ByteBuffer in, int inIndex, ByteBuffer out, int outIndex, int count) {
+        for (int i = 0; i < count; i++, inIndex += blockSize(), outIndex += blockSize()) {
+            encrypt(in, inIndex, out, outIndex);
+        }
+    }
+
+    /**
+     * Decrypts <code>count</code> consecutive blocks of the buffers. Arguments are not
+     * checked.
+     */
+    default void decryptBlocks(ByteBuffer in, int inIndex, ByteBuffer out, int outIndex, int count) {
+        for (int i = 0; i < count; i++, inIndex += blockSize(), outIndex += blockSize()) {
+            decrypt(in, inIndex, out, outIndex);
+        }
+    }
+
+    static Rc6Engine create(WordSize wordSize, int rounds, byte[][] roundKeys) {
+        return switch (wordSize) {
+            case WORD_SIZE_16 -> new ShortEngine(rounds, roundKeys);
+            case WORD_SIZE_32 -> new IntEngine(rounds, roundKeys);
+            case WORD_SIZE_64 -> new LongEngine(rounds, roundKeys);
+        };
+    }
+
+    /* https://en.wikipedia.org/wiki/RC6#Encryption/decryption */
+
+    //region Implementation
+    final class ShortEngine implements Rc6Engine {
+
+        private static final VarHandle WORDS =
+            MethodHandles.byteBufferViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+
+        /** lg w */
+        private static final int BASE = 4;
+
+        private final int rounds;
+        private final short[] s;
+
+        ShortEngine(int rounds, byte[][] roundKeys) {
+            this.rounds = rounds;
+            this.s = new short[roundKeys.length];
+
+            for (int i = 0; i < s.length; i++) {
+                s[i] = getShort(roundKeys[i], 0);
+            }
+        }
+
+        @Override
+        public int blockSize() {
+            return 4 * Short.BYTES;
+        }
+
+        @Override
+        public void encrypt(byte[] in, int inOff, byte[] out, int outOff) {
+            short a = getShort(in, inOff);
+            short b = (short) (getShort(in, inOff + 2) + s[0]);
+            short c = getShort(in, inOff + 4);
+            short d = (short) (getShort(in, inOff + 6) + s[1]);
+
+            for (int i = 1; i <= rounds; i++) {
+                short t = rotateLeft((short) (b * (2 * b + 1)), BASE);
+                short u = rotateLeft((short) (d * (2 * d + 1)), BASE);
+
+                short nextD = (short) (rotateLeft((short) (a ^ t), u & 0xf) + s[2 * i]);
+                a = b;
+                b = (short) (rotateLeft((short) (c ^ u), t & 0xf) + s[2 * i + 1]);
+                c = d;
+                d = nextD;
+            }
+
+            putShort((short) (a + s[2 * rounds + 2]), out, outOff);
+            putShort(b, out, outOff + 2);
+            putShort((short) (c + s[2 * rounds + 3]), out, outOff + 4);
+            putShort(d, out, outOff + 6);
+        }
+
+        @Override
+        public void decrypt(byte[] in, int inOff, byte[] out, int outOff) {
+            short a = (short) (getShort(in, inOff) - s[2 * rounds + 2]);
+            short b = getShort(in, inOff + 2);
+            short c = (short) (getShort(in, inOff + 4) - s[2 * rounds + 3]);
+            short d = getShort(in, inOff + 6);
+
+            for (int i = rounds; i >= 1; i--) {
+                // (A, B, C, D) = (D, A, B, C)
+                short prevA = d;
+                d = c;
+                c = b;
+                b = a;
+
+                short u = rotateLeft((short) (d * (2 * d + 1)), BASE);
+                short t = rotateLeft((short) (b * (2 * b + 1)), BASE);
+
+                c = (short) (rotateLeft((short) (c - s[2 * i + 1]), -t & 0xf) ^ u);
+                a = (short) (rotateLeft((short) (prevA - s[2 * i]), -u & 0xf) ^ t);
+            }
+
+            putShort(a, out, outOff);
+            putShort((short) (b - s[0]), out, outOff + 2);
+            putShort(c, out, outOff + 4);
+            putShort((short) (d - s[1]), out, outOff + 6);
+        }
+
+        @Override
+        public void encrypt(ByteBuffer in, int inIndex, ByteBuffer out, int outIndex) {
+            short a = (short) WORDS.get(in, inIndex);
+            short b = (short) ((short) WORDS.get(in, inIndex + 2) + s[0]);
+            short c = (short) WORDS.get(in, inIndex + 4);
+            short d = (short) ((short) WORDS.get(in, inIndex + 6) + s[1]);
+
+            for (int i = 1; i <= rounds; i++) {
+                short t = rotateLeft((short) (b * (2 * b + 1)), BASE);
+                short u = rotateLeft((short) (d * (2 * d + 1)), BASE);
+
+                short nextD = (short) (rotateLeft((short) (a ^ t), u & 0xf) + s[2 * i]);
+                a = b;
+                b = (short) (rotateLeft((short) (c ^ u), t & 0xf) + s[2 * i + 1]);
+                c = d;
+                d = nextD;
+            }
+
+            WORDS.set(out, outIndex, (short) (a + s[2 * rounds + 2]));
+            WORDS.set(out, outIndex + 2, b);
+            WORDS.set(out, outIndex + 4, (short) (c + s[2 * rounds + 3]));
+            WORDS.set(out, outIndex + 6, d);
+        }
+
+        @Override
+        public void decrypt(ByteBuffer in, int inIndex, ByteBuffer out, int outIndex) {
+            short a = (short) ((short) WORDS.get(in, inIndex) - s[2 * rounds + 2]);
+            short b = (short) WORDS.get(in, inIndex + 2);
+            short c = (short) ((short) WORDS.get(in, inIndex + 4) - s[2 * rounds + 3]);
+            short d = (short) WORDS.get(in, inIndex + 6);
+
+            for (int i = rounds; i >= 1; i--) {
+                // (A, B, C, D) = (D, A, B, C)
+                short prevA = d;
+                d = c;
+                c = b;
+                b = a;
+
+                short u = rotateLeft((short) (d * (2 * d + 1)), BASE);
+                short t = rotateLeft((short) (b * (2 * b + 1)), BASE);
+
+                c = (short) (rotateLeft((short) (c - s[2 * i + 1]), -t & 0xf) ^ u);
+                a = (short) (rotateLeft((short) (prevA - s[2 * i]), -u & 0xf) ^ t);
+            }
+
+            WORDS.set(out, outIndex, a);
+            WORDS.set(out, outIndex + 2, (short) (b - s[0]));
+            WORDS.set(out, outIndex + 4, c);
+            WORDS.set(out, outIndex + 6, (short) (d - s[1]));
+        }
+
+        private static short rotateLeft(short value, int distance) {
+            int v = Short.toUnsignedInt(value);
+            return (short) ((v << distance) | (v >>> (Short.SIZE - distance)));
+        }
+
+        private static short getShort(byte[] bytes, int offset) {
+            return (short) ((bytes[offset + 1] & 0xff) << 8 | (bytes[offset] & 0xff));
+        }
+
+        private static void putShort(short value, byte[] bytes, int offset) {
+            bytes[offset] = (byte) value;
+            bytes[offset + 1] = (byte) (value >>> 8);
+        }
+    }
+
+    final class IntEngine implements Rc6Engine {
+
+        private static final VarHandle WORDS =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+        /** lg w */
+        private static final int BASE = 5;
+
+        private final int rounds;
+        private final int[] s;
+
+        IntEngine(int rounds, byte[][] roundKeys) {
+            this.rounds = rounds;
+            this.s = new int[roundKeys.length];
+
+            for (int i = 0; i < s.length; i++) {
+                s[i] = getInt(roundKeys[i], 0);
+            }
+        }
+
+        @Override
+        public int blockSize() {
+            return 4 * Integer.BYTES;
+        }
+
+        @Override
+        public void encrypt(byte[] in, int inOff, byte[] out, int outOff) {
+            int a = getInt(in, inOff);
+            int b = getInt(in, inOff + 4) + s[0];
+            int c = getInt(in, inOff + 8);
+            int d = getInt(in, inOff + 12) + s[1];
+
+            for (int i = 1; i <= rounds; i++) {
+                int t = Integer.rotateLeft(b * (2 * b + 1), BASE);
+                int u = Integer.rotateLeft(d * (2 * d + 1), BASE);
+
+                int nextD = Integer.rotateLeft(a ^ t, u) + s[2 * i];
+                a = b;
+                b = Integer.rotateLeft(c ^ u, t) + s[2 * i + 1];
+                c = d;
+                d = nextD;
+            }
+
+            putInt(a + s[2 * rounds + 2], out, outOff);
+            putInt(b, out, outOff + 4);
+            putInt(c + s[2 * rounds + 3], out, outOff + 8);
+            putInt(d, out, outOff + 12);
+        }
+
+        @Override
+        public void decrypt(byte[] in, int inOff, byte[] out, int outOff) {
+            int a = getInt(in, inOff) - s[2 * rounds + 2];
+            int b = getInt(in, inOff + 4);
+            int c = getInt(in, inOff + 8) - s[2 * rounds + 3];
+            int d = getInt(in, inOff + 12);
+
+            for (int i = rounds; i >= 1; i--) {
+                // (A, B, C, D) = (D, A, B, C)
+                int prevA = d;
+                d = c;
+                c = b;
+                b = a;
+
+                int u = Integer.rotateLeft(d * (2 * d + 1), BASE);
+                int t = Integer.rotateLeft(b * (2 * b + 1), BASE);
+
+                c = Integer.rotateRight(c - s[2 * i + 1], t) ^ u;
+                a = Integer.rotateRight(prevA - s[2 * i], u) ^ t;
+            }
+
+            putInt(a, out, outOff);
+            putInt(b - s[0], out, outOff + 4);
+            putInt(c, out, outOff + 8);
+            putInt(d - s[1], out, outOff + 12);
+        }
+
+        @Override
+        public void encrypt(ByteBuffer in, int inIndex, ByteBuffer out, int outIndex) {
+            int a = (int) WORDS.get(in, inIndex);
+            int b = (int) WORDS.get(in, inIndex + 4) + s[0];
+            int c = (int) WORDS.get(in, inIndex + 8);
+            int d = (int) WORDS.get(in, inIndex + 12) + s[1];
+
+            for (int i = 1; i <= rounds; i++) {
+                int t = Integer.rotateLeft(b * (2 * b + 1), BASE);
+                int u = Integer.rotateLeft(d * (2 * d + 1), BASE);
+
+                int nextD = Integer.rotateLeft(a ^ t, u) + s[2 * i];
+                a = b;
+                b = Integer.rotateLeft(c ^ u, t) + s[2 * i + 1];
+                c = d;
+                d = nextD;
+            }
+
+            WORDS.set(out, outIndex, a + s[2 * rounds + 2]);
+            WORDS.set(out, outIndex + 4, b);
+            WORDS.set(out, outIndex + 8, c + s[2 * rounds + 3]);
+            WORDS.set(out, outIndex + 12, d);
+        }
+
+        @Override
+        public void decrypt(ByteBuffer in, int inIndex, ByteBuffer out, int outIndex) {
+            int a = (int) WORDS.get(in, inIndex) - s[2 * rounds + 2];
+            int b = (int) WORDS.get(in, inIndex + 4);
+            int c = (int) WORDS.get(in, inIndex + 8) - s[2 * rounds + 3];
+            int d = (int) WORDS.get(in, inIndex + 12);
+
+            for (int i = rounds; i >= 1; i--) {
+                // (A, B, C, D) = (D, A, B, C)
+                int prevA = d;
+                d = c;
+                c = b;
+                b = a;
+
+                int u = Integer.rotateLeft(d * (2 * d + 1), BASE);
+                int t = Integer.rotateLeft(b * (2 * b + 1), BASE);
+
+                c = Integer.rotateRight(c - s[2 * i + 1], t) ^ u;
+                a = Integer.rotateRight(prevA - s[2 * i], u) ^ t;
+            }
+
+            WORDS.set(out, outIndex, a);
+            WORDS.set(out, outIndex + 4, b - s[0]);
+            WORDS.set(out, outIndex + 8, c);
+            WORDS.set(out, outIndex + 12, d - s[1]);
+        }
+
+        /**
+         * Runs two blocks per iteration so that their independent rounds can overlap.
+         */
+        @Override
+        public void encryptBlocks(byte[] in, int inOff, byte[] out, int outOff, int count) {
+            for (; count >= 2; count -= 2, inOff += 32, outOff += 32) {
+                int a0 = getInt(in, inOff);
+                int b0 = getInt(in, inOff + 4) + s[0];
+                int c0 = getInt(in, inOff + 8);
+                int d0 = getInt(in, inOff + 12) + s[1];
+                int a1 = getInt(in, inOff + 16);
+                int b1 = getInt(in, inOff + 20) + s[0];
+                int c1 = getInt(in, inOff + 24);
+                int d1 = getInt(in, inOff + 28) + s[1];
+
+                for (int i = 1; i <= rounds; i++) {
+                    int t0 = Integer.rotateLeft(b0 * (2 * b0 + 1), BASE);
+                    int t1 = Integer.rotateLeft(b1 * (2 * b1 + 1), BASE);
+                    int u0 = Integer.rotateLeft(d0 * (2 * d0 + 1), BASE);
+                    int u1 = Integer.rotateLeft(d1 * (2 * d1 + 1), BASE);
+
+                    int nextD0 = Integer.rotateLeft(a0 ^ t0, u0) + s[2 * i];
+                    int nextD1 = Integer.rotateLeft(a1 ^ t1, u1) + s[2 * i];
+                    a0 = b0;
+                    a1 = b1;
+                    b0 = Integer.rotateLeft(c0 ^ u0, t0) + s[2 * i + 1];
+                    b1 = Integer.rotateLeft(c1 ^ u1, t1) + s[2 * i + 1];
+                    c0 = d0;
+                    c1 = d1;
+                    d0 = nextD0;
+                    d1 = nextD1;
+                }
+
+                putInt(a0 + s[2 * rounds + 2], out, outOff);
+                putInt(b0, out, outOff + 4);
+                putInt(c0 + s[2 * rounds + 3], out, outOff + 8);
+                putInt(d0, out, outOff + 12);
+                putInt(a1 + s[2 * rounds + 2], out, outOff + 16);
+                putInt(b1, out, outOff + 20);
+                putInt(c1 + s[2 * rounds + 3], out, outOff + 24);
+                putInt(d1, out, outOff + 28);
+            }
+
+            if (count == 1) {
+                encrypt(in, inOff, out, outOff);
+            }
+        }
+
+        @Override
+        public void decryptBlocks(byte[] in, int inOff, byte[] out, int outOff, int count) {
+            for (; count >= 2; count -= 2, inOff += 32, outOff += 32) {
+                int a0 = getInt(in, inOff) - s[2 * rounds + 2];
+                int b0 = getInt(in, inOff + 4);
+                int c0 = getInt(in, inOff + 8) - s[2 * rounds + 3];
+                int d0 = getInt(in, inOff + 12);
+                int a1 = getInt(in, inOff + 16) - s[2 * rounds + 2];
+                int b1 = getInt(in, inOff + 20);
+                int c1 = getInt(in, inOff + 24) - s[2 * rounds + 3];
+                int d1 = getInt(in, inOff + 28);
+
+                for (int i = rounds; i >= 1; i--) {
+                    // (A, B, C, D) = (D, A, B, C)
+                    int prevA0 = d0;
+                    int prevA1 = d1;
+                    d0 = c0;
+                    d1 = c1;
+                    c0 = b0;
+                    c1 = b1;
+                    b0 = a0;
+                    b1 = a1;
+
+                    int u0 = Integer.rotateLeft(d0 * (2 * d0 + 1), BASE);
+                    int u1 = Integer.rotateLeft(d1 * (2 * d1 + 1), BASE);
+                    int t0 = Integer.rotateLeft(b0 * (2 * b0 + 1), BASE);
+                    int t1 = Integer.rotateLeft(b1 * (2 * b1 + 1), BASE);
+
+                    c0 = Integer.rotateRight(c0 - s[2 * i + 1], t0) ^ u0;
+                    c1 = Integer.rotateRight(c1 - s[2 * i + 1], t1) ^ u1;
+                    a0 = Integer.rotateRight(prevA0 - s[2 * i], u0) ^ t0;
+                    a1 = Integer.rotateRight(prevA1 - s[2 * i], u1) ^ t1;
+                }
+
+                putInt(a0, out, outOff);
+                putInt(b0 - s[0], out, outOff + 4);
+                putInt(c0, out, outOff + 8);
+                putInt(d0 - s[1], out, outOff + 12);
+                putInt(a1, out, outOff + 16);
+                putInt(b1 - s[0], out, outOff + 20);
+                putInt(c1, out, outOff + 24);
+                putInt(d1 - s[1], out, outOff + 28);
+            }
+
+            if (count == 1) {
+                decrypt(in, inOff, out, outOff);
+            }
+        }
+
+        private static int getInt(byte[] bytes, int offset) {
+            return (bytes[offset + 3] & 0xff) << 24
+                 | (bytes[offset + 2] & 0xff) << 16
+                 | (bytes[offset + 1] & 0xff) << 8
+                 | (bytes[offset] & 0xff);
+        }
+
+        private static void putInt(int value, byte[] bytes, int offset) {
+            bytes[offset] = (byte) value;
+            bytes[offset + 1] = (byte) (value >>> 8);
+            bytes[offset + 2] = (byte) (value >>> 16);
+            bytes[offset + 3] = (byte) (value >>> 24);
+        }
+    }
+
+    final class LongEngine implements Rc6Engine {
+
+        private static final VarHandle WORDS =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+        /** lg w */
+        private static final int BASE = 6;
+
+        private final int rounds;
+        private final long[] s;
+
+        LongEngine(int rounds, byte[][] roundKeys) {
+            this.rounds = rounds;
+            this.s = new long[roundKeys.length];
+
+            for (int i = 0; i < s.length; i++) {
+                s[i] = getLong(roundKeys[i], 0);
+            }
+        }
+
+        @Override
+        public int blockSize() {
+            return 4 * Long.BYTES;
+        }
+
+        @Override
+        public void encrypt(byte[] in, int inOff, byte[] out, int outOff) {
+            long a = getLong(in, inOff);
+            long b = getLong(in, inOff + 8) + s[0];
+            long c = getLong(in, inOff + 16);
+            long d = getLong(in, inOff + 24) + s[1];
+
+            for (int i = 1; i <= rounds; i++) {
+                long t = Long.rotateLeft(b * (2 * b + 1), BASE);
+                long u = Long.rotateLeft(d * (2 * d + 1), BASE);
+
+                long nextD = Long.rotateLeft(a ^ t, (int) u) + s[2 * i];
+                a = b;
+                b = Long.rotateLeft(c ^ u, (int) t) + s[2 * i + 1];
+                c = d;
+                d = nextD;
+            }
+
+            putLong(a + s[2 * rounds + 2], out, outOff);
+            putLong(b, out, outOff + 8);
+            putLong(c + s[2 * rounds + 3], out, outOff + 16);
+            putLong(d, out, outOff + 24);
+        }
+
+        @Override
+        public void decrypt(byte[] in, int inOff, byte[] out, int outOff) {
+            long a = getLong(in, inOff) - s[2 * rounds + 2];
+            long b = getLong(in, inOff + 8);
+            long c = getLong(in, inOff + 16) - s[2 * rounds + 3];
+            long d = getLong(in, inOff + 24);
+
+            for (int i = rounds; i >= 1; i--) {
+                // (A, B, C, D) = (D, A, B, C)
+                long prevA = d;
+                d = c;
+                c = b;
+                b = a;
+
+                long u = Long.rotateLeft(d * (2 * d + 1), BASE);
+                long t = Long.rotateLeft(b * (2 * b + 1), BASE);
+
+                c = Long.rotateRight(c - s[2 * i + 1], (int) t) ^ u;
+                a = Long.rotateRight(prevA - s[2 * i], (int) u) ^ t;
+            }
+
+            putLong(a, out, outOff);
+            putLong(b - s[0], out, outOff + 8);
+            putLong(c, out, outOff + 16);
+            putLong(d - s[1], out, outOff + 24);
+        }
+
+        @Override
+        public void encrypt(ByteBuffer in, int inIndex, ByteBuffer out, int outIndex) {
+            long a = (long) WORDS.get(in, inIndex);
+            long b = (long) WORDS.get(in, inIndex + 8) + s[0];
+            long c = (long) WORDS.get(in, inIndex + 16);
+            long d = (long) WORDS.get(in, inIndex + 24) + s[1];
+
+            for (int i = 1; i <= rounds; i++) {
+                long t = Long.rotateLeft(b * (2 * b + 1), BASE);
+                long u = Long.rotateLeft(d * (2 * d + 1), BASE);
+
+                long nextD = Long.rotateLeft(a ^ t, (int) u) + s[2 * i];
+                a = b;
+                b = Long.rotateLeft(c ^ u, (int) t) + s[2 * i + 1];
+                c = d;
+                d = nextD;
+            }
+
+            WORDS.set(out, outIndex, a + s[2 * rounds + 2]);
+            WORDS.set(out, outIndex + 8, b);
+            WORDS.set(out, outIndex + 16, c + s[2 * rounds + 3]);
+            WORDS.set(out, outIndex + 24, d);
+        }
+
+        @Override
+        public void decrypt(ByteBuffer in, int inIndex, ByteBuffer out, int outIndex) {
+            long a = (long) WORDS.get(in, inIndex) - s[2 * rounds + 2];
+            long b = (long) WORDS.get(in, inIndex + 8);
+            long c = (long) WORDS.get(in, inIndex + 16) - s[2 * rounds + 3];
+            long d = (long) WORDS.get(in, inIndex + 24);
+
+            for (int i = rounds; i >= 1; i--) {
+                // (A, B, C, D) = (D, A, B, C)
+                long prevA = d;
+                d = c;
+                c = b;
+                b = a;
+
+                long u = Long.rotateLeft(d * (2 * d + 1), BASE);
+                long t = Long.rotateLeft(b * (2 * b + 1), BASE);
+
+                c = Long.rotateRight(c - s[2 * i + 1], (int) t) ^ u;
+                a = Long.rotateRight(prevA - s[2 * i], (int) u) ^ t;
+            }
+
+            WORDS.set(out, outIndex, a);
+            WORDS.set(out, outIndex + 8, b - s[0]);
+            WORDS.set(out, outIndex + 16, c);
+            WORDS.set(out, outIndex + 24, d - s[1]);
+        }
+
+        /**
+         * Runs two blocks per iteration so that their independent rounds can overlap.
+         */
+        @Override
+        public void encryptBlocks(byte[] in, int inOff, byte[] out, int outOff, int count) {
+            for (; count >= 2; count -= 2, inOff += 64, outOff += 64) {
+                long a0 = getLong(in, inOff);
+                long b0 = getLong(in, inOff + 8) + s[0];
+                long c0 = getLong(in, inOff + 16);
+                long d0 = getLong(in, inOff + 24) + s[1];
+                long a1 = getLong(in, inOff + 32);
+                long b1 = getLong(in, inOff + 40) + s[0];
+                long c1 = getLong(in, inOff + 48);
+                long d1 = getLong(in, inOff + 56) + s[1];
+
+                for (int i = 1; i <= rounds; i++) {
+                    long t0 = Long.rotateLeft(b0 * (2 * b0 + 1), BASE);
+                    long t1 = Long.rotateLeft(b1 * (2 * b1 + 1), BASE);
+                    long u0 = Long.rotateLeft(d0 * (2 * d0 + 1), BASE);
+                    long u1 = Long.rotateLeft(d1 * (2 * d1 + 1), BASE);
+
+                    long nextD0 = Long.rotateLeft(a0 ^ t0, (int) u0) + s[2 * i];
+                    long nextD1 = Long.rotateLeft(a1 ^ t1, (int) u1) + s[2 * i];
+                    a0 = b0;
+                    a1 = b1;
+                    b0 = Long.rotateLeft(c0 ^ u0, (int) t0) + s[2 * i + 1];
+                    b1 = Long.rotateLeft(c1 ^ u1, (int) t1) + s[2 * i + 1];
+                    c0 = d0;
+                    c1 = d1;
+                    d0 = nextD0;
+                    d1 = nextD1;
+                }
+
+                putLong(a0 + s[2 * rounds + 2], out, outOff);
+                putLong(b0, out, outOff + 8);
+                putLong(c0 + s[2 * rounds + 3], out, outOff + 16);
+                putLong(d0, out, outOff + 24);
+                putLong(a1 + s[2 * rounds + 2], out, outOff + 32);
+                putLong(b1, out, outOff + 40);
+                putLong(c1 + s[2 * rounds + 3], out, outOff + 48);
+                putLong(d1, out, outOff + 56);
+            }
+
+            if (count == 1) {
+                encrypt(in, inOff, out, outOff);
+            }
+        }
+
+        @Override
+        public void decryptBlocks(byte[] in, int inOff, byte[] out, int outOff, int count) {
+            for (; count >= 2; count -= 2, inOff += 64, outOff += 64) {
+                long a0 = getLong(in, inOff) - s[2 * rounds + 2];
+                long b0 = getLong(in, inOff + 8);
+                long c0 = getLong(in, inOff + 16) - s[2 * rounds + 3];
+                long d0 = getLong(in, inOff + 24);
+                long a1 = getLong(in, inOff + 32) - s[2 * rounds + 2];
+                long b1 = getLong(in, inOff + 40);
+                long c1 = getLong(in, inOff + 48) - s[2 * rounds + 3];
+                long d1 = getLong(in, inOff + 56);
+
+                for (int i = rounds; i >= 1; i--) {
+                    // (A, B, C, D) = (D, A, B, C)
+                    long prevA0 = d0;
+                    long prevA1 = d1;
+                    d0 = c0;
+                    d1 = c1;
+                    c0 = b0;
+                    c1 = b1;
+                    b0 = a0;
+                    b1 = a1;
+
+                    long u0 = Long.rotateLeft(d0 * (2 * d0 + 1), BASE);
+                    long u1 = Long.rotateLeft(d1 * (2 * d1 + 1), BASE);
+                    long t0 = Long.rotateLeft(b0 * (2 * b0 + 1), BASE);
+                    long t1 = Long.rotateLeft(b1 * (2 * b1 + 1), BASE);
+
+                    c0 = Long.rotateRight(c0 - s[2 * i + 1], (int) t0) ^ u0;
+                    c1 = Long.rotateRight(c1 - s[2 * i + 1], (int) t1) ^ u1;
+                    a0 = Long.rotateRight(prevA0 - s[2 * i], (int) u0) ^ t0;
+                    a1 = Long.rotateRight(prevA1 - s[2 * i], (int) u1) ^ t1;
+                }
+
+                putLong(a0, out, outOff);
+                putLong(b0 - s[0], out, outOff + 8);
+                putLong(c0, out, outOff + 16);
+                putLong(d0 - s[1], out, outOff + 24);
+                putLong(a1, out, outOff + 32);
+                putLong(b1 - s[0], out, outOff + 40);
+                putLong(c1, out, outOff + 48);
+                putLong(d1 - s[1], out, outOff + 56);
+            }
+
+            if (count == 1) {
+                decrypt(in, inOff, out, outOff);
+            }
+        }
+
+        private static long getLong(byte[] bytes, int offset) {
+            long result = 0;
+
+            for (int i = Long.BYTES - 1; i >= 0; i--) {
+                result = result << 8 | (bytes[offset + i] & 0xffL);
+            }
+
+            return result;
+        }
+
+        private static void putLong(long value, byte[] bytes, int offset) {
+            for (int i = 0; i < Long.BYTES; i++) {
+                bytes[offset + i] = (byte) (value >>> (8 * i));
+            }
+        }
+    }
+    //endregion
+}
@@ -26,6 +26,8 @@ public final class GaloisField {
      * Multiplies two polynomials in GF(2^8) irreducible modulo <code>mod</code>.
      */
     public byte mulMod(byte a, byte b, short mod) {
+        if (ModularGaloisField.supports(mod))
+            return ModularGaloisField.of(mod).mulMod(a, b);
         if (!irreducible(mod))
             throw new IllegalArgumentException("Modulus may not be reducible");
         return mulModUnchecked(a, b, mod);
@@ -49,6 +51,8 @@ public final class GaloisField {
      * <code>mod</code>.
      */
     public byte inv(byte f, short mod) {
+        if (ModularGaloisField.supports(mod))
+            return ModularGaloisField.of(mod).inv(f);
         if (!irreducible(mod))
             throw new IllegalArgumentException("Modulus may not be reducible");
         return invUnchecked(f, mod);
@@ -0,0 +1,150 @@
+package dora.crypto.block.rijndael;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * GF(2^8) with a fixed irreducible modulus, where multiplication and inversion are
+ * served from precomputed tables.
+ * <p>
+ * Instances are immutable and cached per modulus, see {@link #of(short)}.
+ */
+public final class ModularGaloisField {
+
+    private static final Map<Short, ModularGaloisField> FIELDS = new ConcurrentHashMap<>();
+
+    /** Order of the multiplicative group. */
+    private static final int ORDER = 255;
+
+    private final short modulus;
+    private final byte generator;
+
+    /**
+     * <code>exp[i] = g^i</code> for the generator <code>g</code>. The table is doubled so
+     * that the sum of two logarithms can index it without reduction.
+     */
+    private final byte[] exp = new byte[2 * ORDER];
+
+    /**
+     * <code>log[a] = i</code> such that <code>g^i = a</code>; <code>log[0]</code> is
+     * unused.
+     */
+    private final int[] log = new int[256];
+
+    private volatile byte[] products;
+
+    private ModularGaloisField(short modulus) {
+        GaloisField field = new GaloisField();
+        if (!supports(modulus))
+            throw new IllegalArgumentException("Modulus must be of degree 8");
+        if (!field.irreducible(modulus))
+            throw new IllegalArgumentException("Modulus may not be reducible");
+
+        this.modulus = modulus;
+        this.generator = findGenerator(field, modulus);
+
+        byte power = 1;
+
+        for (int i = 0; i < ORDER; i++) {
+            exp[i] = power;
+            exp[i + ORDER] = power;
+            log[Byte.toUnsignedInt(power)] = i;
+            power = field.mulModUnchecked(power, generator, modulus);
+        }
+    }
+
+    /**
+     * Returns the field for an irreducible modulus in GF(2^8). Tables are built on the
+     * first call and shared afterwards.
+     *
+     * @throws IllegalArgumentException if the modulus is reducible or not of degree 8
+     */
+    public static ModularGaloisField of(short modulus) {
+        return FIELDS.computeIfAbsent(modulus, ModularGaloisField::new);
+    }
+
+    /**
+     * Returns whether a modulus has degree 8, i.e. may define a field of 256 elements.
+     */
+    static boolean supports(short modulus) {
+        return Short.toUnsignedInt(modulus) >>> 8 == 1;
+    }
+
+    public short modulus() {
+        return modulus;
+    }
+
+    /**
+     * Returns the generator of the multiplicative group the tables are based on.
+     */
+    public byte generator() {
+        return generator;
+    }
+
+    /**
+     * Multiplies two polynomials using the log/exp tables.
+     */
+    public byte mulMod(byte a, byte b) {
+        if (a == 0 || b == 0) return 0;
+        return exp[log[Byte.toUnsignedInt(a)] + log[Byte.toUnsignedInt(b)]];
+    }
+
+    /**
+     * Multiplies two polynomials using the full 64 KB product table, which is built on
+     * first use. Worth it only for hot loops where the two lookups and the zero checks
+     * of {@link #mulMod(byte, byte)} matter.
+     */
+    public byte mulModTable(byte a, byte b) {
+        return productTable()[Byte.toUnsignedInt(a) << 8 | Byte.toUnsignedInt(b)];
+    }
+
+    /**
+     * Returns the multiplicative inverse of a polynomial.
+     *
+     * @throws IllegalArgumentException if the polynomial is zero
+     */
+    public byte inv(byte f) {
+        if (f == 0)
+            throw new IllegalArgumentException("Inverse element does not exist");
+        return exp[ORDER - log[Byte.toUnsignedInt(f)]];
+    }
+
+    private byte[] productTable() {
+        byte[] table = products;
+
+        if (table == null) {
+            table = new byte[256 * 256];
+
+            for (int a = 1; a < 256; a++) {
+                for (int b = 1; b < 256; b++) {
+                    table[a << 8 | b] = exp[log[a] + log[b]];
+                }
+            }
+
+            products = table;
+        }
+
+        return table;
+    }
+
+    /**
+     * Finds the smallest element whose powers cover every non-zero element. The usual
+     * choice <code>x</code> is not a generator for every irreducible modulus.
+     */
+    private static byte findGenerator(GaloisField field, short modulus) {
+        for (int candidate = 2; candidate < 256; candidate++) {
+            byte g = (byte) candidate;
+            byte power = g;
+            int order = 1;
+
+            while (power != 1) {
+                power = field.mulModUnchecked(power, g, modulus);
+                order++;
+            }
+
+            if (order == ORDER) return g;
+        }
+
+        throw new IllegalStateException("Multiplicative group has no generator");
+    }
+}
@@ -9,13 +9,43 @@ public final class RijndaelBlockCipher implements BlockCipher {
 
     private final RijndaelParameters parameters;
     private final RijndaelKeySchedule keySchedule;
+    private final RijndaelTables tables;
+    private final int words;
+    private final int rounds;
+
+    /**
+     * Source column of each row after ShiftRows (row <code>r</code> is shifted by
+     * <code>r</code> columns), indexed by row and destination column.
+     */
+    private final int[][] encryptShifts;
+    private final int[][] decryptShifts;
+
+    /**
+     * Per-thread scratch space for the state and the next round's state of blocks wider
+     * than 128 bits. Blocks may be processed concurrently, so it cannot be shared.
+     */
+    private final ThreadLocal<int[][]> states;
 
     public RijndaelBlockCipher(@NotNull RijndaelParameters parameters) {
         this.parameters = Objects.requireNonNull(parameters, "parameters");
         this.keySchedule = new RijndaelKeySchedule(parameters);
+        this.tables = parameters.tables();
+        this.words = parameters.blockSize().words();
+        this.rounds = parameters.rounds();
+        this.encryptShifts = new int[4][words];
+        this.decryptShifts = new int[4][words];
+        this.states = ThreadLocal.withInitial(() -> new int[2][words]);
+
+        for (int row = 0; row < 4; row++) {
+            for (int col = 0; col < words; col++) {
+                encryptShifts[row][col] = (col + row) % words;
+                decryptShifts[row][col] = (col - row + words) % words;
+            }
+        }
     }
 
-    private byte[][] roundKeys;
+    private int[] encryptionKeys;
+    private int[] decryptionKeys;
 
     @Override
     public int blockSize() {
@@ -25,137 +55,427 @@ public final class RijndaelBlockCipher implements BlockCipher {
     @Override
     public void init(byte @NotNull [] key) {
         Objects.requireNonNull(key, "key");
-        roundKeys = keySchedule.roundKeys(key);
+        byte[][] roundKeys = keySchedule.roundKeys(key);
+
+        int[] encryptionKeys = new int[roundKeys.length * words];
+        int[] decryptionKeys = new int[roundKeys.length * words];
+
+        for (int round = 0; round < roundKeys.length; round++) {
+            for (int col = 0; col < words; col++) {
+                int word = getInt(roundKeys[round], 4 * col);
+                encryptionKeys[round * words + col] = word;
+                decryptionKeys[round * words + col] = round == 0 || round == rounds
+                    ? word
+                    : tables.inverseMixColumn(word);
+            }
+        }
+
+        this.encryptionKeys = encryptionKeys;
+        this.decryptionKeys = decryptionKeys;
     }
 
     @Override
     public byte[] encrypt(byte @NotNull [] plaintext) {
-        if (roundKeys == null)
-            throw new IllegalStateException("Cipher is not initialized");
-
         Objects.requireNonNull(plaintext, "plaintext");
         if (plaintext.length != blockSize())
             throw new IllegalArgumentException("Invalid block size");
 
-        byte[] state = plaintext.clone();
-        state = addRoundKey(state, roundKeys[0]);
-
-        for (int round = 1; round < parameters.rounds(); round++) {
-            state = subBytes(state, false);
-            state = shiftRows(state, false);
-            state = mixColumns(state, false);
-            state = addRoundKey(state, roundKeys[round]);
-        }
-
-        state = subBytes(state, false);
-        state = shiftRows(state, false);
-        state = addRoundKey(state, roundKeys[parameters.rounds()]);
-
-        return state;
+        byte[] ciphertext = new byte[blockSize()];
+        encryptBlock(plaintext, 0, ciphertext, 0);
+        return ciphertext;
     }
 
     @Override
     public byte[] decrypt(byte @NotNull [] ciphertext) {
-        if (roundKeys == null)
-            throw new IllegalStateException("Cipher is not initialized");
-
         Objects.requireNonNull(ciphertext, "ciphertext");
         if (ciphertext.length != blockSize())
             throw new IllegalArgumentException("Invalid block size");
 
-        byte[] state = ciphertext.clone();
-        state = addRoundKey(state, roundKeys[parameters.rounds()]);
+        byte[] plaintext = new byte[blockSize()];
+        decryptBlock(ciphertext, 0, plaintext, 0);
+        return plaintext;
+    }
 
-        for (int round = parameters.rounds() - 1; round >= 1; round--) {
-            state = shiftRows(state, true);
-            state = subBytes(state, true);
-            state = addRoundKey(state, roundKeys[round]);
-            state = mixColumns(state, true);
+    @Override
+    public void encryptBlock(byte @NotNull [] in, int inOff, byte @NotNull [] out, int outOff) {
+        checkBlock(in, inOff, out, outOff);
+
+        if (words == 4) {
+            encrypt128(in, inOff, out, outOff);
+            return;
         }
 
-        state = shiftRows(state, true);
-        state = subBytes(state, true);
-        state = addRoundKey(state, roundKeys[0]);
+        int[][] te = tables.te;
+        int[][] scratch = states.get();
+        int[] state = scratch[0];
+        int[] temp = scratch[1];
 
-        return state;
-    }
+        for (int col = 0; col < words; col++) {
+            state[col] = getInt(in, inOff + 4 * col) ^ encryptionKeys[col];
+        }
 
-    private byte[] addRoundKey(byte[] state, byte[] roundKey) {
-        byte[] result = new byte[state.length];
+        // SubBytes, ShiftRows and MixColumns are folded into the T-tables.
+        for (int round = 1; round < rounds; round++) {
+            int key = round * words;
 
-        for (int i = 0; i < state.length; i++) {
-            result[i] = (byte) (state[i] ^ roundKey[i]);
+            for (int col = 0; col < words; col++) {
+                temp[col] = te[0][state[col] >>> 24]
+                    ^ te[1][(state[encryptShifts[1][col]] >>> 16) & 0xff]
+                    ^ te[2][(state[encryptShifts[2][col]] >>> 8) & 0xff]
+                    ^ te[3][state[encryptShifts[3][col]] & 0xff]
+                    ^ encryptionKeys[key + col];
+            }
+
+            int[] swap = state;
+            state = temp;
+            temp = swap;
         }
 
-        return result;
+        // The final round has no MixColumns.
+        int key = rounds * words;
+
+        for (int col = 0; col < words; col++) {
+            int word = substitute(tables.sBox,
+                state[col],
+                state[encryptShifts[1][col]],
+                state[encryptShifts[2][col]],
+                state[encryptShifts[3][col]]);
+            putInt(word ^ encryptionKeys[key + col], out, outOff + 4 * col);
+        }
     }
 
-    private byte[] subBytes(byte[] state, boolean inverse) {
-        byte[] result = new byte[state.length];
+    @Override
+    public void decryptBlock(byte @NotNull [] in, int inOff, byte @NotNull [] out, int outOff) {
+        checkBlock(in, inOff, out, outOff);
 
-        for (int i = 0; i < state.length; i++) {
-            byte substitution = inverse
-                ? parameters.inverseSBox().lookup(state[i])
-                : parameters.sBox().lookup(state[i]);
-            result[i] = substitution;
+        if (words == 4) {
+            decrypt128(in, inOff, out, outOff);
+            return;
         }
 
-        return result;
-    }
+        int[][] td = tables.td;
+        int[][] scratch = states.get();
+        int[] state = scratch[0];
+        int[] temp = scratch[1];
+        int key = rounds * words;
 
-    private byte[] shiftRows(byte[] state, boolean inverse) {
-        byte[] result = new byte[state.length];
-        int blockWords = parameters.blockSize().words();
+        for (int col = 0; col < words; col++) {
+            state[col] = getInt(in, inOff + 4 * col) ^ decryptionKeys[key + col];
+        }
+
+        // Equivalent inverse cipher: the round keys already have InvMixColumns applied.
+        for (int round = rounds - 1; round >= 1; round--) {
+            key = round * words;
 
-        for (int col = 0; col < blockWords; col++) {
-            for (int row = 0; row < 4; row++) {
-                int shiftCol = inverse
-                    ? (col + row) % blockWords
-                    : (col - row + blockWords) % blockWords;
-                result[shiftCol * 4 + row] = state[col * 4 + row];
+            for (int col = 0; col < words; col++) {
+                temp[col] = td[0][state[col] >>> 24]
+                    ^ td[1][(state[decryptShifts[1][col]] >>> 16) & 0xff]
+                    ^ td[2][(state[decryptShifts[2][col]] >>> 8) & 0xff]
+                    ^ td[3][state[decryptShifts[3][col]] & 0xff]
+                    ^ decryptionKeys[key + col];
             }
+
+            int[] swap = state;
+            state = temp;
+            temp = swap;
+        }
+
+        for (int col = 0; col < words; col++) {
+            int word = substitute(tables.inverseSBox,
+                state[col],
+                state[decryptShifts[1][col]],
+                state[decryptShifts[2][col]],
+                state[decryptShifts[3][col]]);
+            putInt(word ^ decryptionKeys[col], out, outOff + 4 * col);
         }
+    }
 
-        return result;
-    }
-
-    private static final byte[] MIX_COLUMNS_TRANSFORMATION = new byte[] {
-        2, 3, 1, 1,
-        1, 2, 3, 1,
-        1, 1, 2, 3,
-        3, 1, 1, 2
-    };
-
-    private static final byte[] MIX_COLUMNS_INVERSE_TRANSFORMATION = new byte[] {
-        14, 11, 13, 9,
-        9, 14, 11, 13,
-        13, 9, 14, 11,
-        11, 13, 9, 14
-    };
-
-    private byte[] mixColumns(byte[] state, boolean inverse) {
-        byte[] result = new byte[state.length];
-        GaloisField field = new GaloisField();
-
-        byte[] transformation = inverse
-            ? MIX_COLUMNS_INVERSE_TRANSFORMATION
-            : MIX_COLUMNS_TRANSFORMATION;
-
-        for (int col = 0; col < parameters.blockSize().words(); col++) {
-            for (int row = 0; row < 4; row++) {
-                for (int k = 0; k < 4; k++) {
-                    result[col * 4 + row] = field.add(
-                        field.mulModUnchecked(
-                            state[col * 4 + k],
-                            transformation[row * 4 + k],
-                            parameters.modulus()
-                        ),
-                        result[col * 4 + row]
-                    );
-                }
+    @Override
+    public void encryptBlocks(
+        byte @NotNull [] src, int srcOff,
+        byte @NotNull [] dst, int dstOff,
+        int count
+    ) {
+        checkBlocks(src, srcOff, dst, dstOff, count);
+
+        if (words == 4) {
+            for (; count >= 2; count -= 2, srcOff += 32, dstOff += 32) {
+                encrypt128x2(src, srcOff, dst, dstOff);
             }
         }
 
-        return result;
+        for (; count > 0; count--, srcOff += blockSize(), dstOff += blockSize()) {
+            encryptBlock(src, srcOff, dst, dstOff);
+        }
+    }
+
+    @Override
+    public void decryptBlocks(
+        byte @NotNull [] src, int srcOff,
+        byte @NotNull [] dst, int dstOff,
+        int count
+    ) {
+        checkBlocks(src, srcOff, dst, dstOff, count);
+
+        if (words == 4) {
+            for (; count >= 2; count -= 2, srcOff += 32, dstOff += 32) {
+                decrypt128x2(src, srcOff, dst, dstOff);
+            }
+        }
+
+        for (; count > 0; count--, srcOff += blockSize(), dstOff += blockSize()) {
+            decryptBlock(src, srcOff, dst, dstOff);
+        }
+    }
+
+    /**
+     * Same as {@link #encryptBlock} with the state kept in locals for 128-bit blocks.
+     */
+    private void encrypt128(byte[] in, int inOff, byte[] out, int outOff) {
+        int[] te0 = tables.te[0];
+        int[] te1 = tables.te[1];
+        int[] te2 = tables.te[2];
+        int[] te3 = tables.te[3];
+        int[] k = encryptionKeys;
+
+        int s0 = getInt(in, inOff) ^ k[0];
+        int s1 = getInt(in, inOff + 4) ^ k[1];
+        int s2 = getInt(in, inOff + 8) ^ k[2];
+        int s3 = getInt(in, inOff + 12) ^ k[3];
+
+        int key = 4;
+
+        for (int round = 1; round < rounds; round++, key += 4) {
+            int t0 = te0[s0 >>> 24] ^ te1[(s1 >>> 16) & 0xff]
+                ^ te2[(s2 >>> 8) & 0xff] ^ te3[s3 & 0xff] ^ k[key];
+            int t1 = te0[s1 >>> 24] ^ te1[(s2 >>> 16) & 0xff]
+                ^ te2[(s3 >>> 8) & 0xff] ^ te3[s0 & 0xff] ^ k[key + 1];
+            int t2 = te0[s2 >>> 24] ^ te1[(s3 >>> 16) & 0xff]
+                ^ te2[(s0 >>> 8) & 0xff] ^ te3[s1 & 0xff] ^ k[key + 2];
+            int t3 = te0[s3 >>> 24] ^ te1[(s0 >>> 16) & 0xff]
+                ^ te2[(s1 >>> 8) & 0xff] ^ te3[s2 & 0xff] ^ k[key + 3];
+
+            s0 = t0;
+            s1 = t1;
+            s2 = t2;
+            s3 = t3;
+        }
+
+        byte[] sBox = tables.sBox;
+
+        putInt(substitute(sBox, s0, s1, s2, s3) ^ k[key], out, outOff);
+        putInt(substitute(sBox, s1, s2, s3, s0) ^ k[key + 1], out, outOff + 4);
+        putInt(substitute(sBox, s2, s3, s0, s1) ^ k[key + 2], out, outOff + 8);
+        putInt(substitute(sBox, s3, s0, s1, s2) ^ k[key + 3], out, outOff + 12);
+    }
+
+    /**
+     * Same as {@link #decryptBlock} with the state kept in locals for 128-bit blocks.
+     */
+    private void decrypt128(byte[] in, int inOff, byte[] out, int outOff) {
+        int[] td0 = tables.td[0];
+        int[] td1 = tables.td[1];
+        int[] td2 = tables.td[2];
+        int[] td3 = tables.td[3];
+        int[] k = decryptionKeys;
+
+        int key = rounds * 4;
+
+        int s0 = getInt(in, inOff) ^ k[key];
+        int s1 = getInt(in, inOff + 4) ^ k[key + 1];
+        int s2 = getInt(in, inOff + 8) ^ k[key + 2];
+        int s3 = getInt(in, inOff + 12) ^ k[key + 3];
+
+        for (int round = rounds - 1; round >= 1; round--) {
+            key = round * 4;
+
+            int t0 = td0[s0 >>> 24] ^ td1[(s3 >>> 16) & 0xff]
+                ^ td2[(s2 >>> 8) & 0xff] ^ td3[s1 & 0xff] ^ k[key];
+            int t1 = td0[s1 >>> 24] ^ td1[(s0 >>> 16) & 0xff]
+                ^ td2[(s3 >>> 8) & 0xff] ^ td3[s2 & 0xff] ^ k[key + 1];
+            int t2 = td0[s2 >>> 24] ^ td1[(s1 >>> 16) & 0xff]
+                ^ td2[(s0 >>> 8) & 0xff] ^ td3[s3 & 0xff] ^ k[key + 2];
+            int t3 = td0[s3 >>> 24] ^ td1[(s2 >>> 16) & 0xff]
+                ^ td2[(s1 >>> 8) & 0xff] ^ td3[s0 & 0xff] ^ k[key + 3];
+
+            s0 = t0;
+            s1 = t1;
+            s2 = t2;
+            s3 = t3;
+        }
+
+        byte[] inverseSBox = tables.inverseSBox;
+
+        putInt(substitute(inverseSBox, s0, s3, s2, s1) ^ k[0], out, outOff);
+        putInt(substitute(inverseSBox, s1, s0, s3, s2) ^ k[1], out, outOff + 4);
+        putInt(substitute(inverseSBox, s2, s1, s0, s3) ^ k[2], out, outOff + 8);
+        putInt(substitute(inverseSBox, s3, s2, s1, s0) ^ k[3], out, outOff + 12);
+    }
+
+    /**
+     * Same as {@link #encrypt128} for two consecutive blocks, interleaved so that their
+     * independent table lookups can overlap.
+     */
+    private void encrypt128x2(byte[] in, int inOff, byte[] out, int outOff) {
+        int[] te0 = tables.te[0];
+        int[] te1 = tables.te[1];
+        int[] te2 = tables.te[2];
+        int[] te3 = tables.te[3];
+        int[] k = encryptionKeys;
+
+        int s0 = getInt(in, inOff) ^ k[0];
+        int s1 = getInt(in, inOff + 4) ^ k[1];
+        int s2 = getInt(in, inOff + 8) ^ k[2];
+        int s3 = getInt(in, inOff + 12) ^ k[3];
+        int r0 = getInt(in, inOff + 16) ^ k[0];
+        int r1 = getInt(in, inOff + 20) ^ k[1];
+        int r2 = getInt(in, inOff + 24) ^ k[2];
+        int r3 = getInt(in, inOff + 28) ^ k[3];
+
+        int key = 4;
+
+        for (int round = 1; round < rounds; round++, key += 4) {
+            int t0 = te0[s0 >>> 24] ^ te1[(s1 >>> 16) & 0xff]
+                ^ te2[(s2 >>> 8) & 0xff] ^ te3[s3 & 0xff] ^ k[key];
+            int u0 = te0[r0 >>> 24] ^ te1[(r1 >>> 16) & 0xff]
+                ^ te2[(r2 >>> 8) & 0xff] ^ te3[r3 & 0xff] ^ k[key];
+            int t1 = te0[s1 >>> 24] ^ te1[(s2 >>> 16) & 0xff]
+                ^ te2[(s3 >>> 8) & 0xff] ^ te3[s0 & 0xff] ^ k[key + 1];
+            int u1 = te0[r1 >>> 24] ^ te1[(r2 >>> 16) & 0xff]
+                ^ te2[(r3 >>> 8) & 0xff] ^ te3[r0 & 0xff] ^ k[key + 1];
+            int t2 = te0[s2 >>> 24] ^ te1[(s3 >>> 16) & 0xff]
+                ^ te2[(s0 >>> 8) & 0xff] ^ te3[s1 & 0xff] ^ k[key + 2];
+            int u2 = te0[r2 >>> 24] ^ te1[(r3 >>> 16) & 0xff]
+                ^ te2[(r0 >>> 8) & 0xff] ^ te3[r1 & 0xff] ^ k[key + 2];
+            int t3 = te0[s3 >>> 24] ^ te1[(s0 >>> 16) & 0xff]
+                ^ te2[(s1 >>> 8) & 0xff] ^ te3[s2 & 0xff] ^ k[key + 3];
+            int u3 = te0[r3 >>> 24] ^ te1[(r0 >>> 16) & 0xff]
+                ^ te2[(r1 >>> 8) & 0xff] ^ te3[r2 & 0xff] ^ k[key + 3];
+
+            s0 = t0;
+            s1 = t1;
+            s2 = t2;
+            s3 = t3;
+            r0 = u0;
+            r1 = u1;
+            r2 = u2;
+            r3 = u3;
+        }
+
+        byte[] sBox = tables.sBox;
+
+        putInt(substitute(sBox, s0, s1, s2, s3) ^ k[key], out, outOff);
+        putInt(substitute(sBox, s1, s2, s3, s0) ^ k[key + 1], out, outOff + 4);
+        putInt(substitute(sBox, s2, s3, s0, s1) ^ k[key + 2], out, outOff + 8);
+        putInt(substitute(sBox, s3, s0, s1, s2) ^ k[key + 3], out, outOff + 12);
+        putInt(substitute(sBox, r0, r1, r2, r3) ^ k[key], out, outOff + 16);
+        putInt(substitute(sBox, r1, r2, r3, r0) ^ k[key + 1], out, outOff + 20);
+        putInt(substitute(sBox, r2, r3, r0, r1) ^ k[key + 2], out, outOff + 24);
+        putInt(substitute(sBox, r3, r0, r1, r2) ^ k[key + 3], out, outOff + 28);
+    }
+
+    /**
+     * Same as {@link #decrypt128} for two consecutive blocks, interleaved so that their
+     * independent table lookups can overlap.
+     */
+    private void decrypt128x2(byte[] in, int inOff, byte[] out, int outOff) {
+        int[] td0 = tables.td[0];
+        int[] td1 = tables.td[1];
+        int[] td2 = tables.td[2];
+        int[] td3 = tables.td[3];
+        int[] k = decryptionKeys;
+
+        int key = rounds * 4;
+
+        int s0 = getInt(in, inOff) ^ k[key];
+        int s1 = getInt(in, inOff + 4) ^ k[key + 1];
+        int s2 = getInt(in, inOff + 8) ^ k[key + 2];
+        int s3 = getInt(in, inOff + 12) ^ k[key + 3];
+        int r0 = getInt(in, inOff + 16) ^ k[key];
+        int r1 = getInt(in, inOff + 20) ^ k[key + 1];
+        int r2 = getInt(in, inOff + 24) ^ k[key + 2];
+        int r3 = getInt(in, inOff + 28) ^ k[key + 3];
+
+        for (int round = rounds - 1; round >= 1; round--) {
+            key = round * 4;
+
+            int t0 = td0[s0 >>> 24] ^ td1[(s3 >>> 16) & 0xff]
+                ^ td2[(s2 >>> 8) & 0xff] ^ td3[s1 & 0xff] ^ k[key];
+            int u0 = td0[r0 >>> 24] ^ td1[(r3 >>> 16) & 0xff]
+                ^ td2[(r2 >>> 8) & 0xff] ^ td3[r1 & 0xff] ^ k[key];
+            int t1 = td0[s1 >>> 24] ^ td1[(s0 >>> 16) & 0xff]
+                ^ td2[(s3 >>> 8) & 0xff] ^ td3[s2 & 0xff] ^ k[key + 1];
+            int u1 = td0[r1 >>> 24] ^ td1[(r0 >>> 16) & 0xff]
+                ^ td2[(r3 >>> 8) & 0xff] ^ td3[r2 & 0xff] ^ k[key + 1];
+            int t2 = td0[s2 >>> 24] ^ td1[(s1 >>> 16) & 0xff]
+                ^ td2[(s0 >>> 8) & 0xff] ^ td3[s3 & 0xff] ^ k[key + 2];
+            int u2 = td0[r2 >>> 24] ^ td1[(r1 >>> 16) & 0xff]
+                ^ td2[(r0 >>> 8) & 0xff] ^ td3[r3 & 0xff] ^ k[key + 2];
+            int t3 = td0[s3 >>> 24] ^ td1[(s2 >>> 16) & 0xff]
+                ^ td2[(s1 >>> 8) & 0xff] ^ td3[s0 & 0xff] ^ k[key + 3];
+            int u3 = td0[r3 >>> 24] ^ td1[(r2 >>> 16) & 0xff]
+                ^ td2[(r1 >>> 8) & 0xff] ^ td3[r0 & 0xff] ^ k[key + 3];
+
+            s0 = t0;
+            s1 = t1;
+            s2 = t2;
+            s3 = t3;
+            r0 = u0;
+            r1 = u1;
+            r2 = u2;
+            r3 = u3;
+        }
+
+        byte[] inverseSBox = tables.inverseSBox;
+
+        putInt(substitute(inverseSBox, s0, s3, s2, s1) ^ k[0], out, outOff);
+        putInt(substitute(inverseSBox, s1, s0, s3, s2) ^ k[1], out, outOff + 4);
+        putInt(substitute(inverseSBox, s2, s1, s0, s3) ^ k[2], out, outOff + 8);
+        putInt(substitute(inverseSBox, s3, s2, s1, s0) ^ k[3], out, outOff + 12);
+        putInt(substitute(inverseSBox, r0, r3, r2, r1) ^ k[0], out, outOff + 16);
+        putInt(substitute(inverseSBox, r1, r0, r3, r2) ^ k[1], out, outOff + 20);
+        putInt(substitute(inverseSBox, r2, r1, r0, r3) ^ k[2], out, outOff + 24);
+        putInt(substitute(inverseSBox, r3, r2, r1, r0) ^ k[3], out, outOff + 28);
+    }
+
+    private void checkBlock(byte[] in, int inOff, byte[] out, int outOff) {
+        if (encryptionKeys == null)
+            throw new IllegalStateException("Cipher is not initialized");
+
+        Objects.requireNonNull(in, "input");
+        Objects.requireNonNull(out, "output");
+        Objects.checkFromIndexSize(inOff, blockSize(), in.length);
+        Objects.checkFromIndexSize(outOff, blockSize(), out.length);
+    }
+
+    private void checkBlocks(byte[] src, int srcOff, byte[] dst, int dstOff, int count) {
+        BlockCipher.checkBlocks(src, srcOff, dst, dstOff, count, blockSize());
+
+        if (encryptionKeys == null)
+            throw new IllegalStateException("Cipher is not initialized");
+    }
+
+    /**
+     * Assembles a column from the substituted row bytes of four source columns.
+     */
+    private static int substitute(byte[] box, int row0, int row1, int row2, int row3) {
+        return Byte.toUnsignedInt(box[row0 >>> 24]) << 24
+            | Byte.toUnsignedInt(box[(row1 >>> 16) & 0xff]) << 16
+            | Byte.toUnsignedInt(box[(row2 >>> 8) & 0xff]) << 8
+            | Byte.toUnsignedInt(box[row3 & 0xff]);
+    }
+
+    private static int getInt(byte[] bytes, int offset) {
+        return Byte.toUnsignedInt(bytes[offset]) << 24
+            | Byte.toUnsignedInt(bytes[offset + 1]) << 16
+            | Byte.toUnsignedInt(bytes[offset + 2]) << 8
+            | Byte.toUnsignedInt(bytes[offset + 3]);
+    }
+
+    private static void putInt(int word, byte[] bytes, int offset) {
+        bytes[offset] = (byte) (word >>> 24);
+        bytes[offset + 1] = (byte) (word >>> 16);
+        bytes[offset + 2] = (byte) (word >>> 8);
+        bytes[offset + 3] = (byte) word;
     }
 }
@@ -10,21 +10,20 @@ public final class RijndaelInverseSBox {
      * @param modulus irreducible modulus in GF(2^8).
      */
     RijndaelInverseSBox(short modulus) {
-        GaloisField field = new GaloisField();
-        init(field, modulus);
+        init(ModularGaloisField.of(modulus));
     }
 
     public byte lookup(byte b) {
         return sBox[Byte.toUnsignedInt(b)];
     }
 
-    private void init(GaloisField field, short modulus) {
+    private void init(ModularGaloisField field) {
         for (int s = 0; s < 256; s++) {
             byte b = (byte) (rotateLeft((byte) s, 1)
                                  ^ rotateLeft((byte) s, 3)
                                  ^ rotateLeft((byte) s, 6)
                                  ^ 0x05);
-            sBox[s] = b == 0 ? 0 : field.invUnchecked(b, modulus);
+            sBox[s] = b == 0 ? 0 : field.inv(b);
         }
     }
 
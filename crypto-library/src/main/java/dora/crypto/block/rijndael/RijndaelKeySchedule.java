@@ -54,7 +54,7 @@ public final class RijndaelKeySchedule implements KeySchedule {
                     w[i - n],
                     xor(
                         subWord(rotWord(w[i - 1])),
-                        parameters.rcon()[i / n - 1]
+                        parameters.rcon(i / n - 1)
                     )
                 );
             } else if (n < 6 && i % n == 4) {
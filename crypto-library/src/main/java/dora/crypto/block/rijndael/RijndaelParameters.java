@@ -3,27 +3,48 @@ package dora.crypto.block.rijndael;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Immutable Rijndael parameters together with the tables derived from them. Instances
+ * are safe to share between threads and ciphers; use {@link #of} to get a shared one.
+ */
 public final class RijndaelParameters {
 
     private static final short AES_MODULUS = 0x11b;
 
+    /** Maximum number of cached parameter sets with a non-AES modulus. */
+    private static final int MAX_CACHED_NON_AES = 32;
+
+    private static final Map<CacheKey, RijndaelParameters> AES_CACHE =
+        new ConcurrentHashMap<>();
+
+    private static final Map<CacheKey, RijndaelParameters> NON_AES_CACHE =
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, RijndaelParameters> eldest) {
+                return size() > MAX_CACHED_NON_AES;
+            }
+        };
+
     private final KeySize keySize;
     private final BlockSize blockSize;
     private final short modulus;
     private final RijndaelSBox sBox;
     private final RijndaelInverseSBox inverseSBox;
     private final RijndaelRcon rcon;
+    private final RijndaelTables tables;
 
     public RijndaelParameters(
         @NotNull KeySize keySize,
         @NotNull BlockSize blockSize,
         short modulus
     ) {
-        GaloisField field = new GaloisField();
-        if (!field.irreducible(modulus))
-            throw new IllegalArgumentException("Modulus may not be reducible");
+        // Validates the modulus and warms up the shared field tables.
+        ModularGaloisField.of(modulus);
 
         this.keySize = Objects.requireNonNull(keySize, "key size");
         this.blockSize = Objects.requireNonNull(blockSize, "block size");
@@ -31,19 +52,46 @@ public final class RijndaelParameters {
         this.sBox = new RijndaelSBox(modulus);
         this.inverseSBox = new RijndaelInverseSBox(modulus);
         this.rcon = new RijndaelRcon(modulus, keySize.words(), blockSize.words(), rounds());
+        this.tables = new RijndaelTables(modulus, sBox, inverseSBox);
     }
 
     //region Factory methods
+    /**
+     * Returns shared parameters for the given configuration, building them on first use.
+     * <p>
+     * Parameters with the AES modulus are kept for the lifetime of the application. Other
+     * moduli go into a small LRU cache, so rarely used ones may be rebuilt.
+     */
+    public static RijndaelParameters of(
+        @NotNull KeySize keySize,
+        @NotNull BlockSize blockSize,
+        short modulus
+    ) {
+        CacheKey key = new CacheKey(
+            Objects.requireNonNull(keySize, "key size"),
+            Objects.requireNonNull(blockSize, "block size"),
+            modulus
+        );
+
+        if (modulus == AES_MODULUS) {
+            return AES_CACHE.computeIfAbsent(key, CacheKey::create);
+        }
+
+        synchronized (NON_AES_CACHE) {
+            return NON_AES_CACHE.computeIfAbsent(key, CacheKey::create);
+        }
+    }
+
     public static RijndaelParameters aes128() {
-        return new RijndaelParameters(KeySize.KEY_128, BlockSize.BLOCK_128, AES_MODULUS);
+        return of(KeySize.KEY_128, BlockSize.BLOCK_128, AES_MODULUS);
     }
 
     public static RijndaelParameters aes192() {
-        return new RijndaelParameters(KeySize.KEY_192, BlockSize.BLOCK_128, AES_MODULUS);
+        return of(KeySize.KEY_192, BlockSize.BLOCK_128, AES_MODULUS);
     }
 
     public static RijndaelParameters aes256() {
-        return new RijndaelParameters(KeySize.KEY_256, BlockSize.BLOCK_128, AES_MODULUS);
+        return of(KeySize.KEY_256, BlockSize.BLOCK_128, AES_MODULUS);
     }
     //endregion
 
@@ -73,10 +121,35 @@ public final class RijndaelParameters {
     }
 
     public byte[][] rcon() {
-        return rcon.value();
+        byte[][] value = rcon.value();
+        byte[][] copy = new byte[value.length][];
+
+        for (int i = 0; i < value.length; i++) {
+            copy[i] = value[i].clone();
+        }
+
+        return copy;
+    }
+
+    /**
+     * Returns the round constant word without copying; callers must not modify it.
+     */
+    byte[] rcon(int index) {
+        return rcon.value()[index];
+    }
+
+    RijndaelTables tables() {
+        return tables;
     }
     //endregion
 
+    private record CacheKey(KeySize keySize, BlockSize blockSize, short modulus) {
+
+        RijndaelParameters create() {
+            return new RijndaelParameters(keySize, blockSize, modulus);
+        }
+    }
+
     public enum KeySize {
         KEY_128(16),
         KEY_192(24),
@@ -19,19 +19,18 @@ public final class RijndaelRcon {
     RijndaelRcon(short modulus, int keyWords, int blockWords, int rounds) {
         rcon = new byte[Math.ceilDiv(blockWords * (rounds + 1), keyWords)][4];
 
-        GaloisField field = new GaloisField();
-        init(field, modulus);
+        init(ModularGaloisField.of(modulus));
     }
 
     public byte[][] value() {
         return rcon;
     }
 
-    private void init(GaloisField field, short modulus) {
+    private void init(ModularGaloisField field) {
         rcon[0][0] = 0b1;
 
         for (int i = 1; i < rcon.length; i++) {
-            rcon[i][0] = field.mulModUnchecked(rcon[i - 1][0], (byte) 0b10, modulus);
+            rcon[i][0] = field.mulMod(rcon[i - 1][0], (byte) 0b10);
         }
     }
 }
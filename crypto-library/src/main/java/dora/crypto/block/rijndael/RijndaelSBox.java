@@ -10,17 +10,16 @@ public final class RijndaelSBox {
      * @param modulus irreducible modulus in GF(2^8).
      */
     RijndaelSBox(short modulus) {
-        GaloisField field = new GaloisField();
-        init(field, modulus);
+        init(ModularGaloisField.of(modulus));
     }
 
     public byte lookup(byte b) {
         return sBox[Byte.toUnsignedInt(b)];
     }
 
-    private void init(GaloisField field, short modulus) {
+    private void init(ModularGaloisField field) {
         for (int a = 0; a < sBox.length; a++) {
-            byte b = a == 0 ? 0 : field.invUnchecked((byte) a, modulus);
+            byte b = a == 0 ? 0 : field.inv((byte) a);
             sBox[a] = (byte) (b ^ rotateLeft(b, 1)
                                   ^ rotateLeft(b, 2)
                                   ^ rotateLeft(b, 3)
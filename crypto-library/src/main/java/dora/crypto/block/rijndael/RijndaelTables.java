@@ -0,0 +1,68 @@
+package dora.crypto.block.rijndael;
+
+/**
+ * Lookup tables fusing SubBytes and MixColumns into 32-bit column words.
+ * <p>
+ * A column is packed big-endian, i.e. row 0 occupies the most significant byte.
+ * <code>te[r][x]</code> is the MixColumns image of a column holding
+ * <code>S(x)</code> in row <code>r</code> and zeros elsewhere; <code>td[r][x]</code>
+ * does the same for <code>InvS(x)</code> and InvMixColumns.
+ */
+final class RijndaelTables {
+
+    private static final byte[] MIX_COLUMN = { 2, 1, 1, 3 };
+    private static final byte[] INVERSE_MIX_COLUMN = { 14, 9, 13, 11 };
+
+    final byte[] sBox = new byte[256];
+    final byte[] inverseSBox = new byte[256];
+    final int[][] te = new int[4][256];
+    final int[][] td = new int[4][256];
+
+    /**
+     * Initializes the tables.
+     *
+     * @param modulus     irreducible modulus in GF(2^8)
+     * @param sBox        S-Box for the modulus
+     * @param inverseSBox inverse S-Box for the modulus
+     */
+    RijndaelTables(short modulus, RijndaelSBox sBox, RijndaelInverseSBox inverseSBox) {
+        ModularGaloisField field = ModularGaloisField.of(modulus);
+
+        for (int x = 0; x < 256; x++) {
+            byte s = sBox.lookup((byte) x);
+            byte si = inverseSBox.lookup((byte) x);
+
+            this.sBox[x] = s;
+            this.inverseSBox[x] = si;
+
+            int e = column(field, s, MIX_COLUMN);
+            int d = column(field, si, INVERSE_MIX_COLUMN);
+
+            for (int row = 0; row < 4; row++) {
+                te[row][x] = Integer.rotateRight(e, 8 * row);
+                td[row][x] = Integer.rotateRight(d, 8 * row);
+            }
+        }
+    }
+
+    /**
+     * Applies InvMixColumns to a single column word.
+     */
+    int inverseMixColumn(int word) {
+        return td[0][Byte.toUnsignedInt(sBox[word >>> 24])]
+            ^ td[1][Byte.toUnsignedInt(sBox[(word >>> 16) & 0xff])]
+            ^ td[2][Byte.toUnsignedInt(sBox[(word >>> 8) & 0xff])]
+            ^ td[3][Byte.toUnsignedInt(sBox[word & 0xff])];
+    }
+
+    private static int column(ModularGaloisField field, byte b, byte[] coefficients) {
+        int word = 0;
+
+        for (byte coefficient : coefficients) {
+            word = (word << 8)
+                | Byte.toUnsignedInt(field.mulMod(b, coefficient));
+        }
+
+        return word;
+    }
+}
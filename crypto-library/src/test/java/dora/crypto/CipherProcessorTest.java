@@ -0,0 +1,163 @@
+package dora.crypto;
+
+import dora.crypto.SymmetricCipherContext.Operation;
+import dora.crypto.block.des.DesBlockCipher;
+import dora.crypto.block.mode.CtrCipherMode;
+import dora.crypto.block.mode.CtrCipherMode.CtrParameters;
+import dora.crypto.block.padding.Pkcs7Padding;
+import net.jqwik.api.Example;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.constraints.IntRange;
+import net.jqwik.api.constraints.Size;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CipherProcessorTest {
+
+    private static final byte[] KEY = { 1, 2, 3, 4, 5, 6, 7, 8 };
+    private static final CtrParameters PARAMETERS = new CtrParameters(new byte[4], 7);
+
+    @Property(tries = 30)
+    void processorMatchesWholeArrayProcessing(
+        @ForAll @Size(max = 2000) byte[] plaintext,
+        @ForAll @IntRange(min = 1, max = 300) int itemSize,
+        @ForAll @IntRange(min = 1, max = 200) int batchSize
+    ) throws Exception {
+        SymmetricCipherContext context = context();
+        context.init(KEY, PARAMETERS);
+        byte[] expected = context.encrypt(plaintext);
+
+        assertThat(run(Operation.ENCRYPT, plaintext, itemSize, batchSize)).isEqualTo(expected);
+        assertThat(run(Operation.DECRYPT, expected, itemSize, batchSize)).isEqualTo(plaintext);
+    }
+
+    @Example
+    void processorHonoursDemand() throws InterruptedException {
+        SymmetricCipherContext context = context();
+        context.init(Operation.ENCRYPT, KEY, PARAMETERS);
+
+        CipherProcessor processor = new CipherProcessor(context, ForkJoinPool.commonPool(), 16);
+        TestSubscriber subscriber = new TestSubscriber();
+
+        try (SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(processor);
+            processor.subscribe(subscriber);
+
+            for (int i = 0; i < 10; i++) {
+                publisher.submit(ByteBuffer.allocate(16));
+            }
+
+            subscriber.subscription.request(1);
+
+            assertThat(subscriber.items.poll(5, TimeUnit.SECONDS)).isNotNull();
+            assertThat(subscriber.items.poll(100, TimeUnit.MILLISECONDS)).isNull();
+
+            subscriber.subscription.request(2);
+
+            assertThat(subscriber.items.poll(5, TimeUnit.SECONDS)).isNotNull();
+            assertThat(subscriber.items.poll(5, TimeUnit.SECONDS)).isNotNull();
+            assertThat(subscriber.items.poll(100, TimeUnit.MILLISECONDS)).isNull();
+        }
+    }
+
+    @Example
+    void upstreamErrorIsPropagated() throws Exception {
+        SymmetricCipherContext context = context();
+        context.init(Operation.ENCRYPT, KEY, PARAMETERS);
+
+        CipherProcessor processor = new CipherProcessor(context, ForkJoinPool.commonPool(), 16);
+        TestSubscriber subscriber = new TestSubscriber();
+
+        SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<>();
+        publisher.subscribe(processor);
+        processor.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        publisher.closeExceptionally(new IllegalStateException("Upload aborted"));
+
+        assertThat(subscriber.completion.handle((result, e) -> e).get(5, TimeUnit.SECONDS))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("Upload aborted");
+    }
+
+    private static byte[] run(
+        Operation operation,
+        byte[] data,
+        int itemSize,
+        int batchSize
+    ) throws Exception {
+        SymmetricCipherContext context = context();
+        context.init(operation, KEY, PARAMETERS);
+
+        CipherProcessor processor = new CipherProcessor(
+            context, ForkJoinPool.commonPool(), batchSize);
+        TestSubscriber subscriber = new TestSubscriber();
+
+        try (SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(processor);
+            processor.subscribe(subscriber);
+
+            // Request one buffer at a time, as a slow consumer would.
+            subscriber.requestOneByOne = true;
+            subscriber.subscription.request(1);
+
+            for (int position = 0; position < data.length; position += itemSize) {
+                int length = Math.min(itemSize, data.length - position);
+                publisher.submit(ByteBuffer.wrap(data, position, length));
+            }
+        }
+
+        subscriber.completion.get(5, TimeUnit.SECONDS);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (ByteBuffer item : List.copyOf(subscriber.items)) {
+            output.write(item.array(), item.arrayOffset() + item.position(), item.remaining());
+        }
+
+        return output.toByteArray();
+    }
+
+    private static SymmetricCipherContext context() {
+        return new SymmetricCipherContext(
+            new CtrCipherMode(new DesBlockCipher(), ForkJoinPool.commonPool()),
+            new Pkcs7Padding());
+    }
+
+    private static final class TestSubscriber implements Flow.Subscriber<ByteBuffer> {
+
+        final BlockingQueue<ByteBuffer> items = new LinkedBlockingQueue<>();
+        final CompletableFuture<Void> completion = new CompletableFuture<>();
+        volatile Flow.Subscription subscription;
+        volatile boolean requestOneByOne;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+            items.add(item);
+
+            if (requestOneByOne) {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            completion.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completion.complete(null);
+        }
+    }
+}
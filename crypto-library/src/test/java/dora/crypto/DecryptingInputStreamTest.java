@@ -0,0 +1,108 @@
+package dora.crypto;
+
+import dora.crypto.SymmetricCipherContext.Operation;
+import dora.crypto.block.des.DesBlockCipher;
+import dora.crypto.block.mode.CbcCipherMode;
+import dora.crypto.block.mode.Parameters.IvParameters;
+import dora.crypto.block.padding.Pkcs7Padding;
+import net.jqwik.api.Example;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.constraints.IntRange;
+import net.jqwik.api.constraints.Size;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class DecryptingInputStreamTest {
+
+    private static final byte[] KEY = { 1, 2, 3, 4, 5, 6, 7, 8 };
+    private static final IvParameters PARAMETERS = new IvParameters(new byte[8]);
+
+    @Property(tries = 50)
+    void streamMatchesPlaintext(
+        @ForAll @Size(max = 2000) byte[] plaintext,
+        @ForAll @IntRange(min = 1, max = 300) int readSize,
+        @ForAll @IntRange(min = 1, max = 100) int bufferSize
+    ) throws IOException, InterruptedException {
+        SymmetricCipherContext context = context();
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+
+        context.init(Operation.DECRYPT, KEY, PARAMETERS);
+
+        try (InputStream stream = new DecryptingInputStream(
+            new ByteArrayInputStream(encrypt(plaintext)), context, bufferSize)) {
+            byte[] buffer = new byte[readSize];
+            int bytesRead;
+
+            // Single-byte reads at the start cover read().
+            int first = stream.read();
+            if (first != -1) {
+                decrypted.write(first);
+            }
+
+            while ((bytesRead = stream.read(buffer)) != -1) {
+                decrypted.write(buffer, 0, bytesRead);
+            }
+        }
+
+        assertThat(decrypted.toByteArray()).isEqualTo(plaintext);
+    }
+
+    @Property(tries = 30)
+    void channelFillsDirectBuffers(
+        @ForAll @Size(max = 2000) byte[] plaintext
+    ) throws IOException, InterruptedException {
+        SymmetricCipherContext context = context();
+        ByteBuffer decrypted = ByteBuffer.allocateDirect(plaintext.length + 1);
+
+        context.init(Operation.DECRYPT, KEY, PARAMETERS);
+
+        try (ReadableByteChannel channel = new DecryptingByteChannel(
+            Channels.newChannel(new ByteArrayInputStream(encrypt(plaintext))), context)) {
+            while (channel.read(decrypted) != -1) {
+                assertThat(decrypted.position()).isLessThanOrEqualTo(plaintext.length);
+            }
+        }
+
+        byte[] result = new byte[decrypted.flip().remaining()];
+        decrypted.get(result);
+
+        assertThat(result).isEqualTo(plaintext);
+    }
+
+    @Example
+    void invalidCiphertextIsReportedAtTheEnd() throws InterruptedException {
+        SymmetricCipherContext context = context();
+        byte[] encrypted = encrypt(new byte[100]);
+
+        context.init(Operation.DECRYPT, KEY, PARAMETERS);
+        InputStream stream = new DecryptingInputStream(
+            new ByteArrayInputStream(encrypted, 0, encrypted.length - 1), context);
+
+        assertThatThrownBy(stream::readAllBytes)
+            .isInstanceOf(IOException.class)
+            .hasMessage("Invalid ciphertext");
+    }
+
+    private static SymmetricCipherContext context() {
+        return new SymmetricCipherContext(
+            new CbcCipherMode(new DesBlockCipher(), ForkJoinPool.commonPool()),
+            new Pkcs7Padding());
+    }
+
+    private static byte[] encrypt(byte[] plaintext) throws InterruptedException {
+        SymmetricCipherContext context = context();
+        context.init(KEY, PARAMETERS);
+        return context.encrypt(plaintext);
+    }
+}
@@ -0,0 +1,121 @@
+package dora.crypto;
+
+import dora.crypto.SymmetricCipherContext.Operation;
+import dora.crypto.block.des.DesBlockCipher;
+import dora.crypto.block.mode.CbcCipherMode;
+import dora.crypto.block.mode.Parameters.IvParameters;
+import dora.crypto.block.padding.Pkcs7Padding;
+import net.jqwik.api.Example;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.constraints.IntRange;
+import net.jqwik.api.constraints.Size;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class EncryptingOutputStreamTest {
+
+    private static final byte[] KEY = { 1, 2, 3, 4, 5, 6, 7, 8 };
+    private static final IvParameters PARAMETERS = new IvParameters(new byte[8]);
+
+    @Property(tries = 50)
+    void streamMatchesWholeArrayEncryption(
+        @ForAll @Size(max = 2000) byte[] plaintext,
+        @ForAll @Size(min = 1, max = 10) List<@IntRange(max = 300) Integer> writeSizes,
+        @ForAll @IntRange(min = 1, max = 100) int bufferSize
+    ) throws IOException, InterruptedException {
+        SymmetricCipherContext context = context();
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+
+        context.init(Operation.ENCRYPT, KEY, PARAMETERS);
+
+        try (EncryptingOutputStream stream =
+                 new EncryptingOutputStream(encrypted, context, bufferSize)) {
+            int position = 0;
+
+            for (int i = 0; position < plaintext.length; i++) {
+                int size = writeSizes.get(i % writeSizes.size());
+
+                if (size == 0) {
+                    stream.write(plaintext[position++]);
+                } else {
+                    int length = Math.min(size, plaintext.length - position);
+                    stream.write(plaintext, position, length);
+                    position += length;
+                }
+            }
+        }
+
+        assertThat(encrypted.toByteArray()).isEqualTo(expected(plaintext));
+    }
+
+    @Property(tries = 30)
+    void channelAcceptsDirectBuffers(
+        @ForAll @Size(max = 2000) byte[] plaintext
+    ) throws IOException, InterruptedException {
+        SymmetricCipherContext context = context();
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+
+        context.init(Operation.ENCRYPT, KEY, PARAMETERS);
+
+        try (WritableByteChannel channel =
+                 new EncryptingByteChannel(Channels.newChannel(encrypted), context)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(plaintext.length);
+            buffer.put(plaintext).flip();
+
+            assertThat(channel.write(buffer)).isEqualTo(plaintext.length);
+            assertThat(buffer.hasRemaining()).isFalse();
+        }
+
+        assertThat(encrypted.toByteArray()).isEqualTo(expected(plaintext));
+    }
+
+    @Example
+    void flushWritesCompleteBlocks() throws IOException {
+        SymmetricCipherContext context = context();
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+
+        context.init(Operation.ENCRYPT, KEY, PARAMETERS);
+        EncryptingOutputStream stream = new EncryptingOutputStream(encrypted, context);
+
+        stream.write(new byte[20]);
+        stream.flush();
+
+        assertThat(encrypted.size()).isEqualTo(16);
+
+        stream.close();
+
+        assertThat(encrypted.size()).isEqualTo(24);
+        assertThatThrownBy(() -> stream.write(0)).isInstanceOf(IOException.class);
+    }
+
+    @Example
+    void contextMustBeInitializedForEncryption() {
+        SymmetricCipherContext context = context();
+        context.init(Operation.DECRYPT, KEY, PARAMETERS);
+
+        assertThatThrownBy(() -> new EncryptingOutputStream(new ByteArrayOutputStream(), context))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static SymmetricCipherContext context() {
+        return new SymmetricCipherContext(
+            new CbcCipherMode(new DesBlockCipher(), ForkJoinPool.commonPool()),
+            new Pkcs7Padding());
+    }
+
+    private static byte[] expected(byte[] plaintext) throws InterruptedException {
+        SymmetricCipherContext context = context();
+        context.init(KEY, PARAMETERS);
+        return context.encrypt(plaintext);
+    }
+}
@@ -0,0 +1,113 @@
+package dora.crypto;
+
+import dora.crypto.SymmetricCipher.CipherModeType;
+import dora.crypto.block.des.DesBlockCipher;
+import dora.crypto.block.mode.CtrCipherMode.CtrParameters;
+import dora.crypto.block.mode.Parameters;
+import dora.crypto.block.mode.Parameters.IvParameters;
+import dora.crypto.block.mode.RandomDeltaCipherMode.RandomDeltaParameters;
+import dora.crypto.block.padding.Pkcs7Padding;
+import net.jqwik.api.Example;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.constraints.IntRange;
+import net.jqwik.api.constraints.Size;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SegmentedContainerTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    private static final byte[] KEY = { 1, 2, 3, 4, 5, 6, 7, 8 };
+    private static final byte[] IV = { 8, 7, 6, 5, 4, 3, 2, 1 };
+
+    @Property(tries = 30)
+    void decryptedContainerEqualsPlaintext(
+        @ForAll @Size(max = 2000) byte[] plaintext,
+        @ForAll @IntRange(min = 1, max = 16) int segmentBlocks
+    ) throws IOException, InterruptedException {
+        for (CipherModeType modeType : CipherModeType.values()) {
+            Parameters parameters = parameters(modeType);
+            SegmentedContainer container = container(modeType);
+
+            byte[] encrypted = encrypt(container, parameters, segmentBlocks * 8, plaintext);
+
+            assertThat(decrypt(container, parameters, encrypted))
+                .as("%s", modeType)
+                .isEqualTo(plaintext);
+        }
+    }
+
+    @Example
+    void segmentsUseDistinctIvs() throws IOException, InterruptedException {
+        SegmentedContainer container = container(CipherModeType.CBC);
+        byte[] encrypted = encrypt(container, new IvParameters(IV), 16, new byte[32]);
+
+        // Header, then segments of 13 header bytes and 16 ciphertext bytes.
+        byte[] first = Arrays.copyOfRange(encrypted, 9 + 13, 9 + 13 + 16);
+        byte[] second = Arrays.copyOfRange(encrypted, 9 + 29 + 13, 9 + 29 + 13 + 16);
+
+        assertThat(first).isNotEqualTo(second);
+    }
+
+    @Example
+    void truncatedContainerIsRejected() throws IOException, InterruptedException {
+        SegmentedContainer container = container(CipherModeType.CBC);
+        byte[] encrypted = encrypt(container, new IvParameters(IV), 16, new byte[100]);
+        byte[] truncated = Arrays.copyOf(encrypted, encrypted.length - 10);
+
+        assertThatThrownBy(() -> decrypt(container, new IvParameters(IV), truncated))
+            .isInstanceOf(IOException.class);
+    }
+
+    @Example
+    void foreignDataIsRejected() {
+        SegmentedContainer container = container(CipherModeType.CBC);
+
+        assertThatThrownBy(() -> decrypt(container, new IvParameters(IV), new byte[64]))
+            .isInstanceOf(IOException.class)
+            .hasMessage("Not a segmented container");
+    }
+
+    private static SegmentedContainer container(CipherModeType modeType) {
+        return new SegmentedContainer(new DesBlockCipher(), modeType, new Pkcs7Padding(), POOL);
+    }
+
+    private static Parameters parameters(CipherModeType modeType) {
+        return switch (modeType) {
+            case ECB -> Parameters.NO_PARAMETERS;
+            case CTR -> new CtrParameters(new byte[] { 1, 2, 3, 4 }, 5);
+            case RANDOM_DELTA -> new RandomDeltaParameters(new byte[] { 1, 2, 3, 4 }, 5, 42L);
+            default -> new IvParameters(IV);
+        };
+    }
+
+    private static byte[] encrypt(
+        SegmentedContainer container,
+        Parameters parameters,
+        int segmentSize,
+        byte[] plaintext
+    ) throws IOException, InterruptedException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        container.encrypt(KEY, parameters, segmentSize, new ByteArrayInputStream(plaintext), out);
+        return out.toByteArray();
+    }
+
+    private static byte[] decrypt(
+        SegmentedContainer container,
+        Parameters parameters,
+        byte[] encrypted
+    ) throws IOException, InterruptedException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        container.decrypt(KEY, parameters, new ByteArrayInputStream(encrypted), out);
+        return out.toByteArray();
+    }
+}
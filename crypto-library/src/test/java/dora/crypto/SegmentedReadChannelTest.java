@@ -0,0 +1,133 @@
+package dora.crypto;
+
+import dora.crypto.SymmetricCipher.CipherModeType;
+import dora.crypto.block.des.DesBlockCipher;
+import dora.crypto.block.mode.CtrCipherMode.CtrParameters;
+import dora.crypto.block.mode.Parameters;
+import dora.crypto.block.mode.Parameters.IvParameters;
+import dora.crypto.block.padding.Pkcs7Padding;
+import net.jqwik.api.Example;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.constraints.IntRange;
+import net.jqwik.api.constraints.Size;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SegmentedReadChannelTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    private static final byte[] KEY = { 1, 2, 3, 4, 5, 6, 7, 8 };
+
+    @Property(tries = 30)
+    void readsMatchPlaintextAtAnyPosition(
+        @ForAll @Size(max = 3000) byte[] plaintext,
+        @ForAll @IntRange(min = 1, max = 16) int segmentBlocks,
+        @ForAll @IntRange(max = 3000) int from,
+        @ForAll @IntRange(min = 1, max = 500) int length
+    ) throws IOException, InterruptedException {
+        assertReadsMatch(CipherModeType.CBC, new IvParameters(new byte[8]),
+            plaintext, segmentBlocks * 8, from, length);
+        assertReadsMatch(CipherModeType.CTR, new CtrParameters(new byte[4], 3),
+            plaintext, segmentBlocks * 8, from, length);
+    }
+
+    @Example
+    void containersWithoutIndexAreRejected() throws IOException, InterruptedException {
+        SegmentedContainer container = container(CipherModeType.CBC);
+        byte[] encrypted = encrypt(container, new IvParameters(new byte[8]), 64, new byte[100]);
+        Path file = write(Arrays.copyOf(encrypted, encrypted.length - 1));
+
+        try {
+            assertThatThrownBy(() -> container.open(
+                KEY, new IvParameters(new byte[8]), Files.newByteChannel(file)))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Container has no segment index");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Example
+    void channelIsReadOnly() throws IOException, InterruptedException {
+        SegmentedContainer container = container(CipherModeType.CBC);
+        byte[] encrypted = encrypt(container, new IvParameters(new byte[8]), 64, new byte[100]);
+        Path file = write(encrypted);
+
+        try (SeekableByteChannel channel = container.open(
+            KEY, new IvParameters(new byte[8]), Files.newByteChannel(file))) {
+            assertThat(channel.size()).isEqualTo(100);
+            assertThatThrownBy(() -> channel.write(ByteBuffer.allocate(1)))
+                .isInstanceOf(NonWritableChannelException.class);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void assertReadsMatch(
+        CipherModeType modeType,
+        Parameters parameters,
+        byte[] plaintext,
+        int segmentSize,
+        int from,
+        int length
+    ) throws IOException, InterruptedException {
+        SegmentedContainer container = container(modeType);
+        Path file = write(encrypt(container, parameters, segmentSize, plaintext));
+
+        try (SeekableByteChannel channel = container.open(
+            KEY, parameters, Files.newByteChannel(file))) {
+            assertThat(channel.size()).isEqualTo(plaintext.length);
+
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            int read = channel.position(from).read(buffer);
+
+            if (from >= plaintext.length) {
+                assertThat(read).isEqualTo(-1);
+            } else {
+                int to = Math.min(plaintext.length, from + length);
+
+                assertThat(read).isEqualTo(to - from);
+                assertThat(Arrays.copyOf(buffer.array(), read))
+                    .isEqualTo(Arrays.copyOfRange(plaintext, from, to));
+                assertThat(channel.position()).isEqualTo(to);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static SegmentedContainer container(CipherModeType modeType) {
+        return new SegmentedContainer(new DesBlockCipher(), modeType, new Pkcs7Padding(), POOL);
+    }
+
+    private static byte[] encrypt(
+        SegmentedContainer container,
+        Parameters parameters,
+        int segmentSize,
+        byte[] plaintext
+    ) throws IOException, InterruptedException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        container.encrypt(KEY, parameters, segmentSize, new ByteArrayInputStream(plaintext), out);
+        return out.toByteArray();
+    }
+
+    private static Path write(byte[] data) throws IOException {
+        Path file = Files.createTempFile("container", null);
+        Files.write(file, data);
+        return file;
+    }
+}
@@ -0,0 +1,118 @@
+package dora.crypto;
+
+import dora.crypto.block.des.DesBlockCipher;
+import dora.crypto.block.mode.CbcCipherMode;
+import dora.crypto.block.mode.CipherMode;
+import dora.crypto.block.mode.Parameters.IvParameters;
+import dora.crypto.block.padding.Padding;
+import dora.crypto.block.padding.Pkcs7Padding;
+import net.jqwik.api.Example;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.constraints.IntRange;
+import net.jqwik.api.constraints.Size;
+
+import java.io.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class StreamPipelineTest {
+
+    private static final byte[] KEY = { 1, 2, 3, 4, 5, 6, 7, 8 };
+
+    private final Padding padding = new Pkcs7Padding();
+
+    @Property(tries = 50)
+    void pipelineMatchesWholeArrayProcessing(
+        @ForAll @Size(max = 3000) byte[] plaintext,
+        @ForAll @IntRange(min = 8, max = 200) int chunkSize,
+        @ForAll @IntRange(min = 1, max = 100) int readSize
+    ) throws IOException, InterruptedException {
+        CipherMode mode = mode();
+        byte[] expected = mode.encrypt(padding.pad(plaintext, 8));
+
+        mode.init(KEY, new IvParameters(new byte[8]));
+        byte[] encrypted = run(mode, true, chunkSize, new TrickleInputStream(plaintext, readSize));
+
+        assertThat(encrypted).isEqualTo(expected);
+
+        mode.init(KEY, new IvParameters(new byte[8]));
+        byte[] decrypted = run(mode, false, chunkSize, new TrickleInputStream(encrypted, readSize));
+
+        assertThat(decrypted).isEqualTo(plaintext);
+    }
+
+    @Example
+    void readFailureIsRethrown() {
+        InputStream input = new SequenceInputStream(
+            new ByteArrayInputStream(new byte[100]),
+            new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    throw new IOException("Disk on fire");
+                }
+            });
+
+        assertThatThrownBy(() -> run(mode(), true, 16, input))
+            .isInstanceOf(IOException.class)
+            .hasMessage("Disk on fire");
+    }
+
+    @Example
+    void writeFailureIsRethrown() {
+        StreamPipeline pipeline = new StreamPipeline(mode(), padding, true, 16);
+        OutputStream output = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Disk full");
+            }
+        };
+
+        assertThatThrownBy(() -> pipeline.run(new ByteArrayInputStream(new byte[1000]), output))
+            .isInstanceOf(IOException.class)
+            .hasMessage("Disk full");
+    }
+
+    @Example
+    void invalidPaddingIsRethrown() {
+        assertThatThrownBy(() -> run(mode(), false, 16, new ByteArrayInputStream(new byte[64])))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static CipherMode mode() {
+        CipherMode mode = new CbcCipherMode(new DesBlockCipher(), ForkJoinPool.commonPool());
+        mode.init(KEY, new IvParameters(new byte[8]));
+        return mode;
+    }
+
+    private byte[] run(
+        CipherMode mode,
+        boolean encrypt,
+        int chunkSize,
+        InputStream input
+    ) throws IOException, InterruptedException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new StreamPipeline(mode, padding, encrypt, chunkSize).run(input, output);
+        return output.toByteArray();
+    }
+
+    /**
+     * Returns at most a few bytes per read, like a slow pipe.
+     */
+    private static final class TrickleInputStream extends ByteArrayInputStream {
+
+        private final int readSize;
+
+        TrickleInputStream(byte[] data, int readSize) {
+            super(data);
+            this.readSize = readSize;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, readSize));
+        }
+    }
+}
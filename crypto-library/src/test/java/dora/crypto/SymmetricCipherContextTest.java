@@ -0,0 +1,233 @@
+package dora.crypto;
+
+import dora.crypto.SymmetricCipher.CipherModeType;
+import dora.crypto.SymmetricCipher.PaddingType;
+import dora.crypto.SymmetricCipherContext.Operation;
+import dora.crypto.block.des.DesBlockCipher;
+import dora.crypto.block.mode.CbcCipherMode;
+import dora.crypto.block.mode.CipherMode;
+import dora.crypto.block.mode.CtrCipherMode;
+import dora.crypto.block.mode.CtrCipherMode.CtrParameters;
+import dora.crypto.block.mode.Parameters;
+import dora.crypto.block.mode.Parameters.IvParameters;
+import dora.crypto.block.mode.RandomDeltaCipherMode.RandomDeltaParameters;
+import dora.crypto.block.padding.Pkcs7Padding;
+import net.jqwik.api.Example;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.constraints.IntRange;
+import net.jqwik.api.constraints.Size;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SymmetricCipherContextTest {
+
+    private static final byte[] KEY = { 1, 2, 3, 4, 5, 6, 7, 8 };
+
+    @Property(tries = 30)
+    void mappedFilesMatchStreams(
+        @ForAll @Size(max = 5000) byte[] plaintext,
+        @ForAll @IntRange(min = 1, max = 64) int windowBlocks
+    ) throws IOException, InterruptedException {
+        assertMappedFilesMatchStreams(
+            new CbcCipherMode(new DesBlockCipher(), ForkJoinPool.commonPool()),
+            new IvParameters(new byte[8]), plaintext, windowBlocks * 8);
+        assertMappedFilesMatchStreams(
+            new CtrCipherMode(new DesBlockCipher(), ForkJoinPool.commonPool()),
+            new CtrParameters(new byte[4], 1), plaintext, windowBlocks * 8);
+    }
+
+    @Property(tries = 50)
+    void incrementalProcessingMatchesWholeArrays(
+        @ForAll @Size(max = 500) byte[] plaintext,
+        @ForAll @Size(max = 10) List<@IntRange(max = 100) Integer> splits
+    ) throws InterruptedException {
+        for (CipherModeType modeType : CipherModeType.values()) {
+            for (PaddingType paddingType : PaddingType.values()) {
+                Parameters parameters = parameters(modeType);
+                SymmetricCipherContext context = new SymmetricCipherContext(
+                    modeType.createMode(new DesBlockCipher(), ForkJoinPool.commonPool()),
+                    paddingType.createPadding());
+
+                context.init(KEY, parameters);
+                byte[] encrypted = context.encrypt(plaintext);
+                context.init(KEY, parameters);
+                byte[] expected = context.decrypt(encrypted);
+
+                context.init(Operation.ENCRYPT, KEY, parameters);
+                byte[] incrementallyEncrypted = process(context, plaintext, splits);
+                context.init(Operation.DECRYPT, KEY, parameters);
+                byte[] incrementallyDecrypted = process(context, encrypted, splits);
+
+                // ISO 10126 pads with random bytes, so only the decryptions can match.
+                if (paddingType != PaddingType.ISO_10126) {
+                    assertThat(incrementallyEncrypted)
+                        .as("%s with %s", modeType, paddingType)
+                        .isEqualTo(encrypted);
+                }
+
+                assertThat(incrementallyDecrypted)
+                    .as("%s with %s", modeType, paddingType)
+                    .isEqualTo(expected);
+            }
+        }
+    }
+
+    @Property(tries = 50)
+    void bufferProcessingMatchesWholeArrays(
+        @ForAll @Size(max = 500) byte[] plaintext,
+        @ForAll boolean direct
+    ) throws InterruptedException {
+        for (CipherModeType modeType : CipherModeType.values()) {
+            Parameters parameters = parameters(modeType);
+            SymmetricCipherContext context = new SymmetricCipherContext(
+                modeType.createMode(new DesBlockCipher(), ForkJoinPool.commonPool()),
+                new Pkcs7Padding());
+
+            context.init(KEY, parameters);
+            byte[] expected = context.encrypt(plaintext);
+
+            ByteBuffer src = allocate(plaintext.length, direct).put(plaintext).flip();
+            ByteBuffer dst = allocate(plaintext.length + 8, direct);
+
+            context.init(KEY, parameters);
+            assertThat(context.encrypt(src, dst)).isEqualTo(expected.length);
+
+            byte[] encrypted = new byte[expected.length];
+            dst.flip().get(encrypted);
+            assertThat(encrypted).as("%s", modeType).isEqualTo(expected);
+
+            ByteBuffer decrypted = allocate(expected.length, direct);
+
+            context.init(KEY, parameters);
+            assertThat(context.decrypt(dst.flip(), decrypted)).isEqualTo(plaintext.length);
+
+            byte[] result = new byte[plaintext.length];
+            decrypted.flip().get(result);
+            assertThat(result).as("%s", modeType).isEqualTo(plaintext);
+        }
+    }
+
+    @Example
+    void smallBufferThrowsException() {
+        SymmetricCipherContext context = new SymmetricCipherContext(
+            new CbcCipherMode(new DesBlockCipher(), ForkJoinPool.commonPool()),
+            new Pkcs7Padding());
+
+        context.init(KEY, new IvParameters(new byte[8]));
+
+        assertThatThrownBy(() -> context.encrypt(ByteBuffer.allocate(8), ByteBuffer.allocate(8)))
+            .isInstanceOf(BufferOverflowException.class);
+    }
+
+    @Example
+    void incrementalOperationsRequireInit() {
+        SymmetricCipherContext context = new SymmetricCipherContext(
+            new CbcCipherMode(new DesBlockCipher(), ForkJoinPool.commonPool()),
+            new Pkcs7Padding());
+
+        context.init(KEY, new IvParameters(new byte[8]));
+
+        assertThatThrownBy(() -> context.update(new byte[8], 0, 8, new byte[8], 0))
+            .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> context.doFinal(new byte[8], 0))
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    /**
+     * Feeds the data to the context in parts of the given sizes, then the rest.
+     */
+    private static byte[] process(
+        SymmetricCipherContext context,
+        byte[] data,
+        List<Integer> splits
+    ) throws InterruptedException {
+        byte[] output = new byte[context.outputSize(data.length)];
+        int position = 0;
+        int written = 0;
+
+        for (int split : splits) {
+            int length = Math.min(split, data.length - position);
+            written += context.update(data, position, length, output, written);
+            position += length;
+        }
+
+        written += context.update(data, position, data.length - position, output, written);
+        written += context.doFinal(output, written);
+
+        return Arrays.copyOf(output, written);
+    }
+
+    private static ByteBuffer allocate(int capacity, boolean direct) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private static Parameters parameters(CipherModeType modeType) {
+        return switch (modeType) {
+            case ECB -> Parameters.NO_PARAMETERS;
+            case CTR -> new CtrParameters(new byte[] { 1, 2, 3, 4 }, 5);
+            case RANDOM_DELTA -> new RandomDeltaParameters(new byte[] { 1, 2, 3, 4 }, 5, 42L);
+            default -> new IvParameters(new byte[] { 8, 7, 6, 5, 4, 3, 2, 1 });
+        };
+    }
+
+    private static void assertMappedFilesMatchStreams(
+        CipherMode mode,
+        Parameters parameters,
+        byte[] plaintext,
+        int windowSize
+    ) throws IOException, InterruptedException {
+        SymmetricCipherContext context = new SymmetricCipherContext(
+            mode, new Pkcs7Padding(), windowSize);
+
+        context.init(KEY, parameters);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        context.encryptStream(new ByteArrayInputStream(plaintext), expected);
+
+        Path input = Files.createTempFile("input", null);
+        Path encrypted = Files.createTempFile("encrypted", null);
+        Path decrypted = Files.createTempFile("decrypted", null);
+
+        try {
+            Files.write(input, plaintext);
+
+            context.init(KEY, parameters);
+            try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+                 FileChannel out = open(encrypted)) {
+                context.encryptFile(in, out);
+            }
+
+            assertThat(Files.readAllBytes(encrypted)).isEqualTo(expected.toByteArray());
+
+            context.init(KEY, parameters);
+            try (FileChannel in = FileChannel.open(encrypted, StandardOpenOption.READ);
+                 FileChannel out = open(decrypted)) {
+                context.decryptFile(in, out);
+            }
+
+            assertThat(Files.readAllBytes(decrypted)).isEqualTo(plaintext);
+        } finally {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(encrypted);
+            Files.deleteIfExists(decrypted);
+        }
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+}
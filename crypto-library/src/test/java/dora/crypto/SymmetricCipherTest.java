@@ -11,12 +11,15 @@ import net.jqwik.api.*;
 import net.jqwik.api.constraints.Positive;
 import net.jqwik.api.constraints.Size;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class SymmetricCipherTest {
 
@@ -405,6 +408,148 @@ public class SymmetricCipherTest {
     }
     //endregion
 
+    //region Prefetching
+    @Example
+    void decryptFile_DES_OFB_Prefetching(
+        @ForAll @Size(value = 8) byte[] key,
+        @ForAll @Size(value = 8) byte[] iv
+    ) throws IOException, InterruptedException {
+        decryptFileTests(
+            SymmetricCipher.builder()
+                .cipher(new DesBlockCipher())
+                .mode(CipherModeType.OFB)
+                .padding(PaddingType.PKCS7)
+                .key(key)
+                .iv(iv)
+                .prefetch(64)
+                .build()
+        );
+    }
+
+    @Property(tries = 50)
+    void prefetchingDoesNotChangeCiphertext(
+        @ForAll @Size(max = 200) byte[] message,
+        @ForAll @Size(value = 8) byte[] key,
+        @ForAll @Size(value = 4) byte[] nonce,
+        @ForAll @Positive int counter
+    ) throws InterruptedException {
+        SymmetricCipher.Builder builder = SymmetricCipher.builder()
+            .cipher(new DesBlockCipher())
+            .mode(CipherModeType.CTR)
+            .padding(PaddingType.PKCS7)
+            .key(key)
+            .iv(nonce)
+            .argument(counter);
+
+        SymmetricCipher plain = builder.build();
+        SymmetricCipher prefetching = builder.cipher(new DesBlockCipher()).prefetch(16).build();
+
+        // Repeated calls rewind the prefetched keystream.
+        for (int i = 0; i < 3; i++) {
+            byte[] encrypted = prefetching.encrypt(message);
+
+            assertThat(encrypted).isEqualTo(plain.encrypt(message));
+            assertThat(prefetching.decrypt(encrypted)).isEqualTo(message);
+        }
+    }
+
+    @Example
+    void prefetchingRequiresKeystreamMode() {
+        assertThatThrownBy(() -> SymmetricCipher.builder()
+            .cipher(new DesBlockCipher())
+            .mode(CipherModeType.CBC)
+            .padding(PaddingType.PKCS7)
+            .key(new byte[8])
+            .iv(new byte[8])
+            .prefetch(16)
+            .build()
+        ).isInstanceOf(IllegalArgumentException.class);
+    }
+    //endregion
+
+    //region Segmented container
+    @Example
+    void decryptFileSegmented_DES_PCBC_Pkcs7Padding(
+        @ForAll @Size(value = 8) byte[] key,
+        @ForAll @Size(value = 8) byte[] iv
+    ) throws IOException, InterruptedException {
+        SymmetricCipher cipher = SymmetricCipher.builder()
+            .cipher(new DesBlockCipher())
+            .mode(CipherModeType.PCBC)
+            .padding(PaddingType.PKCS7)
+            .key(key)
+            .iv(iv)
+            .build();
+
+        Path inputFile = Files.createTempFile("input", null);
+        Path encryptedFile = Files.createTempFile("encrypted", null);
+        Path decryptedFile = Files.createTempFile("decrypted", null);
+
+        try (InputStream stream = getClass().getResourceAsStream("/code_pen.jpg")) {
+            if (stream == null) throw new IOException("Resource not found");
+
+            byte[] inputBytes = stream.readAllBytes();
+            Files.write(inputFile, inputBytes);
+
+            cipher.encryptFileSegmented(inputFile, encryptedFile, 4096);
+            cipher.decryptFileSegmented(encryptedFile, decryptedFile);
+
+            assertThat(Files.readAllBytes(decryptedFile)).isEqualTo(inputBytes);
+
+            // The start of the file is readable without decrypting the rest.
+            try (SeekableByteChannel channel = cipher.openFileSegmented(encryptedFile)) {
+                ByteBuffer start = ByteBuffer.allocate(1000);
+                channel.read(start);
+
+                assertThat(channel.size()).isEqualTo(inputBytes.length);
+                assertThat(start.array()).isEqualTo(Arrays.copyOf(inputBytes, 1000));
+            }
+        } finally {
+            Files.deleteIfExists(inputFile);
+            Files.deleteIfExists(encryptedFile);
+            Files.deleteIfExists(decryptedFile);
+        }
+    }
+    //endregion
+
+    //region Streams
+    @Example
+    void decryptingStream_DES_CTR_Pkcs7Padding(
+        @ForAll @Size(value = 8) byte[] key,
+        @ForAll @Size(value = 4) byte[] nonce,
+        @ForAll @Positive int counter
+    ) throws IOException {
+        SymmetricCipher cipher = SymmetricCipher.builder()
+            .cipher(new DesBlockCipher())
+            .mode(CipherModeType.CTR)
+            .padding(PaddingType.PKCS7)
+            .key(key)
+            .iv(nonce)
+            .argument(counter)
+            .build();
+
+        try (InputStream stream = getClass().getResourceAsStream("/wireshark.jpg")) {
+            if (stream == null) throw new IOException("Resource not found");
+
+            byte[] inputBytes = stream.readAllBytes();
+            ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+
+            try (OutputStream out = cipher.encryptingStream(encrypted)) {
+                out.write(inputBytes);
+            }
+
+            byte[] decrypted;
+
+            try (InputStream in = cipher.decryptingStream(
+                new ByteArrayInputStream(encrypted.toByteArray()))) {
+                decrypted = in.readAllBytes();
+            }
+
+            assertThat(decrypted).isEqualTo(inputBytes);
+        }
+    }
+    //endregion
+
     private void decryptFileTests(SymmetricCipher cipher)
     throws IOException, InterruptedException {
         decryptFileTest(cipher, "/allocator_red_black_tree_tests.cpp");
@@ -0,0 +1,52 @@
+package dora.crypto.block;
+
+import dora.crypto.block.des.DesKeySchedule;
+import dora.crypto.block.des.DesRoundFunction;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.constraints.Size;
+import org.jetbrains.annotations.NotNull;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FeistelBlockCipherTest {
+
+    @Property(tries = 200)
+    void decryptedCiphertextEqualsPlaintext(
+        @ForAll @Size(value = 8) byte[] plaintext,
+        @ForAll @Size(value = 8) byte[] key
+    ) {
+        BlockCipher cipher = new FeistelBlockCipher(
+            new DesKeySchedule(), new DesRoundFunction(), 8);
+        cipher.init(key);
+
+        byte[] encrypted = cipher.encrypt(plaintext);
+        byte[] decrypted = cipher.decrypt(encrypted);
+
+        assertThat(decrypted).isEqualTo(plaintext);
+    }
+
+    @Property(tries = 200)
+    void inPlaceRoundFunctionMatchesAllocatingOne(
+        @ForAll @Size(value = 8) byte[] plaintext,
+        @ForAll @Size(value = 8) byte[] key
+    ) {
+        RoundFunction desRoundFunction = new DesRoundFunction();
+        // Only implements the allocating variant, so the default in-place one is used.
+        RoundFunction allocating = new RoundFunction() {
+            @Override
+            public byte[] apply(byte @NotNull [] block, byte @NotNull [] roundKey) {
+                return desRoundFunction.apply(block, roundKey);
+            }
+        };
+
+        BlockCipher cipher = new FeistelBlockCipher(new DesKeySchedule(), desRoundFunction, 8);
+        BlockCipher reference = new FeistelBlockCipher(new DesKeySchedule(), allocating, 8);
+
+        cipher.init(key);
+        reference.init(key);
+
+        assertThat(cipher.encrypt(plaintext)).isEqualTo(reference.encrypt(plaintext));
+        assertThat(cipher.decrypt(plaintext)).isEqualTo(reference.decrypt(plaintext));
+    }
+}
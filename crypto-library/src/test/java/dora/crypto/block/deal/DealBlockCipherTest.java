@@ -1,6 +1,9 @@
 package dora.crypto.block.deal;
 
 import dora.crypto.block.BlockCipher;
+import dora.crypto.block.FeistelBlockCipher;
+import dora.crypto.block.RoundFunction;
+import dora.crypto.block.des.DesBlockCipher;
 import net.jqwik.api.*;
 import net.jqwik.api.constraints.Size;
 
@@ -23,6 +26,25 @@ public class DealBlockCipherTest {
         assertThat(decrypted).isEqualTo(plaintext);
     }
 
+    @Property(tries = 100)
+    void encryptionMatchesGenericFeistelNetwork(
+        @ForAll @Size(value = 16) byte[] plaintext,
+        @ForAll("dealSizedKeys") byte[] dealKey,
+        @ForAll @Size(value = 8) byte[] desKey
+    ) {
+        BlockCipher cipher = new DealBlockCipher(desKey);
+        BlockCipher reference = new FeistelBlockCipher(
+            new DealKeySchedule(desKey),
+            new DesRoundFunction(),
+            16
+        );
+
+        cipher.init(dealKey);
+        reference.init(dealKey);
+
+        assertThat(cipher.encrypt(plaintext)).isEqualTo(reference.encrypt(plaintext));
+    }
+
     @Provide
     Arbitrary<byte[]> dealSizedKeys() {
         return Arbitraries.integers().between(2, 4).flatMap((i) -> {
@@ -30,4 +52,17 @@ public class DealBlockCipherTest {
             return Arbitraries.bytes().array(byte[].class).ofSize(keySize);
         });
     }
+
+    /**
+     * Reference round function keying a new DES instance for every round.
+     */
+    private static final class DesRoundFunction implements RoundFunction {
+
+        @Override
+        public byte[] apply(byte[] block, byte[] key) {
+            DesBlockCipher des = new DesBlockCipher();
+            des.init(key);
+            return des.encrypt(block);
+        }
+    }
 }
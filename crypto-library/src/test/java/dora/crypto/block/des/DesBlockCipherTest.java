@@ -2,8 +2,11 @@ package dora.crypto.block.des;
 
 import dora.crypto.block.BlockCipher;
 import net.jqwik.api.*;
+import net.jqwik.api.constraints.IntRange;
 import net.jqwik.api.constraints.Size;
 
+import java.util.Arrays;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class DesBlockCipherTest {
@@ -27,6 +30,26 @@ public class DesBlockCipherTest {
         assertThat(decrypted).isEqualTo(plaintext);
     }
 
+    @Property(tries = 100)
+    void blockOperationsWorkAtOffsets(
+        @ForAll @Size(value = 8) byte[] plaintext,
+        @ForAll @Size(value = 8) byte[] key,
+        @ForAll @IntRange(max = 16) int offset
+    ) {
+        blockCipher.init(key);
+
+        byte[] buffer = new byte[offset + plaintext.length];
+        System.arraycopy(plaintext, 0, buffer, offset, plaintext.length);
+
+        blockCipher.encryptBlock(buffer, offset, buffer, offset);
+        assertThat(Arrays.copyOfRange(buffer, offset, buffer.length))
+            .isEqualTo(blockCipher.encrypt(plaintext));
+
+        blockCipher.decryptBlock(buffer, offset, buffer, offset);
+        assertThat(Arrays.copyOfRange(buffer, offset, buffer.length))
+            .isEqualTo(plaintext);
+    }
+
     /* https://simewu.com/des/ */
 
     @Example
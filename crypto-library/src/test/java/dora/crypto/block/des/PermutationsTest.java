@@ -1,11 +1,17 @@
 package dora.crypto.block.des;
 
 import net.jqwik.api.Example;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.constraints.IntRange;
+import net.jqwik.api.constraints.Size;
 
+import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class PermutationsTest {
 
@@ -81,6 +87,44 @@ public class PermutationsTest {
             .isEqualTo(toBinaryString(expected));
     }
 
+    @Property
+    void compiledPermutationMatchesPermute(
+        @ForAll @Size(min = 1, max = 12) byte[] input,
+        @ForAll @Size(min = 1, max = 96) List<@IntRange(min = 1, max = 96) Integer> indices,
+        @ForAll boolean reverseOrder
+    ) {
+        int[] pBox = indices.stream()
+            .mapToInt((i) -> (i - 1) % (input.length * 8) + 1)
+            .toArray();
+
+        Permutation permutation = Permutations.compile(pBox, input.length, reverseOrder, true);
+
+        assertThat(toBinaryString(permutation.permute(input)))
+            .isEqualTo(toBinaryString(Permutations.permute(input, pBox, reverseOrder, true)));
+    }
+
+    @Property
+    void compiledPermutationWorksOnLongs(@ForAll long input) {
+        int[] pBox = IntStream.rangeClosed(1, 64).map((i) -> 65 - i).toArray();
+        Permutation permutation = Permutations.compile(pBox, false, true);
+
+        assertThat(permutation.permute(input)).isEqualTo(Long.reverse(input));
+    }
+
+    @Example
+    void compileInfersInputSize() {
+        Permutation permutation = Permutations.compile(new int[] { 0, 9 }, false, false);
+
+        assertThat(permutation.inputBytes()).isEqualTo(2);
+        assertThat(permutation.outputBits()).isEqualTo(2);
+    }
+
+    @Example
+    void compileRejectsOutOfRangeIndices() {
+        assertThatThrownBy(() -> Permutations.compile(new int[] { 17 }, 2, false, true))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
     private static String toBinaryString(byte[] bytes) {
         return IntStream.range(0, bytes.length)
             .mapToObj((i) -> Integer.toBinaryString((bytes[i] & 0xFF) + 0x100).substring(1))
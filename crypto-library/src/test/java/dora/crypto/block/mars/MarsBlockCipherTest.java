@@ -2,8 +2,12 @@ package dora.crypto.block.mars;
 
 import dora.crypto.block.BlockCipher;
 import net.jqwik.api.*;
+import net.jqwik.api.constraints.IntRange;
 import net.jqwik.api.constraints.Size;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class MarsBlockCipherTest {
@@ -34,6 +38,79 @@ public class MarsBlockCipherTest {
         assertThat(decrypted).isEqualTo(plaintext);
     }
 
+    @Property(tries = 100)
+    void blockOperationsWorkAtOffsets(
+        @ForAll @Size(value = 16) byte[] plaintext,
+        @ForAll @Size(value = 16) byte[] key,
+        @ForAll @IntRange(max = 16) int offset
+    ) {
+        blockCipher.init(key);
+
+        byte[] buffer = new byte[offset + plaintext.length];
+        System.arraycopy(plaintext, 0, buffer, offset, plaintext.length);
+
+        blockCipher.encryptBlock(buffer, offset, buffer, offset);
+        assertThat(Arrays.copyOfRange(buffer, offset, buffer.length))
+            .isEqualTo(blockCipher.encrypt(plaintext));
+
+        blockCipher.decryptBlock(buffer, offset, buffer, offset);
+        assertThat(Arrays.copyOfRange(buffer, offset, buffer.length))
+            .isEqualTo(plaintext);
+    }
+
+    @Property(tries = 100)
+    void batchOperationsMatchSingleBlocks(
+        @ForAll @Size(value = 16) byte[] key,
+        @ForAll @Size(value = 7 * 16) byte[] data,
+        @ForAll @IntRange(max = 7) int blocks
+    ) {
+        BlockCipher cipher = blockCipher;
+        cipher.init(key);
+
+        int blockSize = cipher.blockSize();
+        byte[] expected = new byte[blocks * blockSize];
+
+        for (int i = 0; i < expected.length; i += blockSize) {
+            cipher.encryptBlock(data, i, expected, i);
+        }
+
+        byte[] buffer = new byte[expected.length];
+        cipher.encryptBlocks(data, 0, buffer, 0, blocks);
+        assertThat(buffer).isEqualTo(expected);
+
+        cipher.decryptBlocks(buffer, 0, buffer, 0, blocks);
+        assertThat(buffer).isEqualTo(Arrays.copyOf(data, expected.length));
+    }
+
+    @Property(tries = 100)
+    void directBufferOperationsMatchArrayOperations(
+        @ForAll @Size(value = 16) byte[] key,
+        @ForAll @Size(value = 7 * 16) byte[] data,
+        @ForAll @IntRange(max = 7) int blocks,
+        @ForAll @IntRange(max = 15) int offset
+    ) {
+        BlockCipher cipher = blockCipher;
+        cipher.init(key);
+
+        int blockSize = cipher.blockSize();
+        byte[] expected = new byte[blocks * blockSize];
+        cipher.encryptBlocks(data, 0, expected, 0, blocks);
+
+        ByteBuffer src = ByteBuffer.allocateDirect(offset + expected.length);
+        ByteBuffer dst = ByteBuffer.allocateDirect(offset + expected.length);
+        src.put(offset, data, 0, expected.length);
+
+        cipher.encryptBlocks(src, offset, dst, offset, blocks);
+        byte[] encrypted = new byte[expected.length];
+        dst.get(offset, encrypted);
+        assertThat(encrypted).isEqualTo(expected);
+
+        cipher.decryptBlocks(dst, offset, dst, offset, blocks);
+        byte[] decrypted = new byte[expected.length];
+        dst.get(offset, decrypted);
+        assertThat(decrypted).isEqualTo(Arrays.copyOf(data, expected.length));
+    }
+
     private byte[] hexStringToByteArray(String hex) {
         int len = hex.length();
         byte[] data = new byte[len / 2];
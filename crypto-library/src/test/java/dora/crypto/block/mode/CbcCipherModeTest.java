@@ -3,8 +3,11 @@ package dora.crypto.block.mode;
 import dora.crypto.block.mode.Parameters.IvParameters;
 import net.jqwik.api.ForAll;
 import net.jqwik.api.Property;
+import net.jqwik.api.constraints.IntRange;
 import net.jqwik.api.constraints.Size;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.concurrent.ForkJoinPool;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -32,4 +35,54 @@ public class CbcCipherModeTest extends CipherModeTest {
 
         assertThat(decrypted).isEqualTo(plaintext);
     }
+
+    @Property(tries = 200)
+    void offsetOperationsMatchArrayOperations(
+        @ForAll("multipleOfBlockSize") byte[] plaintext,
+        @ForAll @Size(min = 1) byte[] key,
+        @ForAll @Size(value = 16) byte[] iv,
+        @ForAll @IntRange(max = 32) int srcOff,
+        @ForAll @IntRange(max = 32) int dstOff
+    ) throws InterruptedException {
+        cipherMode.init(key, new IvParameters(iv));
+        byte[] expected = cipherMode.encrypt(plaintext);
+
+        byte[] src = new byte[srcOff + plaintext.length];
+        byte[] dst = new byte[dstOff + plaintext.length];
+        System.arraycopy(plaintext, 0, src, srcOff, plaintext.length);
+
+        cipherMode.init(key, new IvParameters(iv));
+        cipherMode.encrypt(src, srcOff, plaintext.length, dst, dstOff);
+
+        assertThat(Arrays.copyOfRange(dst, dstOff, dst.length)).isEqualTo(expected);
+
+        cipherMode.init(key, new IvParameters(iv));
+        cipherMode.decrypt(dst, dstOff, plaintext.length, src, srcOff);
+
+        assertThat(Arrays.copyOfRange(src, srcOff, src.length)).isEqualTo(plaintext);
+    }
+
+    @Property(tries = 200)
+    void bufferOperationsMatchArrayOperations(
+        @ForAll("multipleOfBlockSize") byte[] plaintext,
+        @ForAll @Size(min = 1) byte[] key,
+        @ForAll @Size(value = 16) byte[] iv,
+        @ForAll @IntRange(max = 32) int srcOff
+    ) throws InterruptedException {
+        cipherMode.init(key, new IvParameters(iv));
+        byte[] expected = cipherMode.encrypt(plaintext);
+
+        ByteBuffer src = direct(plaintext, srcOff);
+        ByteBuffer dst = ByteBuffer.allocate(plaintext.length);
+
+        cipherMode.init(key, new IvParameters(iv));
+        cipherMode.encrypt(src, dst);
+
+        assertThat(dst.array()).isEqualTo(expected);
+
+        cipherMode.init(key, new IvParameters(iv));
+        cipherMode.decrypt(dst.flip(), src.position(srcOff));
+
+        assertThat(remaining(src.position(srcOff))).isEqualTo(plaintext);
+    }
 }
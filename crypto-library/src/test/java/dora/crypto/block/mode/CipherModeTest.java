@@ -2,6 +2,9 @@ package dora.crypto.block.mode;
 
 import net.jqwik.api.*;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public abstract class CipherModeTest {
@@ -22,6 +25,45 @@ public abstract class CipherModeTest {
             .isInstanceOf(IllegalArgumentException.class);
     }
 
+    @Example
+    void overlappingRegionsThrowException() {
+        int blockSize = cipherMode.blockSize();
+        byte[] data = new byte[4 * blockSize];
+
+        assertThatThrownBy(() -> cipherMode.encrypt(data, 0, 2 * blockSize, data, blockSize))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> cipherMode.decrypt(data, blockSize, 2 * blockSize, data, 0))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Example
+    void invalidBuffersThrowException() {
+        int blockSize = cipherMode.blockSize();
+
+        assertThatThrownBy(() -> cipherMode.encrypt(
+            ByteBuffer.allocateDirect(blockSize + 1), ByteBuffer.allocateDirect(2 * blockSize)))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> cipherMode.decrypt(
+            ByteBuffer.allocateDirect(2 * blockSize), ByteBuffer.allocateDirect(blockSize)))
+            .isInstanceOf(BufferOverflowException.class);
+    }
+
+    /**
+     * Returns a direct buffer holding the data, positioned after <code>offset</code>
+     * leading bytes.
+     */
+    static ByteBuffer direct(byte[] data, int offset) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(offset + data.length);
+        buffer.position(offset).put(data).position(offset);
+        return buffer;
+    }
+
+    static byte[] remaining(ByteBuffer buffer) {
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+
     @Provide
     Arbitrary<byte[]> multipleOfBlockSize() {
         return Arbitraries.integers()
@@ -1,14 +1,24 @@
 package dora.crypto.block.mode;
 
 import dora.crypto.block.mode.CtrCipherMode.CtrParameters;
+import dora.crypto.block.rc5.Rc5BlockCipher;
+import dora.crypto.block.rc5.Rc5Parameters;
+import net.jqwik.api.Assume;
+import net.jqwik.api.Example;
 import net.jqwik.api.ForAll;
 import net.jqwik.api.Property;
+import net.jqwik.api.constraints.IntRange;
 import net.jqwik.api.constraints.Positive;
 import net.jqwik.api.constraints.Size;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HexFormat;
 import java.util.concurrent.ForkJoinPool;
 
+import static dora.crypto.block.rc5.Rc5Parameters.WordSize.WORD_SIZE_16;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class CtrCipherModeTest extends CipherModeTest {
 
@@ -34,4 +44,154 @@ public class CtrCipherModeTest extends CipherModeTest {
 
         assertThat(decrypted).isEqualTo(plaintext);
     }
+
+    @Property(tries = 200)
+    void seekingMatchesSequentialProcessing(
+        @ForAll("multipleOfBlockSize") byte[] plaintext,
+        @ForAll @Size(min = 1) byte[] key,
+        @ForAll @Size(value = 8) byte[] nonce,
+        @ForAll @Positive int counter,
+        @ForAll @IntRange(max = 128) int startBlock
+    ) throws InterruptedException {
+        Assume.that(startBlock * 16 <= plaintext.length);
+
+        CtrCipherMode mode = (CtrCipherMode) cipherMode;
+        mode.init(key, new CtrParameters(nonce, counter));
+        byte[] encrypted = mode.encrypt(plaintext);
+
+        mode.init(key, new CtrParameters(nonce, counter));
+        mode.seek(startBlock);
+        byte[] suffix = mode.decrypt(Arrays.copyOfRange(encrypted, startBlock * 16, encrypted.length));
+
+        assertThat(suffix).isEqualTo(Arrays.copyOfRange(plaintext, startBlock * 16, plaintext.length));
+    }
+
+    @Property(tries = 200)
+    void processingDecryptsAnyBlockAlignedRange(
+        @ForAll @Size(max = 1024) byte[] plaintext,
+        @ForAll @Size(min = 1) byte[] key,
+        @ForAll @Size(value = 8) byte[] nonce,
+        @ForAll @Positive int counter,
+        @ForAll @IntRange(max = 64) int startBlock,
+        @ForAll @IntRange(max = 1024) int length
+    ) throws InterruptedException {
+        Assume.that(startBlock * 16 <= plaintext.length);
+
+        CtrCipherMode mode = (CtrCipherMode) cipherMode;
+        mode.init(key, new CtrParameters(nonce, counter));
+        byte[] encrypted = mode.process(plaintext, 0);
+
+        int from = startBlock * 16;
+        int to = Math.min(plaintext.length, from + length);
+        byte[] range = mode.process(Arrays.copyOfRange(encrypted, from, to), startBlock);
+
+        assertThat(range).isEqualTo(Arrays.copyOfRange(plaintext, from, to));
+    }
+
+    @Example
+    void counterBlocksHoldNonceAndBigEndianCounter() throws InterruptedException {
+        byte[] nonce = { 1, 2, 3, 4, 5, 6, 7, 8 };
+
+        // A zero key makes the mock cipher the identity, so zeros encrypt to the
+        // counter blocks themselves.
+        cipherMode.init(new byte[1], new CtrParameters(nonce, 0x01020304ffL));
+        byte[] counterBlocks = cipherMode.encrypt(new byte[32]);
+
+        assertThat(counterBlocks).isEqualTo(HexFormat.of().parseHex(
+            "010203040506070800000001020304ff"
+                + "01020304050607080000000102030500"));
+    }
+
+    @Example
+    void smallBlocksKeepTheNonce() throws InterruptedException {
+        byte[] key = HexFormat.of().parseHex("000102030405060708090a0b0c0d0e0f");
+        Rc5BlockCipher cipher = new Rc5BlockCipher(
+            new Rc5Parameters(WORD_SIZE_16, 12, key.length));
+        CtrCipherMode mode = new CtrCipherMode(cipher, ForkJoinPool.commonPool());
+
+        // RC5 with 16-bit words over the counter blocks 12340000, 12340001 and 12340002:
+        // the 2-byte nonce followed by a 2-byte counter.
+        mode.init(key, new CtrParameters(new byte[] { 0x12, 0x34 }, 0));
+
+        assertThat(mode.encrypt(new byte[12]))
+            .isEqualTo(HexFormat.of().parseHex("95000b0fbc84c2f63d04de0b"));
+    }
+
+    @Example
+    void smallCountersOverflowLoudly() {
+        cipherMode.init(new byte[1], new CtrParameters(new byte[8], 0xfffe, 2));
+
+        assertThatThrownBy(() -> cipherMode.encrypt(new byte[3 * 16]))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("Counter overflow");
+    }
+
+    @Example
+    void wideCountersUseTheWholeNonNoncePart() throws InterruptedException {
+        CtrCipherMode mode = new CtrCipherMode(new MockBlockCipher(32), ForkJoinPool.commonPool());
+        mode.init(new byte[1], new CtrParameters(new byte[16], Long.MAX_VALUE));
+        mode.seek(Long.MAX_VALUE);
+
+        // Long.MAX_VALUE + Long.MAX_VALUE = 2^64 - 2
+        assertThat(mode.encrypt(new byte[32])).isEqualTo(HexFormat.of().parseHex(
+            "00000000000000000000000000000000"
+                + "0000000000000000fffffffffffffffe"));
+
+        assertThatThrownBy(() -> mode.encrypt(new byte[32]))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("Counter overflow");
+    }
+
+    @Property(tries = 200)
+    void keystreamXoredWithPlaintextEqualsCiphertext(
+        @ForAll("multipleOfBlockSize") byte[] plaintext,
+        @ForAll @Size(min = 1) byte[] key,
+        @ForAll @Size(value = 8) byte[] nonce,
+        @ForAll @Positive int counter
+    ) throws InterruptedException {
+        CtrCipherMode mode = (CtrCipherMode) cipherMode;
+        int blockCount = plaintext.length / 16;
+
+        mode.init(key, new CtrParameters(nonce, counter));
+        byte[] encrypted = mode.encrypt(plaintext);
+        byte[] following = mode.encrypt(new byte[16]);
+
+        mode.init(key, new CtrParameters(nonce, counter));
+        byte[] keystream = new byte[plaintext.length];
+        mode.keystream(keystream, 0, blockCount);
+
+        for (int i = 0; i < keystream.length; i++) {
+            keystream[i] ^= plaintext[i];
+        }
+
+        assertThat(keystream).isEqualTo(encrypted);
+        // The keystream advances the mode like encryption does.
+        assertThat(mode.encrypt(new byte[16])).isEqualTo(following);
+    }
+
+    @Property(tries = 200)
+    void directBufferOperationsMatchArrayOperations(
+        @ForAll("multipleOfBlockSize") byte[] plaintext,
+        @ForAll @Size(min = 1) byte[] key,
+        @ForAll @Size(value = 8) byte[] nonce,
+        @ForAll @IntRange(max = 32) int srcOff,
+        @ForAll @IntRange(max = 32) int dstOff
+    ) throws InterruptedException {
+        cipherMode.init(key, new CtrParameters(nonce, 0));
+        byte[] expected = cipherMode.encrypt(plaintext);
+
+        ByteBuffer src = direct(plaintext, srcOff);
+        ByteBuffer dst = direct(new byte[plaintext.length], dstOff);
+
+        cipherMode.init(key, new CtrParameters(nonce, 0));
+        cipherMode.encrypt(src, dst);
+
+        assertThat(src.hasRemaining()).isFalse();
+        assertThat(remaining(dst.position(dstOff))).isEqualTo(expected);
+
+        cipherMode.init(key, new CtrParameters(nonce, 0));
+        cipherMode.decrypt(dst.position(dstOff), src.position(srcOff));
+
+        assertThat(remaining(src.position(srcOff))).isEqualTo(plaintext);
+    }
 }
@@ -4,6 +4,7 @@ import net.jqwik.api.ForAll;
 import net.jqwik.api.Property;
 import net.jqwik.api.constraints.Size;
 
+import java.nio.ByteBuffer;
 import java.util.concurrent.ForkJoinPool;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -30,4 +31,23 @@ public class EcbCipherModeTest extends CipherModeTest {
 
         assertThat(decrypted).isEqualTo(plaintext);
     }
+
+    @Property(tries = 200)
+    void directBufferOperationsMatchArrayOperations(
+        @ForAll("multipleOfBlockSize") byte[] plaintext,
+        @ForAll @Size(min = 1) byte[] key
+    ) throws InterruptedException {
+        cipherMode.init(key, Parameters.NO_PARAMETERS);
+        byte[] expected = cipherMode.encrypt(plaintext);
+
+        ByteBuffer src = direct(plaintext, 0);
+        ByteBuffer dst = ByteBuffer.allocateDirect(plaintext.length);
+        cipherMode.encrypt(src, dst);
+
+        assertThat(remaining(dst.flip())).isEqualTo(expected);
+
+        cipherMode.decrypt(dst.flip(), src.clear());
+
+        assertThat(remaining(src.flip())).isEqualTo(plaintext);
+    }
 }
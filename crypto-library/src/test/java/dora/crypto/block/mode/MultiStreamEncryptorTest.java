@@ -0,0 +1,87 @@
+package dora.crypto.block.mode;
+
+import dora.crypto.block.BlockCipher;
+import dora.crypto.block.mars.MarsBlockCipher;
+import dora.crypto.block.mode.MultiStreamEncryptor.Job;
+import dora.crypto.block.mode.MultiStreamEncryptor.Mode;
+import dora.crypto.block.mode.Parameters.IvParameters;
+import net.jqwik.api.Example;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.constraints.IntRange;
+import net.jqwik.api.constraints.Size;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MultiStreamEncryptorTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @Property(tries = 50)
+    void resultsMatchSingleStreamModes(
+        @ForAll @Size(max = 40) List<@IntRange(max = 20) Integer> jobBlocks,
+        @ForAll @Size(value = 3) List<@Size(value = 16) byte[]> keys,
+        @ForAll long seed
+    ) throws InterruptedException {
+        List<Job> jobs = new ArrayList<>();
+
+        for (int i = 0; i < jobBlocks.size(); i++) {
+            byte[] iv = new byte[16];
+            byte[] data = new byte[jobBlocks.get(i) * 16];
+
+            fill(iv, seed + i);
+            fill(data, seed - i);
+
+            // Few distinct keys, so that streams are grouped by key.
+            jobs.add(new Job(keys.get(i % keys.size()), iv, data));
+        }
+
+        MultiStreamEncryptor encryptor = new MultiStreamEncryptor(MarsBlockCipher::new, POOL);
+
+        for (Mode mode : Mode.values()) {
+            List<byte[]> results = encryptor.encrypt(mode, jobs);
+
+            assertThat(results).hasSameSizeAs(jobs);
+
+            for (int i = 0; i < jobs.size(); i++) {
+                Job job = jobs.get(i);
+                CipherMode reference = createMode(mode, new MarsBlockCipher());
+                reference.init(job.key(), new IvParameters(job.iv()));
+
+                assertThat(results.get(i)).isEqualTo(reference.encrypt(job.data()));
+            }
+        }
+    }
+
+    @Example
+    void invalidJobsAreRejected() {
+        MultiStreamEncryptor encryptor = new MultiStreamEncryptor(() -> new MockBlockCipher(8), POOL);
+
+        assertThatThrownBy(() -> encryptor.encrypt(Mode.CBC, List.of(
+            new Job(new byte[1], new byte[8], new byte[12])
+        ))).isInstanceOf(IllegalArgumentException.class);
+
+        assertThatThrownBy(() -> encryptor.encrypt(Mode.CBC, List.of(
+            new Job(new byte[1], new byte[4], new byte[8])
+        ))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static CipherMode createMode(Mode mode, BlockCipher cipher) {
+        return switch (mode) {
+            case CBC -> new CbcCipherMode(cipher, POOL);
+            case CFB -> new CfbCipherMode(cipher, POOL);
+            case PCBC -> new PcbcCipherMode(cipher, POOL);
+        };
+    }
+
+    private static void fill(byte[] data, long seed) {
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (seed * 31 + i * 17);
+        }
+    }
+}
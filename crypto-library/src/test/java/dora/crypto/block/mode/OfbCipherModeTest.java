@@ -27,4 +27,30 @@ public class OfbCipherModeTest extends CipherModeTest {
 
         assertThat(decrypted).isEqualTo(plaintext);
     }
+
+    @Property(tries = 200)
+    void keystreamXoredWithPlaintextEqualsCiphertext(
+        @ForAll("multipleOfBlockSize") byte[] plaintext,
+        @ForAll @Size(min = 1) byte[] key,
+        @ForAll @Size(value = 16) byte[] iv
+    ) throws InterruptedException {
+        OfbCipherMode mode = (OfbCipherMode) cipherMode;
+        int blockCount = plaintext.length / 16;
+
+        mode.init(key, new IvParameters(iv));
+        byte[] encrypted = mode.encrypt(plaintext);
+        byte[] following = mode.encrypt(new byte[16]);
+
+        mode.init(key, new IvParameters(iv));
+        byte[] keystream = new byte[plaintext.length];
+        mode.keystream(keystream, 0, blockCount);
+
+        for (int i = 0; i < keystream.length; i++) {
+            keystream[i] ^= plaintext[i];
+        }
+
+        assertThat(keystream).isEqualTo(encrypted);
+        // The keystream advances the mode like encryption does.
+        assertThat(mode.encrypt(new byte[16])).isEqualTo(following);
+    }
 }
@@ -0,0 +1,243 @@
+package dora.crypto.block.mode;
+
+import dora.crypto.block.mode.ParallelBlockProcessor.CostEstimate;
+import net.jqwik.api.Example;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.constraints.IntRange;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ParallelBlockProcessorTest {
+
+    private static final int BLOCK_SIZE = 8;
+    private static final int PARALLELISM = 4;
+
+    /** Explicit parallelism, so that splitting does not depend on the machine. */
+    private static final ForkJoinPool POOL = new ForkJoinPool(PARALLELISM);
+
+    @Property(tries = 50)
+    void everyBlockIsProcessedOnceWithMatchingOffsets(
+        @ForAll @IntRange(max = 40_000) int blockCount,
+        @ForAll @IntRange(max = 64) int srcOff,
+        @ForAll @IntRange(max = 64) int dstOff
+    ) throws InterruptedException {
+        // A zero threshold sends every input to the pool.
+        ParallelBlockProcessor processor = processor(
+            POOL, 0, new ParallelProcessingMetrics());
+        AtomicIntegerArray visits = new AtomicIntegerArray(blockCount);
+
+        processor.processBlocks(
+            srcOff, dstOff, blockCount,
+            (srcOffset, dstOffset, count) -> {
+                assertThat(srcOffset - srcOff).isEqualTo(dstOffset - dstOff);
+
+                int firstBlock = (srcOffset - srcOff) / BLOCK_SIZE;
+
+                for (int i = 0; i < count; i++) {
+                    visits.incrementAndGet(firstBlock + i);
+                }
+            }
+        );
+
+        for (int i = 0; i < blockCount; i++) {
+            assertThat(visits.get(i)).isEqualTo(1);
+        }
+    }
+
+    @Property(tries = 50)
+    void taskCountIsBoundedByParallelism(
+        @ForAll @IntRange(min = 1, max = 1_000_000) int blockCount
+    ) {
+        ParallelBlockProcessor processor = processor(
+            POOL, 0, new ParallelProcessingMetrics());
+
+        int blocksPerTask = processor.blocksPerTask(blockCount);
+
+        assertThat(blocksPerTask).isBetween(Math.min(blockCount, 16), blockCount);
+        assertThat(Math.ceilDiv(blockCount, blocksPerTask))
+            .isLessThanOrEqualTo(PARALLELISM * 8);
+    }
+
+    @Example
+    void inputsBelowThresholdAreProcessedSequentially() throws InterruptedException {
+        ParallelProcessingMetrics metrics = new ParallelProcessingMetrics();
+        ParallelBlockProcessor processor = processor(POOL, Long.MAX_VALUE, metrics);
+        Thread caller = Thread.currentThread();
+
+        processor.processBlocks(0, 0, 100_000, (srcOffset, dstOffset, count) -> {
+            assertThat(Thread.currentThread()).isSameAs(caller);
+            assertThat(count).isEqualTo(100_000);
+        });
+
+        assertThat(metrics.sequentialRuns()).isEqualTo(1);
+        assertThat(metrics.sequentialBlocks()).isEqualTo(100_000);
+        assertThat(metrics.parallelRuns()).isZero();
+    }
+
+    @Example
+    void singleWorkerPoolsAreNotSplit() {
+        ForkJoinPool pool = new ForkJoinPool(1);
+
+        try {
+            ParallelBlockProcessor processor = processor(
+                pool, 0, new ParallelProcessingMetrics());
+
+            assertThat(processor.blocksPerTask(100_000)).isEqualTo(100_000);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Example
+    void parallelRunsAreRecorded() throws InterruptedException {
+        ParallelProcessingMetrics metrics = new ParallelProcessingMetrics();
+        ParallelBlockProcessor processor = processor(POOL, 0, metrics);
+        // The run refreshes the estimate, so the task size is taken beforehand.
+        int blocksPerTask = processor.blocksPerTask(100_000);
+
+        processor.processBlocks(0, 0, 100_000, (srcOffset, dstOffset, count) -> {
+        });
+
+        assertThat(metrics.parallelRuns()).isEqualTo(1);
+        assertThat(metrics.parallelBlocks()).isEqualTo(100_000);
+        assertThat(metrics.parallelTasks()).isEqualTo(Math.ceilDiv(100_000, blocksPerTask));
+        assertThat(metrics.sequentialRuns()).isZero();
+    }
+
+    @Example
+    void workerRuntimeExceptionsKeepTheirType() {
+        ParallelBlockProcessor processor = processor(
+            POOL, 0, new ParallelProcessingMetrics());
+
+        assertThatThrownBy(() -> processor.processBlocks(
+            0, 0, 100_000,
+            (srcOffset, dstOffset, count) -> {
+                throw new IllegalStateException("Cipher is not initialized");
+            }
+        ))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("Cipher is not initialized");
+    }
+
+    @Example
+    void unknownCostUsesDefaultTaskSize() {
+        ParallelBlockProcessor processor = new ParallelBlockProcessor(
+            new MockBlockCipher(BLOCK_SIZE), POOL, 0,
+            new ParallelProcessingMetrics(), new CostEstimate());
+
+        assertThat(processor.nanosPerBlock()).isZero();
+        assertThat(processor.blocksPerTask(1000)).isEqualTo(1000);
+        assertThat(processor.blocksPerTask(100_000)).isEqualTo(4096);
+    }
+
+    @Example
+    void warmUpTimingsAreDiscarded() {
+        CostEstimate estimate = new CostEstimate(1000, 0);
+
+        estimate.record(999, 999_000_000);
+        assertThat(estimate.nanosPerBlock()).isZero();
+
+        estimate.record(1001, 100_100);
+        assertThat(estimate.nanosPerBlock()).isEqualTo(100);
+    }
+
+    @Example
+    void estimateFollowsRecordedRuns() {
+        CostEstimate estimate = new CostEstimate(0, 1000);
+
+        for (int i = 0; i < 100; i++) {
+            estimate.record(64, 64 * 200);
+        }
+
+        assertThat(estimate.nanosPerBlock()).isBetween(200L, 210L);
+
+        // Runs too short to time reliably are ignored.
+        estimate.record(1, 1_000_000);
+        assertThat(estimate.nanosPerBlock()).isBetween(200L, 210L);
+    }
+
+    @Example
+    void calibrationSeedsTheEstimate() {
+        MockBlockCipher cipher = new MockBlockCipher(BLOCK_SIZE);
+        cipher.init(new byte[] { 1, 2, 3 });
+        CostEstimate estimate = new CostEstimate();
+
+        estimate.calibrate(cipher);
+
+        assertThat(estimate.nanosPerBlock()).isPositive();
+
+        // Real runs count from now on, since calibration warmed the code up.
+        estimate.record(64, 64 * 1_000_000L);
+        assertThat(estimate.nanosPerBlock()).isGreaterThan(1000);
+    }
+
+    @Example
+    void calibrationDoesNotReplaceMeasuredCost() {
+        MockBlockCipher cipher = new MockBlockCipher(BLOCK_SIZE);
+        cipher.init(new byte[] { 1, 2, 3 });
+        CostEstimate estimate = new CostEstimate(0, 123_456);
+
+        estimate.calibrate(cipher);
+
+        assertThat(estimate.nanosPerBlock()).isEqualTo(123_456);
+    }
+
+    @Example
+    void firstRunStartsCalibration() throws InterruptedException {
+        MockBlockCipher cipher = new MockBlockCipher(BLOCK_SIZE);
+        cipher.init(new byte[] { 1, 2, 3 });
+        CostEstimate estimate = new CostEstimate();
+        ParallelBlockProcessor processor = new ParallelBlockProcessor(
+            cipher, POOL, Long.MAX_VALUE, new ParallelProcessingMetrics(), estimate);
+
+        processor.processBlocks(0, 0, 1, (srcOffset, dstOffset, count) -> {
+        });
+
+        long deadline = System.nanoTime() + 10_000_000_000L;
+
+        while (estimate.nanosPerBlock() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(estimate.nanosPerBlock()).isPositive();
+    }
+
+    @Example
+    void estimatesAreSharedPerCipherClassAndBlockSize() {
+        assertThat(CostEstimate.of(new MockBlockCipher(8)))
+            .isSameAs(CostEstimate.of(new MockBlockCipher(8)))
+            .isNotSameAs(CostEstimate.of(new MockBlockCipher(16)));
+    }
+
+    @Example
+    void runsRefreshTheEstimate() throws InterruptedException {
+        CostEstimate estimate = new CostEstimate(0, 0);
+        ParallelBlockProcessor processor = new ParallelBlockProcessor(
+            new MockBlockCipher(BLOCK_SIZE), POOL, Long.MAX_VALUE,
+            new ParallelProcessingMetrics(), estimate);
+
+        processor.processBlocks(0, 0, 1000, (srcOffset, dstOffset, count) -> {
+        });
+
+        assertThat(estimate.nanosPerBlock()).isPositive();
+    }
+
+    /**
+     * Returns a processor with a fixed, warm cost estimate, so that task sizes do not
+     * depend on the machine.
+     */
+    private static ParallelBlockProcessor processor(
+        ForkJoinPool pool,
+        long sequentialThresholdNanos,
+        ParallelProcessingMetrics metrics
+    ) {
+        return new ParallelBlockProcessor(
+            new MockBlockCipher(BLOCK_SIZE), pool, sequentialThresholdNanos,
+            metrics, new CostEstimate(0, 100));
+    }
+}
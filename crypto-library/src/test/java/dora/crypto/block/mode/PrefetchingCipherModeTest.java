@@ -0,0 +1,109 @@
+package dora.crypto.block.mode;
+
+import dora.crypto.block.mode.CtrCipherMode.CtrParameters;
+import dora.crypto.block.mode.Parameters.IvParameters;
+import dora.crypto.block.mode.RandomDeltaCipherMode.RandomDeltaParameters;
+import net.jqwik.api.Example;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.constraints.IntRange;
+import net.jqwik.api.constraints.Size;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PrefetchingCipherModeTest extends CipherModeTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    PrefetchingCipherModeTest() {
+        super(new PrefetchingCipherMode(
+            new OfbCipherMode(new MockBlockCipher(16)), 8, POOL));
+    }
+
+    @Property(tries = 200)
+    void prefetchedKeystreamMatchesUndecoratedMode(
+        @ForAll @Size(max = 8) List<@IntRange(max = 40) Integer> messageBlocks,
+        @ForAll @IntRange(min = 1, max = 32) int capacity,
+        @ForAll @Size(min = 1) byte[] key,
+        @ForAll @Size(value = 16) byte[] iv,
+        @ForAll long seed
+    ) throws InterruptedException {
+        byte[] nonce = new byte[8];
+        System.arraycopy(iv, 0, nonce, 0, 8);
+
+        assertMatchesUndecoratedMode(
+            () -> new OfbCipherMode(new MockBlockCipher(16)),
+            new IvParameters(iv), key, capacity, messageBlocks);
+        assertMatchesUndecoratedMode(
+            () -> new CtrCipherMode(new MockBlockCipher(16), POOL),
+            new CtrParameters(nonce, seed & Integer.MAX_VALUE), key, capacity, messageBlocks);
+        assertMatchesUndecoratedMode(
+            () -> new RandomDeltaCipherMode(new MockBlockCipher(16), POOL),
+            new RandomDeltaParameters(nonce, 0, seed), key, capacity, messageBlocks);
+    }
+
+    @Example
+    void reinitializationRestartsTheKeystream() throws InterruptedException {
+        PrefetchingCipherMode mode = new PrefetchingCipherMode(
+            new CtrCipherMode(new MockBlockCipher(16), POOL), 4, POOL);
+        CtrParameters parameters = new CtrParameters(new byte[8], 7);
+        byte[] key = { 1, 2, 3 };
+
+        mode.init(key, parameters);
+        byte[] first = mode.encrypt(new byte[6 * 16]);
+
+        // Rewinds from the remembered start of the keystream.
+        mode.init(key, parameters);
+        assertThat(mode.encrypt(new byte[6 * 16])).isEqualTo(first);
+
+        // A different key starts over.
+        mode.init(new byte[] { 4, 5, 6 }, parameters);
+        assertThat(mode.encrypt(new byte[6 * 16])).isNotEqualTo(first);
+
+        mode.init(key, parameters);
+        assertThat(mode.encrypt(new byte[6 * 16])).isEqualTo(first);
+    }
+
+    @Example
+    void uninitializedModeThrowsException() {
+        assertThatThrownBy(() -> cipherMode.encrypt(new byte[16]))
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static void assertMatchesUndecoratedMode(
+        ModeFactory factory,
+        Parameters parameters,
+        byte[] key,
+        int capacity,
+        List<Integer> messageBlocks
+    ) throws InterruptedException {
+        KeystreamCipherMode reference = factory.create();
+        CipherMode prefetching = new PrefetchingCipherMode(factory.create(), capacity, POOL);
+
+        // Two rounds, so that the second one starts from the remembered keystream.
+        for (int round = 0; round < 2; round++) {
+            reference.init(key, parameters);
+            prefetching.init(key, parameters);
+
+            for (int blocks : messageBlocks) {
+                byte[] message = new byte[blocks * 16];
+
+                for (int i = 0; i < message.length; i++) {
+                    message[i] = (byte) (i * 31 + blocks);
+                }
+
+                assertThat(prefetching.encrypt(message)).isEqualTo(reference.encrypt(message));
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ModeFactory {
+
+        KeystreamCipherMode create();
+    }
+}
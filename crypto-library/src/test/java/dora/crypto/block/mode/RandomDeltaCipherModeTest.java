@@ -1,14 +1,20 @@
 package dora.crypto.block.mode;
 
+import dora.crypto.block.BlockCipher;
 import dora.crypto.block.mode.RandomDeltaCipherMode.RandomDeltaParameters;
+import net.jqwik.api.Example;
 import net.jqwik.api.ForAll;
 import net.jqwik.api.Property;
 import net.jqwik.api.constraints.Positive;
 import net.jqwik.api.constraints.Size;
+import org.jetbrains.annotations.NotNull;
 
+import java.util.HexFormat;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class RandomDeltaCipherModeTest extends CipherModeTest {
 
@@ -35,4 +41,143 @@ public class RandomDeltaCipherModeTest extends CipherModeTest {
 
         assertThat(decrypted).isEqualTo(plaintext);
     }
+
+    @Example
+    void cipherWorkGrowsLinearly() throws InterruptedException {
+        CountingBlockCipher cipher = new CountingBlockCipher(new MockBlockCipher(16));
+        CipherMode mode = new RandomDeltaCipherMode(cipher, ForkJoinPool.commonPool());
+        byte[] key = { 1, 2, 3 };
+        byte[] nonce = new byte[8];
+        int smallBlocks = 1 << 10;
+
+        // Calibrate up front, so that a background calibration does not add to the count.
+        cipher.init(key);
+        ParallelBlockProcessor.CostEstimate.of(cipher).calibrate(cipher);
+
+        // Every block is encrypted exactly once, however long the input is.
+        for (int blocks : new int[] { smallBlocks, 16 * smallBlocks }) {
+            mode.init(key, new RandomDeltaParameters(nonce, 0, 42L));
+            cipher.blocks.set(0);
+
+            mode.encrypt(new byte[blocks * 16]);
+
+            assertThat(cipher.blocks.get()).isEqualTo(blocks);
+        }
+    }
+
+    @Example
+    void countersBeyondIntRangeRoundTrip() throws InterruptedException {
+        byte[] key = { 1, 2, 3 };
+        byte[] nonce = new byte[8];
+        byte[] plaintext = new byte[64 * 16];
+        long counter = Integer.MAX_VALUE - 10L;
+
+        cipherMode.init(key, new RandomDeltaParameters(nonce, counter, 7L));
+        byte[] encrypted = cipherMode.encrypt(plaintext);
+
+        cipherMode.init(key, new RandomDeltaParameters(nonce, counter, 7L));
+        assertThat(cipherMode.decrypt(encrypted)).isEqualTo(plaintext);
+
+        // The counter is not truncated to 32 bits.
+        cipherMode.init(key, new RandomDeltaParameters(nonce, counter + (1L << 32), 7L));
+        assertThat(cipherMode.encrypt(plaintext)).isNotEqualTo(encrypted);
+    }
+
+    @Example
+    void countersOverflowLoudly() {
+        // 8-byte blocks leave four bytes for the counter.
+        CipherMode mode = new RandomDeltaCipherMode(
+            new MockBlockCipher(8), ForkJoinPool.commonPool());
+        byte[] nonce = new byte[4];
+
+        assertThatThrownBy(() -> mode.init(new byte[1], new RandomDeltaParameters(nonce, 1L << 32, 7L)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("counter does not fit into 4 bytes");
+
+        mode.init(new byte[1], new RandomDeltaParameters(nonce, 0xffffffffL, 7L));
+
+        assertThatThrownBy(() -> mode.encrypt(new byte[8]))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("Counter overflow");
+
+        cipherMode.init(new byte[1], new RandomDeltaParameters(new byte[8], Long.MAX_VALUE - 1, 7L));
+
+        assertThatThrownBy(() -> cipherMode.encrypt(new byte[16]))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage("Counter overflow");
+    }
+
+    @Example
+    void counterBlocksOfSmallBlocksHoldNonceAndCounter() throws InterruptedException {
+        CipherMode mode = new RandomDeltaCipherMode(
+            new MockBlockCipher(4), ForkJoinPool.commonPool());
+
+        // A zero key makes the mock cipher the identity, so zeros encrypt to the
+        // counter block itself. The nonce is kept, and the counter gets two bytes.
+        mode.init(new byte[1], new RandomDeltaParameters(new byte[] { 1, 2 }, 0x0304, 7L));
+
+        assertThat(mode.encrypt(new byte[4])).isEqualTo(HexFormat.of().parseHex("01020304"));
+    }
+
+    @Property(tries = 200)
+    void keystreamXoredWithPlaintextEqualsCiphertext(
+        @ForAll("multipleOfBlockSize") byte[] plaintext,
+        @ForAll @Size(min = 1) byte[] key,
+        @ForAll @Size(value = 8) byte[] nonce,
+        @ForAll @Positive int counter,
+        @ForAll long seed
+    ) throws InterruptedException {
+        RandomDeltaCipherMode mode = (RandomDeltaCipherMode) cipherMode;
+        int blockCount = plaintext.length / 16;
+
+        mode.init(key, new RandomDeltaParameters(nonce, counter, seed));
+        byte[] encrypted = mode.encrypt(plaintext);
+        byte[] following = mode.encrypt(new byte[16]);
+
+        mode.init(key, new RandomDeltaParameters(nonce, counter, seed));
+        byte[] keystream = new byte[plaintext.length];
+        mode.keystream(keystream, 0, blockCount);
+
+        for (int i = 0; i < keystream.length; i++) {
+            keystream[i] ^= plaintext[i];
+        }
+
+        assertThat(keystream).isEqualTo(encrypted);
+        // The keystream advances the mode like encryption does.
+        assertThat(mode.encrypt(new byte[16])).isEqualTo(following);
+    }
+
+    /**
+     * Counts the blocks the wrapped cipher encrypts.
+     */
+    private static final class CountingBlockCipher implements BlockCipher {
+
+        private final BlockCipher cipher;
+        final AtomicLong blocks = new AtomicLong();
+
+        CountingBlockCipher(BlockCipher cipher) {
+            this.cipher = cipher;
+        }
+
+        @Override
+        public int blockSize() {
+            return cipher.blockSize();
+        }
+
+        @Override
+        public void init(byte @NotNull [] key) {
+            cipher.init(key);
+        }
+
+        @Override
+        public byte[] encrypt(byte @NotNull [] plaintext) {
+            blocks.addAndGet(plaintext.length / blockSize());
+            return cipher.encrypt(plaintext);
+        }
+
+        @Override
+        public byte[] decrypt(byte @NotNull [] ciphertext) {
+            return cipher.decrypt(ciphertext);
+        }
+    }
 }
@@ -6,6 +6,7 @@ import net.jqwik.api.Property;
 import net.jqwik.api.constraints.IntRange;
 import net.jqwik.api.constraints.Size;
 
+import java.util.Arrays;
 import java.util.HexFormat;
 
 import static dora.crypto.block.rc5.Rc5Parameters.WordSize.WORD_SIZE_16;
@@ -63,6 +64,32 @@ public class Rc5BlockCipherTest {
         assertThat(decrypted).isEqualTo(plaintext);
     }
 
+    @Property(tries = 100)
+    void batchOperationsMatchSingleBlocks(
+        @ForAll Rc5Parameters.WordSize wordSize,
+        @ForAll @Size(max = 255) byte[] key,
+        @ForAll @Size(value = 7 * 16) byte[] data,
+        @ForAll @IntRange(max = 7) int blocks
+    ) {
+        Rc5BlockCipher cipher = new Rc5BlockCipher(
+            new Rc5Parameters(wordSize, 12, key.length));
+        cipher.init(key);
+
+        int blockSize = cipher.blockSize();
+        byte[] expected = new byte[blocks * blockSize];
+
+        for (int i = 0; i < expected.length; i += blockSize) {
+            cipher.encryptBlock(data, i, expected, i);
+        }
+
+        byte[] buffer = new byte[expected.length];
+        cipher.encryptBlocks(data, 0, buffer, 0, blocks);
+        assertThat(buffer).isEqualTo(expected);
+
+        cipher.decryptBlocks(buffer, 0, buffer, 0, blocks);
+        assertThat(buffer).isEqualTo(Arrays.copyOf(data, expected.length));
+    }
+
     @Example
     void testVector1() {
         byte[] plaintext = parseBytes("0000000000000000");
@@ -133,6 +160,36 @@ public class Rc5BlockCipherTest {
         assertThat(cipher.decrypt(ciphertext)).isEqualTo(plaintext);
     }
 
+    /* https://datatracker.ietf.org/doc/html/draft-krovetz-rc6-rc5-vectors-00 */
+
+    @Example
+    void testVector16BitWords() {
+        byte[] plaintext = parseBytes("00010203");
+        byte[] key = parseBytes("0001020304050607");
+        byte[] ciphertext = parseBytes("23A8D72E");
+
+        Rc5Parameters parameters = new Rc5Parameters(WORD_SIZE_16, 16, key.length);
+        Rc5BlockCipher cipher = new Rc5BlockCipher(parameters);
+        cipher.init(key);
+
+        assertThat(cipher.encrypt(plaintext)).isEqualTo(ciphertext);
+        assertThat(cipher.decrypt(ciphertext)).isEqualTo(plaintext);
+    }
+
+    @Example
+    void testVector64BitWords() {
+        byte[] plaintext = parseBytes("000102030405060708090A0B0C0D0E0F");
+        byte[] key = parseBytes("000102030405060708090A0B0C0D0E0F1011121314151617");
+        byte[] ciphertext = parseBytes("A46772820EDBCE0235ABEA32AE7178DA");
+
+        Rc5Parameters parameters = new Rc5Parameters(WORD_SIZE_64, 24, key.length);
+        Rc5BlockCipher cipher = new Rc5BlockCipher(parameters);
+        cipher.init(key);
+
+        assertThat(cipher.encrypt(plaintext)).isEqualTo(ciphertext);
+        assertThat(cipher.decrypt(ciphertext)).isEqualTo(plaintext);
+    }
+
     private static byte[] parseBytes(String hex) {
         return HexFormat.of().parseHex(hex);
     }
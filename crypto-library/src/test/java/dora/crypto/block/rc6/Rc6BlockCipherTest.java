@@ -6,6 +6,8 @@ import net.jqwik.api.Property;
 import net.jqwik.api.constraints.IntRange;
 import net.jqwik.api.constraints.Size;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HexFormat;
 
 import static dora.crypto.block.rc6.Rc6Parameters.WordSize.WORD_SIZE_16;
@@ -63,6 +65,85 @@ public class Rc6BlockCipherTest {
         assertThat(decrypted).isEqualTo(plaintext);
     }
 
+    @Property(tries = 100)
+    void blockOperationsWorkAtOffsets(
+        @ForAll @Size(value = 16) byte[] plaintext,
+        @ForAll @Size(max = 255) byte[] key,
+        @ForAll @IntRange(max = 16) int offset
+    ) {
+        Rc6BlockCipher cipher = new Rc6BlockCipher(
+            new Rc6Parameters(WORD_SIZE_32, 20, key.length));
+        cipher.init(key);
+
+        byte[] buffer = new byte[offset + plaintext.length];
+        System.arraycopy(plaintext, 0, buffer, offset, plaintext.length);
+
+        cipher.encryptBlock(buffer, offset, buffer, offset);
+        assertThat(Arrays.copyOfRange(buffer, offset, buffer.length))
+            .isEqualTo(cipher.encrypt(plaintext));
+
+        cipher.decryptBlock(buffer, offset, buffer, offset);
+        assertThat(Arrays.copyOfRange(buffer, offset, buffer.length))
+            .isEqualTo(plaintext);
+    }
+
+    @Property(tries = 100)
+    void batchOperationsMatchSingleBlocks(
+        @ForAll Rc6Parameters.WordSize wordSize,
+        @ForAll @Size(max = 255) byte[] key,
+        @ForAll @Size(value = 7 * 32) byte[] data,
+        @ForAll @IntRange(max = 7) int blocks
+    ) {
+        Rc6BlockCipher cipher = new Rc6BlockCipher(
+            new Rc6Parameters(wordSize, 20, key.length));
+        cipher.init(key);
+
+        int blockSize = cipher.blockSize();
+        byte[] expected = new byte[blocks * blockSize];
+
+        for (int i = 0; i < expected.length; i += blockSize) {
+            cipher.encryptBlock(data, i, expected, i);
+        }
+
+        byte[] buffer = new byte[expected.length];
+        cipher.encryptBlocks(data, 0, buffer, 0, blocks);
+        assertThat(buffer).isEqualTo(expected);
+
+        cipher.decryptBlocks(buffer, 0, buffer, 0, blocks);
+        assertThat(buffer).isEqualTo(Arrays.copyOf(data, expected.length));
+    }
+
+    @Property(tries = 100)
+    void directBufferOperationsMatchArrayOperations(
+        @ForAll Rc6Parameters.WordSize wordSize,
+        @ForAll @Size(max = 255) byte[] key,
+        @ForAll @Size(value = 7 * 32) byte[] data,
+        @ForAll @IntRange(max = 7) int blocks,
+        @ForAll @IntRange(max = 15) int offset
+    ) {
+        Rc6BlockCipher cipher = new Rc6BlockCipher(
+            new Rc6Parameters(wordSize, 20, key.length));
+        cipher.init(key);
+
+        int blockSize = cipher.blockSize();
+        byte[] expected = new byte[blocks * blockSize];
+        cipher.encryptBlocks(data, 0, expected, 0, blocks);
+
+        ByteBuffer src = ByteBuffer.allocateDirect(offset + expected.length);
+        ByteBuffer dst = ByteBuffer.allocateDirect(offset + expected.length);
+        src.put(offset, data, 0, expected.length);
+
+        cipher.encryptBlocks(src, offset, dst, offset, blocks);
+        byte[] encrypted = new byte[expected.length];
+        dst.get(offset, encrypted);
+        assertThat(encrypted).isEqualTo(expected);
+
+        cipher.decryptBlocks(dst, offset, dst, offset, blocks);
+        byte[] decrypted = new byte[expected.length];
+        dst.get(offset, decrypted);
+        assertThat(decrypted).isEqualTo(Arrays.copyOf(data, expected.length));
+    }
+
     /* https://web.archive.org/web/20181223080309/http://people.csail.mit.edu/rivest/rc6.pdf */
 
     @Example
@@ -147,6 +228,38 @@ public class Rc6BlockCipherTest {
         assertThat(cipher.decrypt(expected)).isEqualTo(plaintext);
     }
 
+    /* https://datatracker.ietf.org/doc/html/draft-krovetz-rc6-rc5-vectors-00 */
+
+    @Example
+    void testVector16BitWords() {
+        byte[] plaintext = parseHex("0001020304050607");
+        byte[] key = parseHex("0001020304050607");
+        byte[] expected = parseHex("2ff0b68eaeffad5b");
+
+        Rc6Parameters parameters = new Rc6Parameters(WORD_SIZE_16, 16, 8);
+        Rc6BlockCipher cipher = new Rc6BlockCipher(parameters);
+        cipher.init(key);
+
+        assertThat(cipher.encrypt(plaintext)).isEqualTo(expected);
+        assertThat(cipher.decrypt(expected)).isEqualTo(plaintext);
+    }
+
+    @Example
+    void testVector64BitWords() {
+        byte[] plaintext = parseHex(
+            "000102030405060708090a0b0c0d0e0f101112131415161718191a1b1c1d1e1f");
+        byte[] key = parseHex("000102030405060708090a0b0c0d0e0f1011121314151617");
+        byte[] expected = parseHex(
+            "c002de050bd55e5d36864ab9853338e6dc4a1326c6bdaaeb1bc9e4fd67886617");
+
+        Rc6Parameters parameters = new Rc6Parameters(WORD_SIZE_64, 24, 24);
+        Rc6BlockCipher cipher = new Rc6BlockCipher(parameters);
+        cipher.init(key);
+
+        assertThat(cipher.encrypt(plaintext)).isEqualTo(expected);
+        assertThat(cipher.decrypt(expected)).isEqualTo(plaintext);
+    }
+
     private static byte[] parseHex(String hex) {
         return HexFormat.of().parseHex(hex);
     }
@@ -0,0 +1,69 @@
+package dora.crypto.block.rijndael;
+
+import net.jqwik.api.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ModularGaloisFieldTest {
+
+    private final GaloisField field = new GaloisField();
+
+    @Property
+    void multiplicationMatchesPolynomialArithmetic(
+        @ForAll("irreducibleModulus") short modulus,
+        @ForAll byte a,
+        @ForAll byte b
+    ) {
+        ModularGaloisField modularField = ModularGaloisField.of(modulus);
+        byte expected = field.mulModUnchecked(a, b, modulus);
+
+        assertThat(modularField.mulMod(a, b)).isEqualTo(expected);
+        assertThat(modularField.mulModTable(a, b)).isEqualTo(expected);
+    }
+
+    @Property
+    void inverseMatchesExtendedGcd(
+        @ForAll("irreducibleModulus") short modulus,
+        @ForAll("nonZeroBytes") byte f
+    ) {
+        ModularGaloisField modularField = ModularGaloisField.of(modulus);
+
+        assertThat(modularField.inv(f)).isEqualTo(field.invUnchecked(f, modulus));
+        assertThat(modularField.mulMod(f, modularField.inv(f))).isEqualTo((byte) 1);
+    }
+
+    @Example
+    void fieldsAreCachedPerModulus() {
+        assertThat(ModularGaloisField.of((short) 0x11b))
+            .isSameAs(ModularGaloisField.of((short) 0x11b));
+    }
+
+    @Example
+    void inverseOfZeroThrows() {
+        assertThatThrownBy(() -> ModularGaloisField.of((short) 0x11b).inv((byte) 0))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Example
+    void reducibleModulusThrows() {
+        assertThatThrownBy(() -> ModularGaloisField.of((short) 0b100000000))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Example
+    void lowDegreeModulusThrows() {
+        assertThatThrownBy(() -> ModularGaloisField.of((short) 0b11))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Provide("irreducibleModulus")
+    Arbitrary<Short> irreducibleModulus() {
+        return Arbitraries.of(field.irreducibles());
+    }
+
+    @Provide
+    Arbitrary<Byte> nonZeroBytes() {
+        return Arbitraries.bytes().filter((b) -> b != 0);
+    }
+}
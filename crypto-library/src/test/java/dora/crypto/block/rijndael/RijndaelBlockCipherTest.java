@@ -3,8 +3,13 @@ package dora.crypto.block.rijndael;
 import dora.crypto.block.rijndael.RijndaelParameters.BlockSize;
 import dora.crypto.block.rijndael.RijndaelParameters.KeySize;
 import net.jqwik.api.*;
+import net.jqwik.api.constraints.IntRange;
 import net.jqwik.api.constraints.Size;
 
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class RijndaelBlockCipherTest {
@@ -27,6 +32,54 @@ public class RijndaelBlockCipherTest {
         assertThat(decrypted).isEqualTo(plaintext);
     }
 
+    @Property(tries = 100)
+    void blockOperationsWorkAtOffsets(
+        @ForAll @Size(value = 16) byte[] plaintext,
+        @ForAll @Size(value = 16) byte[] key,
+        @ForAll @IntRange(max = 16) int offset
+    ) {
+        RijndaelBlockCipher blockCipher = new RijndaelBlockCipher(
+            RijndaelParameters.aes128());
+        blockCipher.init(key);
+
+        byte[] buffer = new byte[offset + plaintext.length];
+        System.arraycopy(plaintext, 0, buffer, offset, plaintext.length);
+
+        blockCipher.encryptBlock(buffer, offset, buffer, offset);
+        assertThat(Arrays.copyOfRange(buffer, offset, buffer.length))
+            .isEqualTo(blockCipher.encrypt(plaintext));
+
+        blockCipher.decryptBlock(buffer, offset, buffer, offset);
+        assertThat(Arrays.copyOfRange(buffer, offset, buffer.length))
+            .isEqualTo(plaintext);
+    }
+
+    @Property(tries = 100)
+    void batchOperationsMatchSingleBlocks(
+        @ForAll BlockSize size,
+        @ForAll @Size(value = 16) byte[] key,
+        @ForAll @Size(value = 7 * 32) byte[] data,
+        @ForAll @IntRange(max = 7) int blocks
+    ) {
+        RijndaelBlockCipher cipher = new RijndaelBlockCipher(
+            new RijndaelParameters(KeySize.KEY_128, size, (short) 0x11b));
+        cipher.init(key);
+
+        int blockSize = cipher.blockSize();
+        byte[] expected = new byte[blocks * blockSize];
+
+        for (int i = 0; i < expected.length; i += blockSize) {
+            cipher.encryptBlock(data, i, expected, i);
+        }
+
+        byte[] buffer = new byte[expected.length];
+        cipher.encryptBlocks(data, 0, buffer, 0, blocks);
+        assertThat(buffer).isEqualTo(expected);
+
+        cipher.decryptBlocks(buffer, 0, buffer, 0, blocks);
+        assertThat(buffer).isEqualTo(Arrays.copyOf(data, expected.length));
+    }
+
     @Provide("irreducibleModulus")
     Arbitrary<Short> irreducibleModulus() {
         GaloisField field = new GaloisField();
@@ -96,4 +149,76 @@ public class RijndaelBlockCipherTest {
 
         assertThat(plaintext).isEqualTo(expected);
     }
+
+    @Property(tries = 300)
+    void decryptedCiphertextEqualsPlaintextForAllBlockSizes(
+        @ForAll KeySize keySize,
+        @ForAll BlockSize blockSize,
+        @ForAll("irreducibleModulus") short modulus,
+        @ForAll Random random
+    ) {
+        RijndaelBlockCipher blockCipher = new RijndaelBlockCipher(
+            new RijndaelParameters(keySize, blockSize, modulus)
+        );
+
+        byte[] key = new byte[keySize.bytes()];
+        byte[] plaintext = new byte[blockSize.bytes()];
+        random.nextBytes(key);
+        random.nextBytes(plaintext);
+
+        blockCipher.init(key);
+
+        byte[] encrypted = blockCipher.encrypt(plaintext);
+        byte[] decrypted = blockCipher.decrypt(encrypted);
+
+        assertThat(decrypted).isEqualTo(plaintext);
+    }
+
+    /* Regression vectors for the non-AES configurations. */
+
+    @Example
+    void encryptionIsStableFor192BitBlocks() {
+        assertEncryption(
+            new RijndaelParameters(KeySize.KEY_192, BlockSize.BLOCK_192, (short) 0x11b),
+            "00112233445566778899aabbccddeeff1021324354657687",
+            "0f2031425364758697a8b9cadbecfd0e1f30415263748596",
+            "c85009aaac1b82ff8c581449fdba5e14079e3fe6adc4e803"
+        );
+    }
+
+    @Example
+    void encryptionIsStableFor256BitBlocks() {
+        assertEncryption(
+            new RijndaelParameters(KeySize.KEY_256, BlockSize.BLOCK_256, (short) 0x11b),
+            "00112233445566778899aabbccddeeff102132435465768798a9bacbdcedfe0f",
+            "0f2031425364758697a8b9cadbecfd0e1f30415263748596a7b8c9daebfc0d1e",
+            "bbcc118d33f5fd9515f9d3ddaa8169f31553cb049e8ebfac21a838cff9a24aa0"
+        );
+    }
+
+    @Example
+    void encryptionIsStableForNonAesModulus() {
+        assertEncryption(
+            new RijndaelParameters(KeySize.KEY_128, BlockSize.BLOCK_128, (short) 0x11d),
+            "00112233445566778899aabbccddeeff",
+            "0f2031425364758697a8b9cadbecfd0e",
+            "df73ed7448fd7d500629d5bf898f428b"
+        );
+    }
+
+    private void assertEncryption(
+        RijndaelParameters parameters,
+        String key,
+        String plaintext,
+        String ciphertext
+    ) {
+        HexFormat hex = HexFormat.of();
+        RijndaelBlockCipher blockCipher = new RijndaelBlockCipher(parameters);
+        blockCipher.init(hex.parseHex(key));
+
+        assertThat(blockCipher.encrypt(hex.parseHex(plaintext)))
+            .isEqualTo(hex.parseHex(ciphertext));
+        assertThat(blockCipher.decrypt(hex.parseHex(ciphertext)))
+            .isEqualTo(hex.parseHex(plaintext));
+    }
 }
@@ -0,0 +1,50 @@
+package dora.crypto.block.rijndael;
+
+import dora.crypto.block.rijndael.RijndaelParameters.BlockSize;
+import dora.crypto.block.rijndael.RijndaelParameters.KeySize;
+import net.jqwik.api.Example;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RijndaelParametersTest {
+
+    @Example
+    void aesParametersAreShared() {
+        assertThat(RijndaelParameters.aes128()).isSameAs(RijndaelParameters.aes128());
+        assertThat(RijndaelParameters.aes256())
+            .isSameAs(RijndaelParameters.of(KeySize.KEY_256, BlockSize.BLOCK_128, (short) 0x11b));
+    }
+
+    @Example
+    void nonAesParametersAreShared() {
+        RijndaelParameters parameters =
+            RijndaelParameters.of(KeySize.KEY_192, BlockSize.BLOCK_256, (short) 0x11d);
+
+        assertThat(RijndaelParameters.of(KeySize.KEY_192, BlockSize.BLOCK_256, (short) 0x11d))
+            .isSameAs(parameters);
+        assertThat(parameters.modulus()).isEqualTo((short) 0x11d);
+    }
+
+    @Example
+    void differentConfigurationsAreNotShared() {
+        assertThat(RijndaelParameters.of(KeySize.KEY_128, BlockSize.BLOCK_128, (short) 0x11b))
+            .isNotSameAs(RijndaelParameters.of(KeySize.KEY_128, BlockSize.BLOCK_192, (short) 0x11b));
+    }
+
+    @Example
+    void rconCannotBeModified() {
+        RijndaelParameters parameters = RijndaelParameters.aes128();
+
+        parameters.rcon()[0][0] = 0x55;
+
+        assertThat(parameters.rcon()[0][0]).isEqualTo((byte) 1);
+    }
+
+    @Example
+    void reducibleModulusThrows() {
+        assertThatThrownBy(() ->
+            RijndaelParameters.of(KeySize.KEY_128, BlockSize.BLOCK_128, (short) 0x100))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}